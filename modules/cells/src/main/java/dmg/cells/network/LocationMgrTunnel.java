@@ -13,8 +13,17 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import dmg.cells.nucleus.CellAdapter;
 import dmg.cells.nucleus.CellDomainInfo;
@@ -27,11 +36,14 @@ import dmg.cells.nucleus.CellTunnel;
 import dmg.cells.nucleus.CellTunnelInfo;
 import dmg.cells.nucleus.MessageEvent;
 import dmg.cells.nucleus.NoRouteToCellException;
+import dmg.cells.nucleus.PayloadCodecs;
 import dmg.cells.nucleus.RoutedMessageEvent;
 import dmg.cells.nucleus.SerializationException;
 import dmg.util.Args;
 import dmg.util.StreamEngine;
 
+import org.dcache.commons.stats.Gauge;
+import org.dcache.commons.stats.MetricsRegistry;
 import org.dcache.util.Version;
 
 /**
@@ -54,6 +66,24 @@ public class LocationMgrTunnel
     private final static Logger _log =
         LoggerFactory.getLogger(LocationMgrTunnel.class);
 
+    /**
+     * Default number of messages that may be queued for the tunnel
+     * before further messages are rejected.
+     */
+    private final static int DEFAULT_QUEUE_LIMIT = 10000;
+
+    /**
+     * Upper bound on the number of messages written to the socket
+     * before the stream is flushed.
+     */
+    private final static int MAX_BATCH_SIZE = 256;
+
+    /**
+     * Prefix of the entries in the codec list of the handshake that
+     * name the payload codecs known to a domain.
+     */
+    private final static String PAYLOAD_CODEC_PREFIX = "payload:";
+
     private final CellNucleus  _nucleus;
 
     private CellDomainInfo  _remoteDomainInfo;
@@ -64,20 +94,52 @@ public class LocationMgrTunnel
 
     private ObjectSource _input;
     private ObjectSink _output;
+    private Codec _codec;
+
+    /**
+     * Payload codecs understood by the remote domain. Payloads encoded
+     * by any other codec are Java serialized before being queued.
+     */
+    private volatile Set<String> _remotePayloadCodecs = Collections.emptySet();
 
     private boolean _down;
 
+    /**
+     * Outbound messages waiting for the writer thread. The capacity
+     * is the high-water mark beyond which messages are returned to
+     * the sender rather than blocking the sending cell.
+     */
+    private final BlockingQueue<CellMessage> _outbound;
+    private final int _queueLimit;
+
+    /**
+     * Time in milliseconds the writer waits for further messages
+     * before flushing a batch. Bounds the latency added by batching.
+     */
+    private final long _flushDelay;
+
+    private volatile Thread _writer;
+
+    private static final String METRIC_QUEUE = "dcache_tunnel_queue_size";
+
     //
     // some statistics
     //
-    private int  _messagesToTunnel;
+    private final AtomicLong _messagesToTunnel = new AtomicLong();
     private int  _messagesToSystem;
+    private final AtomicLong _messagesRejected = new AtomicLong();
+    private final AtomicLong _batches = new AtomicLong();
+    private volatile int _maxBatchSize;
 
     public LocationMgrTunnel(String cellName, StreamEngine engine, Args args)
         throws IOException
     {
         super(cellName, "System", args, false);
 
+        _queueLimit = args.getIntOption("queueLimit", DEFAULT_QUEUE_LIMIT);
+        _flushDelay = args.getLongOption("flushDelay", 0L);
+        _outbound = new ArrayBlockingQueue<>(_queueLimit);
+
         try {
             _nucleus = getNucleus();
             _socket = engine.getSocket();
@@ -90,6 +152,15 @@ public class LocationMgrTunnel
             kill();
             throw e;
         }
+        MetricsRegistry.getInstance().gauge(METRIC_QUEUE, "Messages queued for a tunnel",
+                                            new Gauge() {
+                                                @Override
+                                                public double getValue()
+                                                {
+                                                    return _outbound.size();
+                                                }
+                                            },
+                                            "cell", getCellName());
         getNucleus().newThread(this, "Tunnel").start();
     }
 
@@ -97,8 +168,13 @@ public class LocationMgrTunnel
     {
         try  {
             ObjectOutputStream out = new ObjectOutputStream(_rawOut);
+            List<String> codecs = Codec.names();
+            for (String name : PayloadCodecs.names()) {
+                codecs.add(PAYLOAD_CODEC_PREFIX + name);
+            }
             out.writeObject(new CellDomainInfo(_nucleus.getCellDomainName(),
-                    Version.of(LocationMgrTunnel.class).getVersion()));
+                    Version.of(LocationMgrTunnel.class).getVersion(),
+                    codecs));
             out.flush();
             ObjectInputStream in = new ObjectInputStream(_rawIn);
 
@@ -108,13 +184,31 @@ public class LocationMgrTunnel
                 throw new IOException("EOS encountered while reading DomainInfo");
             }
 
-            _input = new JavaObjectSource(in);
-            _output = new JavaObjectSink(out);
+            /* Both ends see the same pair of codec lists and thus
+             * agree on the codec without further round trips.
+             */
+            _codec = Codec.negotiate(_remoteDomainInfo.getCodecs());
+            _input = _codec.createSource(in);
+            _output = _codec.createSink(out);
+
+            /* The Java codec serializes the envelope, which always
+             * carries a Java serialized payload.
+             */
+            if (_codec == Codec.BINARY) {
+                Set<String> payloadCodecs = new HashSet<>();
+                for (String name : _remoteDomainInfo.getCodecs()) {
+                    if (name.startsWith(PAYLOAD_CODEC_PREFIX)) {
+                        payloadCodecs.add(name.substring(PAYLOAD_CODEC_PREFIX.length()));
+                    }
+                }
+                _remotePayloadCodecs = payloadCodecs;
+            }
         } catch (ClassNotFoundException e) {
             throw new IOException("Cannot deserialize object. This is most likely due to a version mismatch.", e);
         }
 
-        _log.debug("Established tunnel to {}", getRemoteDomainName());
+        _log.debug("Established tunnel to {} using {} codec",
+                   getRemoteDomainName(), _codec);
     }
 
     synchronized private void setDown(boolean down)
@@ -129,7 +223,6 @@ public class LocationMgrTunnel
     }
 
     private void returnToSender(CellMessage msg, NoRouteToCellException e)
-        throws SerializationException
     {
         try {
             if (!(msg instanceof CellExceptionMessage)) {
@@ -138,11 +231,72 @@ public class LocationMgrTunnel
                 ret.setLastUOID(msg.getUOID());
                 _nucleus.sendMessage(ret);
             }
-        } catch (NoRouteToCellException f) {
+        } catch (NoRouteToCellException | SerializationException f) {
             _log.warn("Unable to deliver message and unable to return it to sender: " + msg);
         }
     }
 
+    private void returnToSender(CellMessage msg)
+    {
+        returnToSender(msg,
+                       new NoRouteToCellException("Communication failure. Message could not be delivered."));
+    }
+
+    private void returnQueuedToSender()
+    {
+        CellMessage msg;
+        while ((msg = _outbound.poll()) != null) {
+            returnToSender(msg);
+        }
+    }
+
+    /**
+     * Writes queued messages to the tunnel. Messages that are
+     * queued while a batch is written are coalesced into the same
+     * flush. If a flush delay is configured, the writer lingers for
+     * at most that long after the first message of a batch to pick
+     * up further messages.
+     *
+     * Messages of a batch that could not be flushed are returned to
+     * their senders.
+     */
+    private void write() throws IOException, InterruptedException
+    {
+        List<CellMessage> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        try {
+            while (!isDown()) {
+                CellMessage msg = _outbound.take();
+                long deadline = System.currentTimeMillis() + _flushDelay;
+                while (msg != null) {
+                    batch.add(msg);
+                    _output.writeObject(msg);
+                    if (batch.size() == MAX_BATCH_SIZE) {
+                        break;
+                    }
+                    msg = _outbound.poll();
+                    if (msg == null && _flushDelay > 0) {
+                        long delay = deadline - System.currentTimeMillis();
+                        if (delay > 0) {
+                            msg = _outbound.poll(delay, TimeUnit.MILLISECONDS);
+                        }
+                    }
+                }
+                _output.flush();
+                int count = batch.size();
+                batch.clear();
+                _messagesToTunnel.addAndGet(count);
+                _batches.incrementAndGet();
+                if (count > _maxBatchSize) {
+                    _maxBatchSize = count;
+                }
+            }
+        } finally {
+            for (CellMessage msg : batch) {
+                returnToSender(msg);
+            }
+        }
+    }
+
     private void receive()
         throws IOException, ClassNotFoundException
     {
@@ -168,6 +322,23 @@ public class LocationMgrTunnel
             handshake();
             start();
 
+            _writer = _nucleus.newThread(new Runnable() {
+                    @Override
+                    public void run()
+                    {
+                        try {
+                            write();
+                        } catch (InterruptedException e) {
+                        } catch (IOException e) {
+                            _log.warn("Error while sending message: " + e.getMessage());
+                        } finally {
+                            kill();
+                            returnQueuedToSender();
+                        }
+                    }
+                }, "Tunnel-writer");
+            _writer.start();
+
             _tunnels.add(this);
             try {
                 receive();
@@ -190,17 +361,30 @@ public class LocationMgrTunnel
     {
         if (me instanceof RoutedMessageEvent) {
             CellMessage msg = me.getMessage();
-            try {
-                if (isDown()) {
-                    throw new IOException("Tunnel has been shut down.");
+            String payloadCodec = msg.getPayloadCodec();
+            if (payloadCodec != null && !_remotePayloadCodecs.contains(payloadCodec)) {
+                try {
+                    msg = msg.withJavaSerializedPayload();
+                } catch (SerializationException e) {
+                    _log.error("Failed to serialize message to {}: {}",
+                               getRemoteDomainName(), e.getMessage());
+                    returnToSender(msg);
+                    return;
                 }
-                _messagesToTunnel++;
-                _output.writeObject(msg);
-            } catch (IOException e) {
-                _log.warn("Error while sending message: " + e.getMessage());
+            }
+            if (isDown()) {
+                returnToSender(msg);
+            } else if (!_outbound.offer(msg)) {
+                _messagesRejected.incrementAndGet();
                 returnToSender(msg,
-                               new NoRouteToCellException("Communication failure. Message could not be delivered."));
-                kill();
+                               new NoRouteToCellException("Tunnel to " + getRemoteDomainName() +
+                                                          " is congested. Message could not be delivered."));
+            } else if (isDown()) {
+                /* The tunnel was closed while the message was queued
+                 * and the queue may already have been drained. The
+                 * message would otherwise be stranded.
+                 */
+                returnQueuedToSender();
             }
         } else {
             super.messageArrived(me);
@@ -233,7 +417,15 @@ public class LocationMgrTunnel
         pw.println("Location Mgr Tunnel : " + getCellName());
         pw.println("-> Tunnel     : " + _messagesToTunnel);
         pw.println("-> Domain     : " + _messagesToSystem);
+        pw.println("Queued        : " + _outbound.size() + " (limit " + _queueLimit + ")");
+        pw.println("Rejected      : " + _messagesRejected);
+        long batches = _batches.get();
+        pw.println("Batches       : " + batches +
+                   " (avg " + ((batches == 0) ? 0 : _messagesToTunnel.get() / batches) +
+                   ", max " + _maxBatchSize + ")");
+        pw.println("Flush delay   : " + _flushDelay + " ms");
         pw.println("Peer          : " + getRemoteDomainName());
+        pw.println("Codec         : " + _codec);
     }
 
     @Override
@@ -241,6 +433,11 @@ public class LocationMgrTunnel
     {
         _log.info("Closing tunnel to " + getRemoteDomainName());
         setDown(true);
+        MetricsRegistry.getInstance().remove(METRIC_QUEUE, "cell", getCellName());
+        if (_writer != null) {
+            _writer.interrupt();
+        }
+        returnQueuedToSender();
         try {
             _socket.shutdownInput();
             _socket.close();
@@ -347,7 +544,134 @@ public class LocationMgrTunnel
 
     private interface ObjectSink
     {
+        /**
+         * Writes a message. The message may be buffered until the
+         * next call to flush.
+         */
         void writeObject(CellMessage message) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    /**
+     * Wire formats for cell messages. Codecs are listed in order of
+     * preference; the first codec supported by both ends of the tunnel
+     * is used. Domains that do not announce any codecs only understand
+     * Java serialization.
+     */
+    private enum Codec
+    {
+        BINARY("binary-1") {
+            @Override
+            ObjectSource createSource(ObjectInputStream in)
+            {
+                return new BinaryObjectSource(in);
+            }
+
+            @Override
+            ObjectSink createSink(ObjectOutputStream out)
+            {
+                return new BinaryObjectSink(out);
+            }
+        },
+
+        JAVA("java") {
+            @Override
+            ObjectSource createSource(ObjectInputStream in)
+            {
+                return new JavaObjectSource(in);
+            }
+
+            @Override
+            ObjectSink createSink(ObjectOutputStream out)
+            {
+                return new JavaObjectSink(out);
+            }
+        };
+
+        private final String _name;
+
+        Codec(String name)
+        {
+            _name = name;
+        }
+
+        abstract ObjectSource createSource(ObjectInputStream in);
+
+        abstract ObjectSink createSink(ObjectOutputStream out);
+
+        @Override
+        public String toString()
+        {
+            return _name;
+        }
+
+        static List<String> names()
+        {
+            List<String> names = new ArrayList<>();
+            for (Codec codec : values()) {
+                names.add(codec._name);
+            }
+            return names;
+        }
+
+        static Codec negotiate(List<String> remote)
+        {
+            for (Codec codec : values()) {
+                if (remote.contains(codec._name)) {
+                    return codec;
+                }
+            }
+            return JAVA;
+        }
+    }
+
+    /**
+     * Reads messages in the compact binary format of
+     * CellMessage#writeTo. The object stream is only used as a
+     * DataInput; no objects are exchanged after the handshake.
+     */
+    private static class BinaryObjectSource implements ObjectSource
+    {
+        private final ObjectInputStream in;
+
+        private BinaryObjectSource(ObjectInputStream in)
+        {
+            this.in = in;
+        }
+
+        @Override
+        public CellMessage readObject() throws IOException
+        {
+            return CellMessage.createFrom(in);
+        }
+    }
+
+    /**
+     * Writes messages in the compact binary format of
+     * CellMessage#writeTo. Since no objects are written, the stream
+     * never accumulates back references and need not be reset.
+     */
+    private static class BinaryObjectSink implements ObjectSink
+    {
+        private final ObjectOutputStream out;
+
+        private BinaryObjectSink(ObjectOutputStream out)
+        {
+            this.out = out;
+        }
+
+        @Override
+        public void writeObject(CellMessage message) throws IOException
+        {
+            message.writeTo(out);
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            out.flush();
+        }
     }
 
     private static class JavaObjectSource implements ObjectSource
@@ -388,6 +712,11 @@ public class LocationMgrTunnel
              */
             out.writeObject(message);
             out.reset();
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
             out.flush();
         }
     }
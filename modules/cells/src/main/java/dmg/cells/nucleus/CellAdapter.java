@@ -31,6 +31,7 @@ import dmg.util.CommandSyntaxException;
 import dmg.util.CommandThrowableException;
 import dmg.util.Gate;
 import dmg.util.Pinboard;
+import org.dcache.commons.stats.LatencyHistogram;
 import org.dcache.util.Version;
 import dmg.util.logback.FilterShell;
 
@@ -164,6 +165,19 @@ public class   CellAdapter
                 break;
             }
         }
+        String messageThreads = _args.getOpt("messageThreads");
+        if (messageThreads != null) {
+            String ordering = _args.getOption("messageOrdering", "source");
+            try {
+                _nucleus.setMessageThreads(Integer.parseInt(messageThreads),
+                        KeyedMessageExecutor.Ordering.valueOf(ordering.toUpperCase()));
+                _log.info("Delivering messages on {} threads ordered by {}",
+                          messageThreads, ordering);
+            } catch (IllegalArgumentException e) {
+                _log.warn("Illegal value for 'messageThreads' or 'messageOrdering' option : " +
+                          e.getMessage());
+            }
+        }
         if (_args.hasOption("replyObject") && _args.getOpt("replyObject").equals("false")) {
             setCommandExceptionEnabled(false);
         }
@@ -805,6 +819,13 @@ public class   CellAdapter
                 }
                 sb.append("\n");
             }
+            Map<String,LatencyHistogram> latencies = _nucleus.getReplyLatencies();
+            if (!latencies.isEmpty()) {
+                sb.append("\nReply latency per destination\n");
+            }
+            for (Map.Entry<String,LatencyHistogram> entry : latencies.entrySet()) {
+                sb.append(entry.getKey()).append(" : ").append(entry.getValue()).append("\n");
+            }
             return sb.toString();
         } else {
             return getInfo();
@@ -1,6 +1,8 @@
 package dmg.cells.nucleus;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -13,6 +15,12 @@ public class CellDomainInfo implements Serializable
     private String _domainName = "Unknown";
     private String _version;
 
+    /**
+     * Names of the tunnel codecs supported by the domain in order of
+     * preference. Domains predating codec negotiation leave this null.
+     */
+    private ArrayList<String> _codecs;
+
     public CellDomainInfo(String name)
     {
         _domainName = name;
@@ -24,6 +32,12 @@ public class CellDomainInfo implements Serializable
         _version = version;
     }
 
+    public CellDomainInfo(String name, String version, List<String> codecs)
+    {
+        this(name, version);
+        _codecs = new ArrayList<>(codecs);
+    }
+
     void setCellDomainName(String name)
     {
         _domainName = name;
@@ -34,6 +48,13 @@ public class CellDomainInfo implements Serializable
         return _version;
     }
 
+    public List<String> getCodecs()
+    {
+        return (_codecs == null)
+                ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(_codecs);
+    }
+
     public String getCellDomainName()
     {
         return _domainName;
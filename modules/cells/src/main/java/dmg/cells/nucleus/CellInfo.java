@@ -22,6 +22,7 @@ public class CellInfo implements Serializable {
   private int    _state;
   private int    _eventQueueSize;
   private int    _threadCount;
+  private int [] _messageQueueSizes;
   private CellVersion _version = new CellVersion() ;
 
   private static final String [] _stateNames =
@@ -38,6 +39,7 @@ public class CellInfo implements Serializable {
      _state          = info._state ;
      _eventQueueSize = info._eventQueueSize ;
      _threadCount    = info._threadCount ;
+     _messageQueueSizes = info._messageQueueSizes ;
      _version        = info._version ;
   }
 
@@ -51,6 +53,11 @@ public class CellInfo implements Serializable {
   public void setShortInfo( String info ){   _shortInfo    = info ; }
   public void setEventQueueSize( int size ){ _eventQueueSize = size ; }
   public void setThreadCount( int threadCount ){ _threadCount = threadCount ; }
+  /**
+    * Sets the number of queued messages of each message delivery
+    * thread. Only set for cells with more than one delivery thread.
+    */
+  public void setMessageQueueSizes( int [] sizes ){ _messageQueueSizes = sizes ; }
   public void setState( int state ){
      _state = ( state < 0 ) || ( _state >= _stateNames.length )  ?
               _stateNames.length : state  ;
@@ -76,6 +83,7 @@ public class CellInfo implements Serializable {
   public Date   getCreationTime(){ return _creationTime ; }
   public String getDomainName(){ return _domainName ; }
   public int    getThreadCount(){ return _threadCount ; }
+  public int [] getMessageQueueSizes(){ return _messageQueueSizes ; }
   //
   // and some needfull things
   //
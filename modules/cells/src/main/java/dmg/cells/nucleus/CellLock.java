@@ -1,5 +1,6 @@
 package dmg.cells.nucleus;
 
+import org.dcache.util.TimerWheel;
 
 public class CellLock {
     Object _object;
@@ -8,6 +9,8 @@ public class CellLock {
     boolean _sync = true;
     CellMessage _message;
     private final CDC _cdc = new CDC();
+    private final long _created = System.currentTimeMillis();
+    private TimerWheel.Timeout<UOID> _expiration;
 
     public CellLock(CellMessage msg, CellMessageAnswerable callback,
             long timeout) {
@@ -23,6 +26,10 @@ public class CellLock {
     public CellLock() {
     }
 
+    public CellLock(CellMessage msg) {
+        _message = msg;
+    }
+
     public void setObject(Object o) {
         _object = o;
     }
@@ -50,4 +57,25 @@ public class CellLock {
     public CDC getCdc() {
         return _cdc;
     }
+
+    /**
+     * Returns the time in milliseconds since the epoch at which the
+     * request was sent.
+     */
+    public long getCreationTime() {
+        return _created;
+    }
+
+    synchronized void setExpiration(TimerWheel.Timeout<UOID> expiration) {
+        _expiration = expiration;
+    }
+
+    /**
+     * Cancels the timeout of an asynchronous request.
+     */
+    synchronized void cancelExpiration() {
+        if (_expiration != null) {
+            _expiration.cancel();
+        }
+    }
 }
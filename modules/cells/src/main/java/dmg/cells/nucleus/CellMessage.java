@@ -2,11 +2,17 @@ package dmg.cells.nucleus ;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
 import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 
 import static com.google.common.base.Preconditions.checkState;
@@ -33,6 +39,12 @@ public class CellMessage implements Cloneable , Serializable {
   private static final int   ORIGINAL_MODE  = 0 ;
   private static final int   STREAM_MODE    = 1 ;
   private static final int   DUMMY_MODE     = 2 ;
+  private static final byte  NO_SESSION     = 0 ;
+  private static final byte  STRING_SESSION = 1 ;
+  private static final byte  OBJECT_SESSION = 2 ;
+  /* Java serialization streams start with 0xAC, hence a leading zero
+   * byte identifies a payload written by a PayloadCodec. */
+  private static final byte  CODEC_STREAM   = 0 ;
   private transient long _receivedAt;
 
   public CellMessage( CellPath addr , Serializable msg ){
@@ -141,32 +153,78 @@ public boolean equals( Object obj ){
         return copy;
     }
 
+    /**
+     * Returns a copy of this message with the payload encoded as a byte
+     * stream. Payloads for which a PayloadCodec is registered are written
+     * by that codec; all others are Java serialized.
+     */
     public CellMessage encode() throws SerializationException
+    {
+        return encode(true);
+    }
+
+    private CellMessage encode(boolean useCodecs) throws SerializationException
     {
         checkState(_mode == ORIGINAL_MODE);
         CellMessage encoded = cloneWithoutPayload();
         encoded._mode = STREAM_MODE;
         ByteArrayOutputStream array = new ByteArrayOutputStream();
-        try (ObjectOutputStream out = new ObjectOutputStream(array)) {
-            out.writeObject(_message);
-        } catch (InvalidClassException e) {
-            throw new SerializationException("Failed to serialize object: "
-                    + e + "(this is usually a bug)", e);
-        } catch (NotSerializableException e) {
-            throw new SerializationException("Failed to serialize object because the object is not serializable (this is usually a bug)", e);
-        } catch (IOException e) {
-            throw new SerializationException("Failed to serialize object: " + e, e);
+        PayloadCodec<?> codec = useCodecs ? PayloadCodecs.forType(_message.getClass()) : null;
+        if (codec != null) {
+            try (DataOutputStream out = new DataOutputStream(array)) {
+                out.writeByte(CODEC_STREAM);
+                out.writeUTF(codec.getName());
+                writePayload(out, codec);
+            } catch (IOException e) {
+                throw new SerializationException("Failed to encode object with codec " +
+                        codec.getName() + ": " + e + " (this is usually a bug)", e);
+            }
+        } else {
+            try (ObjectOutputStream out = new ObjectOutputStream(array)) {
+                out.writeObject(_message);
+            } catch (InvalidClassException e) {
+                throw new SerializationException("Failed to serialize object: "
+                        + e + "(this is usually a bug)", e);
+            } catch (NotSerializableException e) {
+                throw new SerializationException("Failed to serialize object because the object is not serializable (this is usually a bug)", e);
+            } catch (IOException e) {
+                throw new SerializationException("Failed to serialize object: " + e, e);
+            }
         }
 
         encoded._messageStream = array.toByteArray();
         return encoded;
     }
 
+    @SuppressWarnings("unchecked")
+    private <T extends Serializable> void writePayload(DataOutput out, PayloadCodec<T> codec)
+            throws IOException
+    {
+        codec.writeTo(out, (T) _message);
+    }
+
     public CellMessage decode() throws SerializationException
     {
         checkState(_mode == STREAM_MODE);
         CellMessage decoded = cloneWithoutPayload();
         decoded._mode = ORIGINAL_MODE;
+        if (isCodecStream()) {
+            try (DataInputStream in =
+                         new DataInputStream(new ByteArrayInputStream(_messageStream))) {
+                in.readByte();
+                String name = in.readUTF();
+                PayloadCodec<?> codec = PayloadCodecs.forName(name);
+                if (codec == null) {
+                    throw new SerializationException("Failed to decode object: Codec " + name +
+                            " is unknown. Is there a software version mismatch in your installation?");
+                }
+                decoded._message = codec.readFrom(in);
+            } catch (IOException e) {
+                throw new SerializationException("Failed to decode object: " + e, e);
+            }
+            return decoded;
+        }
+
         ByteArrayInputStream in;
         ObjectInputStream stream;
         try {
@@ -182,6 +240,151 @@ public boolean equals( Object obj ){
         return decoded;
     }
 
+    private boolean isCodecStream()
+    {
+        return _messageStream.length > 0 && _messageStream[0] == CODEC_STREAM;
+    }
+
+    /**
+     * Returns the name of the PayloadCodec used to encode the payload of
+     * this message, or null if the payload is Java serialized or the
+     * message is not encoded.
+     */
+    public String getPayloadCodec()
+    {
+        if (_mode != STREAM_MODE || !isCodecStream()) {
+            return null;
+        }
+        try (DataInputStream in =
+                     new DataInputStream(new ByteArrayInputStream(_messageStream))) {
+            in.readByte();
+            return in.readUTF();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns this encoded message with the payload Java serialized. Used
+     * when the message is passed to a domain that may not have the codec
+     * of the payload.
+     */
+    public CellMessage withJavaSerializedPayload() throws SerializationException
+    {
+        checkState(_mode == STREAM_MODE);
+        if (!isCodecStream()) {
+            return this;
+        }
+        return decode().encode(false);
+    }
+
+    /**
+     * Java serialization of the envelope is used by tunnels to domains
+     * that may not know any PayloadCodec, hence the payload is Java
+     * serialized too.
+     */
+    protected Object writeReplace() throws ObjectStreamException
+    {
+        if (_mode != STREAM_MODE || !isCodecStream()) {
+            return this;
+        }
+        try {
+            return withJavaSerializedPayload();
+        } catch (SerializationException e) {
+            InvalidObjectException ex = new InvalidObjectException(e.getMessage());
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+
+    /**
+     * Writes an encoded message in a compact binary format. Unlike Java
+     * serialization of the envelope, no class descriptors are written;
+     * the payload is the byte stream produced by {@link #encode}.
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        checkState(_mode == STREAM_MODE);
+        _source.writeTo(out);
+        _destination.writeTo(out);
+        out.writeLong(_creationTime);
+        out.writeLong(_ttl);
+        _umid.writeTo(out);
+        _lastUmid.writeTo(out);
+        out.writeBoolean(_isPersistent);
+        if (_session == null) {
+            out.writeByte(NO_SESSION);
+        } else if (_session instanceof String) {
+            out.writeByte(STRING_SESSION);
+            out.writeUTF((String) _session);
+        } else {
+            out.writeByte(OBJECT_SESSION);
+            ByteArrayOutputStream array = new ByteArrayOutputStream();
+            try (ObjectOutputStream stream = new ObjectOutputStream(array)) {
+                stream.writeObject(_session);
+            }
+            writeBytes(out, array.toByteArray());
+        }
+        writeBytes(out, _messageStream);
+    }
+
+    /**
+     * Reads an encoded message written by {@link #writeTo}.
+     */
+    public static CellMessage createFrom(DataInput in) throws IOException
+    {
+        CellMessage message = new CellMessage();
+        message._mode = STREAM_MODE;
+        message._source = CellPath.createFrom(in);
+        message._destination = CellPath.createFrom(in);
+        message._creationTime = in.readLong();
+        message._ttl = in.readLong();
+        message._umid = UOID.createFrom(in);
+        message._lastUmid = UOID.createFrom(in);
+        message._isPersistent = in.readBoolean();
+        byte session = in.readByte();
+        switch (session) {
+        case NO_SESSION:
+            break;
+        case STRING_SESSION:
+            message._session = in.readUTF();
+            break;
+        case OBJECT_SESSION:
+            try (ObjectInputStream stream =
+                         new ObjectInputStream(new ByteArrayInputStream(readBytes(in)))) {
+                message._session = stream.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Failed to deserialize session: " + e.getMessage(), e);
+            }
+            break;
+        default:
+            throw new IOException("Invalid session type: " + session);
+        }
+        message._messageStream = readBytes(in);
+        message._receivedAt = System.currentTimeMillis();
+        if (message._ttl == 0) {
+            message._ttl = Long.MAX_VALUE;
+        }
+        return message;
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException
+    {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
     public void addSourceAddress( CellAddressCore source ){
       _source.add(source) ;
   }
@@ -15,10 +15,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -33,6 +35,12 @@ import dmg.util.Pinboard;
 import dmg.util.logback.FilterThresholds;
 import dmg.util.logback.RootFilterThresholds;
 
+import org.dcache.commons.stats.Gauge;
+import org.dcache.commons.stats.LatencyHistogram;
+import org.dcache.commons.stats.MetricsRegistry;
+import org.dcache.commons.stats.StripedCounter;
+import org.dcache.util.TimerWheel;
+
 /**
  *
  *
@@ -60,7 +68,28 @@ public class CellNucleus implements ThreadFactory
     private        int       _state          = INITIAL;
 
     //  have to be synchronized map
-    private final  Map<UOID, CellLock> _waitHash = new HashMap<>();
+    private final  ConcurrentMap<UOID, CellLock> _waitHash = new ConcurrentHashMap<>();
+
+    /**
+     * Timeouts of asynchronous requests in _waitHash. Expired by
+     * updateWaitQueue.
+     */
+    private final TimerWheel<UOID> _timeouts =
+            new TimerWheel<>(1, TimeUnit.SECONDS, 512);
+
+    /**
+     * Reply latencies per destination cell.
+     */
+    private final ConcurrentMap<String, LatencyHistogram> _replyLatencies =
+            new ConcurrentHashMap<>();
+    private static final int MAX_LATENCY_DESTINATIONS = 1000;
+
+    private static final String METRIC_MESSAGES = "dcache_cell_messages_delivered_total";
+    private static final String METRIC_QUEUE = "dcache_cell_event_queue_size";
+    private static final String METRIC_LATENCY = "dcache_cell_reply_latency_milliseconds";
+    private static final MetricsRegistry METRICS = MetricsRegistry.getInstance();
+
+    private final StripedCounter _messagesDelivered;
     private String _cellClass;
 
     private volatile ExecutorService _callbackExecutor;
@@ -152,12 +181,25 @@ public class CellNucleus implements ThreadFactory
                         new LinkedBlockingQueue<Runnable>(),
                         this);
 
+        _messagesDelivered =
+                METRICS.counter(METRIC_MESSAGES, "Messages delivered to the cell",
+                                "cell", _cellName);
+
         _state = ACTIVE;
 
         //
         // make ourself known to the world
         //
         __cellGlue.addCell(_cellName, this);
+        METRICS.gauge(METRIC_QUEUE, "Events queued for delivery to the cell",
+                      new Gauge() {
+                          @Override
+                          public double getValue()
+                          {
+                              return _eventQueueSize.get();
+                          }
+                      },
+                      "cell", _cellName);
 
         LOGGER.info("Created {}", name);
     }
@@ -268,6 +310,10 @@ public class CellNucleus implements ThreadFactory
             info.setEventQueueSize(getEventQueueSize());
             info.setState(_state);
             info.setThreadCount(_threads.activeCount());
+            ExecutorService executor = _messageExecutor;
+            if (executor instanceof KeyedMessageExecutor) {
+                info.setMessageQueueSizes(((KeyedMessageExecutor) executor).getQueueSizes());
+            }
         } catch(Exception e) {
             info.setEventQueueSize(0);
             info.setState(0);
@@ -314,6 +360,17 @@ public class CellNucleus implements ThreadFactory
         _isPrivateCallbackExecutor = true;
     }
 
+    /**
+     * Delivers incoming messages on several threads. Messages with
+     * the same ordering key are delivered in the order they arrived.
+     */
+    public synchronized void setMessageThreads(int threads,
+                                               KeyedMessageExecutor.Ordering ordering)
+    {
+        setMessageExecutor(new KeyedMessageExecutor(threads, ordering, this));
+        _isPrivateMessageExecutor = true;
+    }
+
     /**
      * Executor used for message callbacks.
      */
@@ -410,10 +467,8 @@ public class CellNucleus implements ThreadFactory
         EventLogger.sendBegin(this, msg, "blocking");
         UOID uoid = msg.getUOID();
         try {
-            CellLock lock = new CellLock();
-            synchronized (_waitHash) {
-                _waitHash.put(uoid, lock);
-            }
+            CellLock lock = new CellLock(msg);
+            _waitHash.put(uoid, lock);
             LOGGER.trace("sendAndWait : adding to hash : {}", uoid);
 
             __cellGlue.sendMessage(this, msg, local, remote);
@@ -444,43 +499,78 @@ public class CellNucleus implements ThreadFactory
             }
             return answer;
         } finally {
-            synchronized (_waitHash) {
-                _waitHash.remove(uoid);
-            }
+            _waitHash.remove(uoid);
             EventLogger.sendEnd(msg);
         }
     }
 
     public Map<UOID,CellLock > getWaitQueue() {
+        return new HashMap<>(_waitHash);
+    }
 
-        Map<UOID,CellLock > hash = new HashMap<>();
-        synchronized (_waitHash) {
-            hash.putAll(_waitHash);
+    /**
+     * Returns histograms of the reply latency of requests sent by this
+     * cell, indexed by the address of the destination cell.
+     */
+    public Map<String,LatencyHistogram> getReplyLatencies() {
+        return new TreeMap<>(_replyLatencies);
+    }
+
+    private void recordReplyLatency(CellLock lock) {
+        CellMessage envelope = lock.getMessage();
+        if (envelope == null) {
+            return;
+        }
+        String destination =
+                envelope.getDestinationPath().getDestinationAddress().toString();
+        LatencyHistogram histogram = _replyLatencies.get(destination);
+        if (histogram == null) {
+            if (_replyLatencies.size() >= MAX_LATENCY_DESTINATIONS) {
+                return;
+            }
+            histogram = METRICS.histogram(METRIC_LATENCY,
+                                          "Latency of replies to requests sent by the cell",
+                                          "cell", _cellName, "destination", destination);
+            LatencyHistogram existing = _replyLatencies.putIfAbsent(destination, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
         }
-        return hash;
+        histogram.record(System.currentTimeMillis() - lock.getCreationTime());
     }
 
+    /**
+     * Removes the metrics of this cell from the registry. Cells may be
+     * short lived (eg login cells), thus their metrics must not outlive
+     * them.
+     */
+    private void unregisterMetrics() {
+        METRICS.remove(METRIC_MESSAGES, "cell", _cellName);
+        METRICS.remove(METRIC_QUEUE, "cell", _cellName);
+        for (String destination : _replyLatencies.keySet()) {
+            METRICS.remove(METRIC_LATENCY, "cell", _cellName, "destination", destination);
+        }
+    }
+
+    /**
+     * Expires asynchronous requests whose timeout has passed. Only the
+     * timer wheel buckets of the ticks elapsed since the previous call
+     * are visited, thus the cost does not depend on the number of
+     * outstanding requests.
+     */
     public int updateWaitQueue()
     {
         Collection<CellLock> expired = new ArrayList<>();
-        long now  = System.currentTimeMillis();
-        int size;
-
-        synchronized (_waitHash) {
-            Iterator<CellLock> i = _waitHash.values().iterator();
-            while (i.hasNext()) {
-                CellLock lock =  i.next();
-                if (lock != null && !lock.isSync() && lock.getTimeout() < now) {
-                    expired.add(lock);
-                    i.remove();
-                }
+        for (UOID uoid: _timeouts.expire(System.currentTimeMillis())) {
+            CellLock lock = _waitHash.remove(uoid);
+            if (lock != null) {
+                expired.add(lock);
             }
-            size = _waitHash.size();
         }
+        int size = _waitHash.size();
 
         //
-        // _waitHash can't be used here. Otherwise
-        // we will end up in a deadlock (NO LOCKS WHILE CALLING CALLBACKS)
+        // NO LOCKS WHILE CALLING CALLBACKS
         //
         for (CellLock lock: expired) {
             try {
@@ -517,9 +607,8 @@ public class CellNucleus implements ThreadFactory
         boolean success = false;
         try {
             CellLock lock = new CellLock(msg, callback, timeout);
-            synchronized (_waitHash) {
-                _waitHash.put(uoid, lock);
-            }
+            _waitHash.put(uoid, lock);
+            lock.setExpiration(_timeouts.schedule(uoid, lock.getTimeout()));
 
             __cellGlue.sendMessage(this, msg, local, remote);
             success = true;
@@ -529,8 +618,9 @@ public class CellNucleus implements ThreadFactory
             }
         } finally {
             if (!success) {
-                synchronized (_waitHash) {
-                    _waitHash.remove(uoid);
+                CellLock lock = _waitHash.remove(uoid);
+                if (lock != null) {
+                    lock.cancelExpiration();
                 }
                 EventLogger.sendEnd(msg);
             }
@@ -770,13 +860,10 @@ public class CellNucleus implements ThreadFactory
             final CellMessage msg = ce.getMessage();
             if (msg != null) {
                 LOGGER.trace("addToEventQueue : message arrived : {}", msg);
-                CellLock lock;
-
-                synchronized (_waitHash) {
-                    lock = _waitHash.remove(msg.getLastUOID());
-                }
+                CellLock lock = _waitHash.remove(msg.getLastUOID());
 
                 if (lock != null) {
+                    recordReplyLatency(lock);
                     //
                     // we were waiting for you (sync or async)
                     //
@@ -796,11 +883,10 @@ public class CellNucleus implements ThreadFactory
                             /* Put it back; the timeout handler
                              * will eventually take care of it.
                              */
-                            synchronized (_waitHash) {
-                                _waitHash.put(msg.getLastUOID(), lock);
-                            }
+                            _waitHash.put(msg.getLastUOID(), lock);
                             throw e;
                         }
+                        lock.cancelExpiration();
                     }
                     return;
                 }
@@ -845,6 +931,7 @@ public class CellNucleus implements ThreadFactory
             } catch (InterruptedException e) {
                 LOGGER.warn("Interrupted while waiting for threads");
             }
+            unregisterMetrics();
             __cellGlue.destroy(CellNucleus.this);
             _state = DEAD;
         }
@@ -1013,9 +1100,16 @@ public class CellNucleus implements ThreadFactory
     }
 
     private class DeliverMessageTask extends AbstractNucleusTask
+        implements KeyedMessageExecutor.KeyedTask
     {
         private final CellEvent _event;
 
+        /**
+         * The decoded message if it had to be decoded to determine
+         * the ordering key.
+         */
+        private CellMessage _decoded;
+
         public DeliverMessageTask(CellEvent event)
         {
             _event = event;
@@ -1023,11 +1117,47 @@ public class CellNucleus implements ThreadFactory
             _eventQueueSize.incrementAndGet();
         }
 
+        @Override
+        public Object getOrderingKey(KeyedMessageExecutor.Ordering ordering)
+        {
+            if (!(_event instanceof MessageEvent) || _event instanceof LastMessageEvent) {
+                return null;
+            }
+            CellMessage envelope = ((MessageEvent) _event).getMessage();
+            switch (ordering) {
+            case SESSION:
+                return envelope.getSession();
+            case MESSAGE:
+                if (!(_event instanceof RoutedMessageEvent)) {
+                    try {
+                        _decoded = envelope.decode();
+                        Object msg = _decoded.getMessageObject();
+                        if (msg instanceof HasOrderingKey) {
+                            Object key = ((HasOrderingKey) msg).getOrderingKey();
+                            if (key != null) {
+                                return key;
+                            }
+                        }
+                    } catch (SerializationException e) {
+                        /* Reported when the message is delivered.
+                         */
+                    }
+                }
+                // fall through
+            case SOURCE:
+            default:
+                return (envelope.getSourcePath().hops() > 0)
+                        ? envelope.getSourceAddress()
+                        : null;
+            }
+        }
+
         @Override
         public void innerRun()
         {
             EventLogger.queueEnd(_event);
             _eventQueueSize.decrementAndGet();
+            _messagesDelivered.increment();
 
             if (_event instanceof LastMessageEvent) {
                 LOGGER.trace("messageThread : LastMessageEvent arrived");
@@ -1038,9 +1168,11 @@ public class CellNucleus implements ThreadFactory
             } else if (_event instanceof MessageEvent) {
                 MessageEvent msgEvent = (MessageEvent) _event;
                 LOGGER.trace("messageThread : MessageEvent arrived");
-                CellMessage msg;
+                CellMessage msg = _decoded;
                 try {
-                    msg = msgEvent.getMessage().decode();
+                    if (msg == null) {
+                        msg = msgEvent.getMessage().decode();
+                    }
                 } catch (SerializationException e) {
                     CellMessage envelope = msgEvent.getMessage();
                     LOGGER.error(String
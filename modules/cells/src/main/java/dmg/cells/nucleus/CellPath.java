@@ -2,6 +2,9 @@ package dmg.cells.nucleus ;
 
 import com.google.common.collect.Lists;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -201,6 +204,38 @@ public class CellPath  implements Cloneable , Serializable {
    @Override
    public String toString(){ return toFullString() ; }
 
+    /**
+     * Writes the path in the compact binary tunnel format.
+     */
+    synchronized void writeTo(DataOutput out) throws IOException
+    {
+        out.writeInt(_position);
+        out.writeInt(_list.size());
+        for (CellAddressCore address : _list) {
+            out.writeUTF(address.getCellName());
+            out.writeUTF(address.getCellDomainName());
+        }
+    }
+
+    /**
+     * Reads a path written by {@link #writeTo}.
+     */
+    static CellPath createFrom(DataInput in) throws IOException
+    {
+        CellPath path = new CellPath();
+        path._position = in.readInt();
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid cell path length: " + size);
+        }
+        for (int i = 0; i < size; i++) {
+            String cell = in.readUTF();
+            String domain = in.readUTF();
+            path._list.add(new CellAddressCore(cell, domain));
+        }
+        return path;
+    }
+
    public synchronized String toFullString(){
       int size = _list.size() ;
       if( size == 0 ) {
@@ -4,8 +4,12 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import dmg.util.Args;
 
@@ -19,173 +23,221 @@ public class CellRoutingTable implements Serializable {
 
    private static final long serialVersionUID = -1456280129622980563L;
 
-   private final Map<String, CellRoute>  _wellknown  = new HashMap<>() ;
-   private final Map<String, CellRoute>  _domain     = new HashMap<>() ;
-   private final Map<String, CellRoute>  _exact      = new HashMap<>() ;
-   private CellRoute  _dumpster   = null ;
-   private CellRoute  _default    = null ;
+   /**
+    * Upper bound on the number of resolved addresses memoized per
+    * snapshot.
+    */
+   private static final int MAX_RESOLVED = 4096 ;
+
+   /**
+    * The current routing table. Snapshots are immutable and replaced
+    * as a whole on every update, thus lookups need no lock. Updates
+    * are rare and serialized on the monitor of the table.
+    */
+   private volatile Snapshot _snapshot = new Snapshot() ;
 
    public synchronized void add( CellRoute route )
           throws IllegalArgumentException {
 
+      Snapshot next = new Snapshot( _snapshot ) ;
       int type = route.getRouteType() ;
-      String dest ;
       switch( type ){
         case CellRoute.EXACT :
         case CellRoute.ALIAS :
-           dest = route.getCellName()+"@"+route.getDomainName() ;
-           if( _exact.get( dest ) != null ) {
-               throw new IllegalArgumentException("Duplicated route Entry for : " + dest);
+           CellAddressCore address = exactKey( route ) ;
+           if( next._exact.get( address ) != null ) {
+               throw new IllegalArgumentException("Duplicated route Entry for : " + address);
            }
-           _exact.put( dest , route ) ;
+           next._exact.put( address , route ) ;
         break ;
         case CellRoute.WELLKNOWN :
-           dest = route.getCellName() ;
-           if( _wellknown.get( dest ) != null ) {
-               throw new IllegalArgumentException("Duplicated route Entry for : " + dest);
+           String cell = route.getCellName() ;
+           if( next._wellknown.get( cell ) != null ) {
+               throw new IllegalArgumentException("Duplicated route Entry for : " + cell);
            }
-           _wellknown.put( dest , route ) ;
+           next._wellknown.put( cell , route ) ;
         break ;
         case CellRoute.DOMAIN :
-           dest = route.getDomainName() ;
-           if( _domain.get( dest ) != null ) {
-               throw new IllegalArgumentException("Duplicated route Entry for : " + dest);
+           String domain = route.getDomainName() ;
+           if( next._domain.get( domain ) != null ) {
+               throw new IllegalArgumentException("Duplicated route Entry for : " + domain);
            }
-           _domain.put( dest , route ) ;
+           next._domain.put( domain , route ) ;
         break ;
         case CellRoute.DEFAULT :
-           if( _default != null ) {
+           if( next._default != null ) {
                throw new IllegalArgumentException("Duplicated route Entry for default.");
            }
-           _default = route ;
+           next._default = route ;
         break ;
         case CellRoute.DUMPSTER :
-           if( _dumpster != null ) {
+           if( next._dumpster != null ) {
                throw new IllegalArgumentException("Duplicated route Entry for dumpster");
            }
-           _dumpster = route ;
+           next._dumpster = route ;
         break ;
 
       }
-
+      _snapshot = next ;
    }
    public synchronized void delete( CellRoute route )
           throws IllegalArgumentException {
 
+      Snapshot next = new Snapshot( _snapshot ) ;
       int type = route.getRouteType() ;
-      String dest ;
       switch( type ){
         case CellRoute.EXACT :
         case CellRoute.ALIAS :
-           dest = route.getCellName()+"@"+route.getDomainName() ;
-           if( _exact.remove( dest ) == null ) {
-               throw new IllegalArgumentException("Route Entry Not Found for : " + dest);
+           CellAddressCore address = exactKey( route ) ;
+           if( next._exact.remove( address ) == null ) {
+               throw new IllegalArgumentException("Route Entry Not Found for : " + address);
            }
         break ;
         case CellRoute.WELLKNOWN :
-           dest = route.getCellName() ;
-           if( _wellknown.remove( dest ) == null ) {
-               throw new IllegalArgumentException("Route Entry Not Found for : " + dest);
+           String cell = route.getCellName() ;
+           if( next._wellknown.remove( cell ) == null ) {
+               throw new IllegalArgumentException("Route Entry Not Found for : " + cell);
            }
         break ;
         case CellRoute.DOMAIN :
-           dest = route.getDomainName() ;
-           if( _domain.remove( dest ) == null ) {
-               throw new IllegalArgumentException("Route Entry Not Found for : " + dest);
+           String domain = route.getDomainName() ;
+           if( next._domain.remove( domain ) == null ) {
+               throw new IllegalArgumentException("Route Entry Not Found for : " + domain);
            }
         break ;
         case CellRoute.DEFAULT :
-           if( _default == null ) {
+           if( next._default == null ) {
                throw new IllegalArgumentException("Route Entry Not Found for default");
            }
-           _default = null ;
+           next._default = null ;
         break ;
         case CellRoute.DUMPSTER :
-           if( _dumpster == null ) {
+           if( next._dumpster == null ) {
                throw new IllegalArgumentException("Route Entry Not Found dumpster");
            }
-           _dumpster = null ;
+           next._dumpster = null ;
         break ;
 
       }
+      _snapshot = next ;
+   }
 
+   private static CellAddressCore exactKey( CellRoute route ){
+      return new CellAddressCore( route.getCellName() , route.getDomainName() ) ;
    }
-   public synchronized CellRoute find( CellAddressCore addr ){
-      String cellName   = addr.getCellName() ;
-      String domainName = addr.getCellDomainName();
-      CellRoute route;
-      if( domainName.equals("local") ){
-        //
-        // this is not really local but wellknown
-        // we checked for local before we called this.
-        //
-        route = _wellknown.get( cellName ) ;
-        if( route != null ) {
-            return route;
-        }
-      }else{
-        route = _exact.get(cellName+"@"+domainName) ;
-        if( route != null ) {
-            return route;
-        }
-        route = _domain.get( domainName ) ;
-        if( route != null ) {
-            return route;
-        }
-      }
-      route = _exact.get( cellName+"@"+domainName ) ;
-      return route == null ? _default : route ;
 
+   /**
+    * Returns the route for a cell address. Does not block: the lookup
+    * is served from the current snapshot, which memoizes the result of
+    * resolving the exact, wellknown, domain and default chain per
+    * address.
+    */
+   public CellRoute find( CellAddressCore addr ){
+      return _snapshot.find( addr ) ;
    }
-   public synchronized String toString(){
+   public String toString(){
 
+      Snapshot snapshot = _snapshot ;
       StringBuilder sb = new StringBuilder() ;
       sb.append(CellRoute.headerToString()).append("\n");
-      for( CellRoute route:  _exact.values()  ) {
-          sb.append(route.toString()).append("\n");
-      }
-      for( CellRoute route: _wellknown.values() ) {
-          sb.append(route.toString()).append("\n");
-      }
-      for( CellRoute route: _domain.values() ) {
+      for( CellRoute route: snapshot.getRoutes() ) {
           sb.append(route.toString()).append("\n");
       }
-      if( _default != null ) {
-          sb.append(_default.toString()).append("\n");
-      }
-      if( _dumpster != null ) {
-          sb.append(_dumpster.toString()).append("\n");
-      }
-
       return sb.toString();
    }
-   public synchronized CellRoute [] getRoutingList(){
-      int total = _exact.size() +
-                  _wellknown.size() +
-                  _domain.size() +
-                  ( _default != null  ? 1 : 0 ) +
-                  ( _dumpster != null ? 1 : 0 )  ;
+   public CellRoute [] getRoutingList(){
+      List<CellRoute> routes = _snapshot.getRoutes() ;
+      return routes.toArray( new CellRoute[routes.size()] ) ;
+   }
 
-      CellRoute [] routes = new CellRoute[total] ;
-      int i = 0 ;
+   /**
+    * Immutable view of the routing table. Snapshots are only modified
+    * between construction and publication in <code>_snapshot</code>.
+    */
+   private static class Snapshot implements Serializable {
 
-      for( CellRoute route:  _exact.values() ) {
-          routes[i++] = route;
-      }
-      for( CellRoute route:  _wellknown.values() ) {
-          routes[i++] = route;
+      private static final long serialVersionUID = 6286104937412532208L;
+
+      private final Map<String, CellRoute>  _wellknown ;
+      private final Map<String, CellRoute>  _domain ;
+      private final Map<CellAddressCore, CellRoute> _exact ;
+      private CellRoute  _dumpster ;
+      private CellRoute  _default ;
+
+      /**
+       * Precomputed lookups. Only addresses with a route are memoized;
+       * the map is discarded together with the snapshot.
+       */
+      private transient ConcurrentMap<CellAddressCore, CellRoute> _resolved =
+          new ConcurrentHashMap<>() ;
+
+      private Snapshot(){
+         _wellknown = new HashMap<>() ;
+         _domain    = new HashMap<>() ;
+         _exact     = new HashMap<>() ;
       }
-      for( CellRoute route:  _domain.values() ) {
-          routes[i++] = route;
+
+      private Snapshot( Snapshot snapshot ){
+         _wellknown = new HashMap<>( snapshot._wellknown ) ;
+         _domain    = new HashMap<>( snapshot._domain ) ;
+         _exact     = new HashMap<>( snapshot._exact ) ;
+         _dumpster  = snapshot._dumpster ;
+         _default   = snapshot._default ;
       }
-      if( _default != null ) {
-          routes[i++] = _default;
+
+      private CellRoute find( CellAddressCore addr ){
+         ConcurrentMap<CellAddressCore, CellRoute> resolved = _resolved ;
+         if( resolved == null ) {
+             return resolve(addr);
+         }
+         CellRoute route = resolved.get( addr ) ;
+         if( route == null ){
+            route = resolve( addr ) ;
+            if( route != null && resolved.size() < MAX_RESOLVED ) {
+                resolved.put(addr, route);
+            }
+         }
+         return route ;
       }
-      if( _dumpster != null ) {
-          routes[i++] = _dumpster;
+
+      private CellRoute resolve( CellAddressCore addr ){
+         CellRoute route;
+         if( addr.getCellDomainName().equals("local") ){
+           //
+           // this is not really local but wellknown
+           // we checked for local before we called this.
+           //
+           route = _wellknown.get( addr.getCellName() ) ;
+           if( route != null ) {
+               return route;
+           }
+         }else{
+           route = _exact.get( addr ) ;
+           if( route != null ) {
+               return route;
+           }
+           route = _domain.get( addr.getCellDomainName() ) ;
+           if( route != null ) {
+               return route;
+           }
+         }
+         route = _exact.get( addr ) ;
+         return route == null ? _default : route ;
       }
 
-      return routes ;
+      private List<CellRoute> getRoutes(){
+         List<CellRoute> routes = new ArrayList<>() ;
+         routes.addAll( _exact.values() ) ;
+         routes.addAll( _wellknown.values() ) ;
+         routes.addAll( _domain.values() ) ;
+         if( _default != null ) {
+             routes.add(_default);
+         }
+         if( _dumpster != null ) {
+             routes.add(_dumpster);
+         }
+         return routes ;
+      }
    }
    public static void main( String [] argsxx ){
       CellRoutingTable table = new CellRoutingTable() ;
@@ -0,0 +1,19 @@
+package dmg.cells.nucleus;
+
+/**
+ * Implemented by messages that need to be processed in order relative
+ * to other messages with the same key, but not relative to messages
+ * with other keys.
+ *
+ * Only used by cells that deliver messages through a
+ * KeyedMessageExecutor configured for message ordering.
+ */
+public interface HasOrderingKey
+{
+    /**
+     * Returns the key of the message. Messages with equal keys are
+     * delivered in the order they were received. May be null, in
+     * which case the message is ordered by its source.
+     */
+    Object getOrderingKey();
+}
@@ -0,0 +1,216 @@
+package dmg.cells.nucleus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * An executor for message delivery that spreads messages over several
+ * threads while preserving the order of messages with the same key.
+ *
+ * The executor consists of a number of single threaded stripes. Tasks
+ * implementing KeyedTask are assigned to a stripe by hashing their
+ * key. Since every stripe is a FIFO queue served by a single thread,
+ * tasks with equal keys are executed in submission order.
+ *
+ * Tasks without a key act as barriers: they are executed once all
+ * previously submitted tasks have completed, and no later task starts
+ * before they have completed. This preserves the semantics of a
+ * single message thread for tasks such as LastMessageEvent delivery.
+ */
+public class KeyedMessageExecutor extends AbstractExecutorService
+{
+    /**
+     * Determines the key by which messages are ordered.
+     */
+    public enum Ordering
+    {
+        /** Messages from the same source cell are ordered. */
+        SOURCE,
+
+        /** Messages of the same session are ordered. */
+        SESSION,
+
+        /**
+         * Messages with the same key as provided by HasOrderingKey
+         * are ordered. Other messages are ordered by source.
+         */
+        MESSAGE
+    }
+
+    /**
+     * Implemented by tasks that can be executed out of order relative
+     * to tasks with a different key.
+     */
+    interface KeyedTask extends Runnable
+    {
+        Object getOrderingKey(Ordering ordering);
+    }
+
+    private final Ordering _ordering;
+    private final ThreadPoolExecutor[] _stripes;
+
+    public KeyedMessageExecutor(int threads, Ordering ordering, ThreadFactory factory)
+    {
+        checkArgument(threads > 0, "Number of threads must be positive");
+        _ordering = ordering;
+        _stripes = new ThreadPoolExecutor[threads];
+        for (int i = 0; i < threads; i++) {
+            _stripes[i] = new ThreadPoolExecutor(1, 1,
+                                                 0L, TimeUnit.MILLISECONDS,
+                                                 new LinkedBlockingQueue<Runnable>(),
+                                                 factory);
+        }
+    }
+
+    public Ordering getOrdering()
+    {
+        return _ordering;
+    }
+
+    /**
+     * Returns the number of queued tasks of each stripe.
+     */
+    public int[] getQueueSizes()
+    {
+        int[] sizes = new int[_stripes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = _stripes[i].getQueue().size();
+        }
+        return sizes;
+    }
+
+    private ThreadPoolExecutor getStripe(Object key)
+    {
+        /* Spread the bits of poor hash codes as HashMap does.
+         */
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return _stripes[(h & Integer.MAX_VALUE) % _stripes.length];
+    }
+
+    @Override
+    public void execute(Runnable task)
+    {
+        Object key = (task instanceof KeyedTask)
+                ? ((KeyedTask) task).getOrderingKey(_ordering)
+                : null;
+        if (key != null) {
+            getStripe(key).execute(task);
+        } else if (_stripes.length == 1) {
+            _stripes[0].execute(task);
+        } else {
+            executeBarrier(task);
+        }
+    }
+
+    /**
+     * Queues a task on every stripe. The first stripe runs the task
+     * once all stripes have reached it, while the other stripes are
+     * parked until the task has completed. Submission is serialized
+     * so that concurrent barriers are queued in the same order on all
+     * stripes.
+     */
+    private synchronized void executeBarrier(final Runnable task)
+    {
+        final CountDownLatch arrived = new CountDownLatch(_stripes.length);
+        final CountDownLatch done = new CountDownLatch(1);
+        try {
+            for (int i = 1; i < _stripes.length; i++) {
+                _stripes[i].execute(new Runnable() {
+                    @Override
+                    public void run()
+                    {
+                        arrived.countDown();
+                        try {
+                            done.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+            _stripes[0].execute(new Runnable() {
+                @Override
+                public void run()
+                {
+                    try {
+                        arrived.countDown();
+                        arrived.await();
+                        task.run();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            done.countDown();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown()
+    {
+        for (ThreadPoolExecutor stripe : _stripes) {
+            stripe.shutdown();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        List<Runnable> tasks = new ArrayList<>();
+        for (ThreadPoolExecutor stripe : _stripes) {
+            tasks.addAll(stripe.shutdownNow());
+        }
+        return tasks;
+    }
+
+    @Override
+    public boolean isShutdown()
+    {
+        for (ThreadPoolExecutor stripe : _stripes) {
+            if (!stripe.isShutdown()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isTerminated()
+    {
+        for (ThreadPoolExecutor stripe : _stripes) {
+            if (!stripe.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ThreadPoolExecutor stripe : _stripes) {
+            long remaining = deadline - System.nanoTime();
+            if (!stripe.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,29 @@
+package dmg.cells.nucleus;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Hand-written binary encoding of a message payload type.
+ *
+ * CellMessage#encode uses the codec registered for the exact class
+ * of a payload in preference to Java serialization. Codecs are
+ * discovered through java.util.ServiceLoader and must have a public
+ * no-argument constructor.
+ *
+ * A codec is identified on the wire by its name. Since the other end
+ * must understand the format, the format of a released codec must
+ * never change; a new format requires a new name.
+ */
+public interface PayloadCodec<T extends Serializable>
+{
+    String getName();
+
+    Class<T> getType();
+
+    void writeTo(DataOutput out, T payload) throws IOException;
+
+    T readFrom(DataInput in) throws IOException;
+}
@@ -0,0 +1,150 @@
+package dmg.cells.nucleus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * Registry of the payload codecs available in this domain, plus
+ * helpers for writing codecs.
+ */
+public final class PayloadCodecs
+{
+    private static final Map<Class<?>,PayloadCodec<?>> BY_TYPE = new HashMap<>();
+    private static final Map<String,PayloadCodec<?>> BY_NAME = new HashMap<>();
+
+    static {
+        for (PayloadCodec<?> codec : ServiceLoader.load(PayloadCodec.class)) {
+            BY_TYPE.put(codec.getType(), codec);
+            BY_NAME.put(codec.getName(), codec);
+        }
+    }
+
+    private PayloadCodecs()
+    {
+    }
+
+    /**
+     * Returns the codec for objects of exactly the given class, or
+     * null if such objects are Java serialized.
+     */
+    public static PayloadCodec<?> forType(Class<?> type)
+    {
+        return BY_TYPE.get(type);
+    }
+
+    /**
+     * Returns the codec with the given name, or null if the codec is
+     * not available in this domain.
+     */
+    public static PayloadCodec<?> forName(String name)
+    {
+        return BY_NAME.get(name);
+    }
+
+    /**
+     * Returns the names of all codecs available in this domain.
+     */
+    public static Set<String> names()
+    {
+        return Collections.unmodifiableSet(BY_NAME.keySet());
+    }
+
+    public static void writeString(DataOutput out, String s) throws IOException
+    {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    public static String readString(DataInput in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Writes a set of enum constants by name. The set may be null.
+     */
+    public static void writeEnumSet(DataOutput out, Set<? extends Enum<?>> set)
+            throws IOException
+    {
+        out.writeInt((set == null) ? -1 : set.size());
+        if (set != null) {
+            for (Enum<?> e : set) {
+                out.writeUTF(e.name());
+            }
+        }
+    }
+
+    /**
+     * Reads a set written by {@link #writeEnumSet}.
+     */
+    public static <E extends Enum<E>> EnumSet<E> readEnumSet(DataInput in, Class<E> type)
+            throws IOException
+    {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        EnumSet<E> set = EnumSet.noneOf(type);
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            try {
+                set.add(Enum.valueOf(type, name));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown " + type.getSimpleName() + ": " + name, e);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Writes an object using Java serialization. Meant for fields of
+     * types that do not justify a hand-written encoding, in particular
+     * those with many implementations.
+     */
+    public static void writeObject(DataOutput out, Object o) throws IOException
+    {
+        if (o == null) {
+            out.writeInt(-1);
+        } else {
+            ByteArrayOutputStream array = new ByteArrayOutputStream();
+            try (ObjectOutputStream stream = new ObjectOutputStream(array)) {
+                stream.writeObject(o);
+            }
+            out.writeInt(array.size());
+            out.write(array.toByteArray());
+        }
+    }
+
+    /**
+     * Reads an object written by {@link #writeObject}.
+     */
+    public static <T> T readObject(DataInput in, Class<T> type) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        try (ObjectInputStream stream =
+                     new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return type.cast(stream.readObject());
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Failed to deserialize " + type.getSimpleName() +
+                                  ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -18,6 +18,8 @@ import dmg.util.DomainInterruptHandler;
 import dmg.util.Gate;
 import dmg.util.logback.FilterShell;
 
+import org.dcache.commons.stats.MetricsRegistry;
+
 /**
   *
   *
@@ -118,6 +120,13 @@ public class      SystemCell
         }
     }
 
+    public static final String hh_show_metrics = "# returns the metrics of this " +
+            "domain in the Prometheus text format";
+
+    public String ac_show_metrics_$_0(Args args) {
+        return MetricsRegistry.getInstance().toString();
+    }
+
    @Override
    public void run(){
        while( true ){
@@ -1,5 +1,8 @@
 package dmg.cells.nucleus;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.concurrent.atomic.AtomicLong;
@@ -35,6 +38,28 @@ public class UOID implements Serializable, Cloneable {
         _counter = __counter.incrementAndGet();
     }
 
+    private UOID(long time, long counter) {
+        _time = time;
+        _counter = counter;
+    }
+
+    /**
+     * Writes the uoid in the compact binary tunnel format.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(_time);
+        out.writeLong(_counter);
+    }
+
+    /**
+     * Reads an uoid written by {@link #writeTo}.
+     */
+    static UOID createFrom(DataInput in) throws IOException {
+        long time = in.readLong();
+        long counter = in.readLong();
+        return new UOID(time, counter);
+    }
+
     @Override
     public Object clone() {
         // it's safe to do so, UOID is immutable
@@ -0,0 +1,242 @@
+package dmg.cells.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import dmg.cells.nucleus.CellAdapter;
+import dmg.cells.nucleus.CellDomainInfo;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellPath;
+import dmg.cells.nucleus.NoRouteToCellException;
+import dmg.cells.nucleus.RoutedMessageEvent;
+import dmg.cells.nucleus.SystemCell;
+import dmg.cells.nucleus.UOID;
+import dmg.util.Args;
+import dmg.util.StreamEngine;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LocationMgrTunnelTest
+{
+    private final static SystemCell system = new SystemCell("LocationMgrTunnelTest");
+
+    private static int _domains;
+
+    private Sender _sender;
+    private PeerInputStream _in;
+    private GatedOutputStream _out;
+    private LocationMgrTunnel _tunnel;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        _sender = new Sender();
+        _in = new PeerInputStream(handshake("remote" + (_domains++)));
+        _out = new GatedOutputStream();
+
+        StreamEngine engine = mock(StreamEngine.class);
+        when(engine.getSocket()).thenReturn(mock(Socket.class));
+        when(engine.getInputStream()).thenReturn(_in);
+        when(engine.getOutputStream()).thenReturn(_out);
+
+        _tunnel = new LocationMgrTunnel("tunnel*", engine, new Args("-queueLimit=1"));
+        assertTrue(_out.flushed.await(10, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        _in.close();
+        _out.release.countDown();
+        _tunnel.join();
+    }
+
+    @Test
+    public void shouldReturnMessageToSenderWhenCongested() throws Exception
+    {
+        send(newMessage());
+        assertTrue(_out.blocked.await(10, TimeUnit.SECONDS));
+
+        send(newMessage());
+        CellMessage rejected = newMessage();
+        send(rejected);
+
+        CellMessage reply = _sender.returned.poll(10, TimeUnit.SECONDS);
+        assertThat(reply, is(notNullValue()));
+        assertThat(reply.getLastUOID(), is(rejected.getUOID()));
+        assertThat(reply.getMessageObject(), is(instanceOf(NoRouteToCellException.class)));
+        assertThat(((NoRouteToCellException) reply.getMessageObject()).getMessage(),
+                   containsString("congested"));
+    }
+
+    @Test
+    public void shouldReturnAllMessagesToSenderWhenTunnelCloses() throws Exception
+    {
+        CellMessage inFlight = newMessage();
+        send(inFlight);
+        assertTrue(_out.blocked.await(10, TimeUnit.SECONDS));
+
+        CellMessage queued = newMessage();
+        send(queued);
+
+        _in.close();
+        _tunnel.join();
+
+        CellMessage late = newMessage();
+        send(late);
+
+        Set<UOID> returned = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            CellMessage reply = _sender.returned.poll(10, TimeUnit.SECONDS);
+            assertThat(reply, is(notNullValue()));
+            assertThat(reply.getMessageObject(), is(instanceOf(NoRouteToCellException.class)));
+            returned.add(reply.getLastUOID());
+        }
+        Set<UOID> expected =
+                new HashSet<>(Arrays.asList(inFlight.getUOID(), queued.getUOID(), late.getUOID()));
+        assertThat(returned, is(expected));
+    }
+
+    private void send(CellMessage msg)
+    {
+        _tunnel.messageArrived(new RoutedMessageEvent(msg));
+    }
+
+    private CellMessage newMessage()
+    {
+        CellMessage msg = new CellMessage(new CellPath("target", "remote"), "payload");
+        msg.getSourcePath().add(_sender.getCellName(), _sender.getCellDomainName());
+        return msg;
+    }
+
+    private static byte[] handshake(String domain) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(new CellDomainInfo(domain, "test", Arrays.asList("java")));
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Collects messages returned to the sender.
+     */
+    private static class Sender extends CellAdapter
+    {
+        final BlockingQueue<CellMessage> returned = new LinkedBlockingQueue<>();
+
+        Sender()
+        {
+            super("sender*", "", true);
+        }
+
+        @Override
+        public void messageArrived(CellMessage msg)
+        {
+            returned.add(msg);
+        }
+    }
+
+    /**
+     * Supplies the handshake of the peer and then blocks until
+     * closed, at which point end of stream is signalled.
+     */
+    private static class PeerInputStream extends InputStream
+    {
+        private final byte[] _data;
+        private int _position;
+        private boolean _closed;
+
+        PeerInputStream(byte[] data)
+        {
+            _data = data;
+        }
+
+        @Override
+        public synchronized int read() throws IOException
+        {
+            try {
+                while (_position == _data.length && !_closed) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            return (_position < _data.length) ? (_data[_position++] & 0xff) : -1;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0) {
+                return 0;
+            }
+            int c = read();
+            if (c == -1) {
+                return -1;
+            }
+            b[off] = (byte) c;
+            int n = Math.min(len - 1, _data.length - _position);
+            System.arraycopy(_data, _position, b, off + 1, n);
+            _position += n;
+            return n + 1;
+        }
+
+        @Override
+        public synchronized void close()
+        {
+            _closed = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Accepts the handshake of the tunnel and then blocks all further
+     * writes until released or interrupted.
+     */
+    private static class GatedOutputStream extends OutputStream
+    {
+        final CountDownLatch flushed = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            if (flushed.getCount() == 0) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+
+        @Override
+        public void flush()
+        {
+            flushed.countDown();
+        }
+    }
+}
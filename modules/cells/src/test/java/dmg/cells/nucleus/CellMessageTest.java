@@ -0,0 +1,85 @@
+package dmg.cells.nucleus;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class CellMessageTest
+{
+    private static CellMessage roundTrip(CellMessage message) throws IOException
+    {
+        ByteArrayOutputStream array = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(array)) {
+            message.writeTo(out);
+        }
+        try (DataInputStream in =
+                     new DataInputStream(new ByteArrayInputStream(array.toByteArray()))) {
+            return CellMessage.createFrom(in);
+        }
+    }
+
+    @Test
+    public void binaryEncodingShouldPreserveEnvelope() throws Exception
+    {
+        CellMessage message = new CellMessage(new CellPath("PoolManager@dCacheDomain"), "hello");
+        message.setTtl(5000);
+        message.setSession("door:test@doorDomain:1");
+        CellMessage encoded = message.encode();
+        encoded.addSourceAddress(new CellAddressCore("door", "doorDomain"));
+
+        CellMessage copy = roundTrip(encoded);
+
+        assertThat(copy.getUOID(), is(encoded.getUOID()));
+        assertThat(copy.getLastUOID(), is(encoded.getLastUOID()));
+        assertThat(copy.getSourcePath(), is(encoded.getSourcePath()));
+        assertThat(copy.getDestinationPath(), is(encoded.getDestinationPath()));
+        assertThat(copy.getDestinationPath().getCurrent(),
+                   is(encoded.getDestinationPath().getCurrent()));
+        assertThat(copy.getTtl(), is(5000L));
+        assertThat(copy.getSession(), is((Object) "door:test@doorDomain:1"));
+        assertThat(copy.isReply(), is(false));
+        assertThat(copy.decode().getMessageObject(), is((Object) "hello"));
+    }
+
+    @Test
+    public void binaryEncodingShouldPreserveReplies() throws Exception
+    {
+        CellMessage message = new CellMessage(new CellPath("PoolManager@dCacheDomain"), 42);
+        message.setSession(null);
+        message.addSourceAddress(new CellAddressCore("door", "doorDomain"));
+        message.revertDirection();
+
+        CellMessage copy = roundTrip(message.encode());
+
+        assertThat(copy.isReply(), is(true));
+        assertThat(copy.getSession(), is(nullValue()));
+        assertThat(copy.getTtl(), is(Long.MAX_VALUE));
+        assertThat(copy.getLastUOID(), is(message.getLastUOID()));
+        assertThat(copy.decode().getMessageObject(), is((Object) 42));
+    }
+
+    @Test
+    public void encodeShouldJavaSerializePayloadsWithoutCodec() throws Exception
+    {
+        CellMessage encoded = new CellMessage(new CellPath("PoolManager"), "hello").encode();
+
+        assertThat(encoded.getPayloadCodec(), is(nullValue()));
+        assertThat(encoded.withJavaSerializedPayload(), is(sameInstance(encoded)));
+        assertThat(encoded.decode().getMessageObject(), is((Object) "hello"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void binaryEncodingShouldRejectUnencodedMessages() throws Exception
+    {
+        roundTrip(new CellMessage(new CellPath("PoolManager"), "hello"));
+    }
+}
@@ -0,0 +1,82 @@
+package dmg.cells.nucleus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import dmg.util.Args;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class CellRoutingTableTest
+{
+    private CellRoutingTable _table;
+
+    @Before
+    public void setUp()
+    {
+        _table = new CellRoutingTable();
+    }
+
+    private CellRoute add(String route)
+    {
+        CellRoute cellRoute = new CellRoute(new Args(route));
+        _table.add(cellRoute);
+        return cellRoute;
+    }
+
+    @Test
+    public void shouldPreferExactRouteOverDomainRoute()
+    {
+        CellRoute exact = add("-exact a@b gw1");
+        add("-domain b gw2");
+        assertThat(_table.find(new CellAddressCore("a@b")), is(exact));
+    }
+
+    @Test
+    public void shouldFallBackToDomainRoute()
+    {
+        add("-exact a@b gw1");
+        CellRoute domain = add("-domain b gw2");
+        assertThat(_table.find(new CellAddressCore("c@b")), is(domain));
+    }
+
+    @Test
+    public void shouldResolveLocalAddressesThroughWellKnownRoutes()
+    {
+        CellRoute wellknown = add("-wellknown a gw1");
+        assertThat(_table.find(new CellAddressCore("a")), is(wellknown));
+        assertThat(_table.find(new CellAddressCore("a@b")), is(nullValue()));
+    }
+
+    @Test
+    public void shouldFallBackToDefaultRoute()
+    {
+        CellRoute def = add("-default gw1");
+        assertThat(_table.find(new CellAddressCore("a@b")), is(def));
+    }
+
+    @Test
+    public void shouldNotReturnDeletedRoutes()
+    {
+        CellRoute domain = add("-domain b gw2");
+        assertThat(_table.find(new CellAddressCore("a@b")), is(domain));
+        _table.delete(domain);
+        assertThat(_table.find(new CellAddressCore("a@b")), is(nullValue()));
+        assertThat(_table.getRoutingList().length, is(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectDuplicateRoutes()
+    {
+        add("-domain b gw1");
+        add("-domain b gw2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectDeletionOfUnknownRoutes()
+    {
+        _table.delete(new CellRoute(new Args("-exact a@b gw1")));
+    }
+}
@@ -0,0 +1,117 @@
+package dmg.cells.nucleus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class KeyedMessageExecutorTest
+{
+    private static final int KEYS = 16;
+    private static final int TASKS_PER_KEY = 1000;
+
+    private KeyedMessageExecutor _executor;
+
+    @Before
+    public void setUp()
+    {
+        _executor = new KeyedMessageExecutor(4, KeyedMessageExecutor.Ordering.SOURCE,
+                                             Executors.defaultThreadFactory());
+    }
+
+    @After
+    public void tearDown()
+    {
+        _executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldPreserveOrderWithinKey() throws Exception
+    {
+        List<List<Integer>> results = new ArrayList<>();
+        for (int key = 0; key < KEYS; key++) {
+            results.add(Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+
+        for (int i = 0; i < TASKS_PER_KEY; i++) {
+            for (int key = 0; key < KEYS; key++) {
+                _executor.execute(new Task(key, i, results.get(key)));
+            }
+        }
+        _executor.shutdown();
+        assertThat(_executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+        for (List<Integer> result : results) {
+            assertThat(result.size(), is(TASKS_PER_KEY));
+            for (int i = 0; i < TASKS_PER_KEY; i++) {
+                assertThat(result.get(i), is(i));
+            }
+        }
+    }
+
+    @Test
+    public void shouldExecuteTasksWithoutKeyAsBarrier() throws Exception
+    {
+        final List<Integer> result = Collections.synchronizedList(new ArrayList<Integer>());
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < TASKS_PER_KEY; i++) {
+            for (int key = 0; key < KEYS; key++) {
+                _executor.execute(new Task(key, 2 * i, result));
+                expected.add(2 * i);
+            }
+            final int sequence = 2 * i + 1;
+            _executor.execute(new Runnable() {
+                @Override
+                public void run()
+                {
+                    result.add(sequence);
+                }
+            });
+            expected.add(sequence);
+        }
+        _executor.shutdown();
+        assertThat(_executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+        assertThat(result, is(expected));
+    }
+
+    @Test
+    public void shouldReportQueueSizePerStripe()
+    {
+        assertThat(_executor.getQueueSizes().length, is(4));
+    }
+
+    private static class Task implements KeyedMessageExecutor.KeyedTask
+    {
+        private final int _key;
+        private final int _sequence;
+        private final List<Integer> _result;
+
+        Task(int key, int sequence, List<Integer> result)
+        {
+            _key = key;
+            _sequence = sequence;
+            _result = result;
+        }
+
+        @Override
+        public Object getOrderingKey(KeyedMessageExecutor.Ordering ordering)
+        {
+            return _key;
+        }
+
+        @Override
+        public void run()
+        {
+            _result.add(_sequence);
+        }
+    }
+}
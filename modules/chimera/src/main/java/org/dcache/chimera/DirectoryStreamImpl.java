@@ -93,29 +93,39 @@ public class DirectoryStreamImpl implements DirectoryStreamB<HimeraDirectoryEntr
     public HimeraDirectoryEntry next() {
 
         try {
-            Stat stat = new Stat();
-            stat.setSize(_listResultSet.getLong("isize"));
-            stat.setATime(_listResultSet.getTimestamp("iatime").getTime());
-            stat.setCTime(_listResultSet.getTimestamp("ictime").getTime());
-            stat.setMTime(_listResultSet.getTimestamp("imtime").getTime());
-            stat.setUid(_listResultSet.getInt("iuid"));
-            stat.setGid(_listResultSet.getInt("igid"));
-            stat.setMode(_listResultSet.getInt("imode") | _listResultSet.getInt("itype"));
-            stat.setNlink(_listResultSet.getInt("inlink"));
-            FsInode inode = new FsInode(_parent.getFs(), _listResultSet.getString("ipnfsid"));
-            inode.setParent(_parent);
-            stat.setIno((int) inode.id());
-            stat.setDev(17);
-
-            inode.setStatCache(stat);
+            HimeraDirectoryEntry entry = toDirectoryEntry(_parent, _listResultSet);
             _hasPendingElement = false;
-            return new HimeraDirectoryEntry(_listResultSet.getString("iname"), inode, stat);
+            return entry;
         } catch (SQLException e) {
             _log.error("failed to fetch next entry: " + e.getMessage());
             throw new NoSuchElementException("Got SQL exception: " + e.getMessage());
         }
     }
 
+    /**
+     * Creates a directory entry from the current row of a directory
+     * listing.
+     */
+    static HimeraDirectoryEntry toDirectoryEntry(FsInode parent, ResultSet rs)
+            throws SQLException {
+        Stat stat = new Stat();
+        stat.setSize(rs.getLong("isize"));
+        stat.setATime(rs.getTimestamp("iatime").getTime());
+        stat.setCTime(rs.getTimestamp("ictime").getTime());
+        stat.setMTime(rs.getTimestamp("imtime").getTime());
+        stat.setUid(rs.getInt("iuid"));
+        stat.setGid(rs.getInt("igid"));
+        stat.setMode(rs.getInt("imode") | rs.getInt("itype"));
+        stat.setNlink(rs.getInt("inlink"));
+        FsInode inode = new FsInode(parent.getFs(), rs.getString("ipnfsid"));
+        inode.setParent(parent);
+        stat.setIno((int) inode.id());
+        stat.setDev(17);
+
+        inode.setStatCache(stat);
+        return new HimeraDirectoryEntry(rs.getString("iname"), inode, stat);
+    }
+
     @Override
     public void remove() {
         throw new UnsupportedOperationException("Not supported yet.");
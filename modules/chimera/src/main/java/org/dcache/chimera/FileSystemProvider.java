@@ -85,6 +85,22 @@ public interface FileSystemProvider extends Closeable {
     public abstract DirectoryStreamB<HimeraDirectoryEntry> newDirectoryStream(FsInode dir)
             throws ChimeraFsException;
 
+    /**
+     * Lists up to <code>limit</code> entries of a directory in
+     * lexicographic order of their names, starting after the entry
+     * named <code>startAfter</code>.
+     *
+     * @param dir directory to list
+     * @param startAfter name of the last entry of the previous chunk, or
+     *        null to start with the first entry
+     * @param limit maximum number of entries to return
+     * @return directory entries; empty once the end of the directory has
+     *         been reached
+     * @throws ChimeraFsException
+     */
+    public abstract List<HimeraDirectoryEntry> listDir(FsInode dir,
+            String startAfter, int limit) throws ChimeraFsException;
+
     public abstract void remove(String path) throws ChimeraFsException;
 
     public abstract void remove(FsInode parent, String name)
@@ -281,6 +297,20 @@ public interface FileSystemProvider extends Closeable {
     public abstract Set<Checksum> getInodeChecksums(FsInode inode)
                     throws ChimeraFsException;
 
+    /**
+     * Get the attributes of an inode in as few database round trips as
+     * possible. The stat cache of the <code>inode</code> is updated.
+     *
+     * @param inode
+     * @param optional optional attributes to fetch in addition to stat,
+     *        access latency and retention policy
+     * @return attributes of the inode
+     * @throws FileNotFoundHimeraFsException if the inode does not exist
+     * @throws ChimeraFsException
+     */
+    public abstract InodeAttributes getInodeAttributes(FsInode inode,
+            Set<InodeAttributes.Attribute> optional) throws ChimeraFsException;
+
     public abstract String getInfo();
 
     /**
@@ -31,6 +31,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -257,6 +258,49 @@ class FsSqlDriver {
          */
     }
 
+    private static final String sqlListDirChunk = "SELECT "
+            + "t_inodes.ipnfsid, t_dirs.iname, t_inodes.isize,t_inodes.inlink,t_inodes.imode,t_inodes.itype,t_inodes.iuid,t_inodes.igid,t_inodes.iatime,t_inodes.ictime,t_inodes.imtime  "
+            + "FROM t_inodes, t_dirs WHERE iparent=? AND iname > ? AND t_inodes.ipnfsid = t_dirs.ipnfsid ORDER BY iname";
+
+    /**
+     * Returns up to <i>limit</i> directory entries in lexicographic order of
+     * their names, starting after <i>startAfter</i>. Unlike a directory
+     * stream, no database resources are held between two chunks.
+     *
+     * @param dbConnection
+     * @param dir
+     * @param startAfter name of the last entry of the previous chunk; null
+     *        to start with the first entry
+     * @param limit maximum number of entries to return
+     * @throws SQLException
+     * @return
+     */
+    List<HimeraDirectoryEntry> listDirChunk(Connection dbConnection, FsInode dir,
+                                            String startAfter, int limit) throws SQLException {
+
+        List<HimeraDirectoryEntry> entries = new ArrayList<>();
+        ResultSet result = null;
+        PreparedStatement stListDirChunk = null;
+
+        try {
+            stListDirChunk = dbConnection.prepareStatement(sqlListDirChunk);
+            stListDirChunk.setString(1, dir.toString());
+            stListDirChunk.setString(2, (startAfter == null) ? "" : startAfter);
+            stListDirChunk.setMaxRows(limit);
+            stListDirChunk.setFetchSize(limit);
+            result = stListDirChunk.executeQuery();
+
+            while (result.next()) {
+                entries.add(DirectoryStreamImpl.toDirectoryEntry(dir, result));
+            }
+        } finally {
+            SqlHelper.tryToClose(result);
+            SqlHelper.tryToClose(stListDirChunk);
+        }
+
+        return entries;
+    }
+
     void remove(Connection dbConnection, FsInode parent, String name) throws ChimeraFsException, SQLException {
 
         FsInode inode = inodeOf(dbConnection, parent, name);
@@ -370,27 +414,7 @@ class FsSqlDriver {
             statResult = stStatInode.executeQuery();
 
             if (statResult.next()) {
-                ret = new Stat();
-                int inodeType;
-
-                if (level == 0) {
-                    inodeType = statResult.getInt("itype");
-                    ret.setCrTime(statResult.getTimestamp("icrtime").getTime());
-                } else {
-                    inodeType = UnixPermission.S_IFREG;
-                    ret.setCrTime(statResult.getTimestamp("imtime").getTime());
-                }
-
-                ret.setSize(statResult.getLong("isize"));
-                ret.setATime(statResult.getTimestamp("iatime").getTime());
-                ret.setCTime(statResult.getTimestamp("ictime").getTime());
-                ret.setMTime(statResult.getTimestamp("imtime").getTime());
-                ret.setUid(statResult.getInt("iuid"));
-                ret.setGid(statResult.getInt("igid"));
-                ret.setMode(statResult.getInt("imode") | inodeType);
-                ret.setNlink(statResult.getInt("inlink"));
-                ret.setIno((int) inode.id());
-                ret.setDev(17);
+                ret = toStat(statResult, inode, level);
             }
 
         } finally {
@@ -401,6 +425,89 @@ class FsSqlDriver {
         return ret;
     }
 
+    private static Stat toStat(ResultSet statResult, FsInode inode, int level) throws SQLException {
+        Stat ret = new Stat();
+        int inodeType;
+
+        if (level == 0) {
+            inodeType = statResult.getInt("itype");
+            ret.setCrTime(statResult.getTimestamp("icrtime").getTime());
+        } else {
+            inodeType = UnixPermission.S_IFREG;
+            ret.setCrTime(statResult.getTimestamp("imtime").getTime());
+        }
+
+        ret.setSize(statResult.getLong("isize"));
+        ret.setATime(statResult.getTimestamp("iatime").getTime());
+        ret.setCTime(statResult.getTimestamp("ictime").getTime());
+        ret.setMTime(statResult.getTimestamp("imtime").getTime());
+        ret.setUid(statResult.getInt("iuid"));
+        ret.setGid(statResult.getInt("igid"));
+        ret.setMode(statResult.getInt("imode") | inodeType);
+        ret.setNlink(statResult.getInt("inlink"));
+        ret.setIno((int) inode.id());
+        ret.setDev(17);
+        return ret;
+    }
+
+    private static final String sqlGetInodeAttributes =
+            "SELECT i.isize,i.inlink,i.itype,i.imode,i.iuid,i.igid,i.iatime,i.ictime,i.imtime,i.icrtime,"
+            + "al.iaccessLatency,rp.iretentionPolicy "
+            + "FROM t_inodes i "
+            + "LEFT OUTER JOIN t_access_latency al ON al.ipnfsid=i.ipnfsid "
+            + "LEFT OUTER JOIN t_retention_policy rp ON rp.ipnfsid=i.ipnfsid "
+            + "WHERE i.ipnfsid=?";
+
+    /**
+     * Returns the attributes of an inode. Stat, access latency and
+     * retention policy are fetched with a single statement; each
+     * requested optional attribute costs one more statement on the
+     * same connection.
+     *
+     * @param dbConnection
+     * @param inode
+     * @param optional optional attributes to fetch
+     * @return attributes of the inode or null if the inode does not exist
+     * @throws SQLException
+     */
+    InodeAttributes getInodeAttributes(Connection dbConnection, FsInode inode,
+                                       Set<InodeAttributes.Attribute> optional) throws SQLException {
+        InodeAttributes attributes;
+        PreparedStatement stGetInodeAttributes = null;
+        ResultSet rs = null;
+        try {
+            stGetInodeAttributes = dbConnection.prepareStatement(sqlGetInodeAttributes);
+            stGetInodeAttributes.setString(1, inode.toString());
+            rs = stGetInodeAttributes.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+
+            Stat stat = toStat(rs, inode, 0);
+            int al = rs.getInt("iaccessLatency");
+            AccessLatency accessLatency = rs.wasNull() ? null : AccessLatency.getAccessLatency(al);
+            int rp = rs.getInt("iretentionPolicy");
+            RetentionPolicy retentionPolicy = rs.wasNull() ? null : RetentionPolicy.getRetentionPolicy(rp);
+            attributes = new InodeAttributes(stat, accessLatency, retentionPolicy);
+        } finally {
+            SqlHelper.tryToClose(rs);
+            SqlHelper.tryToClose(stGetInodeAttributes);
+        }
+
+        if (optional.contains(InodeAttributes.Attribute.CHECKSUMS)) {
+            Set<Checksum> checksums = new HashSet<>();
+            getInodeChecksums(dbConnection, inode, checksums);
+            attributes.setChecksums(checksums);
+        }
+        if (optional.contains(InodeAttributes.Attribute.LOCATIONS)) {
+            attributes.setLocations(getInodeLocations(dbConnection, inode, StorageGenericLocation.DISK));
+        }
+        if (optional.contains(InodeAttributes.Attribute.ACL)) {
+            attributes.setAcl(getACL(dbConnection, inode));
+        }
+        return attributes;
+    }
+
     /**
      * create a new directory in parent with name. The reference count if parent directory
      * as well modification time and reference count of newly created directory are updated.
@@ -2364,7 +2471,7 @@ class FsSqlDriver {
             stGetInodeChecksums = dbConnection.prepareStatement(sqlGetInodeChecksums);
             stGetInodeChecksums.setString(1, inode.toString());
             getGetInodeChecksumResultSet = stGetInodeChecksums.executeQuery();
-            if (getGetInodeChecksumResultSet.next()) {
+            while (getGetInodeChecksumResultSet.next()) {
                 String checksum = getGetInodeChecksumResultSet.getString("isum");
                 int type = getGetInodeChecksumResultSet.getInt("itype");
                 results.add(new Checksum(ChecksumType.getChecksumType(type), checksum));
@@ -2418,6 +2525,14 @@ class FsSqlDriver {
      */
     FsInode path2inode(Connection dbConnection, FsInode root, String path)
             throws SQLException, IOHimeraFsException {
+        return walkPath(dbConnection, root, path);
+    }
+
+    /**
+     * Resolves a path by looking up one path element at a time.
+     */
+    private FsInode walkPath(Connection dbConnection, FsInode root, String path)
+            throws SQLException, IOHimeraFsException {
 
 
         File pathFile = new File(path);
@@ -2484,6 +2599,17 @@ class FsSqlDriver {
     List<FsInode>
         path2inodes(Connection dbConnection, FsInode root, String path)
         throws SQLException, IOHimeraFsException
+    {
+        return walkPathInodes(dbConnection, root, path);
+    }
+
+    /**
+     * Resolves the inodes of a path by looking up one path element at
+     * a time.
+     */
+    private List<FsInode>
+        walkPathInodes(Connection dbConnection, FsInode root, String path)
+        throws SQLException, IOHimeraFsException
     {
         File pathFile = new File(path);
         List<String> pathElements = new ArrayList<>();
@@ -2542,6 +2668,161 @@ class FsSqlDriver {
         return inodes;
     }
 
+    /**
+     * Maximum number of path elements resolved by a single statement.
+     * Deeper paths are resolved one element at a time.
+     */
+    private static final int MAX_JOINED_PATH_ELEMENTS = 32;
+
+    private static final int JOINED_PATH_COLUMNS = 11;
+
+    /**
+     * Statements resolving paths with 1 to MAX_JOINED_PATH_ELEMENTS
+     * elements, indexed by the number of elements.
+     */
+    private static final String[] sqlResolvePath = new String[MAX_JOINED_PATH_ELEMENTS + 1];
+
+    static {
+        for (int n = 1; n <= MAX_JOINED_PATH_ELEMENTS; n++) {
+            StringBuilder select = new StringBuilder("SELECT ");
+            StringBuilder from = new StringBuilder(" FROM ");
+            StringBuilder where = new StringBuilder(" WHERE d1.iparent=?");
+            for (int i = 1; i <= n; i++) {
+                if (i > 1) {
+                    select.append(',');
+                    from.append(" JOIN t_dirs d").append(i)
+                            .append(" ON d").append(i).append(".iparent=d").append(i - 1).append(".ipnfsid");
+                    from.append(" JOIN ");
+                } else {
+                    from.append("t_dirs d1 JOIN ");
+                }
+                from.append("t_inodes i").append(i)
+                        .append(" ON i").append(i).append(".ipnfsid=d").append(i).append(".ipnfsid");
+                select.append('d').append(i).append(".ipnfsid");
+                for (String column : new String[] {"isize", "inlink", "itype", "imode", "iuid",
+                                                   "igid", "iatime", "ictime", "imtime", "icrtime"}) {
+                    select.append(",i").append(i).append('.').append(column);
+                }
+                where.append(" AND d").append(i).append(".iname=?");
+            }
+            sqlResolvePath[n] = select.append(from).append(where).toString();
+        }
+    }
+
+    /**
+     * Splits a path into its elements, skipping empty elements.
+     */
+    static List<String> pathElements(String path) {
+        File pathFile = new File(path);
+        List<String> elements = new ArrayList<>();
+        do {
+            String fileName = pathFile.getName();
+            if (fileName.length() != 0) {
+                elements.add(fileName);
+            }
+            pathFile = pathFile.getParentFile();
+        } while (pathFile != null);
+        return Lists.reverse(elements);
+    }
+
+    /**
+     * Resolves the inodes of all elements of a path with a single
+     * statement joining t_dirs and t_inodes once per path element. The
+     * stat cache of each inode is filled.
+     *
+     * @param dbConnection
+     * @param root staring point
+     * @param elements path elements
+     * @return inodes of the path elements, not including <i>root</i>, or
+     *         null if the path does not exist, traverses a symbolic link or
+     *         has too many elements. The caller then has to walk the path
+     *         one element at a time.
+     * @throws SQLException
+     */
+    private List<FsInode> resolvePath(Connection dbConnection, FsInode root, List<String> elements)
+            throws SQLException {
+        int n = elements.size();
+        if (n == 0) {
+            return Collections.emptyList();
+        }
+        if (n > MAX_JOINED_PATH_ELEMENTS) {
+            return null;
+        }
+
+        PreparedStatement stResolvePath = null;
+        ResultSet rs = null;
+        try {
+            stResolvePath = dbConnection.prepareStatement(sqlResolvePath[n]);
+            stResolvePath.setString(1, root.toString());
+            for (int i = 0; i < n; i++) {
+                stResolvePath.setString(i + 2, elements.get(i));
+            }
+            rs = stResolvePath.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+
+            List<FsInode> inodes = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                int column = i * JOINED_PATH_COLUMNS + 1;
+                FsInode inode = new FsInode(root.getFs(), rs.getString(column));
+                Stat stat = new Stat();
+                stat.setSize(rs.getLong(column + 1));
+                stat.setNlink(rs.getInt(column + 2));
+                stat.setMode(rs.getInt(column + 4) | rs.getInt(column + 3));
+                stat.setUid(rs.getInt(column + 5));
+                stat.setGid(rs.getInt(column + 6));
+                stat.setATime(rs.getTimestamp(column + 7).getTime());
+                stat.setCTime(rs.getTimestamp(column + 8).getTime());
+                stat.setMTime(rs.getTimestamp(column + 9).getTime());
+                stat.setCrTime(rs.getTimestamp(column + 10).getTime());
+                stat.setIno((int) inode.id());
+                stat.setDev(17);
+                if (UnixPermission.getType(stat.getMode()) == UnixPermission.S_IFLNK) {
+                    return null;
+                }
+                inode.setStatCache(stat);
+                inodes.add(inode);
+            }
+            return inodes;
+        } finally {
+            SqlHelper.tryToClose(rs);
+            SqlHelper.tryToClose(stResolvePath);
+        }
+    }
+
+    /**
+     * Like {@link #path2inode}, but resolves paths with a single statement
+     * unless the path traverses a symbolic link. For use by dialects
+     * which do not provide a stored procedure for path resolution.
+     */
+    FsInode path2inodeByJoin(Connection dbConnection, FsInode root, String path)
+            throws SQLException, IOHimeraFsException {
+        List<FsInode> inodes = resolvePath(dbConnection, root, pathElements(path));
+        if (inodes == null) {
+            return walkPath(dbConnection, root, path);
+        }
+        return inodes.isEmpty() ? root : inodes.get(inodes.size() - 1);
+    }
+
+    /**
+     * Like {@link #path2inodes}, but resolves paths with a single
+     * statement unless the path traverses a symbolic link. For use by
+     * dialects which do not provide a stored procedure for path
+     * resolution.
+     */
+    List<FsInode> path2inodesByJoin(Connection dbConnection, FsInode root, String path)
+            throws SQLException, IOHimeraFsException {
+        List<FsInode> inodes = resolvePath(dbConnection, root, pathElements(path));
+        if (inodes == null) {
+            return walkPathInodes(dbConnection, root, path);
+        }
+        List<FsInode> result = new ArrayList<>(inodes.size() + 1);
+        result.add(root);
+        result.addAll(inodes);
+        return result;
+    }
+
     private final static String  sqlGetACL = "SELECT * FROM t_acl WHERE rs_id =  ? ORDER BY ace_order";
     /**
      * Get inode's Access Control List. An empty list is returned if there are no ACL assigned
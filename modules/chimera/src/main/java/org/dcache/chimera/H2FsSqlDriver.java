@@ -19,6 +19,7 @@ package org.dcache.chimera;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.List;
 
 import org.dcache.commons.util.SqlHelper;
 
@@ -57,6 +58,18 @@ public class H2FsSqlDriver extends FsSqlDriver {
 
     }
 
+    @Override
+    FsInode path2inode(Connection dbConnection, FsInode root, String path)
+            throws SQLException, IOHimeraFsException {
+        return path2inodeByJoin(dbConnection, root, path);
+    }
+
+    @Override
+    List<FsInode> path2inodes(Connection dbConnection, FsInode root, String path)
+            throws SQLException, IOHimeraFsException {
+        return path2inodesByJoin(dbConnection, root, path);
+    }
+
     @Override
     public boolean isDuplicatedKeyError(String sqlState) {
         return "23505".equals(sqlState);
@@ -0,0 +1,118 @@
+/*
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.chimera;
+
+import java.util.List;
+import java.util.Set;
+
+import diskCacheV111.util.AccessLatency;
+import diskCacheV111.util.RetentionPolicy;
+
+import org.dcache.acl.ACE;
+import org.dcache.chimera.posix.Stat;
+import org.dcache.util.Checksum;
+
+/**
+ * Attributes of an inode fetched in a single round trip to the
+ * database.
+ *
+ * Stat, access latency and retention policy are always fetched.
+ * Checksums, disk locations and ACL are only fetched when requested;
+ * otherwise the corresponding getters return null.
+ */
+public class InodeAttributes
+{
+    /**
+     * Optional attributes stored in tables other than t_inodes.
+     */
+    public enum Attribute
+    {
+        CHECKSUMS, LOCATIONS, ACL
+    }
+
+    private final Stat _stat;
+    private final AccessLatency _accessLatency;
+    private final RetentionPolicy _retentionPolicy;
+    private Set<Checksum> _checksums;
+    private List<StorageLocatable> _locations;
+    private List<ACE> _acl;
+
+    InodeAttributes(Stat stat, AccessLatency accessLatency,
+                    RetentionPolicy retentionPolicy)
+    {
+        _stat = stat;
+        _accessLatency = accessLatency;
+        _retentionPolicy = retentionPolicy;
+    }
+
+    public Stat getStat()
+    {
+        return _stat;
+    }
+
+    /**
+     * Returns the access latency stored with the inode or null if the
+     * inode does not have one, ie it inherits the directory default.
+     */
+    public AccessLatency getAccessLatency()
+    {
+        return _accessLatency;
+    }
+
+    /**
+     * Returns the retention policy stored with the inode or null if
+     * the inode does not have one, ie it inherits the directory
+     * default.
+     */
+    public RetentionPolicy getRetentionPolicy()
+    {
+        return _retentionPolicy;
+    }
+
+    public Set<Checksum> getChecksums()
+    {
+        return _checksums;
+    }
+
+    void setChecksums(Set<Checksum> checksums)
+    {
+        _checksums = checksums;
+    }
+
+    /**
+     * Returns the online disk locations of the inode.
+     */
+    public List<StorageLocatable> getLocations()
+    {
+        return _locations;
+    }
+
+    void setLocations(List<StorageLocatable> locations)
+    {
+        _locations = locations;
+    }
+
+    public List<ACE> getAcl()
+    {
+        return _acl;
+    }
+
+    void setAcl(List<ACE> acl)
+    {
+        _acl = acl;
+    }
+}
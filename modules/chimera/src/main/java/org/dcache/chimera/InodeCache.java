@@ -0,0 +1,268 @@
+/*
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.chimera;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.dcache.chimera.posix.Stat;
+
+/**
+ * Bounded in-process cache of directory entries, inode attributes and
+ * parent relations used by {@link JdbcFs}.
+ *
+ * Three independent maps are maintained:
+ *
+ *   (parent, name) -> inode
+ *   inode          -> stat (level 0 only)
+ *   inode          -> parent
+ *
+ * Each map holds at most <i>maximumSize</i> entries. JdbcFs invalidates
+ * the affected entries on every namespace modification it performs.
+ * Modifications by other JdbcFs instances sharing the same database are
+ * not visible to this cache; entries therefore expire <i>lifetime</i>
+ * after they have been added, which bounds the staleness of the cached
+ * data.
+ *
+ * Directory entries are only used for path resolution if the target is
+ * known not to be a symbolic link, as links have to be expanded by the
+ * database.
+ *
+ * @Threadsafe
+ */
+public class InodeCache {
+
+    private final long _maximumSize;
+    private final Cache<DentryKey, Dentry> _dentries;
+    private final Cache<String, Stat> _stats;
+    private final Cache<String, String> _parents;
+
+    public InodeCache(long maximumSize, long lifetime, TimeUnit unit) {
+        _maximumSize = maximumSize;
+        _dentries = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(lifetime, unit)
+                .recordStats()
+                .build();
+        _stats = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(lifetime, unit)
+                .recordStats()
+                .build();
+        _parents = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(lifetime, unit)
+                .recordStats()
+                .build();
+    }
+
+    public long getMaximumSize() {
+        return _maximumSize;
+    }
+
+    /**
+     * Returns the id of the entry <i>name</i> in directory <i>parent</i>,
+     * or null if not cached.
+     */
+    String getDentry(FsInode parent, String name) {
+        Dentry dentry = _dentries.getIfPresent(new DentryKey(parent.toString(), name));
+        return (dentry == null) ? null : dentry._id;
+    }
+
+    /**
+     * Adds a directory entry. <i>resolvable</i> indicates that the target
+     * is known not to be a symbolic link. An existing entry for the same
+     * target keeps its resolvable flag.
+     */
+    void putDentry(FsInode parent, String name, FsInode inode, boolean resolvable) {
+        if (!isCacheable(name)) {
+            return;
+        }
+        DentryKey key = new DentryKey(parent.toString(), name);
+        String id = inode.toString();
+        if (!resolvable) {
+            Dentry existing = _dentries.getIfPresent(key);
+            if (existing != null && existing._id.equals(id)) {
+                return;
+            }
+        }
+        _dentries.put(key, new Dentry(id, resolvable));
+    }
+
+    void invalidateDentry(FsInode parent, String name) {
+        _dentries.invalidate(new DentryKey(parent.toString(), name));
+    }
+
+    /**
+     * Resolves <i>elements</i> starting at <i>root</i> using cached
+     * directory entries only.
+     *
+     * @return the inode of the last element, or null unless all elements
+     *         are cached and none of them is a symbolic link.
+     */
+    FsInode resolve(FileSystemProvider fs, FsInode root, List<String> elements) {
+        FsInode inode = root;
+        for (String name : elements) {
+            if (!isCacheable(name)) {
+                return null;
+            }
+            Dentry dentry = _dentries.getIfPresent(new DentryKey(inode.toString(), name));
+            if (dentry == null || !dentry._resolvable) {
+                return null;
+            }
+            FsInode child = new FsInode(fs, dentry._id);
+            child.setParent(inode);
+            inode = child;
+        }
+        return inode;
+    }
+
+    /**
+     * Records the directory entries of a resolved path. <i>inodes</i>
+     * starts with <i>root</i> followed by one inode per path element, that
+     * is, the path did not traverse any symbolic link.
+     */
+    void putPath(List<String> elements, List<FsInode> inodes) {
+        for (int i = 0; i < elements.size(); i++) {
+            putDentry(inodes.get(i), elements.get(i), inodes.get(i + 1), true);
+        }
+    }
+
+    Stat getStat(FsInode inode) {
+        Stat stat = _stats.getIfPresent(inode.toString());
+        return (stat == null) ? null : copy(stat);
+    }
+
+    void putStat(FsInode inode, Stat stat) {
+        _stats.put(inode.toString(), copy(stat));
+    }
+
+    void invalidateStat(FsInode inode) {
+        _stats.invalidate(inode.toString());
+    }
+
+    String getParent(FsInode inode) {
+        return _parents.getIfPresent(inode.toString());
+    }
+
+    void putParent(FsInode inode, FsInode parent) {
+        _parents.put(inode.toString(), parent.toString());
+    }
+
+    void invalidateParent(FsInode inode) {
+        _parents.invalidate(inode.toString());
+    }
+
+    /**
+     * Drops all cached information about <i>inode</i>.
+     */
+    void invalidate(FsInode inode) {
+        invalidateStat(inode);
+        invalidateParent(inode);
+    }
+
+    public void invalidateAll() {
+        _dentries.invalidateAll();
+        _stats.invalidateAll();
+        _parents.invalidateAll();
+    }
+
+    /*
+     * The entries '.' and '..' are not cached as the latter changes when
+     * a directory is moved. Pnfs commands are not directory entries.
+     */
+    private static boolean isCacheable(String name) {
+        return !name.equals(".") && !name.equals("..") && !name.startsWith(".(");
+    }
+
+    private static Stat copy(Stat stat) {
+        Stat copy = new Stat();
+        copy.setDev(stat.getDev());
+        copy.setIno(stat.getIno());
+        copy.setMode(stat.getMode());
+        copy.setNlink(stat.getNlink());
+        copy.setUid(stat.getUid());
+        copy.setGid(stat.getGid());
+        copy.setRdev(stat.getRdev());
+        copy.setSize(stat.getSize());
+        copy.setATime(stat.getATime());
+        copy.setMTime(stat.getMTime());
+        copy.setCTime(stat.getCTime());
+        copy.setCrTime(stat.getCrTime());
+        copy.setBlkSize(stat.getBlkSize());
+        return copy;
+    }
+
+    private static void appendStats(StringBuilder sb, String name, Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        sb.append(String.format("%-11s: %d entries, %d hits, %d misses, hit rate %.1f%%%n",
+                                name, cache.size(), stats.hitCount(), stats.missCount(),
+                                stats.hitRate() * 100));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendStats(sb, "Dentries", _dentries);
+        appendStats(sb, "Stat", _stats);
+        appendStats(sb, "Parents", _parents);
+        return sb.toString();
+    }
+
+    private static class DentryKey {
+
+        private final String _parent;
+        private final String _name;
+
+        DentryKey(String parent, String name) {
+            _parent = parent;
+            _name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (!(o instanceof DentryKey)) {
+                return false;
+            }
+            DentryKey other = (DentryKey) o;
+            return _parent.equals(other._parent) && _name.equals(other._name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * _parent.hashCode() + _name.hashCode();
+        }
+    }
+
+    private static class Dentry {
+
+        private final String _id;
+        private final boolean _resolvable;
+
+        Dentry(String id, boolean resolvable) {
+            _id = id;
+            _resolvable = resolvable;
+        }
+    }
+}
@@ -80,6 +80,10 @@ public class JdbcFs implements FileSystemProvider {
      */
     private final DataSource _dbConnectionsPool;
     private final FsStatCache _fsStatCache;
+    /**
+     * optional cache of directory entries and inode attributes
+     */
+    private InodeCache _inodeCache;
     /**
      * current fs id
      */
@@ -127,6 +131,58 @@ public class JdbcFs implements FileSystemProvider {
         return this.path2inode("/admin/etc/config");
     }
 
+    /**
+     * Enables the in-process cache of directory entries, inode attributes
+     * and parent relations. A cache with a maximum size of zero or null
+     * disables caching.
+     */
+    public void setInodeCache(InodeCache inodeCache) {
+        _inodeCache = (inodeCache == null || inodeCache.getMaximumSize() == 0) ? null : inodeCache;
+    }
+
+    public InodeCache getInodeCache() {
+        return _inodeCache;
+    }
+
+    /**
+     * Invalidates the cached stat of an inode after it has been modified.
+     */
+    private void invalidateCachedStat(FsInode inode) {
+        if (_inodeCache != null) {
+            _inodeCache.invalidateStat(inode);
+        }
+    }
+
+    /**
+     * Invalidates cached information after the entry <i>source</i> in
+     * <i>srcDir</i> has been renamed to <i>dest</i> in <i>destDir</i>.
+     * <i>inode</i> is the target of the entry, if known.
+     */
+    private void invalidateCachedMove(FsInode srcDir, String source,
+                                      FsInode destDir, String dest, FsInode inode) {
+        if (_inodeCache != null) {
+            invalidateCachedEntry(srcDir, source, inode);
+            invalidateCachedEntry(destDir, dest, null);
+        }
+    }
+
+    /**
+     * Invalidates cached information after the directory entry <i>name</i>
+     * in <i>parent</i> has been created or removed. <i>name</i> and
+     * <i>inode</i> may be null if not known.
+     */
+    private void invalidateCachedEntry(FsInode parent, String name, FsInode inode) {
+        if (_inodeCache != null) {
+            if (name != null) {
+                _inodeCache.invalidateDentry(parent, name);
+            }
+            _inodeCache.invalidateStat(parent);
+            if (inode != null) {
+                _inodeCache.invalidate(inode);
+            }
+        }
+    }
+
     //////////////////////////////////////////////////////////
     ////
     ////
@@ -222,6 +278,7 @@ public class JdbcFs implements FileSystemProvider {
             _sqlDriver.write(dbConnection, inode, 0, 0, dest, 0, dest.length);
 
             dbConnection.commit();
+            invalidateCachedEntry(parent, name, null);
 
         } catch (SQLException se) {
             _log.error("createLink ", se);
@@ -271,6 +328,7 @@ public class JdbcFs implements FileSystemProvider {
             _sqlDriver.incNlink(dbConnection, parent);
 
             dbConnection.commit();
+            invalidateCachedEntry(parent, name, inode);
 
         } catch (SQLException e) {
             try {
@@ -422,6 +480,7 @@ public class JdbcFs implements FileSystemProvider {
 
                 inode = _sqlDriver.createFile(dbConnection, parent, name, owner, group, mode, type);
                 dbConnection.commit();
+                invalidateCachedEntry(parent, name, null);
 
             } catch (SQLException se) {
 
@@ -489,6 +548,7 @@ public class JdbcFs implements FileSystemProvider {
 
                 inode = _sqlDriver.createFileWithId(dbConnection, parent, inode, name, owner, group, mode, type);
                 dbConnection.commit();
+                invalidateCachedEntry(parent, name, inode);
 
             } else {
                 throw new NotDirChimeraException(parent);
@@ -616,6 +676,31 @@ public class JdbcFs implements FileSystemProvider {
          */
     }
 
+    @Override
+    public List<HimeraDirectoryEntry> listDir(FsInode dir, String startAfter, int limit)
+            throws ChimeraFsException {
+
+        Connection dbConnection;
+        try {
+            // get from pool
+            dbConnection = _dbConnectionsPool.getConnection();
+        } catch (SQLException e) {
+            throw new BackEndErrorHimeraFsException(e.getMessage());
+        }
+
+        try {
+            // read only
+            dbConnection.setAutoCommit(true);
+
+            return _sqlDriver.listDirChunk(dbConnection, dir, startAfter, limit);
+        } catch (SQLException se) {
+            _log.error("list chunk: ", se);
+            throw new IOHimeraFsException(se.getMessage());
+        } finally {
+            tryToClose(dbConnection);
+        }
+    }
+
     @Override
     public void remove(String path) throws ChimeraFsException {
 
@@ -646,8 +731,10 @@ public class JdbcFs implements FileSystemProvider {
             // read/write only
             dbConnection.setAutoCommit(false);
 
+            FsInode inode = (_inodeCache == null) ? null : _sqlDriver.inodeOf(dbConnection, parent, name);
             _sqlDriver.remove(dbConnection, parent, name);
             dbConnection.commit();
+            invalidateCachedEntry(parent, name, inode);
         } catch (ChimeraFsException hfe) {
             try {
                 dbConnection.rollback();
@@ -695,8 +782,10 @@ public class JdbcFs implements FileSystemProvider {
                 throw new FileNotFoundHimeraFsException("Not a file.");
             }
 
+            String name = (_inodeCache == null) ? null : _sqlDriver.getNameOf(dbConnection, parent, inode);
             _sqlDriver.remove(dbConnection, parent, inode);
             dbConnection.commit();
+            invalidateCachedEntry(parent, name, inode);
         } catch (ChimeraFsException hfe) {
             try {
                 dbConnection.rollback();
@@ -730,6 +819,14 @@ public class JdbcFs implements FileSystemProvider {
     @Override
     public Stat stat(FsInode inode, int level) throws ChimeraFsException {
 
+        boolean isCacheable = _inodeCache != null && level == 0 && inode.type() == FsInodeType.INODE;
+        if (isCacheable) {
+            Stat stat = _inodeCache.getStat(inode);
+            if (stat != null) {
+                return stat;
+            }
+        }
+
         Connection dbConnection;
         try {
             // get from pool
@@ -757,6 +854,10 @@ public class JdbcFs implements FileSystemProvider {
             throw new FileNotFoundHimeraFsException(inode.toString());
         }
 
+        if (isCacheable) {
+            _inodeCache.putStat(inode, stat);
+        }
+
         return stat;
     }
 
@@ -808,6 +909,7 @@ public class JdbcFs implements FileSystemProvider {
             inode = _sqlDriver.mkdir(dbConnection, parent, name, owner, group, mode);
             _sqlDriver.copyTags(dbConnection, parent, inode);
             dbConnection.commit();
+            invalidateCachedEntry(parent, name, null);
 
         } catch (SQLException se) {
 
@@ -841,6 +943,16 @@ public class JdbcFs implements FileSystemProvider {
     @Override
     public FsInode path2inode(String path, FsInode startFrom) throws ChimeraFsException {
 
+        if (_inodeCache != null) {
+            List<String> elements = FsSqlDriver.pathElements(path);
+            FsInode inode = _inodeCache.resolve(this, startFrom, elements);
+            if (inode == null) {
+                List<FsInode> inodes = path2inodes(path, startFrom);
+                inode = inodes.get(inodes.size() - 1);
+            }
+            return inode;
+        }
+
         Connection dbConnection;
         try {
             // get from pool
@@ -897,6 +1009,16 @@ public class JdbcFs implements FileSystemProvider {
             if (inodes.isEmpty()) {
                 throw new FileNotFoundHimeraFsException(path);
             }
+
+            if (_inodeCache != null) {
+                /* Symbolic links add inodes to the result; only cache
+                 * paths without links.
+                 */
+                List<String> elements = FsSqlDriver.pathElements(path);
+                if (inodes.size() == elements.size() + 1) {
+                    _inodeCache.putPath(elements, inodes);
+                }
+            }
         } catch (SQLException e) {
             _log.error("path2inode", e);
             throw new IOHimeraFsException(e.getMessage());
@@ -1119,6 +1241,15 @@ public class JdbcFs implements FileSystemProvider {
 
         }
 
+        if (_inodeCache != null) {
+            String id = _inodeCache.getDentry(parent, name);
+            if (id != null) {
+                inode = new FsInode(this, id);
+                inode.setParent(parent);
+                return inode;
+            }
+        }
+
         Connection dbConnection;
         try {
             // get from pool
@@ -1144,6 +1275,9 @@ public class JdbcFs implements FileSystemProvider {
             tryToClose(dbConnection);
         }
 
+        if (_inodeCache != null) {
+            _inodeCache.putDentry(parent, name, inode, false);
+        }
         inode.setParent(parent);
 
         return inode;
@@ -1229,6 +1363,13 @@ public class JdbcFs implements FileSystemProvider {
     @Override
     public FsInode getParentOf(FsInode inode) throws ChimeraFsException {
 
+        if (_inodeCache != null) {
+            String id = _inodeCache.getParent(inode);
+            if (id != null) {
+                return new FsInode(this, id);
+            }
+        }
+
         Connection dbConnection;
         try {
             // get from pool
@@ -1256,6 +1397,10 @@ public class JdbcFs implements FileSystemProvider {
             tryToClose(dbConnection);
         }
 
+        if (_inodeCache != null && parent != null) {
+            _inodeCache.putParent(inode, parent);
+        }
+
         return parent;
     }
 
@@ -1277,6 +1422,7 @@ public class JdbcFs implements FileSystemProvider {
 
             _sqlDriver.setFileSize(dbConnection, inode, newSize);
             dbConnection.commit();
+            invalidateCachedStat(inode);
 
         } catch (SQLException e) {
             _log.error("setFileSize", e);
@@ -1314,6 +1460,7 @@ public class JdbcFs implements FileSystemProvider {
 
             _sqlDriver.setFileOwner(dbConnection, inode, level, newOwner);
             dbConnection.commit();
+            invalidateCachedStat(inode);
 
         } catch (SQLException e) {
             _log.error("setFileOwner", e);
@@ -1345,8 +1492,10 @@ public class JdbcFs implements FileSystemProvider {
             // read/write only
             dbConnection.setAutoCommit(false);
 
+            FsInode inode = (_inodeCache == null) ? null : _sqlDriver.inodeOf(dbConnection, dir, oldName);
             _sqlDriver.setFileName(dbConnection, dir, oldName, newName);
             dbConnection.commit();
+            invalidateCachedMove(dir, oldName, dir, newName, inode);
         } catch (Exception e) {
             _log.error("setFileName", e);
             try {
@@ -1386,6 +1535,9 @@ public class JdbcFs implements FileSystemProvider {
                     break;
             }
             dbConnection.commit();
+            if (inode.type() == FsInodeType.INODE) {
+                invalidateCachedStat(inode);
+            }
 
         } catch (SQLException e) {
             _log.error("setInodeAttributes", e);
@@ -1421,6 +1573,7 @@ public class JdbcFs implements FileSystemProvider {
 
             _sqlDriver.setFileATime(dbConnection, inode, level, atime);
             dbConnection.commit();
+            invalidateCachedStat(inode);
 
         } catch (SQLException e) {
             _log.error("setFileATime", e);
@@ -1457,6 +1610,7 @@ public class JdbcFs implements FileSystemProvider {
 
             _sqlDriver.setFileCTime(dbConnection, inode, level, ctime);
             dbConnection.commit();
+            invalidateCachedStat(inode);
 
         } catch (SQLException e) {
             _log.error("setFileCTime", e);
@@ -1494,6 +1648,7 @@ public class JdbcFs implements FileSystemProvider {
 
             _sqlDriver.setFileMTime(dbConnection, inode, level, mtime);
             dbConnection.commit();
+            invalidateCachedStat(inode);
 
         } catch (SQLException e) {
             _log.error("setFileMTime", e);
@@ -1531,6 +1686,7 @@ public class JdbcFs implements FileSystemProvider {
 
             _sqlDriver.setFileGroup(dbConnection, inode, level, newGroup);
             dbConnection.commit();
+            invalidateCachedStat(inode);
 
         } catch (SQLException e) {
             _log.error("setFileGroup", e);
@@ -1568,6 +1724,7 @@ public class JdbcFs implements FileSystemProvider {
 
             _sqlDriver.setFileMode(dbConnection, inode, level, newMode);
             dbConnection.commit();
+            invalidateCachedStat(inode);
 
         } catch (SQLException e) {
             _log.error("setFileMode", e);
@@ -1670,6 +1827,7 @@ public class JdbcFs implements FileSystemProvider {
 
             _sqlDriver.write(dbConnection, inode, level, beginIndex, data, offset, len);
             dbConnection.commit();
+            invalidateCachedStat(inode);
         } catch (SQLException e) {
             String sqlState = e.getSQLState();
             try {
@@ -1788,6 +1946,7 @@ public class JdbcFs implements FileSystemProvider {
             // read/write only
             dbConnection.setAutoCommit(false);
 
+            FsInode inode = (_inodeCache == null) ? null : _sqlDriver.inodeOf(dbConnection, srcDir, source);
             if (!srcDir.equals(destDir)) {
                 _sqlDriver.move(dbConnection, srcDir, source, destDir, dest);
             } else {
@@ -1796,6 +1955,7 @@ public class JdbcFs implements FileSystemProvider {
             }
 
             dbConnection.commit();
+            invalidateCachedMove(srcDir, source, destDir, dest, inode);
             rc = true;
         } catch (SQLException e) {
             _log.error("move:", e);
@@ -2535,6 +2695,39 @@ public class JdbcFs implements FileSystemProvider {
         return checkSum;
     }
 
+    @Override
+    public InodeAttributes getInodeAttributes(FsInode inode,
+                                              Set<InodeAttributes.Attribute> optional)
+            throws ChimeraFsException {
+        Connection dbConnection;
+        try {
+            // get from pool
+            dbConnection = _dbConnectionsPool.getConnection();
+        } catch (SQLException e) {
+            throw new BackEndErrorHimeraFsException(e.getMessage());
+        }
+
+        InodeAttributes attributes;
+        try {
+            dbConnection.setAutoCommit(true);
+            attributes = _sqlDriver.getInodeAttributes(dbConnection, inode, optional);
+        } catch (SQLException e) {
+            _log.error("getInodeAttributes", e);
+            throw new IOHimeraFsException(e.getMessage());
+        } finally {
+            tryToClose(dbConnection);
+        }
+
+        if (attributes == null) {
+            throw new FileNotFoundHimeraFsException(inode.toString());
+        }
+        inode.setStatCache(attributes.getStat());
+        if (_inodeCache != null && inode.type() == FsInodeType.INODE && inode.getLevel() == 0) {
+            _inodeCache.putStat(inode, attributes.getStat());
+        }
+        return attributes;
+    }
+
     @Override
     public Set<Checksum> getInodeChecksums(FsInode inode) throws ChimeraFsException {
         Set<Checksum> checkSums = new HashSet<>();
@@ -2695,6 +2888,9 @@ public class JdbcFs implements FileSystemProvider {
         sb.append("rootID    : ").append(_rootInode.toString()).append("\n");
         sb.append("wormID    : ").append(_wormID).append("\n");
         sb.append("FsId      : ").append(_fsId).append("\n");
+        if (_inodeCache != null) {
+            sb.append(_inodeCache);
+        }
         return sb.toString();
     }
 
@@ -7,6 +7,7 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -599,6 +600,46 @@ public class BasicTest extends ChimeraTestCaseHelper {
         assertEquals("Checksum set/get miss match", sum, _fs.getInodeChecksum(fileInode, 1));
     }
 
+    @Test
+    public void testGetInodeAttributes() throws Exception {
+        FsInode base = _rootInode.mkdir("junit");
+        FsInode fileInode = base.create("testCreateFile", 0, 0, 0644);
+        _fs.setInodeChecksum(fileInode, 1, "asum");
+        _fs.setAccessLatency(fileInode, AccessLatency.ONLINE);
+        _fs.addInodeLocation(fileInode, StorageGenericLocation.DISK, "/dev/null");
+
+        InodeAttributes attributes = _fs.getInodeAttributes(fileInode,
+                EnumSet.allOf(InodeAttributes.Attribute.class));
+
+        assertEquals(fileInode.stat().getMode(), attributes.getStat().getMode());
+        assertEquals(AccessLatency.ONLINE, attributes.getAccessLatency());
+        assertNull(attributes.getRetentionPolicy());
+        assertEquals(1, attributes.getChecksums().size());
+        assertEquals("asum", attributes.getChecksums().iterator().next().getValue());
+        assertEquals(1, attributes.getLocations().size());
+        assertTrue(attributes.getAcl().isEmpty());
+    }
+
+    @Test
+    public void testGetInodeAttributesWithoutOptional() throws Exception {
+        FsInode base = _rootInode.mkdir("junit");
+        FsInode fileInode = base.create("testCreateFile", 0, 0, 0644);
+
+        InodeAttributes attributes = _fs.getInodeAttributes(fileInode,
+                EnumSet.noneOf(InodeAttributes.Attribute.class));
+
+        assertNull(attributes.getAccessLatency());
+        assertNull(attributes.getChecksums());
+        assertNull(attributes.getLocations());
+        assertNull(attributes.getAcl());
+    }
+
+    @Test(expected = FileNotFoundHimeraFsException.class)
+    public void testGetInodeAttributesNotExist() throws Exception {
+        FsInode inode = new FsInode(_fs, "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF");
+        _fs.getInodeAttributes(inode, EnumSet.noneOf(InodeAttributes.Attribute.class));
+    }
+
     @Ignore("Functionality not yet written, but desired")
     @Test
     public void testUpdateChecksumDifferTypes() throws Exception {
@@ -739,6 +780,41 @@ public class BasicTest extends ChimeraTestCaseHelper {
                      inodes);
     }
 
+    @Test
+    public void testResolveDeepPath() throws Exception
+    {
+        List<FsInode> expected = Lists.newArrayList(_rootInode);
+        FsInode inode = _rootInode;
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            inode = inode.mkdir("dir" + i, 0, 0, 0755);
+            expected.add(inode);
+            path.append("/dir").append(i);
+        }
+
+        assertEquals(inode, _fs.path2inode(path.toString()));
+        assertEquals(expected, _fs.path2inodes(path.toString()));
+        try {
+            _fs.path2inodes(path + "/missing");
+            fail("resolved non existing path");
+        } catch (FileNotFoundHimeraFsException e) {
+            // OK
+        }
+    }
+
+    @Test
+    public void testResolveDeepPathThroughLink() throws Exception
+    {
+        FsInode dirInode = _rootInode.mkdir("testDir", 0, 0, 0755);
+        FsInode subdirInode = dirInode.mkdir("testDir2", 0, 0, 0755);
+        FsInode fileInode = subdirInode.create("testFile", 0, 0, 0644);
+        FsInode linkInode = dirInode.createLink("aLink", 0, 0, 055, "testDir2".getBytes());
+
+        assertEquals(fileInode, _fs.path2inode("/testDir/aLink/testFile"));
+        assertEquals(Lists.newArrayList(_rootInode, dirInode, linkInode, subdirInode, fileInode),
+                     _fs.path2inodes("/testDir/aLink/testFile"));
+    }
+
     @Test
     public void testUpdateCtimeOnSetOwner() throws Exception {
         FsInode dirInode = _rootInode.mkdir("testDir", 0, 0, 0755);
@@ -966,4 +1042,99 @@ public class BasicTest extends ChimeraTestCaseHelper {
         assertTrue(newId.length < oldId.length);
         assertEquals(inodeWithOldId, inodeWithNewId);
     }
+
+    @Test
+    public void testListDirInChunks() throws Exception {
+
+        FsInode base = _rootInode.mkdir("junit");
+        for (int i = 0; i < 5; i++) {
+            base.create("file" + i, 0, 0, 0644);
+        }
+
+        List<String> names = new ArrayList<>();
+        String last = null;
+        List<HimeraDirectoryEntry> chunk;
+        do {
+            chunk = _fs.listDir(base, last, 2);
+            assertTrue(chunk.size() <= 2);
+            for (HimeraDirectoryEntry entry : chunk) {
+                last = entry.getName();
+                names.add(last);
+            }
+        } while (!chunk.isEmpty());
+
+        assertEquals(Lists.newArrayList(".", "..", "file0", "file1", "file2", "file3", "file4"), names);
+    }
+
+    private void enableInodeCache() {
+        ((JdbcFs) _fs).setInodeCache(new InodeCache(1000, 1, TimeUnit.MINUTES));
+    }
+
+    @Test
+    public void testInodeCacheRename() throws Exception {
+        enableInodeCache();
+
+        FsInode base = _rootInode.mkdir("junit");
+        FsInode inode = base.create("a", 0, 0, 0644);
+        assertEquals(inode, _fs.path2inode("/junit/a"));
+        assertEquals(inode, _fs.path2inode("/junit/a"));
+
+        _fs.setFileName(base, "a", "b");
+        assertEquals(inode, _fs.path2inode("/junit/b"));
+        try {
+            _fs.path2inode("/junit/a");
+            fail("renamed entry still resolvable");
+        } catch (FileNotFoundHimeraFsException e) {
+        }
+    }
+
+    @Test
+    public void testInodeCacheMove() throws Exception {
+        enableInodeCache();
+
+        FsInode base = _rootInode.mkdir("junit");
+        FsInode dir1 = base.mkdir("dir1");
+        FsInode dir2 = base.mkdir("dir2");
+        FsInode inode = dir1.create("a", 0, 0, 0644);
+        assertEquals(dir1, _fs.getParentOf(inode));
+        long nlink = dir2.stat().getNlink();
+
+        _fs.move(dir1, "a", dir2, "a");
+        assertEquals(dir2, _fs.getParentOf(inode));
+        assertEquals(inode, _fs.path2inode("/junit/dir2/a"));
+        assertEquals(nlink + 1, dir2.stat().getNlink());
+    }
+
+    @Test(expected = FileNotFoundHimeraFsException.class)
+    public void testInodeCacheRemove() throws Exception {
+        enableInodeCache();
+
+        FsInode base = _rootInode.mkdir("junit");
+        FsInode inode = base.create("a", 0, 0, 0644);
+        _fs.inodeOf(base, "a");
+        _fs.stat(inode);
+
+        _fs.remove(base, "a");
+        _fs.inodeOf(base, "a");
+    }
+
+    @Test
+    public void testInodeCacheSetAttributes() throws Exception {
+        enableInodeCache();
+
+        FsInode inode = _rootInode.create("testInodeCacheSetAttributes", 0, 0, 0644);
+        Stat stat = _fs.stat(inode);
+        assertEquals(0, stat.getSize());
+
+        stat.setSize(42);
+        assertEquals(0, _fs.stat(inode).getSize());
+
+        _fs.setFileSize(inode, 42);
+        assertEquals(42, _fs.stat(inode).getSize());
+
+        stat = _fs.stat(inode);
+        stat.setUid(123);
+        _fs.setInodeAttributes(inode, 0, stat);
+        assertEquals(123, _fs.stat(inode).getUid());
+    }
 }
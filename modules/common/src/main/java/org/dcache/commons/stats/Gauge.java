@@ -0,0 +1,13 @@
+package org.dcache.commons.stats;
+
+/**
+ * A metric whose value is computed when the metric is read.
+ *
+ * Gauges are read when metrics are exported, never on the code paths
+ * being measured. Implementations should nevertheless avoid taking
+ * locks that are contended by those code paths.
+ */
+public interface Gauge
+{
+    double getValue();
+}
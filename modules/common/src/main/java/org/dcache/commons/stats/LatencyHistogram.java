@@ -0,0 +1,122 @@
+package org.dcache.commons.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in milliseconds.
+ *
+ * Latencies are counted in buckets with power of two boundaries, ie
+ * bucket i counts latencies in [2^(i-1), 2^i) with bucket 0 counting
+ * latencies below one millisecond. Percentiles are thus reported with
+ * a relative error of at most a factor of two, which is adequate for
+ * spotting slow peers while keeping recording to a couple of atomic
+ * increments.
+ */
+public class LatencyHistogram
+{
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray _buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong _count = new AtomicLong();
+    private final AtomicLong _sum = new AtomicLong();
+    private final AtomicLong _max = new AtomicLong();
+
+    private static int bucketOf(long latency)
+    {
+        return (latency <= 0) ? 0 : 64 - Long.numberOfLeadingZeros(latency);
+    }
+
+    /**
+     * Upper bound of the latencies counted by a bucket.
+     */
+    private static long upperBoundOf(int bucket)
+    {
+        return (bucket >= 63) ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    public void record(long latency)
+    {
+        _buckets.incrementAndGet(bucketOf(latency));
+        _count.incrementAndGet();
+        _sum.addAndGet(latency);
+        long max = _max.get();
+        while (latency > max && !_max.compareAndSet(max, latency)) {
+            max = _max.get();
+        }
+    }
+
+    public long getCount()
+    {
+        return _count.get();
+    }
+
+    public long getSum()
+    {
+        return _sum.get();
+    }
+
+    public long getMax()
+    {
+        return _max.get();
+    }
+
+    public double getMean()
+    {
+        long count = _count.get();
+        return (count == 0) ? 0 : (double) _sum.get() / count;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile.
+     *
+     * @param percentile value between 0 and 100
+     */
+    public long getPercentile(double percentile)
+    {
+        long count = 0;
+        long[] buckets = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = _buckets.get(i);
+            count += buckets[i];
+        }
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(upperBoundOf(i), _max.get());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the number of latencies counted per bucket, indexed as
+     * described in the class comment.
+     */
+    public long[] getBuckets()
+    {
+        long[] buckets = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = _buckets.get(i);
+        }
+        return buckets;
+    }
+
+    /**
+     * Returns the upper bound of bucket i in milliseconds.
+     */
+    public static long getBucketUpperBound(int i)
+    {
+        return upperBoundOf(i);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("n=%d mean=%.1f p50<=%d p99<=%d max=%d ms",
+                             getCount(), getMean(), getPercentile(50),
+                             getPercentile(99), getMax());
+    }
+}
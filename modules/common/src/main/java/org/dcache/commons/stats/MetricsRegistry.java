@@ -0,0 +1,266 @@
+package org.dcache.commons.stats;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Registry of the metrics of a domain.
+ *
+ * Metrics are counters, latency histograms and gauges identified by a
+ * name and an optional list of label name/value pairs. Code on hot paths
+ * looks up its metrics once and keeps a reference; updating a metric
+ * never takes a lock. The registry is exported in the Prometheus text
+ * exposition format.
+ *
+ * Metrics with labels that identify transient objects, eg a cell, must
+ * be removed once the object goes away.
+ */
+public class MetricsRegistry
+{
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private enum Type
+    {
+        COUNTER("counter"), GAUGE("gauge"), HISTOGRAM("histogram");
+
+        private final String _name;
+
+        Type(String name)
+        {
+            _name = name;
+        }
+    }
+
+    /**
+     * A family of metrics sharing name, type and help text.
+     */
+    private static class Family
+    {
+        private final Type _type;
+        private final String _help;
+        private final SortedMap<String,Object> _metrics =
+                new ConcurrentSkipListMap<>();
+
+        Family(Type type, String help)
+        {
+            _type = type;
+            _help = help;
+        }
+    }
+
+    private final ConcurrentMap<String,Family> _families =
+            new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns the registry of this JVM.
+     */
+    public static MetricsRegistry getInstance()
+    {
+        return INSTANCE;
+    }
+
+    private Family getFamily(String name, Type type, String help)
+    {
+        checkArgument(name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*"), "Invalid metric name: %s", name);
+        Family family = _families.get(name);
+        if (family == null) {
+            family = new Family(type, help);
+            Family existing = _families.putIfAbsent(name, family);
+            if (existing != null) {
+                family = existing;
+            }
+        }
+        checkArgument(family._type == type, "Metric %s is not a %s", name, type._name);
+        return family;
+    }
+
+    private static String labelsOf(String... labels)
+    {
+        checkArgument(labels.length % 2 == 0, "Labels must be name/value pairs");
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            sb.append((i == 0) ? '{' : ',');
+            sb.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                default:
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getOrCreate(Family family, String labels, T metric)
+    {
+        Object existing = ((ConcurrentMap<String,Object>) family._metrics).putIfAbsent(labels, metric);
+        return (existing == null) ? metric : (T) existing;
+    }
+
+    /**
+     * Returns the counter with the given name and labels, creating it
+     * if necessary.
+     */
+    public StripedCounter counter(String name, String help, String... labels)
+    {
+        Family family = getFamily(name, Type.COUNTER, help);
+        String key = labelsOf(labels);
+        Object metric = family._metrics.get(key);
+        return (metric != null)
+                ? (StripedCounter) metric
+                : getOrCreate(family, key, new StripedCounter());
+    }
+
+    /**
+     * Returns the latency histogram with the given name and labels,
+     * creating it if necessary. By convention the name ends in
+     * _milliseconds.
+     */
+    public LatencyHistogram histogram(String name, String help, String... labels)
+    {
+        Family family = getFamily(name, Type.HISTOGRAM, help);
+        String key = labelsOf(labels);
+        Object metric = family._metrics.get(key);
+        return (metric != null)
+                ? (LatencyHistogram) metric
+                : getOrCreate(family, key, new LatencyHistogram());
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge with the same name and
+     * labels.
+     */
+    public void gauge(String name, String help, Gauge gauge, String... labels)
+    {
+        Family family = getFamily(name, Type.GAUGE, help);
+        family._metrics.put(labelsOf(labels), gauge);
+    }
+
+    /**
+     * Removes the metric with the given name and labels.
+     */
+    public void remove(String name, String... labels)
+    {
+        Family family = _families.get(name);
+        if (family != null) {
+            family._metrics.remove(labelsOf(labels));
+        }
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format.
+     */
+    public void writeTo(Appendable out) throws IOException
+    {
+        for (Map.Entry<String,Family> entry : _families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            if (family._metrics.isEmpty()) {
+                continue;
+            }
+            out.append("# HELP ").append(name).append(' ')
+                    .append(family._help.replace("\\", "\\\\").replace("\n", "\\n"))
+                    .append('\n');
+            out.append("# TYPE ").append(name).append(' ')
+                    .append(family._type._name).append('\n');
+            for (Map.Entry<String,Object> metric : family._metrics.entrySet()) {
+                String labels = metric.getKey();
+                Object value = metric.getValue();
+                switch (family._type) {
+                case COUNTER:
+                    writeSample(out, name, labels, ((StripedCounter) value).get());
+                    break;
+                case GAUGE:
+                    writeSample(out, name, labels, ((Gauge) value).getValue());
+                    break;
+                case HISTOGRAM:
+                    writeHistogram(out, name, labels, (LatencyHistogram) value);
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeTo(sb);
+        } catch (IOException e) {
+            throw new RuntimeException("StringBuilder failed: " + e.getMessage(), e);
+        }
+        return sb.toString();
+    }
+
+    private static void writeSample(Appendable out, String name, String labels, long value)
+            throws IOException
+    {
+        out.append(name).append(labels).append(' ').append(Long.toString(value)).append('\n');
+    }
+
+    private static void writeSample(Appendable out, String name, String labels, double value)
+            throws IOException
+    {
+        String s;
+        if (Double.isNaN(value)) {
+            s = "NaN";
+        } else if (Double.isInfinite(value)) {
+            s = (value > 0) ? "+Inf" : "-Inf";
+        } else {
+            s = Double.toString(value);
+        }
+        out.append(name).append(labels).append(' ').append(s).append('\n');
+    }
+
+    private static String withLabel(String labels, String name, String value)
+    {
+        String label = name + "=\"" + value + "\"";
+        return labels.isEmpty()
+                ? "{" + label + "}"
+                : labels.substring(0, labels.length() - 1) + "," + label + "}";
+    }
+
+    private static void writeHistogram(Appendable out, String name, String labels,
+                                       LatencyHistogram histogram)
+            throws IOException
+    {
+        long[] buckets = histogram.getBuckets();
+        int last = buckets.length - 1;
+        while (last > 0 && buckets[last] == 0) {
+            last--;
+        }
+        long cumulative = 0;
+        for (int i = 0; i <= last; i++) {
+            cumulative += buckets[i];
+            writeSample(out, name + "_bucket",
+                        withLabel(labels, "le", Long.toString(LatencyHistogram.getBucketUpperBound(i))),
+                        cumulative);
+        }
+        writeSample(out, name + "_bucket", withLabel(labels, "le", "+Inf"), cumulative);
+        writeSample(out, name + "_sum", labels, histogram.getSum());
+        writeSample(out, name + "_count", labels, cumulative);
+    }
+}
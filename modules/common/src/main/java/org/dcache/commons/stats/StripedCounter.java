@@ -0,0 +1,59 @@
+package org.dcache.commons.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter optimized for frequent updates from many threads and
+ * infrequent reads.
+ *
+ * Updates are spread over a number of cells selected by the id of the
+ * updating thread, with cells padded to separate cache lines. Threads
+ * thus rarely compete for the same cell. Reading the counter sums all
+ * cells and is not atomic with respect to concurrent updates.
+ */
+public class StripedCounter
+{
+    /**
+     * Number of longs per cache line; only every PADDING-th element
+     * of the array is used.
+     */
+    private static final int PADDING = 8;
+
+    private static final int STRIPES =
+            Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors(), 1) * 2);
+
+    private final AtomicLongArray _cells = new AtomicLongArray(STRIPES * PADDING);
+
+    private static int index()
+    {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32));
+        h ^= (h >>> 16);
+        return (h & (STRIPES - 1)) * PADDING;
+    }
+
+    public void increment()
+    {
+        _cells.incrementAndGet(index());
+    }
+
+    public void add(long delta)
+    {
+        _cells.addAndGet(index(), delta);
+    }
+
+    public long get()
+    {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += _cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.valueOf(get());
+    }
+}
@@ -0,0 +1,229 @@
+package org.dcache.util;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A hashed timer wheel for tracking large numbers of deadlines.
+ *
+ * Deadlines are placed in one of a fixed number of buckets, each
+ * covering one tick. Scheduling and cancellation take constant time;
+ * concurrent schedulers only share a read lock, which is held
+ * exclusively while {@link #expire} drains buckets. Expired elements are collected by periodic calls to
+ * {@link #expire}, which only visits the buckets of the ticks elapsed
+ * since the previous call; an element whose deadline lies more than one
+ * rotation in the future is visited once per rotation. Cancelled
+ * elements are dropped on the next visit of their bucket.
+ *
+ * Deadlines are expressed in milliseconds since the epoch and have a
+ * resolution of one tick. The wheel does not run a thread of its own.
+ */
+public class TimerWheel<T>
+{
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long _tick;
+    private final Queue<Timeout<T>>[] _buckets;
+    private final AtomicInteger _pending = new AtomicInteger();
+
+    /**
+     * Held shared while placing a deadline in a bucket and exclusively
+     * while expire drains buckets and advances _lastTick. Hence a new
+     * deadline is either placed before its bucket is drained or after
+     * _lastTick covers the drained tick.
+     */
+    private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+
+    /**
+     * The last tick processed by expire. Only ticks that have fully
+     * elapsed are processed. New deadlines are never placed in a bucket
+     * of a tick that was already processed. Guarded by _lock.
+     */
+    private long _lastTick;
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long tickDuration, TimeUnit unit, int ticksPerWheel)
+    {
+        checkArgument(tickDuration > 0, "Tick duration must be positive");
+        checkArgument(ticksPerWheel > 0, "Number of ticks must be positive");
+        _tick = Math.max(unit.toMillis(tickDuration), 1);
+        _buckets = new Queue[ticksPerWheel];
+        for (int i = 0; i < ticksPerWheel; i++) {
+            _buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        _lastTick = System.currentTimeMillis() / _tick - 1;
+    }
+
+    /**
+     * Schedules an element to expire at the given deadline.
+     *
+     * @param element the element to return from expire once the
+     *                deadline has passed
+     * @param deadline milliseconds since the epoch
+     * @return a handle through which the deadline can be cancelled
+     */
+    public Timeout<T> schedule(T element, long deadline)
+    {
+        Timeout<T> timeout = new Timeout<>(this, element, deadline);
+        _pending.incrementAndGet();
+        _lock.readLock().lock();
+        try {
+            long tick = Math.max(deadline / _tick, _lastTick + 1);
+            _buckets[(int) (tick % _buckets.length)].add(timeout);
+        } finally {
+            _lock.readLock().unlock();
+        }
+        return timeout;
+    }
+
+    /**
+     * Schedules several elements with the same deadline.
+     */
+    public List<Timeout<T>> scheduleAll(Iterable<? extends T> elements, long deadline)
+    {
+        List<Timeout<T>> timeouts = new ArrayList<>();
+        for (T element : elements) {
+            timeouts.add(schedule(element, deadline));
+        }
+        return timeouts;
+    }
+
+    /**
+     * Returns the elements whose deadline passed before the tick
+     * containing {@code now} and that were neither cancelled nor
+     * returned before. Each element is returned at most once.
+     */
+    public List<T> expire(long now)
+    {
+        _lock.writeLock().lock();
+        try {
+            return expireLocked(now);
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    private List<T> expireLocked(long now)
+    {
+        List<T> expired = new ArrayList<>();
+        long elapsedTick = now / _tick - 1;
+        long ticks = Math.min(elapsedTick - _lastTick, _buckets.length);
+        List<Timeout<T>> pending = new ArrayList<>();
+        for (long tick = elapsedTick - ticks + 1; tick <= elapsedTick; tick++) {
+            Queue<Timeout<T>> bucket = _buckets[(int) (tick % _buckets.length)];
+            Timeout<T> timeout;
+            while ((timeout = bucket.poll()) != null) {
+                if (timeout._state.get() != PENDING) {
+                    /* Cancelled; dropped regardless of its deadline.
+                     */
+                    continue;
+                }
+                if (timeout._deadline > now) {
+                    pending.add(timeout);
+                } else if (timeout._state.compareAndSet(PENDING, EXPIRED)) {
+                    _pending.decrementAndGet();
+                    expired.add(timeout._element);
+                }
+            }
+            /* Elements due in a later rotation stay in their bucket.
+             */
+            bucket.addAll(pending);
+            pending.clear();
+        }
+        if (elapsedTick > _lastTick) {
+            _lastTick = elapsedTick;
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the number of scheduled elements that have neither
+     * expired nor been cancelled.
+     */
+    public int size()
+    {
+        return _pending.get();
+    }
+
+    /**
+     * Returns the number of elements held in buckets, including
+     * cancelled elements that have not been dropped yet. Takes time
+     * linear in that number.
+     */
+    @VisibleForTesting
+    int entries()
+    {
+        int entries = 0;
+        for (Queue<Timeout<T>> bucket : _buckets) {
+            entries += bucket.size();
+        }
+        return entries;
+    }
+
+    /**
+     * Handle of a scheduled element.
+     */
+    public static class Timeout<T>
+    {
+        private final TimerWheel<T> _wheel;
+        private final T _element;
+        private final long _deadline;
+        private final AtomicInteger _state = new AtomicInteger(PENDING);
+
+        private Timeout(TimerWheel<T> wheel, T element, long deadline)
+        {
+            _wheel = wheel;
+            _element = element;
+            _deadline = deadline;
+        }
+
+        public T getElement()
+        {
+            return _element;
+        }
+
+        public long getDeadline()
+        {
+            return _deadline;
+        }
+
+        /**
+         * Cancels the deadline. The element is dropped from its bucket
+         * the next time expire visits the bucket, which is at most one
+         * rotation later, however far the deadline lies in the future.
+         *
+         * @return true if the deadline was cancelled, false if the
+         *         element already expired or was cancelled before
+         */
+        public boolean cancel()
+        {
+            if (_state.compareAndSet(PENDING, CANCELLED)) {
+                _wheel._pending.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isCancelled()
+        {
+            return _state.get() == CANCELLED;
+        }
+
+        public boolean isExpired()
+        {
+            return _state.get() == EXPIRED;
+        }
+    }
+}
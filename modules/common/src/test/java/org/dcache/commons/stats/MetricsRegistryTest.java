@@ -0,0 +1,95 @@
+package org.dcache.commons.stats;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class MetricsRegistryTest
+{
+    private MetricsRegistry _registry;
+
+    @Before
+    public void setUp()
+    {
+        _registry = new MetricsRegistry();
+    }
+
+    @Test
+    public void shouldReturnSameCounterForSameLabels()
+    {
+        StripedCounter counter = _registry.counter("requests_total", "Requests", "cell", "a");
+        assertThat(_registry.counter("requests_total", "Requests", "cell", "a"),
+                   is(sameInstance(counter)));
+        assertThat(_registry.counter("requests_total", "Requests", "cell", "b"),
+                   is(not(sameInstance(counter))));
+    }
+
+    @Test
+    public void shouldExportCounters()
+    {
+        StripedCounter counter = _registry.counter("requests_total", "Requests", "cell", "a");
+        counter.increment();
+        counter.add(2);
+        String text = _registry.toString();
+        assertThat(text, containsString("# HELP requests_total Requests\n"));
+        assertThat(text, containsString("# TYPE requests_total counter\n"));
+        assertThat(text, containsString("requests_total{cell=\"a\"} 3\n"));
+    }
+
+    @Test
+    public void shouldEscapeLabelValues()
+    {
+        _registry.counter("requests_total", "Requests", "path", "a\"b\\c").increment();
+        assertThat(_registry.toString(),
+                   containsString("requests_total{path=\"a\\\"b\\\\c\"} 1\n"));
+    }
+
+    @Test
+    public void shouldExportCumulativeHistogramBuckets()
+    {
+        LatencyHistogram histogram = _registry.histogram("latency_milliseconds", "Latency");
+        histogram.record(0);
+        histogram.record(2);
+        histogram.record(3);
+        String text = _registry.toString();
+        assertThat(text, containsString("latency_milliseconds_bucket{le=\"0\"} 1\n"));
+        assertThat(text, containsString("latency_milliseconds_bucket{le=\"1\"} 1\n"));
+        assertThat(text, containsString("latency_milliseconds_bucket{le=\"3\"} 3\n"));
+        assertThat(text, containsString("latency_milliseconds_bucket{le=\"+Inf\"} 3\n"));
+        assertThat(text, containsString("latency_milliseconds_sum 5\n"));
+        assertThat(text, containsString("latency_milliseconds_count 3\n"));
+    }
+
+    @Test
+    public void shouldExportGauges()
+    {
+        _registry.gauge("queue_size", "Queue", new Gauge() {
+            @Override
+            public double getValue()
+            {
+                return 7;
+            }
+        }, "queue", "regular");
+        assertThat(_registry.toString(), containsString("queue_size{queue=\"regular\"} 7.0\n"));
+    }
+
+    @Test
+    public void shouldNotExportRemovedMetrics()
+    {
+        _registry.counter("requests_total", "Requests", "cell", "a").increment();
+        _registry.remove("requests_total", "cell", "a");
+        assertThat(_registry.toString(), not(containsString("requests_total")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTypeMismatch()
+    {
+        _registry.counter("requests_total", "Requests");
+        _registry.histogram("requests_total", "Requests");
+    }
+}
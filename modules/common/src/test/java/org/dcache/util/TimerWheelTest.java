@@ -0,0 +1,137 @@
+package org.dcache.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TimerWheelTest
+{
+    private static final long TICK = 10;
+
+    private TimerWheel<String> _wheel;
+    private long _now;
+
+    @Before
+    public void setUp()
+    {
+        _wheel = new TimerWheel<>(TICK, TimeUnit.MILLISECONDS, 8);
+        _now = System.currentTimeMillis();
+    }
+
+    @Test
+    public void shouldNotExpireBeforeDeadline()
+    {
+        _wheel.schedule("a", _now + 5 * TICK);
+        assertThat(_wheel.expire(_now + 2 * TICK), is(empty()));
+        assertThat(_wheel.size(), is(1));
+    }
+
+    @Test
+    public void shouldExpireAfterDeadline()
+    {
+        _wheel.schedule("a", _now + 2 * TICK);
+        assertThat(_wheel.expire(_now + 4 * TICK), contains("a"));
+        assertThat(_wheel.size(), is(0));
+        assertThat(_wheel.expire(_now + 5 * TICK), is(empty()));
+    }
+
+    @Test
+    public void shouldExpireDeadlinesInThePast()
+    {
+        _wheel.schedule("a", _now - 100 * TICK);
+        assertThat(_wheel.expire(_now + 2 * TICK), contains("a"));
+    }
+
+    @Test
+    public void shouldKeepDeadlinesBeyondOneRotation()
+    {
+        _wheel.schedule("a", _now + 20 * TICK);
+        assertThat(_wheel.expire(_now + 10 * TICK), is(empty()));
+        assertThat(_wheel.expire(_now + 22 * TICK), contains("a"));
+    }
+
+    @Test
+    public void shouldNotExpireCancelledDeadlines()
+    {
+        TimerWheel.Timeout<String> timeout = _wheel.schedule("a", _now + 2 * TICK);
+        assertThat(timeout.cancel(), is(true));
+        assertThat(_wheel.size(), is(0));
+        assertThat(_wheel.expire(_now + 4 * TICK), is(empty()));
+        assertThat(timeout.cancel(), is(false));
+    }
+
+    @Test
+    public void shouldReclaimCancelledDeadlinesOnNextRotation()
+    {
+        List<TimerWheel.Timeout<String>> timeouts = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            timeouts.add(_wheel.schedule("a" + i, _now + 1000 * TICK + i));
+        }
+        for (TimerWheel.Timeout<String> timeout : timeouts) {
+            timeout.cancel();
+        }
+        assertThat(_wheel.size(), is(0));
+        assertThat(_wheel.entries(), is(1000));
+
+        assertThat(_wheel.expire(_now + 10 * TICK), is(empty()));
+        assertThat(_wheel.entries(), is(0));
+    }
+
+    @Test
+    public void shouldKeepPendingDeadlinesWhenReclaimingCancelledOnes()
+    {
+        _wheel.schedule("a", _now + 1000 * TICK);
+        _wheel.schedule("b", _now + 1000 * TICK).cancel();
+
+        assertThat(_wheel.expire(_now + 10 * TICK), is(empty()));
+        assertThat(_wheel.entries(), is(1));
+        assertThat(_wheel.expire(_now + 1002 * TICK), contains("a"));
+    }
+
+    @Test
+    public void shouldNotLoseDeadlinesScheduledDuringExpire() throws Exception
+    {
+        final TimerWheel<Integer> wheel =
+            new TimerWheel<>(TICK, TimeUnit.MILLISECONDS, 1024);
+        final AtomicLong clock = new AtomicLong(_now);
+        final int count = 100000;
+
+        /* Schedules deadlines that are due at the current time of a
+         * clock advanced by concurrent calls to expire.
+         */
+        Thread scheduler = new Thread() {
+            @Override
+            public void run()
+            {
+                for (int i = 0; i < count; i++) {
+                    wheel.schedule(i, clock.get());
+                }
+            }
+        };
+
+        Set<Integer> expired = new HashSet<>();
+        scheduler.start();
+        while (scheduler.isAlive()) {
+            expired.addAll(wheel.expire(clock.addAndGet(TICK)));
+        }
+        scheduler.join();
+
+        /* Every deadline has passed and lies at most one tick beyond
+         * the last processed tick.
+         */
+        expired.addAll(wheel.expire(clock.get() + 2 * TICK));
+        assertThat(expired.size(), is(count));
+        assertThat(wheel.size(), is(0));
+    }
+}
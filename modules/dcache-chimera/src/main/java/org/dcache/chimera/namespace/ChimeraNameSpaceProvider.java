@@ -18,7 +18,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -26,6 +25,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import diskCacheV111.namespace.NameSpaceProvider;
+import diskCacheV111.util.AccessLatency;
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FileExistsCacheException;
 import diskCacheV111.util.FileNotFoundCacheException;
@@ -33,6 +33,7 @@ import diskCacheV111.util.FsPath;
 import diskCacheV111.util.NotDirCacheException;
 import diskCacheV111.util.PermissionDeniedCacheException;
 import diskCacheV111.util.PnfsId;
+import diskCacheV111.util.RetentionPolicy;
 import diskCacheV111.vehicles.StorageInfo;
 
 import org.dcache.acl.ACE;
@@ -41,11 +42,11 @@ import org.dcache.acl.enums.RsType;
 import org.dcache.auth.Subjects;
 import org.dcache.chimera.ChimeraFsException;
 import org.dcache.chimera.DirNotEmptyHimeraFsException;
-import org.dcache.chimera.DirectoryStreamB;
 import org.dcache.chimera.FileExistsChimeraFsException;
 import org.dcache.chimera.FileNotFoundHimeraFsException;
 import org.dcache.chimera.FsInode;
 import org.dcache.chimera.HimeraDirectoryEntry;
+import org.dcache.chimera.InodeAttributes;
 import org.dcache.chimera.JdbcFs;
 import org.dcache.chimera.NotDirChimeraException;
 import org.dcache.chimera.StorageGenericLocation;
@@ -54,6 +55,7 @@ import org.dcache.chimera.UnixPermission;
 import org.dcache.chimera.posix.Stat;
 import org.dcache.namespace.FileAttribute;
 import org.dcache.namespace.FileType;
+import org.dcache.namespace.ListCursor;
 import org.dcache.namespace.ListHandler;
 import org.dcache.namespace.PermissionHandler;
 import org.dcache.util.Checksum;
@@ -67,6 +69,12 @@ public class ChimeraNameSpaceProvider
     implements NameSpaceProvider
 {
     private final static int SYMLINK_MODE = 0777;
+
+    /**
+     * Number of directory entries fetched from the database at a time
+     * when streaming a directory listing.
+     */
+    private final static int LIST_CHUNK_SIZE = 1000;
     private JdbcFs       _fs;
     private ChimeraStorageInfoExtractable _extractor;
 
@@ -677,73 +685,75 @@ public class ChimeraNameSpaceProvider
                                              Set<FileAttribute> attr)
         throws IOException, ChimeraFsException, CacheException
     {
-        if (!inode.exists()) {
-            throw new FileNotFoundHimeraFsException();
+        /* Stat, access latency and retention policy are fetched with
+         * a single statement; checksums, locations and ACLs are only
+         * fetched if requested, but on the same connection.
+         */
+        Set<InodeAttributes.Attribute> optional =
+            EnumSet.noneOf(InodeAttributes.Attribute.class);
+        if (attr.contains(FileAttribute.CHECKSUM)) {
+            optional.add(InodeAttributes.Attribute.CHECKSUMS);
+        }
+        if (attr.contains(FileAttribute.LOCATIONS)) {
+            optional.add(InodeAttributes.Attribute.LOCATIONS);
         }
+        if (attr.contains(FileAttribute.ACL) && _aclEnabled) {
+            optional.add(InodeAttributes.Attribute.ACL);
+        }
+        InodeAttributes inodeAttributes = _fs.getInodeAttributes(inode, optional);
+        Stat stat = inodeAttributes.getStat();
 
         FileAttributes attributes = new FileAttributes();
-        Stat stat;
 
         for (FileAttribute attribute: attr) {
             switch (attribute) {
             case ACL:
                 if(_aclEnabled) {
                     RsType rsType = inode.isDirectory() ? RsType.DIR : RsType.FILE;
-                    List<ACE> acl = _fs.getACL(inode);
-                    attributes.setAcl( new ACL(rsType, acl));
+                    attributes.setAcl(new ACL(rsType, inodeAttributes.getAcl()));
                 } else {
                     attributes.setAcl(null);
                 }
                 break;
             case ACCESS_LATENCY:
-                attributes.setAccessLatency(_extractor.getAccessLatency(inode));
+                AccessLatency accessLatency = inodeAttributes.getAccessLatency();
+                attributes.setAccessLatency((accessLatency != null && !inode.isDirectory())
+                                            ? accessLatency
+                                            : _extractor.getAccessLatency(inode));
                 break;
             case ACCESS_TIME:
-                stat = inode.statCache();
                 attributes.setAccessTime(stat.getATime());
                 break;
             case RETENTION_POLICY:
-                attributes.setRetentionPolicy(_extractor.getRetentionPolicy(inode));
+                RetentionPolicy retentionPolicy = inodeAttributes.getRetentionPolicy();
+                attributes.setRetentionPolicy((retentionPolicy != null && !inode.isDirectory())
+                                              ? retentionPolicy
+                                              : _extractor.getRetentionPolicy(inode));
                 break;
             case SIZE:
-                stat = inode.statCache();
                 attributes.setSize(stat.getSize());
                 break;
             case CHANGE_TIME:
-                stat = inode.statCache();
                 attributes.setChangeTime(stat.getCTime());
                 break;
             case CREATION_TIME:
-                stat = inode.statCache();
                 attributes.setCreationTime(stat.getCrTime());
                 break;
             case MODIFICATION_TIME:
-                stat = inode.statCache();
                 attributes.setModificationTime(stat.getMTime());
                 break;
             case OWNER:
-                stat = inode.statCache();
                 attributes.setOwner(stat.getUid());
                 break;
             case OWNER_GROUP:
-                stat = inode.statCache();
                 attributes.setGroup(stat.getGid());
                 break;
             case CHECKSUM:
-                Set<Checksum> checksums = new HashSet<>();
-                for (ChecksumType type: ChecksumType.values()) {
-                    String value = _fs.getInodeChecksum(inode, type.getType());
-                    if (value != null) {
-                        checksums.add(new Checksum(type,value));
-                    }
-                }
-                attributes.setChecksums(checksums);
+                attributes.setChecksums(inodeAttributes.getChecksums());
                 break;
             case LOCATIONS:
                 List<String> locations = new ArrayList<>();
-                List<StorageLocatable> localyManagerLocations =
-                    _fs.getInodeLocations(inode, StorageGenericLocation.DISK);
-                for (StorageLocatable location: localyManagerLocations) {
+                for (StorageLocatable location: inodeAttributes.getLocations()) {
                     locations.add(location.location());
                 }
                 attributes.setLocations(locations);
@@ -759,7 +769,6 @@ public class ChimeraNameSpaceProvider
                 break;
             case SIMPLE_TYPE:
             case TYPE:
-                stat = inode.statCache();
                 UnixPermission perm = new UnixPermission(stat.getMode());
                 if (perm.isReg()) {
                     attributes.setFileType(FileType.REGULAR);
@@ -772,7 +781,6 @@ public class ChimeraNameSpaceProvider
                 }
                 break;
             case MODE:
-                stat = inode.statCache();
                 attributes.setMode(stat.getMode());
                 break;
             case PNFSID:
@@ -980,9 +988,32 @@ public class ChimeraNameSpaceProvider
     public void list(Subject subject, String path, Glob glob, Range<Integer> range,
                      Set<FileAttribute> attrs, ListHandler handler)
         throws CacheException
+    {
+        Pattern pattern = (glob == null) ? null : glob.toPattern();
+        FsInode dir = getDirectoryToList(subject, path);
+        ListCursor cursor = ListCursor.START;
+        do {
+            cursor = listChunk(subject, path, dir, pattern, range, attrs,
+                               cursor, LIST_CHUNK_SIZE, handler);
+        } while (cursor != null);
+    }
+
+    @Override
+    public ListCursor list(Subject subject, String path, Glob glob, Range<Integer> range,
+                           Set<FileAttribute> attrs, ListCursor cursor, int limit,
+                           ListHandler handler)
+        throws CacheException
+    {
+        Pattern pattern = (glob == null) ? null : glob.toPattern();
+        FsInode dir = getDirectoryToList(subject, path);
+        return listChunk(subject, path, dir, pattern, range, attrs,
+                         cursor, limit, handler);
+    }
+
+    private FsInode getDirectoryToList(Subject subject, String path)
+        throws CacheException
     {
         try {
-            Pattern pattern = (glob == null) ? null : glob.toPattern();
             FsInode dir = pathToInode(subject, path);
             if (!dir.isDirectory()) {
                 throw new NotDirCacheException("Not a directory: " + path);
@@ -998,34 +1029,62 @@ public class ChimeraNameSpaceProvider
                                                              path);
                 }
             }
+            return dir;
+        } catch (FileNotFoundHimeraFsException e) {
+            throw new FileNotFoundCacheException("No such file or directory: " + path);
+        } catch (IOException e) {
+            _log.error("Exception in list: {}", e);
+            throw new CacheException(CacheException.UNEXPECTED_SYSTEM_EXCEPTION, e.getMessage());
+        }
+    }
 
-            int counter = 0;
-            try (DirectoryStreamB<HimeraDirectoryEntry> dirStream = dir
-                    .newDirectoryStream()) {
-                for (HimeraDirectoryEntry entry : dirStream) {
-                    try {
-                        String name = entry.getName();
-                        if (!name.equals(".") && !name.equals("..") &&
-                                (pattern == null || pattern.matcher(name)
-                                        .matches()) &&
-                                range.contains(counter++)) {
-                            // FIXME: actually, HimeraDirectoryEntry
-                            // already contains most of attributes
-                            FileAttributes fa =
-                                    attrs.isEmpty()
-                                            ? null
-                                            : getFileAttributes(subject, entry
-                                            .getInode(), attrs);
-                            handler.addEntry(name, fa);
-                        }
-                    } catch (FileNotFoundHimeraFsException e) {
-                        /* Not an error; files may be deleted during the
-                         * list operation.
-                         */
+    /**
+     * Lists up to <code>limit</code> entries of a directory following
+     * the cursor. Each chunk is fetched with a separate query, so no
+     * database connection is held between chunks.
+     *
+     * @return cursor of the next chunk or null if the listing is complete
+     */
+    private ListCursor listChunk(Subject subject, String path, FsInode dir,
+                                 Pattern pattern, Range<Integer> range,
+                                 Set<FileAttribute> attrs, ListCursor cursor,
+                                 int limit, ListHandler handler)
+        throws CacheException
+    {
+        try {
+            List<HimeraDirectoryEntry> entries =
+                _fs.listDir(dir, cursor.getLastName(), limit);
+
+            int counter = cursor.getCounter();
+            String name = null;
+            for (HimeraDirectoryEntry entry : entries) {
+                name = entry.getName();
+                try {
+                    if (!name.equals(".") && !name.equals("..") &&
+                            (pattern == null || pattern.matcher(name)
+                                    .matches()) &&
+                            range.contains(counter++)) {
+                        // FIXME: actually, HimeraDirectoryEntry
+                        // already contains most of attributes
+                        FileAttributes fa =
+                                attrs.isEmpty()
+                                        ? null
+                                        : getFileAttributes(subject, entry
+                                        .getInode(), attrs);
+                        handler.addEntry(name, fa);
                     }
+                } catch (FileNotFoundHimeraFsException e) {
+                    /* Not an error; files may be deleted during the
+                     * list operation.
+                     */
                 }
             }
 
+            if (entries.size() < limit ||
+                    (range.hasUpperBound() && counter > range.upperEndpoint())) {
+                return null;
+            }
+            return new ListCursor(name, counter);
         } catch (FileNotFoundHimeraFsException e) {
             throw new FileNotFoundCacheException("No such file or directory: " + path);
         } catch (IOException e) {
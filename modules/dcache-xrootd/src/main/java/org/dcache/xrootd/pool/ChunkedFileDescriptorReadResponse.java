@@ -3,31 +3,34 @@ package org.dcache.xrootd.pool;
 import org.dcache.xrootd.protocol.messages.ReadRequest;
 import org.dcache.xrootd.stream.AbstractChunkedReadResponse;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferFactory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
-import static org.jboss.netty.buffer.ChannelBuffers.wrappedBuffer;
-
 public class ChunkedFileDescriptorReadResponse extends AbstractChunkedReadResponse
 {
     private final FileDescriptor descriptor;
+    private final ChannelBufferFactory bufferFactory;
 
     public ChunkedFileDescriptorReadResponse(ReadRequest request,
                                              int maxFrameSize,
-                                             FileDescriptor descriptor)
+                                             FileDescriptor descriptor,
+                                             ChannelBufferFactory bufferFactory)
     {
         super(request, maxFrameSize);
         this.descriptor = descriptor;
+        this.bufferFactory = bufferFactory;
     }
 
     @Override
     public ChannelBuffer read(long position, int length)
             throws IOException
     {
-        ByteBuffer chunk = ByteBuffer.allocate(length);
+        ChannelBuffer buffer = bufferFactory.getBuffer(length);
+        ByteBuffer chunk = buffer.toByteBuffer(0, length);
         descriptor.read(chunk, position);
-        chunk.flip();
-        return wrappedBuffer(chunk);
+        buffer.setIndex(0, length - chunk.remaining());
+        return buffer;
     }
 }
@@ -1,50 +1,140 @@
 package org.dcache.xrootd.pool;
 
 import org.dcache.xrootd.core.XrootdException;
+import org.dcache.xrootd.protocol.messages.GenericReadRequestMessage.EmbeddedReadRequest;
 import org.dcache.xrootd.protocol.messages.ReadVRequest;
 import org.dcache.xrootd.stream.AbstractChunkedReadvResponse;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferFactory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
 
 import static org.dcache.xrootd.protocol.XrootdProtocol.kXR_FileNotOpen;
-import static org.jboss.netty.buffer.ChannelBuffers.wrappedBuffer;
 
+/**
+ * Vector read response over a list of file descriptors.
+ *
+ * Vector reads typically consist of many small segments. Segments of
+ * the same file that directly follow each other in the file are read
+ * with a single positioned read into one buffer, of which each segment
+ * is a slice; no data is copied. The frames of the response are thus
+ * composed of slices of a few direct buffers rather than of one heap
+ * array per segment.
+ */
 public class ChunkedFileDescriptorReadvResponse extends AbstractChunkedReadvResponse
 {
     private final List<FileDescriptor> descriptors;
+    private final EmbeddedReadRequest[] segments;
+    private final int maxFrameSize;
+    private final ChannelBufferFactory bufferFactory;
+
+    /**
+     * Index of the segment following the last coalesced read.
+     */
+    private int next;
+
+    /**
+     * Data of the last coalesced read, covering the file range
+     * starting at bufferPosition in file bufferFd.
+     */
+    private ChannelBuffer buffer;
+    private int bufferFd;
+    private long bufferPosition;
 
     public ChunkedFileDescriptorReadvResponse(ReadVRequest request,
                                               int maxFrameSize,
-                                              List<FileDescriptor> descriptors)
+                                              List<FileDescriptor> descriptors,
+                                              ChannelBufferFactory bufferFactory)
     {
         super(request, maxFrameSize);
         this.descriptors = descriptors;
+        this.segments = request.getReadRequestList();
+        this.maxFrameSize = maxFrameSize;
+        this.bufferFactory = bufferFactory;
     }
 
-    @Override
-    protected long getSize(int fd) throws IOException, XrootdException
+    private FileDescriptor getDescriptor(int fd) throws XrootdException
     {
         if (fd < 0 || fd >= descriptors.size() || descriptors.get(fd) == null) {
             throw new XrootdException(kXR_FileNotOpen, "Invalid file descriptor");
         }
-        return descriptors.get(fd).getChannel().size();
+        return descriptors.get(fd);
+    }
+
+    @Override
+    protected long getSize(int fd) throws IOException, XrootdException
+    {
+        return getDescriptor(fd).getChannel().size();
     }
 
     @Override
     protected ChannelBuffer read(int fd, long position, int length)
             throws IOException, XrootdException
     {
-        if (fd < 0 || fd >= descriptors.size() || descriptors.get(fd) == null) {
-            throw new XrootdException(kXR_FileNotOpen, "Invalid file descriptor");
+        FileDescriptor descriptor = getDescriptor(fd);
+
+        if (!isBuffered(fd, position, length)) {
+            readCoalesced(descriptor, fd, position, length);
         }
 
-        FileDescriptor descriptor = descriptors.get(fd);
-        byte[] chunkArray = new byte[length];
-        ByteBuffer chunk = ByteBuffer.wrap(chunkArray);
+        int index = (int) (position - bufferPosition);
+        return buffer.slice(index, Math.min(length, buffer.writerIndex() - index));
+    }
+
+    private boolean isBuffered(int fd, long position, int length)
+    {
+        return buffer != null && fd == bufferFd &&
+            position >= bufferPosition &&
+            position + length <= bufferPosition + buffer.writerIndex();
+    }
+
+    /**
+     * Reads the requested segment together with the segments directly
+     * following it in the same file, up to the maximum frame size.
+     */
+    private void readCoalesced(FileDescriptor descriptor, int fd,
+                               long position, int length)
+        throws IOException
+    {
+        long end = position + length;
+        int i = indexOf(fd, position);
+        if (i >= 0) {
+            for (i++; i < segments.length; i++) {
+                EmbeddedReadRequest segment = segments[i];
+                if (segment.getFileHandle() != fd || segment.getOffset() != end ||
+                    end + segment.BytesToRead() - position > maxFrameSize) {
+                    break;
+                }
+                end += segment.BytesToRead();
+            }
+            next = i;
+        }
+
+        int size = (int) (end - position);
+        ChannelBuffer data = bufferFactory.getBuffer(size);
+        ByteBuffer chunk = data.toByteBuffer(0, size);
         descriptor.read(chunk, position);
-        return wrappedBuffer(chunkArray, 0, chunkArray.length - chunk.remaining());
+        data.setIndex(0, size - chunk.remaining());
+
+        buffer = data;
+        bufferFd = fd;
+        bufferPosition = position;
+    }
+
+    /**
+     * Returns the index of the segment starting at position in file
+     * fd, or -1 if no such segment exists. Segments are requested in
+     * order, so the search starts after the last coalesced read.
+     */
+    private int indexOf(int fd, long position)
+    {
+        for (int i = next; i < segments.length; i++) {
+            if (segments[i].getFileHandle() == fd && segments[i].getOffset() == position) {
+                return i;
+            }
+        }
+        return -1;
     }
 }
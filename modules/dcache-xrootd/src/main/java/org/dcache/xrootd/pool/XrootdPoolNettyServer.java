@@ -1,5 +1,7 @@
 package org.dcache.xrootd.pool;
 
+import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.handler.execution.ExecutionHandler;
@@ -38,6 +40,14 @@ public class XrootdPoolNettyServer
 
     private static final PortRange DEFAULT_PORTRANGE = new PortRange(20000, 25000);
 
+    /**
+     * Number of frames that fit into each block of direct memory from
+     * which read buffers are sliced.
+     */
+    private static final int DIRECT_BUFFER_FRAMES = 4;
+
+    private static final int MIN_DIRECT_BUFFER_SIZE = 1 << 20;
+
     /**
      * Used to generate channel-idle events for the pool handler
      */
@@ -45,6 +55,14 @@ public class XrootdPoolNettyServer
 
     private final long _clientIdleTimeout;
     private final int _maxFrameSize;
+    private final boolean _isZeroCopyEnabled;
+
+    /**
+     * Read buffers are sliced from preallocated direct memory. Netty
+     * would otherwise copy each heap buffer into a direct buffer before
+     * writing it to the socket.
+     */
+    private final ChannelBufferFactory _bufferFactory;
 
     private int _numberClientConnections;
     private List<ChannelHandlerFactory> _plugins;
@@ -71,9 +89,35 @@ public class XrootdPoolNettyServer
                                  int maxFrameSize,
                                  List<ChannelHandlerFactory> plugins,
                                  int socketThreads) {
+        this(threadPoolSize,
+             memoryPerConnection,
+             maxMemory,
+             clientIdleTimeout,
+             maxFrameSize,
+             plugins,
+             socketThreads,
+             false);
+    }
+
+    /**
+     * @param isZeroCopyEnabled whether large reads are sent as file
+     * regions. File regions bypass the pipeline, so plugins must not
+     * transform the data sent to the client.
+     */
+    public XrootdPoolNettyServer(int threadPoolSize,
+                                 int memoryPerConnection,
+                                 int maxMemory,
+                                 long clientIdleTimeout,
+                                 int maxFrameSize,
+                                 List<ChannelHandlerFactory> plugins,
+                                 int socketThreads,
+                                 boolean isZeroCopyEnabled) {
         super("xrootd", threadPoolSize, memoryPerConnection, maxMemory, socketThreads);
         _clientIdleTimeout = clientIdleTimeout;
         _maxFrameSize = maxFrameSize;
+        _isZeroCopyEnabled = isZeroCopyEnabled;
+        _bufferFactory = new DirectChannelBufferFactory(
+                Math.max(DIRECT_BUFFER_FRAMES * maxFrameSize, MIN_DIRECT_BUFFER_SIZE));
         _plugins = plugins;
         _timer = new HashedWheelTimer();
 
@@ -88,6 +132,16 @@ public class XrootdPoolNettyServer
         return _maxFrameSize;
     }
 
+    public boolean isZeroCopyEnabled()
+    {
+        return _isZeroCopyEnabled;
+    }
+
+    public ChannelBufferFactory getBufferFactory()
+    {
+        return _bufferFactory;
+    }
+
     public void shutdown()
     {
         stopServer();
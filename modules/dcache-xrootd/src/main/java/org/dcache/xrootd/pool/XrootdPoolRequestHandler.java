@@ -1,5 +1,9 @@
 package org.dcache.xrootd.pool;
 
+import com.google.common.annotations.VisibleForTesting;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.ExceptionEvent;
@@ -19,6 +23,7 @@ import java.util.UUID;
 
 import org.dcache.pool.movers.IoMode;
 import org.dcache.pool.movers.MoverChannel;
+import org.dcache.pool.movers.RepositoryFileRegion;
 import org.dcache.pool.repository.RepositoryChannel;
 import org.dcache.vehicles.XrootdProtocolInfo;
 import org.dcache.xrootd.core.XrootdException;
@@ -73,6 +78,19 @@ public class XrootdPoolRequestHandler extends XrootdRequestHandler
     private static final int DEFAULT_FILESTATUS_FLAGS = 0;
     private static final int DEFAULT_FILESTATUS_MODTIME = 0;
 
+    /**
+     * Size of the header of a server response: stream id, status and
+     * data length.
+     */
+    private static final int SERVER_RESPONSE_HEADER_SIZE = 8;
+
+    /**
+     * Minimum size of a read to be sent as file regions if zero-copy is
+     * enabled. For smaller reads a buffer copy is cheaper than the
+     * additional writes.
+     */
+    private static final int ZERO_COPY_MIN_SIZE = 64 << 10;
+
     /**
      * Store file descriptors of open files.
      */
@@ -366,8 +384,59 @@ public class XrootdPoolRequestHandler extends XrootdRequestHandler
 
         if (msg.bytesToRead() == 0) {
             return withOk(msg);
+        } else if (_server.isZeroCopyEnabled() &&
+                   msg.bytesToRead() >= ZERO_COPY_MIN_SIZE) {
+            return readAsFileRegions(ctx, msg, _descriptors.get(fd));
         } else {
-            return new ChunkedFileDescriptorReadResponse(msg, _server.getMaxFrameSize(), _descriptors.get(fd));
+            return new ChunkedFileDescriptorReadResponse(msg,
+                                                         _server.getMaxFrameSize(),
+                                                         _descriptors.get(fd),
+                                                         _server.getBufferFactory());
+        }
+    }
+
+    /**
+     * Sends the data of a read request as file regions, i.e. without
+     * reading it into user space. Like a chunked read response, the
+     * data is split into frames of at most the maximum frame size,
+     * each preceded by a response header. All but the last frame are
+     * written directly; the last file region is returned to be written
+     * by the caller.
+     */
+    @VisibleForTesting
+    Object readAsFileRegions(ChannelHandlerContext ctx,
+                             ReadRequest msg,
+                             FileDescriptor descriptor)
+        throws XrootdException
+    {
+        try {
+            MoverChannel<XrootdProtocolInfo> channel = descriptor.getChannel();
+            long position = msg.getReadOffset();
+            long end = Math.min(position + msg.bytesToRead(), channel.size());
+            if (position >= end) {
+                return withOk(msg);
+            }
+
+            Channel out = ctx.getChannel();
+            while (true) {
+                int length = (int) Math.min(end - position, _server.getMaxFrameSize());
+                boolean isLast = (position + length == end);
+                ChannelBuffer header = ChannelBuffers.buffer(SERVER_RESPONSE_HEADER_SIZE);
+                header.writeShort(msg.getStreamId());
+                header.writeShort(isLast ? kXR_ok : kXR_oksofar);
+                header.writeInt(length);
+                out.write(header);
+
+                RepositoryFileRegion region =
+                    new RepositoryFileRegion(channel, position, length);
+                if (isLast) {
+                    return region;
+                }
+                out.write(region);
+                position += length;
+            }
+        } catch (IOException e) {
+            throw new XrootdException(kXR_IOError, e.getMessage());
         }
     }
 
@@ -413,7 +482,10 @@ public class XrootdPoolRequestHandler extends XrootdRequestHandler
             }
         }
 
-        return new ChunkedFileDescriptorReadvResponse(msg, _server.getMaxFrameSize(), new ArrayList<>(_descriptors));
+        return new ChunkedFileDescriptorReadvResponse(msg,
+                                                      _server.getMaxFrameSize(),
+                                                      new ArrayList<>(_descriptors),
+                                                      _server.getBufferFactory());
     }
 
     /**
@@ -110,6 +110,7 @@ public class XrootdTransferService
     private int maxFrameSize;
     private Integer socketThreads;
     private List<ChannelHandlerFactory> plugins;
+    private boolean isZeroCopyEnabled;
 
     private XrootdPoolNettyServer server;
 
@@ -208,27 +209,28 @@ public class XrootdTransferService
         return plugins;
     }
 
+    public void setZeroCopyEnabled(boolean isZeroCopyEnabled)
+    {
+        this.isZeroCopyEnabled = isZeroCopyEnabled;
+    }
+
+    public boolean isZeroCopyEnabled()
+    {
+        return isZeroCopyEnabled;
+    }
+
     @PostConstruct
     public synchronized void init()
     {
-        if (socketThreads == null) {
-            server = new XrootdPoolNettyServer(
-                    diskThreads,
-                    maxMemoryPerConnection,
-                    maxMemory,
-                    clientIdleTimeoutUnit.toMillis(clientIdleTimeout),
-                    maxFrameSize,
-                    plugins);
-        } else {
-            server = new XrootdPoolNettyServer(
-                    diskThreads,
-                    maxMemoryPerConnection,
-                    maxMemory,
-                    clientIdleTimeoutUnit.toMillis(clientIdleTimeout),
-                    maxFrameSize,
-                    plugins,
-                    socketThreads);
-        }
+        server = new XrootdPoolNettyServer(
+                diskThreads,
+                maxMemoryPerConnection,
+                maxMemory,
+                clientIdleTimeoutUnit.toMillis(clientIdleTimeout),
+                maxFrameSize,
+                plugins,
+                (socketThreads == null) ? -1 : socketThreads,
+                isZeroCopyEnabled);
     }
 
     @PreDestroy
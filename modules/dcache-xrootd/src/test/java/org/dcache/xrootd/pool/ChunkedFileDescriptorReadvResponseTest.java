@@ -0,0 +1,286 @@
+package org.dcache.xrootd.pool;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
+import org.jboss.netty.handler.stream.ChunkedInput;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.dcache.pool.movers.MoverChannel;
+import org.dcache.vehicles.XrootdProtocolInfo;
+import org.dcache.xrootd.core.XrootdException;
+import org.dcache.xrootd.protocol.messages.AbstractResponseMessage;
+import org.dcache.xrootd.protocol.messages.ReadVRequest;
+import org.dcache.xrootd.stream.AbstractChunkedReadvResponse;
+
+import static org.dcache.xrootd.protocol.XrootdProtocol.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class ChunkedFileDescriptorReadvResponseTest
+{
+    private static final int STREAM_ID = 4711;
+    private static final int MAX_FRAME_SIZE = 1024;
+    private static final int READ_LIST_HEADER_SIZE = 16;
+
+    private List<FileDescriptor> _descriptors;
+    private byte[][] _data;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        _data = new byte[][] { data(4000, 0), data(3000, 7) };
+        _descriptors = new ArrayList<>();
+        for (byte[] data : _data) {
+            _descriptors.add(descriptor(data));
+        }
+    }
+
+    @Test
+    public void shouldMatchReferenceForAdjacentSegments() throws Exception
+    {
+        ReadVRequest request = request(segment(0, 0, 100),
+                                       segment(0, 100, 100),
+                                       segment(0, 200, 50),
+                                       segment(0, 250, 300));
+
+        assertMatchesReference(request);
+    }
+
+    @Test
+    public void shouldMatchReferenceForOverlappingSegments() throws Exception
+    {
+        ReadVRequest request = request(segment(0, 0, 200),
+                                       segment(0, 100, 200),
+                                       segment(0, 50, 20),
+                                       segment(0, 150, 300),
+                                       segment(0, 150, 300));
+
+        assertMatchesReference(request);
+    }
+
+    @Test
+    public void shouldMatchReferenceForInterleavedFiles() throws Exception
+    {
+        ReadVRequest request = request(segment(0, 0, 100),
+                                       segment(1, 100, 100),
+                                       segment(0, 100, 100),
+                                       segment(1, 200, 100),
+                                       segment(1, 0, 100));
+
+        assertMatchesReference(request);
+    }
+
+    @Test
+    public void shouldMatchReferenceForSegmentsBeyondEndOfFile() throws Exception
+    {
+        ReadVRequest request = request(segment(1, 2850, 100),
+                                       segment(1, 2950, 100),
+                                       segment(0, 3950, 100));
+
+        assertMatchesReference(request);
+    }
+
+    @Test
+    public void shouldMatchReferenceWhenSplitAtMaximumFrameSize() throws Exception
+    {
+        List<int[]> segments = new ArrayList<>();
+        for (int offset = 0; offset < 3000; offset += 200) {
+            segments.add(segment(0, offset, 200));
+        }
+        ReadVRequest request = request(segments.toArray(new int[segments.size()][]));
+
+        List<byte[]> frames = assertMatchesReference(request);
+
+        assertThat(frames.size(), is(greaterThan(1)));
+    }
+
+    @Test
+    public void shouldMatchReferenceForSegmentsFillingWholeFrames() throws Exception
+    {
+        int length = MAX_FRAME_SIZE - READ_LIST_HEADER_SIZE;
+        ReadVRequest request = request(segment(0, 0, length),
+                                       segment(0, length, length),
+                                       segment(0, 2 * length, length));
+
+        List<byte[]> frames = assertMatchesReference(request);
+
+        assertThat(frames.size(), is(3));
+    }
+
+    @Test
+    public void shouldFrameSegmentsWithHeadersAtCorrectOffsets() throws Exception
+    {
+        List<int[]> segments = new ArrayList<>();
+        for (int offset = 0; offset < 3000; offset += 150) {
+            segments.add(segment((offset / 150) % 2, offset, 150));
+        }
+        int[][] list = segments.toArray(new int[segments.size()][]);
+
+        List<byte[]> frames = frames(response(request(list)));
+
+        int next = 0;
+        for (int i = 0; i < frames.size(); i++) {
+            ChannelBuffer frame = ChannelBuffers.wrappedBuffer(frames.get(i));
+            assertThat(frame.readUnsignedShort(), is(STREAM_ID));
+            assertThat(frame.readUnsignedShort(),
+                       is((i == frames.size() - 1) ? kXR_ok : kXR_oksofar));
+            int dlen = frame.readInt();
+            assertThat(dlen, is(frame.readableBytes()));
+            assertThat(dlen, is(lessThanOrEqualTo(MAX_FRAME_SIZE)));
+            while (frame.readable()) {
+                int[] segment = list[next++];
+                assertThat(frame.readInt(), is(segment[0]));
+                int rlen = frame.readInt();
+                assertThat(rlen, is(segment[2]));
+                long offset = frame.readLong();
+                assertThat(offset, is((long) segment[1]));
+                byte[] data = new byte[rlen];
+                frame.readBytes(data);
+                assertThat(data, is(Arrays.copyOfRange(_data[segment[0]],
+                                                       (int) offset, (int) offset + rlen)));
+            }
+        }
+        assertThat(next, is(list.length));
+    }
+
+    /**
+     * Asserts that the response produces the same frames as the
+     * reference response, which reads each segment on its own into a
+     * heap buffer.
+     */
+    private List<byte[]> assertMatchesReference(ReadVRequest request) throws Exception
+    {
+        List<byte[]> expected =
+            frames(new ReferenceReadvResponse(request, MAX_FRAME_SIZE, _descriptors));
+        List<byte[]> actual = frames(response(request));
+
+        assertThat(actual.size(), is(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat("Frame " + i, actual.get(i), is(expected.get(i)));
+        }
+        return actual;
+    }
+
+    private ChunkedFileDescriptorReadvResponse response(ReadVRequest request)
+    {
+        return new ChunkedFileDescriptorReadvResponse(request, MAX_FRAME_SIZE,
+                                                      _descriptors,
+                                                      DirectChannelBufferFactory.getInstance());
+    }
+
+    private static List<byte[]> frames(ChunkedInput response) throws Exception
+    {
+        List<byte[]> frames = new ArrayList<>();
+        while (!response.isEndOfInput()) {
+            Object chunk = response.nextChunk();
+            ChannelBuffer buffer = (chunk instanceof ChannelBuffer)
+                ? (ChannelBuffer) chunk
+                : ((AbstractResponseMessage) chunk).getBuffer();
+            byte[] frame = new byte[buffer.readableBytes()];
+            buffer.getBytes(buffer.readerIndex(), frame);
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    private static int[] segment(int fd, int offset, int length)
+    {
+        return new int[] { fd, offset, length };
+    }
+
+    private static ReadVRequest request(int[]... segments)
+    {
+        ChannelBuffer buffer = ChannelBuffers.buffer(24 + segments.length * READ_LIST_HEADER_SIZE);
+        buffer.writeShort(STREAM_ID);
+        buffer.writeShort(kXR_readv);
+        buffer.writeZero(16);
+        buffer.writeInt(segments.length * READ_LIST_HEADER_SIZE);
+        for (int[] segment : segments) {
+            buffer.writeInt(segment[0]);
+            buffer.writeInt(segment[2]);
+            buffer.writeLong(segment[1]);
+        }
+        return new ReadVRequest(buffer);
+    }
+
+    private static byte[] data(int size, int seed)
+    {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return data;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FileDescriptor descriptor(final byte[] data) throws IOException
+    {
+        MoverChannel<XrootdProtocolInfo> channel = mock(MoverChannel.class);
+        when(channel.size()).thenReturn((long) data.length);
+
+        FileDescriptor descriptor = mock(FileDescriptor.class);
+        when(descriptor.getChannel()).thenReturn(channel);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation)
+            {
+                ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+                long position = (Long) invocation.getArguments()[1];
+                if (position < data.length) {
+                    int length = (int) Math.min(buffer.remaining(), data.length - position);
+                    buffer.put(data, (int) position, length);
+                }
+                return null;
+            }
+        }).when(descriptor).read(any(ByteBuffer.class), anyLong());
+        return descriptor;
+    }
+
+    /**
+     * The vector read response as it was before reads were coalesced:
+     * every segment is read separately into a heap array.
+     */
+    private static class ReferenceReadvResponse extends AbstractChunkedReadvResponse
+    {
+        private final List<FileDescriptor> descriptors;
+
+        ReferenceReadvResponse(ReadVRequest request, int maxFrameSize,
+                               List<FileDescriptor> descriptors)
+        {
+            super(request, maxFrameSize);
+            this.descriptors = descriptors;
+        }
+
+        @Override
+        protected long getSize(int fd) throws IOException, XrootdException
+        {
+            return descriptors.get(fd).getChannel().size();
+        }
+
+        @Override
+        protected ChannelBuffer read(int fd, long position, int length)
+            throws IOException, XrootdException
+        {
+            byte[] chunkArray = new byte[length];
+            ByteBuffer chunk = ByteBuffer.wrap(chunkArray);
+            descriptors.get(fd).read(chunk, position);
+            return ChannelBuffers.wrappedBuffer(chunkArray, 0,
+                                                chunkArray.length - chunk.remaining());
+        }
+    }
+}
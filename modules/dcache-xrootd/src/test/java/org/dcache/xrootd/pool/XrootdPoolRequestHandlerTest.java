@@ -0,0 +1,127 @@
+package org.dcache.xrootd.pool;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import org.dcache.pool.movers.MoverChannel;
+import org.dcache.pool.movers.RepositoryFileRegion;
+import org.dcache.vehicles.XrootdProtocolInfo;
+import org.dcache.xrootd.protocol.messages.ReadRequest;
+
+import static org.dcache.xrootd.protocol.XrootdProtocol.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class XrootdPoolRequestHandlerTest
+{
+    private static final int STREAM_ID = 4711;
+    private static final int MAX_FRAME_SIZE = 4096;
+    private static final long FILE_SIZE = 10000;
+
+    private XrootdPoolRequestHandler _handler;
+    private ChannelHandlerContext _ctx;
+    private Channel _channel;
+    private FileDescriptor _descriptor;
+    private MoverChannel<XrootdProtocolInfo> _file;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception
+    {
+        XrootdPoolNettyServer server = mock(XrootdPoolNettyServer.class);
+        when(server.getMaxFrameSize()).thenReturn(MAX_FRAME_SIZE);
+        _handler = new XrootdPoolRequestHandler(server);
+
+        _channel = mock(Channel.class);
+        _ctx = mock(ChannelHandlerContext.class);
+        when(_ctx.getChannel()).thenReturn(_channel);
+
+        _file = mock(MoverChannel.class);
+        when(_file.size()).thenReturn(FILE_SIZE);
+        _descriptor = mock(FileDescriptor.class);
+        when(_descriptor.getChannel()).thenReturn(_file);
+    }
+
+    @Test
+    public void shouldSplitFileRegionsAtMaximumFrameSize() throws Exception
+    {
+        Object result = _handler.readAsFileRegions(_ctx, read(100, 9000), _descriptor);
+
+        List<Object> written = written(5);
+        assertHeader(written.get(0), kXR_oksofar, MAX_FRAME_SIZE);
+        assertRegion(written.get(1), 100, MAX_FRAME_SIZE);
+        assertHeader(written.get(2), kXR_oksofar, MAX_FRAME_SIZE);
+        assertRegion(written.get(3), 100 + MAX_FRAME_SIZE, MAX_FRAME_SIZE);
+        assertHeader(written.get(4), kXR_ok, 9000 - 2 * MAX_FRAME_SIZE);
+        assertRegion(result, 100 + 2 * MAX_FRAME_SIZE, 9000 - 2 * MAX_FRAME_SIZE);
+    }
+
+    @Test
+    public void shouldSendSingleFrameForReadOfMaximumFrameSize() throws Exception
+    {
+        Object result = _handler.readAsFileRegions(_ctx, read(0, MAX_FRAME_SIZE), _descriptor);
+
+        assertHeader(written(1).get(0), kXR_ok, MAX_FRAME_SIZE);
+        assertRegion(result, 0, MAX_FRAME_SIZE);
+    }
+
+    @Test
+    public void shouldTruncateRegionsAtEndOfFile() throws Exception
+    {
+        Object result = _handler.readAsFileRegions(_ctx, read(9000, 5000), _descriptor);
+
+        assertHeader(written(1).get(0), kXR_ok, 1000);
+        assertRegion(result, 9000, 1000);
+    }
+
+    @Test
+    public void shouldNotSendRegionsForReadBeyondEndOfFile() throws Exception
+    {
+        Object result = _handler.readAsFileRegions(_ctx, read(FILE_SIZE, 5000), _descriptor);
+
+        verify(_channel, never()).write(any());
+        assertThat(result, is(not(instanceOf(RepositoryFileRegion.class))));
+    }
+
+    private List<Object> written(int count)
+    {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(_channel, times(count)).write(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static void assertHeader(Object message, int status, int length)
+    {
+        assertThat(message, is(instanceOf(ChannelBuffer.class)));
+        ChannelBuffer header = (ChannelBuffer) message;
+        assertThat(header.readableBytes(), is(8));
+        assertThat(header.getUnsignedShort(0), is(STREAM_ID));
+        assertThat(header.getUnsignedShort(2), is(status));
+        assertThat(header.getInt(4), is(length));
+    }
+
+    private void assertRegion(Object message, long position, long count)
+    {
+        assertThat(message, is(instanceOf(RepositoryFileRegion.class)));
+        RepositoryFileRegion region = (RepositoryFileRegion) message;
+        assertThat(region.getChannel(), is((Object) _file));
+        assertThat(region.getPosition(), is(position));
+        assertThat(region.getCount(), is(count));
+    }
+
+    private static ReadRequest read(long offset, int length)
+    {
+        ReadRequest request = mock(ReadRequest.class);
+        when(request.getStreamId()).thenReturn(STREAM_ID);
+        when(request.getReadOffset()).thenReturn(offset);
+        when(request.bytesToRead()).thenReturn(length);
+        return request;
+    }
+}
@@ -11,6 +11,7 @@ import diskCacheV111.util.CacheException;
 import diskCacheV111.util.PnfsId;
 
 import org.dcache.namespace.FileAttribute;
+import org.dcache.namespace.ListCursor;
 import org.dcache.namespace.ListHandler;
 import org.dcache.util.ChecksumType;
 import org.dcache.util.Glob;
@@ -138,4 +139,13 @@ public class AbstractNameSpaceProvider
     {
         throw new UnsupportedOperationException();
     }
+
+    @Override
+    public ListCursor list(Subject subject, String path, Glob glob, Range<Integer> range,
+                           Set<FileAttribute> attrs, ListCursor cursor, int limit,
+                           ListHandler handler)
+        throws CacheException
+    {
+        throw new UnsupportedOperationException();
+    }
 }
@@ -11,6 +11,7 @@ import diskCacheV111.util.CacheException;
 import diskCacheV111.util.PnfsId;
 
 import org.dcache.namespace.FileAttribute;
+import org.dcache.namespace.ListCursor;
 import org.dcache.namespace.ListHandler;
 import org.dcache.util.ChecksumType;
 import org.dcache.util.Glob;
@@ -204,4 +205,32 @@ public interface NameSpaceProvider
     void list(Subject subject, String path, Glob glob, Range<Integer> range,
               Set<FileAttribute> attrs, ListHandler handler)
         throws CacheException;
+
+    /**
+     * Lists one chunk of the content of a directory. Entries are
+     * listed in lexicographic order of their names, starting after
+     * the position given by the cursor. At most <code>limit</code>
+     * directory entries are examined, whether or not they match the
+     * glob pattern and range. For each matching entry the ListHandler
+     * is invoked.
+     *
+     * Since the position is identified by name rather than offset, the
+     * listing does not skip or repeat entries because of entries added
+     * or deleted between chunks.
+     *
+     * @param subject Subject of user who invoked this method
+     * @param path Path to directory to list
+     * @param glob Pattern to limit the result set; may be null
+     * @param range The range of entries to return; may be null
+     * @param attrs The file attributes to query for each entry
+     * @param cursor Position after which to continue the listing
+     * @param limit Maximum number of entries to examine
+     * @param handler Handler called for each entry
+     * @return Position of the next chunk, or null if the listing is
+     *         complete
+     */
+    ListCursor list(Subject subject, String path, Glob glob, Range<Integer> range,
+                    Set<FileAttribute> attrs, ListCursor cursor, int limit,
+                    ListHandler handler)
+        throws CacheException;
 }
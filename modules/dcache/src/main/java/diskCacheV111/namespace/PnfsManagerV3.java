@@ -22,6 +22,8 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import diskCacheV111.util.CacheException;
@@ -66,10 +68,14 @@ import dmg.cells.nucleus.AbstractCellComponent;
 import dmg.cells.nucleus.CellCommandListener;
 import dmg.cells.nucleus.CellMessageReceiver;
 import org.dcache.chimera.UnixPermission;
+import org.dcache.commons.stats.Gauge;
+import org.dcache.commons.stats.LatencyHistogram;
+import org.dcache.commons.stats.MetricsRegistry;
 import org.dcache.commons.stats.RequestCounters;
 import org.dcache.commons.stats.RequestExecutionTimeGauges;
 import org.dcache.namespace.FileAttribute;
 import org.dcache.namespace.FileType;
+import org.dcache.namespace.ListCursor;
 import org.dcache.namespace.ListHandler;
 import org.dcache.namespace.PermissionHandler;
 import org.dcache.util.Checksum;
@@ -105,6 +111,14 @@ public class PnfsManagerV3
     private final RequestCounters<Class<?>> _foldedCounters =
         new RequestCounters<>("PnfsManagerV3.Folded");
 
+    /**
+     * Processing time histograms per message type, exported through the
+     * metrics registry. Cached here to avoid a registry lookup per
+     * message.
+     */
+    private final ConcurrentMap<Class<?>,LatencyHistogram> _latencies =
+        new ConcurrentHashMap<>();
+
     /**
      * Cache of path prefix to database IDs mappings.
      */
@@ -312,6 +326,43 @@ public class PnfsManagerV3
                 new Thread(new ProcessThread(_listQueues[i]), "proc-list-" + i + "-" + j).start();
             }
         }
+
+        registerQueueGauges("fifo", _fifos);
+        if (_locationFifos != _fifos) {
+            registerQueueGauges("location", _locationFifos);
+        }
+        registerQueueGauges("list", _listQueues);
+    }
+
+    private void registerQueueGauges(String type, BlockingQueue<?>[] queues)
+    {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        for (int i = 0; i < queues.length; i++) {
+            final BlockingQueue<?> queue = queues[i];
+            registry.gauge("dcache_pnfsmanager_queue_size",
+                           "Requests queued in PnfsManager",
+                           new Gauge() {
+                               @Override
+                               public double getValue()
+                               {
+                                   return queue.size();
+                               }
+                           },
+                           "type", type, "queue", String.valueOf(i));
+        }
+    }
+
+    private LatencyHistogram getLatencyHistogram(Class<?> type)
+    {
+        LatencyHistogram histogram = _latencies.get(type);
+        if (histogram == null) {
+            histogram = MetricsRegistry.getInstance()
+                    .histogram("dcache_pnfsmanager_request_duration_milliseconds",
+                               "Time to process PnfsManager requests",
+                               "type", type.getSimpleName());
+            _latencies.putIfAbsent(type, histogram);
+        }
+        return histogram;
     }
 
     @Override
@@ -1405,6 +1456,12 @@ public class PnfsManagerV3
 
             checkMask(msg.getSubject(), path, msg.getAccessMask());
 
+            ListCursor cursor = msg.getCursor();
+            if (cursor != null) {
+                listDirectoryChunk(msg, cursor);
+                return;
+            }
+
             long delay = getAdjustedTtl(envelope);
             long initialDelay =
                 (delay == Long.MAX_VALUE)
@@ -1433,6 +1490,34 @@ public class PnfsManagerV3
         }
     }
 
+    /**
+     * Lists a single chunk of a paginated directory listing. The
+     * requestor asks for the next chunk only after having consumed
+     * this one, which bounds the memory used by a listing on both
+     * sides.
+     */
+    private void listDirectoryChunk(final PnfsListDirectoryMessage msg,
+                                    ListCursor cursor)
+        throws CacheException
+    {
+        ListCursor next =
+            _nameSpaceProvider.list(msg.getSubject(), msg.getPnfsPath(),
+                                    msg.getPattern(),
+                                    msg.getRange(),
+                                    msg.getRequestedAttributes(),
+                                    cursor, _directoryListLimit,
+                                    new ListHandler() {
+                                        @Override
+                                        public void addEntry(String name, FileAttributes attrs)
+                                        {
+                                            msg.addEntry(name, attrs);
+                                        }
+                                    });
+        msg.setNextCursor(next);
+        msg.setFinal(next == null);
+        msg.setSucceeded();
+    }
+
     private class ProcessThread implements Runnable {
         private final BlockingQueue<CellMessage> _fifo ;
         private ProcessThread( BlockingQueue<CellMessage> fifo ){ _fifo = fifo ; }
@@ -1665,6 +1750,7 @@ public class PnfsManagerV3
 
         long duration = System.currentTimeMillis() - ctime;
         _gauges.update(pnfsMessage.getClass(), duration);
+        getLatencyHistogram(pnfsMessage.getClass()).record(duration);
         String logMsg = pnfsMessage.getClass() + " processed in " + duration + " ms";
         if( _logSlowThreshold != THRESHOLD_DISABLED && duration > _logSlowThreshold) {
             _log.warn(logMsg);
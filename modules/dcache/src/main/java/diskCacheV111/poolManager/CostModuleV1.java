@@ -12,11 +12,15 @@ import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import diskCacheV111.pools.CostCalculatable;
@@ -61,18 +65,74 @@ public class CostModuleV1
 
     private static final long serialVersionUID = -267023006449629909L;
 
-    private final Map<String, Entry> _hash = new HashMap<>() ;
-    private boolean _isActive = true ;
-    private boolean _update = true ;
-    private boolean _magic = true ;
-    private boolean _debug;
-    private boolean _cachedPercentileCostCutIsValid;
-    private double _cachedPercentileCostCut;
-    private double _cachedPercentileFraction;
+    private static final AtomicLong _nextSerial = new AtomicLong();
+
+    /*
+     * The module is not synchronized. The cost info of an entry is
+     * never modified once the entry is published. Pool heartbeats and
+     * forwarded messages replace the entry of a pool atomically, the
+     * latter with a modified copy of the cost info. Thus readers never
+     * see partial updates, and updates of different pools and pool
+     * selections never block each other.
+     */
+    private final ConcurrentMap<String, Entry> _hash = new ConcurrentHashMap<>() ;
+
+    /**
+     * The performance cost of every pool, in ascending order. Kept up
+     * to date with every change of the cost of a pool, such that
+     * percentiles can be read without sorting.
+     */
+    private final NavigableSet<CostKey> _costs = new ConcurrentSkipListSet<>();
+
+    private volatile boolean _isActive = true ;
+    private volatile boolean _update = true ;
+    private volatile boolean _magic = true ;
+    private volatile boolean _debug;
     private transient CellMessageDispatcher _handlers =
         new CellMessageDispatcher("messageToForward");
 
 
+    /**
+     * Position of a pool in the cost order.
+     */
+    private static class CostKey implements Comparable<CostKey>, Serializable
+    {
+        private static final long serialVersionUID = 4620497545931826011L;
+
+        private final double _cost;
+        private final long _serial;
+
+        CostKey(double cost, long serial)
+        {
+            _cost = cost;
+            _serial = serial;
+        }
+
+        double getCost()
+        {
+            return _cost;
+        }
+
+        @Override
+        public int compareTo(CostKey other)
+        {
+            int c = Double.compare(_cost, other._cost);
+            return (c != 0) ? c : Long.compare(_serial, other._serial);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            return (o instanceof CostKey) && compareTo((CostKey) o) == 0;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Long.valueOf(_serial).hashCode();
+        }
+    }
+
     /**
      * Information about some specific pool.
      */
@@ -82,9 +142,14 @@ public class CostModuleV1
 
        private final long timestamp;
        private final PoolCostInfo _info;
-       private double _fakeCpu = -1.0;
+       private volatile double _fakeCpu = -1.0;
        private final ImmutableMap<String,String> _tagMap;
        private final CellAddressCore _address;
+       private final CostKey _costKey;
+
+       /* Guarded by this.
+        */
+       private boolean _isRetired;
 
        public Entry(CellAddressCore address, PoolCostInfo info, Map<String,String> tagMap)
        {
@@ -95,6 +160,42 @@ public class CostModuleV1
                (tagMap == null)
                ? ImmutableMap.<String,String>of()
                : ImmutableMap.copyOf(tagMap);
+           _costKey = new CostKey(getPerformanceCost(info), _nextSerial.incrementAndGet());
+       }
+
+       /**
+        * Creates a copy of entry with different cost info. The copy
+        * is as old as the original.
+        */
+       private Entry(Entry entry, PoolCostInfo info)
+       {
+           timestamp = entry.timestamp;
+           _address = entry._address;
+           _info = info;
+           _tagMap = entry._tagMap;
+           _fakeCpu = entry._fakeCpu;
+           _costKey = new CostKey(getPerformanceCost(info), _nextSerial.incrementAndGet());
+       }
+
+       /**
+        * Adds the cost of this entry to costs, unless the entry was
+        * already replaced.
+        */
+       public synchronized void publish(NavigableSet<CostKey> costs)
+       {
+           if (!_isRetired) {
+               costs.add(_costKey);
+           }
+       }
+
+       /**
+        * Removes the cost of this entry from costs. Called when the
+        * entry is replaced or removed.
+        */
+       public synchronized void retire(NavigableSet<CostKey> costs)
+       {
+           _isRetired = true;
+           costs.remove(_costKey);
        }
 
        public boolean isValid()
@@ -118,12 +219,24 @@ public class CostModuleV1
        }
    }
 
+    /**
+     * A change of the cost info of a pool caused by a forwarded
+     * message.
+     */
+    private abstract static class CostChange
+    {
+        /**
+         * Applies the change to a private copy of the cost info.
+         */
+        abstract void apply(PoolCostInfo info);
+    }
+
     public CostModuleV1()
     {
         _handlers.addMessageListener(this);
     }
 
-    public synchronized void messageArrived(CellMessage envelope, PoolManagerPoolUpMessage msg)
+    public void messageArrived(CellMessage envelope, PoolManagerPoolUpMessage msg)
     {
         if (! _update) {
             return;
@@ -133,74 +246,83 @@ public class CostModuleV1
         String poolName = msg.getPoolName();
         PoolV2Mode poolMode = msg.getPoolMode();
         PoolCostInfo newInfo = msg.getPoolCostInfo();
-        Entry poolEntry = _hash.get(poolName);
-        boolean isNewPool = poolEntry == null;
 
         /* Whether the pool mentioned in the message should be removed */
         boolean shouldRemovePool = poolMode.getMode() == PoolV2Mode.DISABLED ||
                 poolMode.isDisabled(PoolV2Mode.DISABLED_STRICT) ||
                 poolMode.isDisabled(PoolV2Mode.DISABLED_DEAD);
 
-        if( isNewPool || shouldRemovePool) {
-            _cachedPercentileCostCutIsValid = false;
-        } else {
-            PoolCostInfo currentInfo = poolEntry.getPoolCostInfo();
-            considerInvalidatingCache(currentInfo, newInfo);
-        }
-
         if (shouldRemovePool) {
-            _hash.remove(poolName);
+            Entry oldEntry = _hash.remove(poolName);
+            if (oldEntry != null) {
+                oldEntry.retire(_costs);
+            }
         } else if (newInfo != null) {
-            _hash.put(poolName, new Entry(poolAddress, newInfo, msg.getTagMap()));
+            Entry newEntry = new Entry(poolAddress, newInfo, msg.getTagMap());
+            Entry oldEntry = _hash.put(poolName, newEntry);
+            newEntry.publish(_costs);
+            if (oldEntry != null) {
+                oldEntry.retire(_costs);
+            }
         }
     }
 
-    private void considerInvalidatingCache(PoolCostInfo currentInfo, PoolCostInfo newInfo)
+    private static double getPerformanceCost(PoolCostInfo info)
     {
-        if( !_cachedPercentileCostCutIsValid) {
-            return;
-        }
-
-        double currentCost = getPerformanceCost(currentInfo);
-        double newCost = getPerformanceCost(newInfo);
-        considerInvalidatingCache(currentCost, newCost);
+        CostCalculatable cost = new CostCalculationV5(info);
+        cost.recalculate();
+        return cost.getPerformanceCost();
     }
 
-    private void considerInvalidatingCache(double currentCost, PoolCostInfo newInfo)
+    /**
+     * Replaces the entry of a pool by an entry with a modified copy of
+     * its cost info. If the entry is replaced concurrently, the change
+     * is applied again to the new entry.
+     *
+     * @return false if there is no entry for the pool, true otherwise
+     */
+    private boolean changeCost(String poolName, CostChange change)
     {
-        if( !_cachedPercentileCostCutIsValid) {
-            return;
-        }
-
-        double newCost = getPerformanceCost(newInfo);
-        considerInvalidatingCache(currentCost, newCost);
+        Entry oldEntry;
+        Entry newEntry;
+        do {
+            oldEntry = _hash.get(poolName);
+            if (oldEntry == null) {
+                return false;
+            }
+            PoolCostInfo info = new PoolCostInfo(oldEntry.getPoolCostInfo());
+            change.apply(info);
+            newEntry = new Entry(oldEntry, info);
+        } while (!_hash.replace(poolName, oldEntry, newEntry));
+        newEntry.publish(_costs);
+        oldEntry.retire(_costs);
+        return true;
     }
 
-    /* Check whether we should invalidate the cached.  We must do this when
-     * a pool changes its relationship to the cost threshold:
-     *       o  a pool with cost less than the cached value assumes a cost greater
-     *                  than the cached value,
-     *       o  a pool with cost greater than the cached value assumes a cost less
-     *                  than the cached value.
-     *       o  a pool with cost equal to the cached value assumes a cost less
-     *                  than or greater than the cached value.
+    /**
+     * Returns the name of the mover queue to charge for a transfer
+     * that requested the given queue, or null if the pool does not
+     * report named queues.
      */
-    private void considerInvalidatingCache(double currentCost, double newCost)
+    private static String getMoverQueueName(PoolCostInfo info, String requestedQueueName)
     {
-        if( Math.signum(currentCost-_cachedPercentileCostCut) !=
-            Math.signum(newCost-_cachedPercentileCostCut)) {
-            _cachedPercentileCostCutIsValid = false;
+        Map<String, NamedPoolQueueInfo> map = info.getExtendedMoverHash();
+        if (map == null) {
+            return null;
         }
+        return (requestedQueueName == null || map.get(requestedQueueName) == null)
+                ? info.getDefaultQueueName()
+                : requestedQueueName;
     }
 
-    private double getPerformanceCost(PoolCostInfo info)
+    private static PoolCostInfo.PoolQueueInfo getMoverQueue(PoolCostInfo info, String queueName)
     {
-        CostCalculatable cost = new CostCalculationV5(info);
-        cost.recalculate();
-        return cost.getPerformanceCost();
+        return (queueName == null)
+                ? info.getMoverQueue()
+                : info.getExtendedMoverHash().get(queueName);
     }
 
-    public synchronized void messageToForward(PoolIoFileMessage msg)
+    public void messageToForward(PoolIoFileMessage msg)
     {
         String poolName = msg.getPoolName();
         Entry e = _hash.get(poolName);
@@ -208,26 +330,8 @@ public class CostModuleV1
             return;
         }
 
-        String requestedQueueName = msg.getIoQueueName();
-
-        PoolCostInfo costInfo = e.getPoolCostInfo();
-        double currentPerformanceCost = getPerformanceCost(costInfo);
-        Map<String, NamedPoolQueueInfo> map =
-            costInfo.getExtendedMoverHash();
-
-        PoolCostInfo.PoolQueueInfo queue;
-        PoolCostInfo.PoolSpaceInfo spaceInfo = costInfo.getSpaceInfo();
-
-        if (map == null) {
-            queue = costInfo.getMoverQueue();
-        } else {
-            requestedQueueName =
-                (requestedQueueName == null ||
-                 map.get(requestedQueueName) == null)
-                ? costInfo.getDefaultQueueName()
-                : requestedQueueName;
-            queue = map.get(requestedQueueName);
-        }
+        final String queueName =
+            getMoverQueueName(e.getPoolCostInfo(), msg.getIoQueueName());
 
         int diff = 0;
         long pinned = 0;
@@ -244,15 +348,21 @@ public class CostModuleV1
             }
         }
 
-        queue.modifyQueue(diff);
-        spaceInfo.modifyPinnedSpace(pinned);
-
-        considerInvalidatingCache(currentPerformanceCost, costInfo);
-
-        xsay("Mover"+(requestedQueueName==null?"":("("+requestedQueueName+")")) , poolName, diff, pinned, msg);
+        final int queueDiff = diff;
+        final long pinnedDiff = pinned;
+        if (changeCost(poolName, new CostChange() {
+                @Override
+                void apply(PoolCostInfo info)
+                {
+                    getMoverQueue(info, queueName).modifyQueue(queueDiff);
+                    info.getSpaceInfo().modifyPinnedSpace(pinnedDiff);
+                }
+            })) {
+            xsay("Mover"+(queueName==null?"":("("+queueName+")")) , poolName, diff, pinned, msg);
+        }
     }
 
-    public synchronized void messageToForward(DoorTransferFinishedMessage msg)
+    public void messageToForward(DoorTransferFinishedMessage msg)
     {
         String poolName = msg.getPoolName();
         Entry e = _hash.get(poolName);
@@ -260,49 +370,29 @@ public class CostModuleV1
             return;
         }
 
-        PoolCostInfo costInfo = e.getPoolCostInfo();
-        double currentPerformanceCost = getPerformanceCost(costInfo);
-        String requestedQueueName = msg.getIoQueueName();
-
-        Map<String, NamedPoolQueueInfo> map =
-            costInfo.getExtendedMoverHash();
-        PoolCostInfo.PoolQueueInfo queue;
+        final String queueName =
+            getMoverQueueName(e.getPoolCostInfo(), msg.getIoQueueName());
 
-        if (map == null) {
-            queue = costInfo.getMoverQueue();
-        } else {
-            requestedQueueName =
-                (requestedQueueName == null) ||
-                (map.get(requestedQueueName) == null)
-                ? costInfo.getDefaultQueueName()
-                : requestedQueueName;
-
-            queue = map.get(requestedQueueName);
-        }
-
-        int diff = -1;
+        final int diff = -1;
         long pinned = 0;
 
-        queue.modifyQueue(diff);
-        considerInvalidatingCache(currentPerformanceCost, costInfo);
-        xsay("Mover"+(requestedQueueName==null?"":("("+requestedQueueName+")")), poolName, diff, pinned, msg);
+        if (changeCost(poolName, new CostChange() {
+                @Override
+                void apply(PoolCostInfo info)
+                {
+                    getMoverQueue(info, queueName).modifyQueue(diff);
+                }
+            })) {
+            xsay("Mover"+(queueName==null?"":("("+queueName+")")), poolName, diff, pinned, msg);
+        }
     }
 
-    public synchronized void messageToForward(PoolFetchFileMessage msg)
+    public void messageToForward(PoolFetchFileMessage msg)
     {
-         String poolName = msg.getPoolName();
-         Entry e = _hash.get(poolName);
-         if (e == null) {
-             return;
-         }
-
-         PoolCostInfo costInfo = e.getPoolCostInfo();
-         double currentPerformanceCost = getPerformanceCost(costInfo);
-         PoolCostInfo.PoolQueueInfo queue = costInfo.getRestoreQueue();
-         PoolCostInfo.PoolSpaceInfo spaceInfo = costInfo.getSpaceInfo();
-
-         int diff;
-         long pinned;
+        String poolName = msg.getPoolName();
+
+        final int diff;
+        final long pinned;
         if (msg.isReply()) {
             diff = -1;
             pinned = 0;
@@ -315,96 +405,79 @@ public class CostModuleV1
                 pinned = 0;
             }
         }
-        queue.modifyQueue(diff);
-         spaceInfo.modifyPinnedSpace(pinned);
-         considerInvalidatingCache(currentPerformanceCost, costInfo);
-         xsay("Restore", poolName, diff, pinned, msg);
-    }
-
-    public synchronized void messageToForward(PoolMgrSelectPoolMsg msg)
-    {
-         if (!_magic) {
-             return;
-         }
-
-         if (!msg.isReply()) {
-             return;
-         }
-         String poolName = msg.getPoolName();
-         Entry e = _hash.get(poolName);
-         if (e == null) {
-             return;
-         }
-
-         String requestedQueueName = msg.getIoQueueName();
-
-         PoolCostInfo costInfo = e.getPoolCostInfo();
-         double currentPerformanceCost = getPerformanceCost(costInfo);
-         Map<String, NamedPoolQueueInfo> map =
-             costInfo.getExtendedMoverHash();
-         PoolCostInfo.PoolQueueInfo queue;
-         PoolCostInfo.PoolSpaceInfo spaceInfo = costInfo.getSpaceInfo();
-
-         if (map == null) {
-            queue = costInfo.getMoverQueue();
-         } else {
-            requestedQueueName =
-                (requestedQueueName == null) ||
-                (map.get(requestedQueueName) == null)
-                ? costInfo.getDefaultQueueName()
-                : requestedQueueName;
-            queue = map.get(requestedQueueName);
-         }
-
-         int diff = 1;
-         long pinned =
-             (msg instanceof PoolMgrSelectWritePoolMsg) ? ((PoolMgrSelectWritePoolMsg) msg).getPreallocated() : 0;
-         queue.modifyQueue(diff);
-         spaceInfo.modifyPinnedSpace(pinned);
-         considerInvalidatingCache(currentPerformanceCost, costInfo);
-         xsay("Mover (magic)"+(requestedQueueName==null?"":("("+requestedQueueName+")")), poolName, diff, pinned, msg);
+        if (changeCost(poolName, new CostChange() {
+                @Override
+                void apply(PoolCostInfo info)
+                {
+                    info.getRestoreQueue().modifyQueue(diff);
+                    info.getSpaceInfo().modifyPinnedSpace(pinned);
+                }
+            })) {
+            xsay("Restore", poolName, diff, pinned, msg);
+        }
     }
 
-    public synchronized void messageToForward(Pool2PoolTransferMsg msg)
+    public void messageToForward(PoolMgrSelectPoolMsg msg)
     {
-        _log.debug( "Pool2PoolTransferMsg : reply="+msg.isReply());
+        if (!_magic) {
+            return;
+        }
 
-        String sourceName = msg.getSourcePoolName();
-        Entry source = _hash.get(sourceName);
-        if (source == null) {
+        if (!msg.isReply()) {
+            return;
+        }
+        String poolName = msg.getPoolName();
+        Entry e = _hash.get(poolName);
+        if (e == null) {
             return;
         }
 
-        PoolCostInfo sourceCostInfo = source.getPoolCostInfo();
-        double currentSourcePerformanceCost = getPerformanceCost(sourceCostInfo);
+        final String queueName =
+            getMoverQueueName(e.getPoolCostInfo(), msg.getIoQueueName());
+
+        final int diff = 1;
+        final long pinned =
+            (msg instanceof PoolMgrSelectWritePoolMsg) ? ((PoolMgrSelectWritePoolMsg) msg).getPreallocated() : 0;
+        if (changeCost(poolName, new CostChange() {
+                @Override
+                void apply(PoolCostInfo info)
+                {
+                    getMoverQueue(info, queueName).modifyQueue(diff);
+                    info.getSpaceInfo().modifyPinnedSpace(pinned);
+                }
+            })) {
+            xsay("Mover (magic)"+(queueName==null?"":("("+queueName+")")), poolName, diff, pinned, msg);
+        }
+    }
 
-        PoolCostInfo.PoolQueueInfo sourceQueue = sourceCostInfo.getP2pQueue();
+    public void messageToForward(Pool2PoolTransferMsg msg)
+    {
+        _log.debug( "Pool2PoolTransferMsg : reply="+msg.isReply());
 
+        String sourceName = msg.getSourcePoolName();
         String destinationName = msg.getDestinationPoolName();
-        Entry destination = _hash.get(destinationName);
-        if (destination == null) {
+        if (!_hash.containsKey(sourceName) || !_hash.containsKey(destinationName)) {
             return;
         }
 
-        PoolCostInfo destinationCostInfo = destination.getPoolCostInfo();
-        double currentDestinationPerformanceCost =
-            getPerformanceCost(destinationCostInfo);
-
-        PoolCostInfo.PoolQueueInfo destinationQueue =
-            destinationCostInfo.getP2pClientQueue();
-        PoolCostInfo.PoolSpaceInfo destinationSpaceInfo =
-            destinationCostInfo.getSpaceInfo();
-
-        int diff = msg.isReply() ? -1 : 1;
-        long pinned = msg.getFileAttributes().isDefined(FileAttribute.SIZE) ? msg.getFileAttributes().getSize() : 0;
+        final int diff = msg.isReply() ? -1 : 1;
+        final long pinned = msg.getFileAttributes().isDefined(FileAttribute.SIZE) ? msg.getFileAttributes().getSize() : 0;
 
-        sourceQueue.modifyQueue(diff);
-        destinationQueue.modifyQueue(diff);
-        destinationSpaceInfo.modifyPinnedSpace(pinned);
-
-        considerInvalidatingCache(currentSourcePerformanceCost, sourceCostInfo);
-        considerInvalidatingCache(currentDestinationPerformanceCost,
-                destinationCostInfo);
+        changeCost(sourceName, new CostChange() {
+            @Override
+            void apply(PoolCostInfo info)
+            {
+                info.getP2pQueue().modifyQueue(diff);
+            }
+        });
+        changeCost(destinationName, new CostChange() {
+            @Override
+            void apply(PoolCostInfo info)
+            {
+                info.getP2pClientQueue().modifyQueue(diff);
+                info.getSpaceInfo().modifyPinnedSpace(pinned);
+            }
+        });
 
         xsay("P2P client (magic)", destinationName, diff, pinned, msg);
         xsay("P2P server (magic)", sourceName, diff, 0, msg);
@@ -466,41 +539,46 @@ public class CostModuleV1
     }
 
    @Override
-   public synchronized double getPoolsPercentilePerformanceCost(double fraction) {
+   public double getPoolsPercentilePerformanceCost(double fraction) {
 
        if( fraction <= 0 || fraction >= 1) {
            throw new IllegalArgumentException("supplied fraction (" + Double.toString( fraction) +") not between 0 and 1");
        }
 
-       if( !_cachedPercentileCostCutIsValid || _cachedPercentileFraction != fraction) {
-           _cachedPercentileCostCut = calculatePercentileCostCut(fraction);
-           _cachedPercentileFraction = fraction;
-           _cachedPercentileCostCutIsValid = true;
-       }
-
-       return _cachedPercentileCostCut;
-   }
-
-   private double calculatePercentileCostCut(double fraction)
-   {
-       if( _hash.isEmpty()) {
+       int size = _hash.size();
+       if (size == 0) {
            _log.debug( "no pools available");
            return 0;
        }
 
-       _log.debug( "{} pools available", _hash.size());
-
-       double poolCosts[] = new double[_hash.size()];
-
-       int idx=0;
-       for( Entry poolInfo : _hash.values()) {
-           poolCosts[idx] = getPerformanceCost(poolInfo.getPoolCostInfo());
-           idx++;
+       _log.debug( "{} pools available", size);
+
+       /* The costs are kept sorted, but the skip list does not
+        * support access by position. Thus the percentile is found by
+        * walking from the nearer end, which takes at most size/2
+        * steps. While pools are updated concurrently the walk may see
+        * slightly fewer entries than expected, in which case the last
+        * cost seen is used.
+        */
+       int index = (int) Math.floor(fraction * size);
+       Iterable<CostKey> costs;
+       int steps;
+       if (index < size / 2) {
+           costs = _costs;
+           steps = index;
+       } else {
+           costs = _costs.descendingSet();
+           steps = size - 1 - index;
        }
-
-       Arrays.sort(poolCosts);
-
-       return poolCosts [ (int) Math.floor(fraction * _hash.size())];
+       double cost = 0;
+       int i = 0;
+       for (CostKey key : costs) {
+           cost = key.getCost();
+           if (i++ == steps) {
+               break;
+           }
+       }
+       return cost;
    }
 
 
@@ -554,7 +632,7 @@ public class CostModuleV1
      return "";
    }
    public static final String hh_cm_fake = "<poolName> [off] | [-cpu=<cpuCost>|off]" ;
-   public synchronized String ac_cm_fake_$_1_2( Args args ){
+   public String ac_cm_fake_$_1_2( Args args ){
       String poolName = args.argv(0) ;
       Entry e = _hash.get(poolName);
       if( e == null ) {
@@ -580,7 +658,7 @@ public class CostModuleV1
    }
 
    public static final String hh_xcm_ls = "";
-   public synchronized Object ac_xcm_ls_$_0(Args args)
+   public Object ac_xcm_ls_$_0(Args args)
    {
        CostModulePoolInfoTable reply = new CostModulePoolInfoTable();
        for (Entry e : _hash.values() ){
@@ -590,7 +668,7 @@ public class CostModuleV1
    }
 
    public static final String hh_cm_ls = " -t | -r <pattern> # list all pools";
-   public synchronized String ac_cm_ls_$_0_1(Args args)
+   public String ac_cm_ls_$_0_1(Args args)
    {
        StringBuilder sb = new StringBuilder();
        boolean useTime   = args.hasOption("t");
@@ -621,7 +699,7 @@ public class CostModuleV1
    }
 
     @Override
-    public synchronized Collection<PoolCostInfo> getPoolCostInfos()
+    public Collection<PoolCostInfo> getPoolCostInfos()
     {
         Collection<PoolCostInfo> costInfos = new ArrayList<>();
         for (Entry entry: _hash.values()) {
@@ -633,7 +711,7 @@ public class CostModuleV1
     }
 
     @Override
-    public synchronized PoolCostInfo getPoolCostInfo(String poolName)
+    public PoolCostInfo getPoolCostInfo(String poolName)
     {
         Entry entry = _hash.get(poolName);
         if (entry != null && (entry.isValid() || !_update)) {
@@ -643,8 +721,7 @@ public class CostModuleV1
     }
 
     @Override
-    public synchronized
-        List<PoolInfo> getPoolInfo(Iterable<String> pools)
+    public List<PoolInfo> getPoolInfo(Iterable<String> pools)
     {
         List<PoolInfo> infos = new ArrayList<>();
         for (String pool: pools) {
@@ -657,8 +734,7 @@ public class CostModuleV1
     }
 
     @Override
-    public synchronized
-        Map<String,PoolInfo> getPoolInfoAsMap(Iterable<String> pools)
+    public Map<String,PoolInfo> getPoolInfoAsMap(Iterable<String> pools)
     {
         Map<String,PoolInfo> map = new HashMap<>();
         for (String pool: pools) {
@@ -56,6 +56,9 @@ import dmg.cells.nucleus.AbstractCellComponent;
 import dmg.cells.nucleus.CellCommandListener;
 import dmg.cells.nucleus.CellMessageReceiver;
 import org.dcache.cells.CellStub;
+import org.dcache.commons.stats.LatencyHistogram;
+import org.dcache.commons.stats.MetricsRegistry;
+import org.dcache.commons.stats.StripedCounter;
 import org.dcache.poolmanager.Partition;
 import org.dcache.poolmanager.PoolInfo;
 import org.dcache.poolmanager.PoolMonitor;
@@ -676,6 +679,13 @@ public class PoolManagerV5
         return new WriteRequestHandler(envelope, msg);
     }
 
+    private final LatencyHistogram _writeSelectionTime =
+        MetricsRegistry.getInstance().histogram("dcache_poolmanager_write_selection_duration_milliseconds",
+                                                "Time to select a pool for writing");
+    private final StripedCounter _writeSelectionFailures =
+        MetricsRegistry.getInstance().counter("dcache_poolmanager_write_selection_failures_total",
+                                              "Failed write pool selections");
+
     public class WriteRequestHandler extends DelayedReply implements Runnable
     {
         private CellMessage _envelope;
@@ -711,13 +721,17 @@ public class PoolManagerV5
                    .getPoolSelector(fileAttributes, protocolInfo, _request.getLinkGroup())
                    .selectWritePool(_request.getPreallocated());
 
+              long duration = System.currentTimeMillis() - started;
               _log.info("{} write handler selected {} after {} ms", _pnfsId, pool.getName(),
-                      System.currentTimeMillis() - started);
+                      duration);
+              _writeSelectionTime.record(duration);
               requestSucceeded(pool);
 
            }catch(CacheException ce ){
+              _writeSelectionFailures.increment();
               requestFailed( ce.getRc() , ce.getMessage() ) ;
            }catch(Exception ee ){
+              _writeSelectionFailures.increment();
               requestFailed( 17 , ee.getMessage() ) ;
            }
        }
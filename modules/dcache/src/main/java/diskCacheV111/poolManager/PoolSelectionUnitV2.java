@@ -1,10 +1,14 @@
 package diskCacheV111.poolManager;
 
 import com.google.common.base.Predicates;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
@@ -18,6 +22,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.locks.Lock;
@@ -46,6 +51,7 @@ public class PoolSelectionUnitV2
     private static final String __version = "$Id: PoolSelectionUnitV2.java,v 1.42 2007-10-25 14:03:54 tigran Exp $";
     private static final Logger _log = LoggerFactory.getLogger(PoolSelectionUnitV2.class);
     private static final String NO_NET = "<no net>";
+    private static final int MATCH_CACHE_SIZE = 4096;
 
     @Override
     public String getVersion() {
@@ -80,6 +86,27 @@ public class PoolSelectionUnitV2
 
     private final NetHandler _netHandler = new NetHandler();
 
+    /**
+     * Cache of link matches. Invalidated whenever the configuration
+     * changes. Entries are added with the read lock held and the cache
+     * is invalidated with the write lock held, thus a stale entry can
+     * never survive a configuration change.
+     */
+    private transient Cache<MatchKey, List<LinkLevel>> _matchCache =
+        createMatchCache();
+
+    private static Cache<MatchKey, List<LinkLevel>> createMatchCache()
+    {
+        return CacheBuilder.newBuilder().maximumSize(MATCH_CACHE_SIZE).build();
+    }
+
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        _matchCache = createMatchCache();
+    }
+
     @Override
     public Map<String, SelectionLink> getLinks() {
         _psuReadLock.lock();
@@ -309,6 +336,7 @@ public class PoolSelectionUnitV2
             _units.clear();
             _linkGroups.clear();
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
 
@@ -352,6 +380,7 @@ public class PoolSelectionUnitV2
             }
             return count;
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
     }
@@ -393,10 +422,13 @@ public class PoolSelectionUnitV2
             return pool;
         }
 
-        pool = new Pool(poolName);
-
-        _psuReadLock.lock();
+        _psuWriteLock.lock();
         try {
+            pool = _pools.get(poolName);
+            if (pool != null) {
+                return pool;
+            }
+            pool = new Pool(poolName);
             _pools.put(pool.getName(), pool);
             PGroup group = _pGroups.get("default");
             if (group == null) {
@@ -412,8 +444,9 @@ public class PoolSelectionUnitV2
 
             pool._pGroupList.put(group.getName(), group);
             group._poolList.put(pool.getName(), pool);
+            _matchCache.invalidateAll();
         } finally {
-            _psuReadLock.unlock();
+            _psuWriteLock.unlock();
         }
         return pool;
     }
@@ -459,285 +492,322 @@ public class PoolSelectionUnitV2
                 variableMap, storageInfo.locations(), linkGroupName);
 
 
-        PoolPreferenceLevel[] result = null;
+        PoolPreferenceLevel[] result;
         _psuReadLock.lock();
         try {
             //
-            // resolve the unit from the unitname (or net unit mask)
-            //
-            // regexp code added by rw2 12/5/02
-            // original code is in the else
+            // The net and protocol units are resolved before consulting
+            // the cache, such that all clients of a net unit share the
+            // same cache entry.
             //
-            List<Unit> list = new ArrayList<>();
-            if (_useRegex) {
-                Unit universalCoverage = null;
-                Unit classCoverage = null;
-
-                for (Unit unit : _units.values()) {
-                    if (unit.getType() != STORE) {
-                        continue;
-                    }
-
-                    if (unit.getName().equals("*@*")) {
-                        universalCoverage = unit;
-                    } else if (unit.getName().equals("*@" + storeUnitName)) {
-                        classCoverage = unit;
-                    } else {
-                        if (Pattern.matches(unit.getName(), storeUnitName)) {
-                            list.add(unit);
-                            break;
-                        }
-                    }
-                }
-                //
-                // If a pattern matches then use it, fail over to a class,
-                // then universal. If nothing, throw exception
-                //
-                if (list.isEmpty()) {
-                    if (classCoverage != null) {
-                        list.add(classCoverage);
-                    } else if (universalCoverage != null) {
-                        list.add(universalCoverage);
-                    } else {
-                        throw new IllegalArgumentException(
-                                "Unit not found : " + storeUnitName);
-                    }
-                }
-
-            } else {
-                Unit unit = _units.get(storeUnitName);
-                if (unit == null) {
-                    int ind = storeUnitName.lastIndexOf("@");
-                    if ((ind > 0) && (ind < (storeUnitName.length() - 1))) {
-                        String template = "*@"
-                                + storeUnitName.substring(ind + 1);
-                        if ((unit = _units.get(template)) == null) {
-
-                            if ((unit = _units.get("*@*")) == null) {
-                                _log.debug("no matching storage unit found for: {}", storeUnitName);
-                                throw new IllegalArgumentException(
-                                        "Unit not found : " + storeUnitName);
-                            }
-                        }
-                    } else {
-                        throw new IllegalArgumentException(
-                                "IllegalUnitFormat : " + storeUnitName);
-                    }
-                }
-                _log.debug("matching storage unit found for: {}", storeUnitName);
-                list.add(unit);
-            }
+            Unit protocolUnit = null;
             if (protocolUnitName != null) {
-
-                Unit unit = findProtocolUnit(protocolUnitName);
+                protocolUnit = findProtocolUnit(protocolUnitName);
                 //
-                if (unit == null){
+                if (protocolUnit == null){
                     _log.debug("no matching protocol unit found for: {}", protocolUnitName);
                     throw new IllegalArgumentException("Unit not found : "
                             + protocolUnitName);
                 }
-                _log.debug("matching protocol unit found: {}", unit);
-                list.add(unit);
-            }
-            if (dCacheUnitName != null) {
-                Unit unit = _units.get(dCacheUnitName);
-                if (unit == null) {
-                    _log.debug("no matching dCache unit found for: {}", dCacheUnitName);
-                    throw new IllegalArgumentException("Unit not found : "
-                            + dCacheUnitName);
-                }
-                _log.debug("matching dCache unit found: {}", unit);
-                list.add(unit);
+                _log.debug("matching protocol unit found: {}", protocolUnit);
             }
+            Unit netUnit = null;
             if (netUnitName != null) {
                 try {
-                    Unit unit = _netHandler.match(netUnitName);
-                    if (unit == null) {
+                    netUnit = _netHandler.match(netUnitName);
+                    if (netUnit == null) {
                         _log.debug("no matching net unit found for: {}", netUnitName);
                         throw new IllegalArgumentException(
                                 "Unit not matched : " + netUnitName);
                     }
-                    _log.debug("matching net unit found: {}" + unit);
-                    list.add(unit);
+                    _log.debug("matching net unit found: {}", netUnit);
                 } catch (UnknownHostException uhe) {
                     throw new IllegalArgumentException(
                             "NetUnit not resolved : " + netUnitName);
                 }
             }
-            //
-            // match the requests ( logical AND )
-            //
-            //
-            // Map map = null ;
-            // while( units.hasNext() )map = match( map , (Unit)units.next() ) ;
-            // Iterator links = map.values().iterator() ;
-            //
 
-            //
-            // i) sort according to the type (read,write,cache)
-            // ii) the and is only OK if we have at least as many
-            // units (from the arguments) as required by the
-            // number of uGroupList(s).
-            // iii) check for the hashtable if required.
-            //
-            int fitCount = list.size();
-            Set<Link> sortedSet = new TreeSet<>(new LinkComparator(type));
+            MatchKey key = new MatchKey(type, storeUnitName, dCacheUnitName,
+                                        netUnit, protocolUnit, linkGroupName);
+            List<LinkLevel> levels = _matchCache.getIfPresent(key);
+            if (levels == null) {
+                levels = matchLinkLevels(type, storeUnitName, dCacheUnitName,
+                                         netUnit, protocolUnit, linkGroupName);
+                _matchCache.put(key, levels);
+            }
 
             //
-            // use subset on links if it's defined
+            // pool state changes without invalidating the cache, thus
+            // the pools are filtered on every request
             //
+            result = new PoolPreferenceLevel[levels.size()];
+            for (int i = 0; i < result.length; i++) {
+                LinkLevel level = levels.get(i);
+                List<String> resultList = new ArrayList<>();
+                for (Pool pool : level.getPools()) {
+                    _log.debug("Pool: {} can read from tape? : {}", pool, pool.canReadFromTape());
+                    if (((type == DirectionType.READ && pool.canRead())
+                         || (type == DirectionType.CACHE && pool.canReadFromTape()
+                             && poolCanStageFile(pool, storageInfo))
+                         || (type == DirectionType.WRITE && pool.canWrite())
+                         || (type == DirectionType.P2P && pool.canWriteForP2P()))
+                        && (_allPoolsActive || pool.isActive())) {
+                        resultList.add(pool.getName());
+                    }
+                }
+                result[i] = new PoolPreferenceLevel(resultList, level.getTag());
+            }
+        } finally {
+            _psuReadLock.unlock();
+        }
+
+        if( _log.isDebugEnabled() ) {
+
+            StringBuilder sb = new StringBuilder("match done: ");
 
-            LinkGroup linkGroup = null;
-            if (linkGroupName != null) {
-                linkGroup = _linkGroups.get(linkGroupName);
-                if (linkGroup == null) {
-                    _log.debug("LinkGroup not found : {}", linkGroupName );
-                    throw new IllegalArgumentException("LinkGroup not found : "
-                            + linkGroupName);
+            for( int i = 0; i < result.length; i++) {
+                sb.append("[").append(i).append("] :");
+                for(String poolName: result[i].getPoolList()) {
+                    sb.append(" ").append(poolName);
                 }
             }
+            _log.debug(sb.toString());
+        }
+        return result;
+    }
 
+    /**
+     * Returns the links matching the given units, grouped into
+     * preference levels and resolved to pools. The result depends on
+     * the configuration only and is cached until the configuration
+     * changes. Must be called with the read lock held.
+     *
+     * Link conditions on the storage info of the file are not
+     * supported (Link#exec accepts every file), thus the result is
+     * the same for all files of a storage unit.
+     */
+    private List<LinkLevel> matchLinkLevels(DirectionType type,
+                                            String storeUnitName,
+                                            String dCacheUnitName,
+                                            Unit netUnit,
+                                            Unit protocolUnit,
+                                            String linkGroupName)
+    {
+        //
+        // resolve the unit from the unitname (or net unit mask)
+        //
+        // regexp code added by rw2 12/5/02
+        // original code is in the else
+        //
+        List<Unit> list = new ArrayList<>();
+        if (_useRegex) {
+            Unit universalCoverage = null;
+            Unit classCoverage = null;
+
+            for (Unit unit : _units.values()) {
+                if (unit.getType() != STORE) {
+                    continue;
+                }
+
+                if (unit.getName().equals("*@*")) {
+                    universalCoverage = unit;
+                } else if (unit.getName().equals("*@" + storeUnitName)) {
+                    classCoverage = unit;
+                } else {
+                    if (Pattern.matches(unit.getName(), storeUnitName)) {
+                        list.add(unit);
+                        break;
+                    }
+                }
+            }
             //
-            // find all links that matches the specified list of units
+            // If a pattern matches then use it, fail over to a class,
+            // then universal. If nothing, throw exception
             //
+            if (list.isEmpty()) {
+                if (classCoverage != null) {
+                    list.add(classCoverage);
+                } else if (universalCoverage != null) {
+                    list.add(universalCoverage);
+                } else {
+                    throw new IllegalArgumentException(
+                            "Unit not found : " + storeUnitName);
+                }
+            }
 
-            LinkMap matchingLinks = new LinkMap();
-            for (Unit unit : list) {
-                matchingLinks = match(matchingLinks, unit, linkGroup, type);
+        } else {
+            Unit unit = _units.get(storeUnitName);
+            if (unit == null) {
+                int ind = storeUnitName.lastIndexOf("@");
+                if ((ind > 0) && (ind < (storeUnitName.length() - 1))) {
+                    String template = "*@"
+                            + storeUnitName.substring(ind + 1);
+                    if ((unit = _units.get(template)) == null) {
+
+                        if ((unit = _units.get("*@*")) == null) {
+                            _log.debug("no matching storage unit found for: {}", storeUnitName);
+                            throw new IllegalArgumentException(
+                                    "Unit not found : " + storeUnitName);
+                        }
+                    }
+                } else {
+                    throw new IllegalArgumentException(
+                            "IllegalUnitFormat : " + storeUnitName);
+                }
             }
+            _log.debug("matching storage unit found for: {}", storeUnitName);
+            list.add(unit);
+        }
+        if (protocolUnit != null) {
+            list.add(protocolUnit);
+        }
+        if (dCacheUnitName != null) {
+            Unit unit = _units.get(dCacheUnitName);
+            if (unit == null) {
+                _log.debug("no matching dCache unit found for: {}", dCacheUnitName);
+                throw new IllegalArgumentException("Unit not found : "
+                        + dCacheUnitName);
+            }
+            _log.debug("matching dCache unit found: {}", unit);
+            list.add(unit);
+        }
+        if (netUnit != null) {
+            list.add(netUnit);
+        }
+        //
+        // match the requests ( logical AND )
+        //
+        //
+        // Map map = null ;
+        // while( units.hasNext() )map = match( map , (Unit)units.next() ) ;
+        // Iterator links = map.values().iterator() ;
+        //
 
-            Iterator<Link> linkIterator = matchingLinks.iterator();
-            while (linkIterator.hasNext()) {
+        //
+        // i) sort according to the type (read,write,cache)
+        // ii) the and is only OK if we have at least as many
+        // units (from the arguments) as required by the
+        // number of uGroupList(s).
+        // iii) check for the hashtable if required.
+        //
+        int fitCount = list.size();
+        Set<Link> sortedSet = new TreeSet<>(new LinkComparator(type));
 
-                Link link = linkIterator.next();
-                if ((link._uGroupList.size() <= fitCount)
-                        && ((variableMap == null) || link.exec(variableMap))) {
+        //
+        // use subset on links if it's defined
+        //
 
-                    sortedSet.add(link);
-                }
+        LinkGroup linkGroup = null;
+        if (linkGroupName != null) {
+            linkGroup = _linkGroups.get(linkGroupName);
+            if (linkGroup == null) {
+                _log.debug("LinkGroup not found : {}", linkGroupName );
+                throw new IllegalArgumentException("LinkGroup not found : "
+                        + linkGroupName);
             }
-            int pref = -1;
-            List<List<Link>> listList = new ArrayList<>();
-            List<Link> current = null;
+        }
 
-            switch (type) {
+        //
+        // find all links that matches the specified list of units
+        //
 
-                case READ:
-                    for (Link link : sortedSet) {
-                        if (link.getReadPref() < 1) {
-                            continue;
-                        }
-                        if (link.getReadPref() != pref) {
-                            listList.add(current = new ArrayList<>());
-                            pref = link.getReadPref();
-                        }
-                        current.add(link);
+        LinkMap matchingLinks = new LinkMap();
+        for (Unit unit : list) {
+            matchingLinks = match(matchingLinks, unit, linkGroup, type);
+        }
+
+        Iterator<Link> linkIterator = matchingLinks.iterator();
+        while (linkIterator.hasNext()) {
+
+            Link link = linkIterator.next();
+            if (link._uGroupList.size() <= fitCount) {
+
+                sortedSet.add(link);
+            }
+        }
+        int pref = -1;
+        List<List<Link>> listList = new ArrayList<>();
+        List<Link> current = null;
+
+        switch (type) {
+
+            case READ:
+                for (Link link : sortedSet) {
+                    if (link.getReadPref() < 1) {
+                        continue;
                     }
-                    break;
-                case CACHE:
-                    for (Link link : sortedSet) {
-                        if (link.getCachePref() < 1) {
-                            continue;
-                        }
-                        if (link.getCachePref() != pref) {
-                            listList.add(current = new ArrayList<>());
-                            pref = link.getCachePref();
-                        }
-                        current.add(link);
+                    if (link.getReadPref() != pref) {
+                        listList.add(current = new ArrayList<>());
+                        pref = link.getReadPref();
                     }
-                    break;
-                case P2P:
-                    for (Link link : sortedSet) {
-                        int tmpPref = link.getP2pPref() < 0 ? link.getReadPref()
-                                : link.getP2pPref();
-                        if (tmpPref < 1) {
-                            continue;
-                        }
-                        if (tmpPref != pref) {
-                            listList.add(current = new ArrayList<>());
-                            pref = tmpPref;
-                        }
-                        current.add(link);
+                    current.add(link);
+                }
+                break;
+            case CACHE:
+                for (Link link : sortedSet) {
+                    if (link.getCachePref() < 1) {
+                        continue;
                     }
-                    break;
-                case WRITE:
-                    for (Link link : sortedSet) {
-                        if (link.getWritePref() < 1) {
-                            continue;
-                        }
-                        if (link.getWritePref() != pref) {
-                            listList.add(current = new ArrayList<>());
-                            pref = link.getWritePref();
-                        }
-                        current.add(link);
+                    if (link.getCachePref() != pref) {
+                        listList.add(current = new ArrayList<>());
+                        pref = link.getCachePref();
                     }
-            }
-            List<Link>[] x = listList.toArray(new List[listList.size()]);
-            result = new PoolPreferenceLevel[x.length];
-            //
-            // resolve the links to the pools
-            //
-            for (int i = 0; i < x.length; i++) {
-
-                List<Link> linkList = x[i];
-                List<String> resultList = new ArrayList<>();
-                String tag = null;
-
-                for (Link link : linkList) {
-                    //
-                    // get the link if available
-                    //
-                    if ((tag == null) && (link.getTag() != null)) {
-                        tag = link.getTag();
+                    current.add(link);
+                }
+                break;
+            case P2P:
+                for (Link link : sortedSet) {
+                    int tmpPref = link.getP2pPref() < 0 ? link.getReadPref()
+                            : link.getP2pPref();
+                    if (tmpPref < 1) {
+                        continue;
                     }
-
-                    for (PoolCore poolCore : link._poolList.values()) {
-                        if (poolCore instanceof Pool) {
-                            Pool pool = (Pool) poolCore;
-                            _log.debug("Pool: {} can read from tape? : {}", pool, pool.canReadFromTape());
-                            if (((type == DirectionType.READ && pool.canRead())
-                                 || (type == DirectionType.CACHE && pool.canReadFromTape()
-                                     && poolCanStageFile(pool, storageInfo))
-                                 || (type == DirectionType.WRITE && pool.canWrite())
-                                 || (type == DirectionType.P2P && pool.canWriteForP2P()))
-                                && (_allPoolsActive || pool.isActive())) {
-                                resultList.add(pool.getName());
-                            }
-                        } else {
-                            for (Pool pool : ((PGroup)poolCore)._poolList.values()) {
-                                _log.debug("Pool: {} can read from tape? : {}", pool, pool.canReadFromTape());
-                                if (((type == DirectionType.READ && pool.canRead())
-                                     || (type == DirectionType.CACHE && pool.canReadFromTape()
-                                         && poolCanStageFile(pool, storageInfo))
-                                     || (type == DirectionType.WRITE && pool.canWrite())
-                                     || (type == DirectionType.P2P && pool.canWriteForP2P()))
-                                    && (_allPoolsActive || pool.isActive())) {
-                                    resultList.add(pool.getName());
-                                }
-                            }
-                        }
+                    if (tmpPref != pref) {
+                        listList.add(current = new ArrayList<>());
+                        pref = tmpPref;
                     }
+                    current.add(link);
+                }
+                break;
+            case WRITE:
+                for (Link link : sortedSet) {
+                    if (link.getWritePref() < 1) {
+                        continue;
+                    }
+                    if (link.getWritePref() != pref) {
+                        listList.add(current = new ArrayList<>());
+                        pref = link.getWritePref();
+                    }
+                    current.add(link);
                 }
-                result[i] = new PoolPreferenceLevel(resultList, tag);
-            }
-
-        } finally {
-            _psuReadLock.unlock();
         }
+        List<LinkLevel> levels = new ArrayList<>(listList.size());
+        //
+        // resolve the links to the pools
+        //
+        for (List<Link> linkList : listList) {
+            List<Pool> pools = new ArrayList<>();
+            String tag = null;
 
-        if( _log.isDebugEnabled() ) {
-
-            StringBuilder sb = new StringBuilder("match done: ");
+            for (Link link : linkList) {
+                //
+                // get the link if available
+                //
+                if ((tag == null) && (link.getTag() != null)) {
+                    tag = link.getTag();
+                }
 
-            for( int i = 0; i < result.length; i++) {
-                sb.append("[").append(i).append("] :");
-                for(String poolName: result[i].getPoolList()) {
-                    sb.append(" ").append(poolName);
+                for (PoolCore poolCore : link._poolList.values()) {
+                    if (poolCore instanceof Pool) {
+                        pools.add((Pool) poolCore);
+                    } else {
+                        pools.addAll(((PGroup) poolCore)._poolList.values());
+                    }
                 }
             }
-            _log.debug(sb.toString());
+            levels.add(new LinkLevel(pools, tag));
         }
-        return result;
+        return levels;
     }
 
     @Override
@@ -877,6 +947,7 @@ public class PoolSelectionUnitV2
                 throw new CommandSyntaxException("Syntax error");
             }
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
 
@@ -1008,6 +1079,7 @@ public class PoolSelectionUnitV2
 
             _pGroups.put(group.getName(), group);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -1018,18 +1090,24 @@ public class PoolSelectionUnitV2
     public String ac_psu_set_regex_$_1(Args args) {
         String retVal;
         String onOff = args.argv(0);
-        switch (onOff) {
-        case "on":
-            _useRegex = true;
-            retVal = "regex turned on";
-            break;
-        case "off":
-            _useRegex = false;
-            retVal = "regex turned off";
-            break;
-        default:
-            throw new IllegalArgumentException(
-                    "please set regex either on or off");
+        _psuWriteLock.lock();
+        try {
+            switch (onOff) {
+            case "on":
+                _useRegex = true;
+                retVal = "regex turned on";
+                break;
+            case "off":
+                _useRegex = false;
+                retVal = "regex turned off";
+                break;
+            default:
+                throw new IllegalArgumentException(
+                        "please set regex either on or off");
+            }
+            _matchCache.invalidateAll();
+        } finally {
+            _psuWriteLock.unlock();
         }
         return retVal;
     }
@@ -1054,6 +1132,7 @@ public class PoolSelectionUnitV2
             }
             _pools.put(pool.getName(), pool);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -1097,6 +1176,7 @@ public class PoolSelectionUnitV2
             }
             return poolCountDescriptionFor(count) + " updated";
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
     }
@@ -1151,6 +1231,7 @@ public class PoolSelectionUnitV2
             _links.put(link.getName(), link);
 
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -1171,6 +1252,7 @@ public class PoolSelectionUnitV2
 
             _uGroups.put(group.getName(), group);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -1239,6 +1321,7 @@ public class PoolSelectionUnitV2
 
             _units.put(canonicalName, unit);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -1262,6 +1345,7 @@ public class PoolSelectionUnitV2
             LinkGroup newGroup = new LinkGroup(newGroupName);
             _linkGroups.put(newGroupName, newGroup);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
 
@@ -1899,6 +1983,7 @@ public class PoolSelectionUnitV2
 
             _units.remove(unitName);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -1930,6 +2015,7 @@ public class PoolSelectionUnitV2
             _uGroups.remove(groupName);
 
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -1965,6 +2051,7 @@ public class PoolSelectionUnitV2
             //
             _pGroups.remove(name);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -1999,6 +2086,7 @@ public class PoolSelectionUnitV2
             //
             _pools.remove(name);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -2041,6 +2129,7 @@ public class PoolSelectionUnitV2
             group._unitList.remove(canonicalName);
             unit._uGroupList.remove(groupName);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -2074,6 +2163,7 @@ public class PoolSelectionUnitV2
             group._poolList.remove(poolName);
             pool._pGroupList.remove(groupName);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -2108,6 +2198,7 @@ public class PoolSelectionUnitV2
             link.setLinkGroup(null);
 
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
 
@@ -2137,6 +2228,7 @@ public class PoolSelectionUnitV2
             }
 
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
 
@@ -2180,6 +2272,7 @@ public class PoolSelectionUnitV2
             //
             _links.remove(name);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -2224,6 +2317,7 @@ public class PoolSelectionUnitV2
             pool._pGroupList.put(group.getName(), group);
             group._poolList.put(pool.getName(), pool);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
     }
@@ -2264,6 +2358,7 @@ public class PoolSelectionUnitV2
             unit._uGroupList.put(group.getName(), group);
             group._unitList.put(canonicalName, unit);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -2303,6 +2398,7 @@ public class PoolSelectionUnitV2
             linkGroup.add(link);
             link.setLinkGroup(linkGroup);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
 
@@ -2338,6 +2434,7 @@ public class PoolSelectionUnitV2
             core._linkList.remove(linkName);
             link._poolList.remove(poolName);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
 
@@ -2368,6 +2465,7 @@ public class PoolSelectionUnitV2
             core._linkList.put(link.getName(), link);
             link._poolList.put(core.getName(), core);
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
 
@@ -2397,6 +2495,7 @@ public class PoolSelectionUnitV2
             }
 
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -2437,6 +2536,7 @@ public class PoolSelectionUnitV2
             }
 
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -2468,6 +2568,7 @@ public class PoolSelectionUnitV2
                     .hasOption("r"));
 
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -2498,6 +2599,7 @@ public class PoolSelectionUnitV2
             linkGroup.removeAttribute(attrKeyValue[0], attrKeyValue[1]);
 
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -2521,6 +2623,7 @@ public class PoolSelectionUnitV2
             linkGroup.setCustodialAllowed(Boolean.parseBoolean(args.argv(1)));
 
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -2544,6 +2647,7 @@ public class PoolSelectionUnitV2
             linkGroup.setOutputAllowed(Boolean.parseBoolean(args.argv(1)));
 
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -2567,6 +2671,7 @@ public class PoolSelectionUnitV2
             linkGroup.setReplicaAllowed(Boolean.parseBoolean(args.argv(1)));
 
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -2590,6 +2695,7 @@ public class PoolSelectionUnitV2
             linkGroup.setOnlineAllowed(Boolean.parseBoolean(args.argv(1)));
 
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -2613,6 +2719,7 @@ public class PoolSelectionUnitV2
             linkGroup.setNearlineAllowed(Boolean.parseBoolean(args.argv(1)));
 
         } finally {
+            _matchCache.invalidateAll();
             _psuWriteLock.unlock();
         }
         return "";
@@ -2742,4 +2849,78 @@ public class PoolSelectionUnitV2
             return String.valueOf(count) + " pools";
         }
     }
+
+    /**
+     * Key of the link match cache.
+     */
+    private static class MatchKey
+    {
+        private final DirectionType _type;
+        private final String _storeUnit;
+        private final String _dCacheUnit;
+        private final String _netUnit;
+        private final String _protocolUnit;
+        private final String _linkGroup;
+
+        MatchKey(DirectionType type, String storeUnit, String dCacheUnit,
+                 Unit netUnit, Unit protocolUnit, String linkGroup)
+        {
+            _type = type;
+            _storeUnit = storeUnit;
+            _dCacheUnit = dCacheUnit;
+            _netUnit = (netUnit == null) ? null : netUnit.getName();
+            _protocolUnit = (protocolUnit == null) ? null : protocolUnit.getName();
+            _linkGroup = linkGroup;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MatchKey)) {
+                return false;
+            }
+            MatchKey other = (MatchKey) o;
+            return _type == other._type &&
+                Objects.equals(_storeUnit, other._storeUnit) &&
+                Objects.equals(_dCacheUnit, other._dCacheUnit) &&
+                Objects.equals(_netUnit, other._netUnit) &&
+                Objects.equals(_protocolUnit, other._protocolUnit) &&
+                Objects.equals(_linkGroup, other._linkGroup);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(_type, _storeUnit, _dCacheUnit, _netUnit,
+                                _protocolUnit, _linkGroup);
+        }
+    }
+
+    /**
+     * Pools of the links of one preference level.
+     */
+    private static class LinkLevel
+    {
+        private final List<Pool> _pools;
+        private final String _tag;
+
+        LinkLevel(List<Pool> pools, String tag)
+        {
+            _pools = pools;
+            _tag = tag;
+        }
+
+        List<Pool> getPools()
+        {
+            return _pools;
+        }
+
+        String getTag()
+        {
+            return _tag;
+        }
+    }
 }
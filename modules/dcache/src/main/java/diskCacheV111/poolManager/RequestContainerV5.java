@@ -9,19 +9,29 @@ import org.springframework.beans.factory.annotation.Required;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.lang.Thread.UncaughtExceptionHandler;
 import java.net.InetSocketAddress;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Deque;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -29,13 +39,11 @@ import diskCacheV111.util.CacheException;
 import diskCacheV111.util.CheckStagePermission;
 import diskCacheV111.util.CostException;
 import diskCacheV111.util.DestinationCostException;
-import diskCacheV111.util.ExtendedRunnable;
 import diskCacheV111.util.FileNotInCacheException;
 import diskCacheV111.util.PermissionDeniedCacheException;
 import diskCacheV111.util.PnfsHandler;
 import diskCacheV111.util.PnfsId;
 import diskCacheV111.util.SourceCostException;
-import diskCacheV111.util.ThreadPool;
 import diskCacheV111.vehicles.DCapProtocolInfo;
 import diskCacheV111.vehicles.IpProtocolInfo;
 import diskCacheV111.vehicles.Message;
@@ -61,6 +69,10 @@ import dmg.cells.nucleus.AbstractCellComponent;
 import dmg.cells.nucleus.CellCommandListener;
 import dmg.cells.nucleus.CellMessageReceiver;
 import org.dcache.cells.CellStub;
+import org.dcache.commons.stats.Gauge;
+import org.dcache.commons.stats.LatencyHistogram;
+import org.dcache.commons.stats.MetricsRegistry;
+import org.dcache.commons.stats.StripedCounter;
 import org.dcache.poolmanager.Partition;
 import org.dcache.poolmanager.PartitionManager;
 import org.dcache.poolmanager.PoolInfo;
@@ -69,7 +81,7 @@ import org.dcache.vehicles.FileAttributes;
 
 public class RequestContainerV5
     extends AbstractCellComponent
-    implements Runnable, CellCommandListener, CellMessageReceiver
+    implements CellCommandListener, CellMessageReceiver
 {
     private static final Logger _log =
         LoggerFactory.getLogger(RequestContainerV5.class);
@@ -89,17 +101,51 @@ public class RequestContainerV5
     private static final String STRING_BESTEFFORT = "besteffort" ;
     private static final String STRING_NOTCHECKED = "notchecked" ;
 
-    /** value in milliseconds */
-    private static final int DEFAULT_RETRY_INTERVAL = 60000;
+    /**
+     * Handlers by the UOID of the message they are waiting a reply
+     * for.
+     */
+    private final ConcurrentMap<UOID, PoolRequestHandler>   _messageHash   = new ConcurrentHashMap<>() ;
+
+    /**
+     * Handlers by canonical request name.
+     */
+    private final ConcurrentMap<String, PoolRequestHandler> _handlerHash   = new ConcurrentHashMap<>() ;
 
-    private final Map<UOID, PoolRequestHandler>     _messageHash   = new HashMap<>() ;
-    private final Map<String, PoolRequestHandler>   _handlerHash   = new HashMap<>() ;
+    /**
+     * Held shared while sending a message and registering the handler
+     * waiting for its reply. A reply for which no handler is
+     * registered may have overtaken the registration; it acquires the
+     * lock exclusively before looking again.
+     */
+    private final ReadWriteLock _sendLock = new ReentrantReadWriteLock();
+
+    private static final String METRIC_REQUESTS = "dcache_poolmanager_read_requests_total";
+    private static final String METRIC_JOINED_REQUESTS = "dcache_poolmanager_read_requests_joined_total";
+    private static final String METRIC_SELECTIONS = "dcache_poolmanager_read_selections_total";
+    private static final String METRIC_REQUEST_DURATION = "dcache_poolmanager_read_request_duration_milliseconds";
+    private static final String METRIC_STATE_DURATION = "dcache_poolmanager_read_request_state_duration_milliseconds";
+    private static final String METRIC_ACTIVE_REQUESTS = "dcache_poolmanager_read_requests_active";
+    private static final String METRIC_COALESCING_RATIO = "dcache_poolmanager_read_requests_coalescing_ratio";
+
+    private final StripedCounter _readRequests =
+        MetricsRegistry.getInstance().counter(METRIC_REQUESTS,
+                                              "Read pool selection requests received");
+    private final StripedCounter _joinedReadRequests =
+        MetricsRegistry.getInstance().counter(METRIC_JOINED_REQUESTS,
+                                              "Read pool selection requests joining an active request for the same file");
+    private final StripedCounter _readSelections =
+        MetricsRegistry.getInstance().counter(METRIC_SELECTIONS,
+                                              "Read pool selections performed; concurrent requests for the same file share a selection");
+    private final LatencyHistogram _requestDuration =
+        MetricsRegistry.getInstance().histogram(METRIC_REQUEST_DURATION,
+                                                "Time from the first read pool selection request for a file until it is answered");
+    private final Map<RequestState, LatencyHistogram> _stateDuration =
+        new EnumMap<>(RequestState.class);
 
     private CellStub _billing;
     private long        _retryTimer    = 15 * 60 * 1000 ;
 
-    private int         _maxRequestClumping = 1 ;
-
     private String      _onError       = "suspend" ;
     private int         _maxRetries    = 3 ;
     private int         _maxRestore    = -1 ;
@@ -116,14 +162,11 @@ public class RequestContainerV5
     private PoolMonitorV5      _poolMonitor;
     private PnfsHandler        _pnfsHandler;
     private final SimpleDateFormat   _formatter        = new SimpleDateFormat ("MM.dd HH:mm:ss");
-    private ThreadPool         _threadPool ;
+    private ExecutorService    _executor;
+    private ScheduledExecutorService _scheduler;
     private final Map<PnfsId, CacheException>            _selections       = new HashMap<>() ;
     private PartitionManager   _partitionManager ;
     private long               _checkFilePingTimer = 10 * 60 * 1000 ;
-    /** value in milliseconds */
-    private final int _stagingRetryInterval;
-
-    private final Thread _tickerThread;
 
     /**
      * Tape Protection.
@@ -136,20 +179,53 @@ public class RequestContainerV5
     public static final EnumSet<RequestState> allStatesExceptStage =
         EnumSet.complementOf(EnumSet.of(RequestState.ST_STAGE));
 
-    public RequestContainerV5( int stagingRetryInterval) {
-        _stagingRetryInterval = stagingRetryInterval;
-        _tickerThread = new Thread(this, "Container-ticker");
-        _tickerThread.start();
-    }
-
     public RequestContainerV5()
     {
-        this( DEFAULT_RETRY_INTERVAL);
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        for (RequestState state: RequestState.values()) {
+            _stateDuration.put(state,
+                               registry.histogram(METRIC_STATE_DURATION,
+                                                  "Time read pool selection requests spend in a state",
+                                                  "state", state.name()));
+        }
+        registry.gauge(METRIC_ACTIVE_REQUESTS,
+                       "Read pool selection requests being processed",
+                       new Gauge() {
+                           @Override
+                           public double getValue()
+                           {
+                               return _handlerHash.size();
+                           }
+                       });
+        registry.gauge(METRIC_COALESCING_RATIO,
+                       "Fraction of read pool selection requests that shared the selection of another request",
+                       new Gauge() {
+                           @Override
+                           public double getValue()
+                           {
+                               long requests = _readRequests.get();
+                               return (requests == 0) ? 0.0 : (double) _joinedReadRequests.get() / requests;
+                           }
+                       });
     }
 
+    /**
+     * Removes the metrics of this container from the registry, such
+     * that a new container starts from zero and the gauges no longer
+     * refer to this one.
+     */
     public void shutdown()
     {
-        _tickerThread.interrupt();
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.remove(METRIC_ACTIVE_REQUESTS);
+        registry.remove(METRIC_COALESCING_RATIO);
+        registry.remove(METRIC_REQUESTS);
+        registry.remove(METRIC_JOINED_REQUESTS);
+        registry.remove(METRIC_SELECTIONS);
+        registry.remove(METRIC_REQUEST_DURATION);
+        for (RequestState state: RequestState.values()) {
+            registry.remove(METRIC_STATE_DURATION, "state", state.name());
+        }
     }
 
     @Required
@@ -176,10 +252,24 @@ public class RequestContainerV5
         _partitionManager = partitionManager;
     }
 
+    /**
+     * Executor running the state engines of request handlers. The
+     * number of threads of the executor bounds the number of requests
+     * processed concurrently.
+     */
+    @Required
+    public void setExecutor(ExecutorService executor)
+    {
+        _executor = executor;
+    }
+
+    /**
+     * Scheduler for the timeouts of request handlers.
+     */
     @Required
-    public void setThreadPool(ThreadPool threadPool)
+    public void setScheduledExecutor(ScheduledExecutorService scheduler)
     {
-        _threadPool = threadPool;
+        _scheduler = scheduler;
     }
 
     public void setHitInfoMessages(boolean sendHitInfo)
@@ -196,10 +286,14 @@ public class RequestContainerV5
     public void messageArrived(CellMessage envelope, Object message)
     {
         UOID uoid = envelope.getLastUOID();
-        PoolRequestHandler handler;
-
-        synchronized (_messageHash) {
-            handler = _messageHash.remove(uoid);
+        PoolRequestHandler handler = _messageHash.remove(uoid);
+        if (handler == null) {
+            _sendLock.writeLock().lock();
+            try {
+                handler = _messageHash.remove(uoid);
+            } finally {
+                _sendLock.writeLock().unlock();
+            }
             if (handler == null) {
                 return;
             }
@@ -208,48 +302,25 @@ public class RequestContainerV5
         handler.mailForYou(message);
     }
 
-    @Override
-    public void run()
+    /**
+     * Sends a message and registers handler as waiting for the reply.
+     */
+    private void sendAndRegister(CellMessage envelope, PoolRequestHandler handler)
+        throws NoRouteToCellException
     {
-        while (!Thread.interrupted()) {
-            try {
-                Thread.sleep(_stagingRetryInterval) ;
-
-                List<PoolRequestHandler> list;
-                synchronized (_handlerHash) {
-                    list = new ArrayList<>(_handlerHash.values());
-                }
-                for (PoolRequestHandler handler: list) {
-                    if (handler != null) {
-                        handler.alive();
-                    }
-                }
-            } catch (InterruptedException e) {
-                break;
-            } catch (Throwable t) {
-                Thread thisThread = Thread.currentThread();
-                UncaughtExceptionHandler ueh =
-                    thisThread.getUncaughtExceptionHandler();
-                ueh.uncaughtException(thisThread, t);
-            }
+        _sendLock.readLock().lock();
+        try {
+            sendMessage(envelope);
+            _messageHash.put(envelope.getUOID(), handler);
+        } finally {
+            _sendLock.readLock().unlock();
         }
-        _log.debug("Container-ticker done");
     }
 
     public void poolStatusChanged(String poolName, int poolStatus) {
         _log.info("Restore Manager : got 'poolRestarted' for " + poolName);
         try {
-            List<PoolRequestHandler> list;
-            synchronized (_handlerHash) {
-                list = new ArrayList<>(_handlerHash.values());
-            }
-
-            for (PoolRequestHandler rph : list) {
-
-                if (rph == null) {
-                    continue;
-                }
-
+            for (PoolRequestHandler rph : _handlerHash.values()) {
 
                 switch( poolStatus ) {
                     case PoolStatusChangedMessage.UP:
@@ -286,7 +357,8 @@ public class RequestContainerV5
 
        pw.println("Restore Controller [$Revision$]\n") ;
        pw.println( "      Retry Timeout : "+(_retryTimer/1000)+" seconds" ) ;
-       pw.println( "  Thread Controller : "+_threadPool ) ;
+       pw.println( "  Thread Controller : "+_executor ) ;
+       pw.println( "    Active Requests : "+_handlerHash.size() ) ;
        pw.println( "    Maximum Retries : "+_maxRetries ) ;
        pw.println( "    Pool Ping Timer : "+(_checkFilePingTimer/1000) + " seconds" ) ;
        pw.println( "           On Error : "+_onError ) ;
@@ -315,14 +387,33 @@ public class RequestContainerV5
         pw.append("rc set poolpingtimer ").println(_checkFilePingTimer/1000);
         pw.append("rc set max restore ")
             .println(_maxRestore<0?"unlimited":(""+_maxRestore));
-        pw.append("rc set max threads ")
-            .println(_threadPool.getMaxThreadCount());
+        if (_executor instanceof ThreadPoolExecutor) {
+            pw.append("rc set max threads ")
+                .println(((ThreadPoolExecutor) _executor).getMaximumPoolSize());
+        }
     }
 
     public static final String hh_rc_set_max_threads = "<threadCount> # 0 : no limits" ;
     public String ac_rc_set_max_threads_$_1( Args args ){
        int n = Integer.parseInt(args.argv(0));
-       _threadPool.setMaxThreadCount(n);
+       if (n < 0) {
+           throw new IllegalArgumentException("must be >=0");
+       }
+       if (!(_executor instanceof ThreadPoolExecutor)) {
+           throw new IllegalStateException("Thread count of " + _executor + " cannot be changed");
+       }
+       ThreadPoolExecutor executor = (ThreadPoolExecutor) _executor;
+       int max = (n == 0) ? Integer.MAX_VALUE : n;
+       /* Requests are queued once all threads are busy, thus the
+        * core size is the effective limit.
+        */
+       if (max > executor.getMaximumPoolSize()) {
+           executor.setMaximumPoolSize(max);
+           executor.setCorePoolSize(max);
+       } else {
+           executor.setCorePoolSize(max);
+           executor.setMaximumPoolSize(max);
+       }
        return "New max thread count : "+n;
     }
 
@@ -478,28 +569,17 @@ public class RequestContainerV5
     {
        boolean forceAll = args.hasOption("force-all") ;
        if( args.argv(0).equals("*") ){
-          List<PoolRequestHandler> all;
-          //
-          // Remember : we are not allowed to call 'retry' as long
-          // as we  are holding the _handlerHash lock.
-          //
-          synchronized( _handlerHash ){
-             all = new ArrayList<>( _handlerHash.values() ) ;
-          }
-          for (PoolRequestHandler rph : all) {
+          for (PoolRequestHandler rph : _handlerHash.values()) {
               if( forceAll || ( rph._currentRc != 0 ) ) {
                   rph.retry();
               }
           }
        }else{
-          PoolRequestHandler rph;
-          synchronized( _handlerHash ){
-             rph = _handlerHash.get(args.argv(0));
-             if( rph == null ) {
-                 throw new
-                         IllegalArgumentException("Not found : " + args
-                         .argv(0));
-             }
+          PoolRequestHandler rph = _handlerHash.get(args.argv(0));
+          if( rph == null ) {
+              throw new
+                      IllegalArgumentException("Not found : " + args
+                      .argv(0));
           }
           rph.retry() ;
        }
@@ -511,14 +591,10 @@ public class RequestContainerV5
        int    errorNumber = args.argc() > 1 ? Integer.parseInt(args.argv(1)) : 1;
        String errorString = args.argc() > 2 ? args.argv(2) : "Operator Intervention" ;
 
-       PoolRequestHandler rph;
-
-       synchronized( _handlerHash ){
-          rph = _handlerHash.get(args.argv(0));
-          if( rph == null ) {
-              throw new
-                      IllegalArgumentException("Not found : " + args.argv(0));
-          }
+       PoolRequestHandler rph = _handlerHash.get(args.argv(0));
+       if( rph == null ) {
+           throw new
+                   IllegalArgumentException("Not found : " + args.argv(0));
        }
        rph.failed(errorNumber,errorString) ;
        return "" ;
@@ -527,16 +603,10 @@ public class RequestContainerV5
     public String ac_rc_destroy_$_1( Args args )
     {
 
-       PoolRequestHandler rph;
-
-       synchronized( _handlerHash ){
-          rph = _handlerHash.get(args.argv(0));
-          if( rph == null ) {
-              throw new
-                      IllegalArgumentException("Not found : " + args.argv(0));
-          }
-
-          _handlerHash.remove( args.argv(0) ) ;
+       PoolRequestHandler rph = _handlerHash.remove(args.argv(0));
+       if( rph == null ) {
+           throw new
+                   IllegalArgumentException("Not found : " + args.argv(0));
        }
        return "" ;
     }
@@ -548,12 +618,7 @@ public class RequestContainerV5
        boolean isLongListing = args.hasOption("l");
 
        if( !args.hasOption("w") ){
-          List<PoolRequestHandler>    allRequestHandlers;
-          synchronized( _handlerHash ){
-              allRequestHandlers = new ArrayList<>( _handlerHash.values() ) ;
-          }
-
-          for( PoolRequestHandler h : allRequestHandlers ){
+          for( PoolRequestHandler h : _handlerHash.values() ){
 
               if( h == null ) {
                   continue;
@@ -572,12 +637,7 @@ public class RequestContainerV5
           }
        }else{
 
-           Map<UOID, PoolRequestHandler>  allPendingRequestHandlers   = new HashMap<>() ;
-          synchronized(_messageHash){
-              allPendingRequestHandlers.putAll( _messageHash ) ;
-          }
-
-          for (Map.Entry<UOID, PoolRequestHandler> requestHandler : allPendingRequestHandlers.entrySet()) {
+          for (Map.Entry<UOID, PoolRequestHandler> requestHandler : _messageHash.entrySet()) {
 
                 UOID uoid = requestHandler.getKey();
                 PoolRequestHandler h = requestHandler.getValue();
@@ -597,14 +657,9 @@ public class RequestContainerV5
     public static final String hh_xrc_ls = " # lists pending requests (binary)" ;
     public Object ac_xrc_ls( Args args ){
 
-       List<PoolRequestHandler> all;
-       synchronized( _handlerHash ){
-          all = new ArrayList<>( _handlerHash.values() ) ;
-       }
-
        List<RestoreHandlerInfo>          list = new ArrayList<>() ;
 
-       for( PoolRequestHandler h: all  ){
+       for( PoolRequestHandler h: _handlerHash.values()  ){
           if( h  == null ) {
               continue;
           }
@@ -645,20 +700,47 @@ public class RequestContainerV5
                enforceP2P = true ;
            }
         }
-        String canonicalName = pnfsId +"@"+netName+"-"+protocolName+(enforceP2P?"-p2p":"")  ;
-        //
-        //
-        PoolRequestHandler handler;
+        /* Requests with the same canonical name share a single pool
+         * selection and are answered with the same result. The name
+         * thus covers all request parameters that affect the
+         * selection.
+         */
+        StringBuilder name = new StringBuilder();
+        name.append(pnfsId).append('@').append(netName).append('-').append(protocolName);
+        if (enforceP2P) {
+            name.append("-p2p");
+        }
+        if (request.getLinkGroup() != null) {
+            name.append("-lg=").append(request.getLinkGroup());
+        }
+        for (RequestState state: EnumSet.complementOf(allowedStates)) {
+            name.append("-no-").append(state);
+        }
+        String canonicalName = name.toString();
+
         _log.info( "Adding request for : "+canonicalName ) ;
-        synchronized( _handlerHash ){
-           //
-           handler = _handlerHash.get(canonicalName);
-           if( handler == null ){
-              _handlerHash.put(
-                     canonicalName ,
-                     handler = new PoolRequestHandler( pnfsId , canonicalName, allowedStates ) ) ;
-           }
-           handler.addRequest(envelope) ;
+        _readRequests.increment();
+        while (true) {
+            PoolRequestHandler handler = _handlerHash.get(canonicalName);
+            if (handler == null) {
+                handler = new PoolRequestHandler(pnfsId, canonicalName, allowedStates);
+                PoolRequestHandler existing = _handlerHash.putIfAbsent(canonicalName, handler);
+                if (existing == null) {
+                    _readSelections.increment();
+                    handler.addRequest(envelope);
+                    return;
+                }
+                handler = existing;
+            }
+            /* The handler may have answered its last request and
+             * removed itself in the meantime, in which case we
+             * start over.
+             */
+            if (handler.addRequest(envelope)) {
+                _joinedReadRequests.increment();
+                return;
+            }
+            _handlerHash.remove(canonicalName, handler);
         }
     }
 
@@ -762,8 +844,22 @@ public class RequestContainerV5
         private   PoolInfo   _p2pSourcePool;
 
         private   final long   _started       = System.currentTimeMillis() ;
+        private   long         _stateEntered  = _started;
         private   String       _name;
 
+        /**
+         * Set once the last request has been answered. Guarded by
+         * _messages.
+         */
+        private   boolean      _isFinished;
+
+        /**
+         * Pending timeout of the handler and the time at which it
+         * expires. Only accessed by the state engine.
+         */
+        private   ScheduledFuture<?> _timeout;
+        private   long         _timeoutDeadline = Long.MAX_VALUE;
+
         private   FileAttributes _fileAttributes;
         private   StorageInfo  _storageInfo;
         private   ProtocolInfo _protocolInfo;
@@ -779,7 +875,7 @@ public class RequestContainerV5
 
         /**
          * Indicates the next time a TTL of a request message will be
-         * exceeded.
+         * exceeded. Guarded by _messages.
          */
         private long _nextTtlTimeout = Long.MAX_VALUE;
 
@@ -821,11 +917,21 @@ public class RequestContainerV5
             {
                 _candidate = null;
                 _state = PingState.STOPPED;
-                synchronized (_messageHash) {
-                    if (_waitingFor != null) {
-                        _messageHash.remove(_waitingFor);
-                    }
+                if (_waitingFor != null) {
+                    _messageHash.remove(_waitingFor);
+                }
+            }
+
+            /**
+             * Returns the time at which alive() next has to be called,
+             * or Long.MAX_VALUE if the handler is stopped.
+             */
+            private long getDeadline()
+            {
+                if (_candidate == null || _timer == 0L || _state == PingState.STOPPED) {
+                    return Long.MAX_VALUE;
                 }
+                return _timer;
             }
 
             private void alive()
@@ -875,15 +981,12 @@ public class RequestContainerV5
             {
                 CellMessage envelope =
                     new CellMessage(new CellPath(_candidate.getAddress()), _query);
-                synchronized (_messageHash) {
-                    try {
-                        sendMessage(envelope);
-                        _waitingFor = envelope.getUOID();
-                        _messageHash.put(_waitingFor, PoolRequestHandler.this);
-                    } catch (NoRouteToCellException e) {
-                        _log.warn("Can't send pool ping to {}: {}",
-                                  _candidate, e.toString());
-                    }
+                try {
+                    sendAndRegister(envelope, PoolRequestHandler.this);
+                    _waitingFor = envelope.getUOID();
+                } catch (NoRouteToCellException e) {
+                    _log.warn("Can't send pool ping to {}: {}",
+                              _candidate, e.toString());
                 }
             }
         }
@@ -901,21 +1004,37 @@ public class RequestContainerV5
         // at any time.
         //...........................................................
         //
-        // add request is assumed to be synchronized by a higher level.
+        // returns false if the handler already answered its last
+        // request, in which case the request was not added.
         //
-        public void addRequest( CellMessage message ){
+        public boolean addRequest( CellMessage message ){
+          synchronized (_messages) {
+           if (_isFinished) {
+               return false;
+           }
 
            _messages.add(message);
            _stagingDenied = false;
 
            long ttl = message.getTtl();
+           boolean isEarlierTtl = false;
            if (ttl < Long.MAX_VALUE) {
                long timeout = System.currentTimeMillis() + ttl;
-               _nextTtlTimeout = Math.min(_nextTtlTimeout, timeout);
+               if (timeout < _nextTtlTimeout) {
+                   _nextTtlTimeout = timeout;
+                   isEarlierTtl = true;
+               }
            }
 
            if (_poolSelector != null) {
-               return;
+               /* The state engine only reschedules its timeout when
+                * it runs, so wake it up if the joined request expires
+                * before the earlier ones.
+                */
+               if (isEarlierTtl) {
+                   ttlChanged();
+               }
+               return true;
            }
 
            PoolMgrSelectReadPoolMsg request =
@@ -943,11 +1062,13 @@ public class RequestContainerV5
            //
            //
            add(null) ;
+           return true;
+          }
         }
 
         public List<CellMessage> getMessages() {
-            synchronized( _handlerHash ){
-                return new ArrayList(_messages);
+            synchronized (_messages) {
+                return new ArrayList<>(_messages);
             }
         }
 
@@ -1011,6 +1132,12 @@ public class RequestContainerV5
            add( command ) ;
 
         }
+        private void ttlChanged()
+        {
+           Object [] command = new Object[1];
+           command[0] = "ttl" ;
+           add(command);
+        }
         private void retry()
         {
            Object [] command = new Object[1];
@@ -1047,11 +1174,8 @@ public class RequestContainerV5
            _waitUntil = System.currentTimeMillis() + millis ;
         }
         private void clearSteering(){
-           synchronized( _messageHash ){
-
-              if( _waitingFor != null ) {
-                  _messageHash.remove(_waitingFor);
-              }
+           if( _waitingFor != null ) {
+               _messageHash.remove(_waitingFor);
            }
            _waitingFor = null ;
            _waitUntil  = 0L ;
@@ -1077,16 +1201,14 @@ public class RequestContainerV5
                                         pool.getName(),
                                         _fileAttributes)
                                 );
-            synchronized( _messageHash ){
-                if( ( _maxRestore >=0 ) &&
-                    ( _messageHash.size() >= _maxRestore ) ) {
-                    return false;
-                }
-                sendMessage( cellMessage );
-                _poolMonitor.messageToCostModule( cellMessage ) ;
-                _messageHash.put( _waitingFor = cellMessage.getUOID() , this ) ;
-                _status = "Staging "+_formatter.format(new Date()) ;
+            if( ( _maxRestore >=0 ) &&
+                ( _messageHash.size() >= _maxRestore ) ) {
+                return false;
             }
+            sendAndRegister( cellMessage, this );
+            _waitingFor = cellMessage.getUOID() ;
+            _poolMonitor.messageToCostModule( cellMessage ) ;
+            _status = "Staging "+_formatter.format(new Date()) ;
             return true ;
 	}
 	private void sendPool2PoolRequest(PoolInfo sourcePool, PoolInfo destPool)
@@ -1099,30 +1221,29 @@ public class RequestContainerV5
 	    CellMessage cellMessage =
                 new CellMessage(new CellPath(destPool.getAddress()), pool2pool);
 
-            synchronized( _messageHash ){
-                sendMessage( cellMessage );
-                _poolMonitor.messageToCostModule( cellMessage ) ;
-                if( _waitingFor != null ) {
-                    _messageHash.remove(_waitingFor);
-                }
-                _messageHash.put( _waitingFor = cellMessage.getUOID() , this ) ;
-                _status = "[P2P "+_formatter.format(new Date())+"]" ;
+            if( _waitingFor != null ) {
+                _messageHash.remove(_waitingFor);
             }
+            sendAndRegister( cellMessage, this );
+            _waitingFor = cellMessage.getUOID() ;
+            _poolMonitor.messageToCostModule( cellMessage ) ;
+            _status = "[P2P "+_formatter.format(new Date())+"]" ;
 	}
 
         /**
          * Removes request messages whos time to live has been
          * exceeded. Messages are dropped; no reply is sent to the
          * requestor, as we assume it is no longer waiting for the
-         * reply.
+         * reply. Does nothing before the earliest time to live has
+         * been exceeded.
          */
         private void expireRequests()
         {
-            /* Access to _messages is controlled by a lock on
-             * _handlerHash.
-             */
-            synchronized (_handlerHash) {
+            synchronized (_messages) {
                 long now = System.currentTimeMillis();
+                if (now <= _nextTtlTimeout) {
+                    return;
+                }
                 _nextTtlTimeout = Long.MAX_VALUE;
 
                 Iterator<CellMessage> i = _messages.iterator();
@@ -1141,17 +1262,12 @@ public class RequestContainerV5
             }
         }
 
-        private boolean answerRequest(int count) {
-            //
-            // if there is an error we won't continue ;
-            //
-            if (_currentRc != 0) {
-                count = 100000;
-            }
-            //
-
+        /**
+         * Answers all requests with the result of the selection.
+         */
+        private void answerRequests() {
             Iterator<CellMessage> messages = _messages.iterator();
-            for (int i = 0; (i < count) && messages.hasNext(); i++) {
+            while (messages.hasNext()) {
                 CellMessage m =  messages.next();
                 PoolMgrSelectReadPoolMsg rpm =
                     (PoolMgrSelectReadPoolMsg) m.getMessageObject();
@@ -1175,7 +1291,6 @@ public class RequestContainerV5
                 }
                 messages.remove();
             }
-            return messages.hasNext();
         }
         //
         // and the heart ...
@@ -1198,7 +1313,7 @@ public class RequestContainerV5
         private boolean    _forceContinue;
         private boolean    _overwriteCost;
 
-        public class RunEngine implements ExtendedRunnable {
+        public class RunEngine implements Runnable {
            @Override
            public void run(){
               try (CDC ignored = _cdc.restore()) {
@@ -1210,13 +1325,6 @@ public class RequestContainerV5
               }
            }
 
-           @Override
-           public void runFailed(){
-              synchronized( _fifo ){
-                   _stateEngineActive = false ;
-              }
-           }
-
            @Override
            public String toString() {
               return PoolRequestHandler.this.toString();
@@ -1233,8 +1341,8 @@ public class RequestContainerV5
                _log.info( "Starting Engine" ) ;
                _stateEngineActive = true ;
                try {
-                   _threadPool.invokeLater(new RunEngine(), "Read-"+_pnfsId);
-               } catch (RuntimeException e) {
+                   _executor.execute(new RunEngine());
+               } catch (RejectedExecutionException e) {
                    _stateEngineActive = false;
                    throw e;
                }
@@ -1273,6 +1381,7 @@ public class RequestContainerV5
                     );
 
                  stateEngine( inputObject ) ;
+                 updateTimeout() ;
 
                  _log.info("StageEngine left with: {} ({})",
                            _state, (_forceContinue ? "Continue" : "Wait"));
@@ -1282,6 +1391,61 @@ public class RequestContainerV5
            }
         }
 
+        /**
+         * Schedules the next call to alive() for the earliest of the
+         * time to live of the requests, the end of a wait period and
+         * the next pool ping. Called by the state engine after each
+         * step.
+         */
+        private void updateTimeout()
+        {
+            long deadline;
+            boolean isFinished;
+            long nextTtlTimeout;
+            synchronized (_messages) {
+                isFinished = _isFinished;
+                nextTtlTimeout = _nextTtlTimeout;
+            }
+            if (isFinished) {
+                deadline = Long.MAX_VALUE;
+            } else {
+                deadline = Math.min(nextTtlTimeout, _pingHandler.getDeadline());
+                if (_waitUntil > 0L) {
+                    deadline = Math.min(deadline, _waitUntil);
+                }
+            }
+            if (deadline == _timeoutDeadline) {
+                return;
+            }
+            if (_timeout != null) {
+                _timeout.cancel(false);
+                _timeout = null;
+            }
+            _timeoutDeadline = deadline;
+            if (deadline < Long.MAX_VALUE) {
+                /* alive() only acts once the deadline has passed.
+                 */
+                long delay = Math.max(deadline - System.currentTimeMillis() + 1, 0);
+                _timeout = _scheduler.schedule(new Runnable() {
+                        @Override
+                        public void run()
+                        {
+                            alive();
+                        }
+                    }, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void setState(RequestState state)
+        {
+            if (state != _state) {
+                long now = System.currentTimeMillis();
+                _stateDuration.get(_state).record(now - _stateEntered);
+                _state = state;
+                _stateEntered = now;
+            }
+        }
+
         private boolean canStage()
         {
             /* If the result is cached or the door disabled staging,
@@ -1294,7 +1458,7 @@ public class RequestContainerV5
             /* Staging is allowed if just one of the requests has
              * permission to stage.
              */
-            for (CellMessage envelope: _messages) {
+            for (CellMessage envelope: getMessages()) {
                 try {
                     PoolMgrSelectReadPoolMsg msg =
                         (PoolMgrSelectReadPoolMsg) envelope.getMessageObject();
@@ -1316,14 +1480,14 @@ public class RequestContainerV5
         private void nextStep(RequestState state, int shouldContinue ){
             if (_currentRc == CacheException.NOT_IN_TRASH ||
                 _currentRc == CacheException.FILE_NOT_FOUND) {
-                _state = RequestState.ST_DONE;
+                setState(RequestState.ST_DONE);
                 _forceContinue = true;
                 _status = "Failed";
                 sendInfoMessage(_pnfsId , _storageInfo ,
                                 _currentRc , "Failed "+_currentRm);
             } else {
                 if (state == RequestState.ST_STAGE && !canStage()) {
-                    _state = RequestState.ST_DONE;
+                    setState(RequestState.ST_DONE);
                     _forceContinue = true;
                     _status = "Failed";
                     _log.debug("Subject is not authorized to stage");
@@ -1332,7 +1496,7 @@ public class RequestContainerV5
                     sendInfoMessage(_pnfsId , _storageInfo ,
                                     _currentRc , "Permission denied." + _currentRm);
                 } else if (!_allowedStates.contains(state)) {
-                    _state = RequestState.ST_DONE;
+                    setState(RequestState.ST_DONE);
                     _forceContinue = true;
                     _status = "Failed";
                     _log.debug("No permission to perform {}", state);
@@ -1341,7 +1505,7 @@ public class RequestContainerV5
                     sendInfoMessage(_pnfsId, _storageInfo, _currentRc,
                                     "Permission denied for " + state);
                 } else {
-                    _state = state;
+                    setState(state);
                     _forceContinue = shouldContinue == CONTINUE ;
                     if( _state != RequestState.ST_DONE ){
                         _currentRc = 0 ;
@@ -1780,18 +1944,13 @@ public class RequestContainerV5
                  if( inputObject == null ){
 
                     clearSteering();
-                    //
-                    // it is essential that we are not within any other
-                    // lock when trying to get the handlerHash lock.
-                    //
-                    synchronized( _handlerHash ){
-                       if( answerRequest( _maxRequestClumping ) ){
-                            setError(CacheException.RESOURCE,
-                                     "Request clumping limit reached");
-                            nextStep(RequestState.ST_DONE, CONTINUE);
-                       }else{
-                           _handlerHash.remove( _name ) ;
-                       }
+                    synchronized( _messages ){
+                       answerRequests();
+                       _isFinished = true;
+                       _handlerHash.remove( _name, this ) ;
+                       long now = System.currentTimeMillis();
+                       _stateDuration.get(_state).record(now - _stateEntered);
+                       _requestDuration.record(now - _started);
                     }
                  }
 
@@ -1816,13 +1975,23 @@ public class RequestContainerV5
                 setError(CacheException.OUT_OF_DATE, "Operator asked for retry");
                 nextStep(RequestState.ST_DONE, CONTINUE);
                 break;
+            case "ttl":
+
+                /* A joined request has an earlier time to live. The
+                 * timeout is rescheduled once the command has been
+                 * processed.
+                 */
+                break;
             case "alive":
 
+                /* The timeout has expired.
+                 */
+                _timeout = null;
+                _timeoutDeadline = Long.MAX_VALUE;
+
                 long now = System.currentTimeMillis();
 
-                if (now > _nextTtlTimeout) {
-                    expireRequests();
-                }
+                expireRequests();
 
                 if ((_waitUntil > 0L) && (now > _waitUntil)) {
                     clearSteering();
@@ -2,6 +2,8 @@ package diskCacheV111.pools ;
 
 import com.google.common.collect.Maps;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
@@ -32,6 +34,28 @@ public class PoolCostInfo implements Serializable {
         _space = new PoolSpaceInfo(0, 0, 0, 0);
     }
 
+    /**
+     * Creates a deep copy of another PoolCostInfo.
+     */
+    public PoolCostInfo(PoolCostInfo info)
+    {
+        _poolName = info._poolName;
+        _defaultQueueName = info._defaultQueueName;
+        _store = copyOf(info._store);
+        _restore = copyOf(info._restore);
+        _mover = copyOf(info._mover);
+        _p2p = copyOf(info._p2p);
+        _p2pClient = copyOf(info._p2pClient);
+        for (NamedPoolQueueInfo queue : info._extendedMoverHash.values()) {
+            _extendedMoverHash.put(queue.getName(), new NamedPoolQueueInfo(queue.getName(), queue));
+        }
+        PoolSpaceInfo space = info._space;
+        _space = new PoolSpaceInfo(space._total, space._free, space._precious,
+                                   space._removable, space._lru);
+        _space.setParameter(space._breakEven, space._gap);
+        _moverCostFactor = info._moverCostFactor;
+    }
+
     public String getPoolName(){ return _poolName ; }
     public class NamedPoolQueueInfo extends PoolQueueInfo {
 
@@ -292,6 +316,94 @@ public class PoolCostInfo implements Serializable {
         return sb.toString();
     }
 
+    /**
+     * Writes this object in a compact binary format. Used by the
+     * PayloadCodec of the pool up message.
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeUTF(_poolName);
+        writeQueue(out, _store);
+        writeQueue(out, _restore);
+        writeQueue(out, _mover);
+        writeQueue(out, _p2p);
+        writeQueue(out, _p2pClient);
+        out.writeInt(_extendedMoverHash.size());
+        for (NamedPoolQueueInfo queue : _extendedMoverHash.values()) {
+            out.writeUTF(queue.getName());
+            writeQueueSizes(out, queue);
+        }
+        out.writeLong(_space._total);
+        out.writeLong(_space._free);
+        out.writeLong(_space._precious);
+        out.writeLong(_space._removable);
+        out.writeLong(_space._lru);
+        out.writeLong(_space._gap);
+        out.writeDouble(_space._breakEven);
+        out.writeDouble(_moverCostFactor);
+    }
+
+    /**
+     * Reads an object written by {@link #writeTo}.
+     */
+    public static PoolCostInfo createFrom(DataInput in) throws IOException
+    {
+        PoolCostInfo info = new PoolCostInfo(in.readUTF());
+        info._store = info.readQueue(in);
+        info._restore = info.readQueue(in);
+        info._mover = info.readQueue(in);
+        info._p2p = info.readQueue(in);
+        info._p2pClient = info.readQueue(in);
+        int queues = in.readInt();
+        for (int i = 0; i < queues; i++) {
+            String name = in.readUTF();
+            info._extendedMoverHash.put(name, info.new NamedPoolQueueInfo(name,
+                    in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt()));
+        }
+        try {
+            info._space = info.new PoolSpaceInfo(in.readLong(), in.readLong(),
+                    in.readLong(), in.readLong(), in.readLong());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid space information: " + e.getMessage(), e);
+        }
+        long gap = in.readLong();
+        info._space.setParameter(in.readDouble(), gap);
+        info._moverCostFactor = in.readDouble();
+        return info;
+    }
+
+    private static void writeQueue(DataOutput out, PoolQueueInfo queue) throws IOException
+    {
+        out.writeBoolean(queue != null);
+        if (queue != null) {
+            writeQueueSizes(out, queue);
+        }
+    }
+
+    private static void writeQueueSizes(DataOutput out, PoolQueueInfo queue) throws IOException
+    {
+        out.writeInt(queue.getActive());
+        out.writeInt(queue.getMaxActive());
+        out.writeInt(queue.getQueued());
+        out.writeInt(queue.getReaders());
+        out.writeInt(queue.getWriters());
+    }
+
+    private PoolQueueInfo copyOf(PoolQueueInfo queue)
+    {
+        return (queue == null)
+                ? null
+                : new PoolQueueInfo(queue.getActive(), queue.getMaxActive(), queue.getQueued(),
+                                    queue.getReaders(), queue.getWriters());
+    }
+
+    private PoolQueueInfo readQueue(DataInput in) throws IOException
+    {
+        return in.readBoolean()
+                ? new PoolQueueInfo(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt())
+                : null;
+    }
+
     private void readObject(ObjectInputStream stream)
         throws IOException, ClassNotFoundException
     {
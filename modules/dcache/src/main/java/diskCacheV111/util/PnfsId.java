@@ -2,12 +2,17 @@
 
 package diskCacheV111.util;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import dmg.cells.nucleus.PayloadCodecs;
+
 /**
  * Immutable representation of a pnfsId
  */
@@ -127,6 +132,28 @@ public class PnfsId implements Serializable, Comparable<PnfsId> {
         return x;
     }
 
+    /**
+     * Writes the binary form of this PnfsId. Used by payload codecs.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(_a.length);
+        out.write(_a);
+        PayloadCodecs.writeString(out, _domain);
+    }
+
+    /**
+     * Reads a PnfsId written by {@link #writeTo}.
+     */
+    public static PnfsId createFrom(DataInput in) throws IOException {
+        byte[] id = new byte[in.readUnsignedByte()];
+        in.readFully(id);
+        try {
+            return new PnfsId(id, PayloadCodecs.readString(in));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
     public String toShortString() {
         StringBuilder sb = new StringBuilder();
         int i;
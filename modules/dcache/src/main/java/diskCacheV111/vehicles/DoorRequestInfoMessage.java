@@ -5,6 +5,12 @@ import org.stringtemplate.v4.ST;
 
 import javax.security.auth.Subject;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import dmg.cells.nucleus.PayloadCodecs;
+
 import org.dcache.auth.Subjects;
 
 public class DoorRequestInfoMessage extends PnfsFileInfoMessage
@@ -80,4 +86,20 @@ public class DoorRequestInfoMessage extends PnfsFileInfoMessage
         template.add("owner", getOwner());
         template.add("client", getClient());
     }
+
+    @Override
+    protected void writeFieldsTo(DataOutput out) throws IOException
+    {
+        super.writeFieldsTo(out);
+        out.writeLong(_transactionTime);
+        PayloadCodecs.writeString(out, _client);
+    }
+
+    @Override
+    protected void readFieldsFrom(DataInput in) throws IOException
+    {
+        super.readFieldsFrom(in);
+        _transactionTime = in.readLong();
+        _client = PayloadCodecs.readString(in);
+    }
 }
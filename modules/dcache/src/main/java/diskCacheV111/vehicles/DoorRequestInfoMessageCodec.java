@@ -0,0 +1,44 @@
+package diskCacheV111.vehicles;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import dmg.cells.nucleus.PayloadCodec;
+import dmg.cells.nucleus.PayloadCodecs;
+
+/**
+ * Binary encoding of the billing record doors send for every request.
+ */
+public class DoorRequestInfoMessageCodec implements PayloadCodec<DoorRequestInfoMessage>
+{
+    @Override
+    public String getName()
+    {
+        return "door-request-info-1";
+    }
+
+    @Override
+    public Class<DoorRequestInfoMessage> getType()
+    {
+        return DoorRequestInfoMessage.class;
+    }
+
+    @Override
+    public void writeTo(DataOutput out, DoorRequestInfoMessage msg) throws IOException
+    {
+        PayloadCodecs.writeString(out, msg.getCellName());
+        PayloadCodecs.writeString(out, msg.getMessageType());
+        msg.writeFieldsTo(out);
+    }
+
+    @Override
+    public DoorRequestInfoMessage readFrom(DataInput in) throws IOException
+    {
+        String cellName = PayloadCodecs.readString(in);
+        String action = PayloadCodecs.readString(in);
+        DoorRequestInfoMessage msg = new DoorRequestInfoMessage(cellName, action);
+        msg.readFieldsFrom(in);
+        return msg;
+    }
+}
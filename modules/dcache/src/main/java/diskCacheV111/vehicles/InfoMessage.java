@@ -6,12 +6,17 @@ import org.stringtemplate.v4.ST;
 
 import javax.security.auth.Subject;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
 import diskCacheV111.util.Transaction;
 
+import dmg.cells.nucleus.PayloadCodecs;
+
 import org.dcache.auth.SubjectWrapper;
 import org.dcache.auth.Subjects;
 
@@ -107,4 +112,34 @@ public class InfoMessage implements Serializable {
          */
         return (_subject == null) ? Subjects.ROOT : _subject;
     }
+
+    /**
+     * Writes the mutable fields of this class. Used by the
+     * PayloadCodec of subclasses, which are responsible for the
+     * fields passed to the constructor.
+     */
+    protected synchronized void writeFieldsTo(DataOutput out) throws IOException
+    {
+        out.writeLong(_timeQueued);
+        out.writeInt(_resultCode);
+        PayloadCodecs.writeString(out, _message);
+        out.writeLong(_timestamp);
+        PayloadCodecs.writeString(out, _transaction);
+        out.writeLong(_transactionID);
+        PayloadCodecs.writeObject(out, _subject);
+    }
+
+    /**
+     * Reads the fields written by {@link #writeFieldsTo}.
+     */
+    protected synchronized void readFieldsFrom(DataInput in) throws IOException
+    {
+        _timeQueued = in.readLong();
+        _resultCode = in.readInt();
+        _message = PayloadCodecs.readString(in);
+        _timestamp = in.readLong();
+        _transaction = PayloadCodecs.readString(in);
+        _transactionID = in.readLong();
+        _subject = PayloadCodecs.readObject(in, Subject.class);
+    }
 }
@@ -4,9 +4,13 @@ package diskCacheV111.vehicles;
 
 import javax.security.auth.Subject;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 
 import dmg.cells.nucleus.HasDiagnosticContext;
+import dmg.cells.nucleus.PayloadCodecs;
 
 import org.dcache.auth.Subjects;
 
@@ -97,6 +101,33 @@ public class Message
         return (_subject == null) ? Subjects.ROOT : _subject;
     }
 
+    /**
+     * Writes the fields of this class. Used by the PayloadCodec of
+     * subclasses.
+     */
+    protected void writeFieldsTo(DataOutput out) throws IOException
+    {
+        out.writeBoolean(_replyRequired);
+        out.writeBoolean(_isReply);
+        out.writeInt(_returnCode);
+        PayloadCodecs.writeObject(out, _errorObject);
+        out.writeLong(_id);
+        PayloadCodecs.writeObject(out, _subject);
+    }
+
+    /**
+     * Reads the fields written by {@link #writeFieldsTo}.
+     */
+    protected void readFieldsFrom(DataInput in) throws IOException
+    {
+        _replyRequired = in.readBoolean();
+        _isReply = in.readBoolean();
+        _returnCode = in.readInt();
+        _errorObject = PayloadCodecs.readObject(in, Object.class);
+        _id = in.readLong();
+        _subject = PayloadCodecs.readObject(in, Subject.class);
+    }
+
     /**
      * Returns a human readable name of the message class. By default
      * this is the short class name with the "Message" or "Msg" suffix
@@ -3,8 +3,14 @@ package diskCacheV111.vehicles ;
 
 import org.stringtemplate.v4.ST;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import diskCacheV111.util.PnfsId;
 
+import dmg.cells.nucleus.PayloadCodecs;
+
 public class MoverInfoMessage extends PnfsFileInfoMessage {
 
    private long    _dataTransferred;
@@ -72,4 +78,28 @@ public class MoverInfoMessage extends PnfsFileInfoMessage {
         template.add("initiator", _initiator);
         template.add("p2p", _isP2p);
     }
+
+    @Override
+    protected void writeFieldsTo(DataOutput out) throws IOException
+    {
+        super.writeFieldsTo(out);
+        out.writeLong(_dataTransferred);
+        out.writeLong(_connectionTime);
+        PayloadCodecs.writeObject(out, _protocolInfo);
+        out.writeBoolean(_fileCreated);
+        PayloadCodecs.writeString(out, _initiator);
+        out.writeBoolean(_isP2p);
+    }
+
+    @Override
+    protected void readFieldsFrom(DataInput in) throws IOException
+    {
+        super.readFieldsFrom(in);
+        _dataTransferred = in.readLong();
+        _connectionTime = in.readLong();
+        _protocolInfo = PayloadCodecs.readObject(in, ProtocolInfo.class);
+        _fileCreated = in.readBoolean();
+        _initiator = PayloadCodecs.readString(in);
+        _isP2p = in.readBoolean();
+    }
 }
@@ -0,0 +1,41 @@
+package diskCacheV111.vehicles;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import dmg.cells.nucleus.PayloadCodec;
+import dmg.cells.nucleus.PayloadCodecs;
+
+/**
+ * Binary encoding of the billing record pools send for every transfer.
+ */
+public class MoverInfoMessageCodec implements PayloadCodec<MoverInfoMessage>
+{
+    @Override
+    public String getName()
+    {
+        return "mover-info-1";
+    }
+
+    @Override
+    public Class<MoverInfoMessage> getType()
+    {
+        return MoverInfoMessage.class;
+    }
+
+    @Override
+    public void writeTo(DataOutput out, MoverInfoMessage msg) throws IOException
+    {
+        PayloadCodecs.writeString(out, msg.getCellName());
+        msg.writeFieldsTo(out);
+    }
+
+    @Override
+    public MoverInfoMessage readFrom(DataInput in) throws IOException
+    {
+        MoverInfoMessage msg = new MoverInfoMessage(PayloadCodecs.readString(in), null);
+        msg.readFieldsFrom(in);
+        return msg;
+    }
+}
@@ -4,8 +4,14 @@ package diskCacheV111.vehicles ;
 
 import org.stringtemplate.v4.ST;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import diskCacheV111.util.PnfsId;
 
+import dmg.cells.nucleus.PayloadCodecs;
+
 public class PnfsFileInfoMessage extends InfoMessage {
    private PnfsId _pnfsId;
    private String _path     = "Unknown";
@@ -47,4 +53,27 @@ public class PnfsFileInfoMessage extends InfoMessage {
         template.add("filesize", getFileSize());
         template.add("storage", getStorageInfo());
     }
+
+    @Override
+    protected void writeFieldsTo(DataOutput out) throws IOException
+    {
+        super.writeFieldsTo(out);
+        out.writeBoolean(_pnfsId != null);
+        if (_pnfsId != null) {
+            _pnfsId.writeTo(out);
+        }
+        PayloadCodecs.writeString(out, _path);
+        out.writeLong(_fileSize);
+        PayloadCodecs.writeObject(out, _storageInfo);
+    }
+
+    @Override
+    protected void readFieldsFrom(DataInput in) throws IOException
+    {
+        super.readFieldsFrom(in);
+        _pnfsId = in.readBoolean() ? PnfsId.createFrom(in) : null;
+        _path = PayloadCodecs.readString(in);
+        _fileSize = in.readLong();
+        _storageInfo = PayloadCodecs.readObject(in, StorageInfo.class);
+    }
 }
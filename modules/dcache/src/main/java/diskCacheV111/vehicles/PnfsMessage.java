@@ -2,6 +2,8 @@
 
 package diskCacheV111.vehicles;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.Collections;
@@ -9,12 +11,15 @@ import java.util.Set;
 
 import diskCacheV111.util.PnfsId;
 
+import dmg.cells.nucleus.HasOrderingKey;
+import dmg.cells.nucleus.PayloadCodecs;
+
 import org.dcache.acl.enums.AccessMask;
 
 /**
  * Base class for messages to PnfsManager.
  */
-public class PnfsMessage extends Message {
+public class PnfsMessage extends Message implements HasOrderingKey {
 
     private PnfsId _pnfsId;
     private String _path;
@@ -39,6 +44,15 @@ public class PnfsMessage extends Message {
 	_pnfsId = pnfsId ;
     }
 
+    /**
+     * Messages about the same file are ordered relative to each other.
+     */
+    @Override
+    public Object getOrderingKey()
+    {
+        return (_pnfsId != null) ? _pnfsId : _path;
+    }
+
     public void setAccessMask(Set<AccessMask> mask)
     {
         if (mask == null) {
@@ -89,6 +103,28 @@ public class PnfsMessage extends Message {
         return genericInvalidatesForPnfsMessage(message);
     }
 
+    @Override
+    protected void writeFieldsTo(DataOutput out) throws IOException
+    {
+        super.writeFieldsTo(out);
+        out.writeBoolean(_pnfsId != null);
+        if (_pnfsId != null) {
+            _pnfsId.writeTo(out);
+        }
+        PayloadCodecs.writeString(out, _path);
+        PayloadCodecs.writeEnumSet(out, _mask);
+    }
+
+    @Override
+    protected void readFieldsFrom(DataInput in) throws IOException
+    {
+        super.readFieldsFrom(in);
+        _pnfsId = in.readBoolean() ? PnfsId.createFrom(in) : null;
+        _path = PayloadCodecs.readString(in);
+        Set<AccessMask> mask = PayloadCodecs.readEnumSet(in, AccessMask.class);
+        _mask = (mask == null) ? Collections.<AccessMask>emptySet() : mask;
+    }
+
     /**
      * For compatibility with pre-1.9.6 installations, we fill in the
      * _mask field if it is missing.
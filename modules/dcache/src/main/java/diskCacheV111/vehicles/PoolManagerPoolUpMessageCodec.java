@@ -0,0 +1,103 @@
+package diskCacheV111.vehicles;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import diskCacheV111.pools.PoolCostInfo;
+import diskCacheV111.pools.PoolV2Mode;
+
+import dmg.cells.nucleus.PayloadCodec;
+import dmg.cells.nucleus.PayloadCodecs;
+
+/**
+ * Binary encoding of the pool up message. Every pool sends this
+ * message to the pool manager several times a minute.
+ */
+public class PoolManagerPoolUpMessageCodec
+    implements PayloadCodec<PoolManagerPoolUpMessage>
+{
+    @Override
+    public String getName()
+    {
+        return "pool-up-1";
+    }
+
+    @Override
+    public Class<PoolManagerPoolUpMessage> getType()
+    {
+        return PoolManagerPoolUpMessage.class;
+    }
+
+    @Override
+    public void writeTo(DataOutput out, PoolManagerPoolUpMessage msg)
+            throws IOException
+    {
+        PayloadCodecs.writeString(out, msg.getPoolName());
+        out.writeLong(msg.getSerialId());
+        out.writeInt(msg.getPoolMode().getMode());
+        PoolCostInfo costInfo = msg.getPoolCostInfo();
+        out.writeBoolean(costInfo != null);
+        if (costInfo != null) {
+            costInfo.writeTo(out);
+        }
+        msg.writeFieldsTo(out);
+
+        Map<String,String> tags = msg.getTagMap();
+        out.writeInt((tags == null) ? -1 : tags.size());
+        if (tags != null) {
+            for (Map.Entry<String,String> tag : tags.entrySet()) {
+                out.writeUTF(tag.getKey());
+                PayloadCodecs.writeString(out, tag.getValue());
+            }
+        }
+        Set<String> hsms = msg.getHsmInstances();
+        out.writeInt((hsms == null) ? -1 : hsms.size());
+        if (hsms != null) {
+            for (String hsm : hsms) {
+                out.writeUTF(hsm);
+            }
+        }
+        PayloadCodecs.writeString(out, msg.getMessage());
+        out.writeInt(msg.getCode());
+    }
+
+    @Override
+    public PoolManagerPoolUpMessage readFrom(DataInput in) throws IOException
+    {
+        String poolName = PayloadCodecs.readString(in);
+        long serialId = in.readLong();
+        PoolV2Mode mode = new PoolV2Mode(in.readInt());
+        PoolCostInfo costInfo = in.readBoolean() ? PoolCostInfo.createFrom(in) : null;
+        PoolManagerPoolUpMessage msg =
+                new PoolManagerPoolUpMessage(poolName, serialId, mode, costInfo);
+        msg.readFieldsFrom(in);
+
+        int count = in.readInt();
+        if (count >= 0) {
+            Map<String,String> tags = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                tags.put(in.readUTF(), PayloadCodecs.readString(in));
+            }
+            msg.setTagMap(tags);
+        }
+        count = in.readInt();
+        if (count >= 0) {
+            Set<String> hsms = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                hsms.add(in.readUTF());
+            }
+            msg.setHsmInstances(hsms);
+        }
+        String message = PayloadCodecs.readString(in);
+        if (message != null) {
+            msg.setMessage(message);
+        }
+        msg.setCode(in.readInt());
+        return msg;
+    }
+}
@@ -4,12 +4,16 @@ package diskCacheV111.vehicles;
 
 import javax.annotation.Nonnull;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.EnumSet;
 
 import diskCacheV111.util.PnfsId;
 
 import dmg.cells.nucleus.CellAddressCore;
+import dmg.cells.nucleus.PayloadCodecs;
 
 import org.dcache.namespace.FileAttribute;
 import org.dcache.vehicles.FileAttributes;
@@ -85,6 +89,28 @@ public class PoolMgrGetPoolMsg extends PoolManagerMessage
         }
     }
 
+    /**
+     * Writes the mutable fields of this class. Used by the
+     * PayloadCodec of subclasses, which are responsible for the
+     * fields passed to the constructor.
+     */
+    @Override
+    protected void writeFieldsTo(DataOutput out) throws IOException
+    {
+        super.writeFieldsTo(out);
+        PayloadCodecs.writeString(out, _poolName);
+        PayloadCodecs.writeString(out, (_poolAddress == null) ? null : _poolAddress.toString());
+    }
+
+    @Override
+    protected void readFieldsFrom(DataInput in) throws IOException
+    {
+        super.readFieldsFrom(in);
+        _poolName = PayloadCodecs.readString(in);
+        String address = PayloadCodecs.readString(in);
+        _poolAddress = (address == null) ? null : new CellAddressCore(address);
+    }
+
     public static Collection<FileAttribute> getRequiredAttributes()
     {
         return EnumSet.of(PNFSID, STORAGEINFO);
@@ -4,10 +4,15 @@ package diskCacheV111.vehicles ;
 
 import javax.annotation.Nonnull;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.EnumSet;
 
 import diskCacheV111.poolManager.RequestContainerV5;
 
+import dmg.cells.nucleus.PayloadCodecs;
+
 import org.dcache.vehicles.FileAttributes;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -76,4 +81,24 @@ public class PoolMgrSelectPoolMsg extends PoolMgrGetPoolMsg {
         return _allowedStates;
     }
 
+    @Override
+    protected void writeFieldsTo(DataOutput out) throws IOException
+    {
+        super.writeFieldsTo(out);
+        PayloadCodecs.writeString(out, _ioQueueName);
+        PayloadCodecs.writeString(out, _pnfsPath);
+        PayloadCodecs.writeString(out, _linkGroup);
+        out.writeBoolean(_skipCostUpdate);
+    }
+
+    @Override
+    protected void readFieldsFrom(DataInput in) throws IOException
+    {
+        super.readFieldsFrom(in);
+        _ioQueueName = PayloadCodecs.readString(in);
+        _pnfsPath = PayloadCodecs.readString(in);
+        _linkGroup = PayloadCodecs.readString(in);
+        _skipCostUpdate = in.readBoolean();
+    }
+
 }
@@ -2,11 +2,16 @@
 
 package diskCacheV111.vehicles ;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.EnumSet;
 
 import diskCacheV111.poolManager.RequestContainerV5;
 
+import dmg.cells.nucleus.PayloadCodecs;
+
 import org.dcache.namespace.FileAttribute;
 import org.dcache.vehicles.FileAttributes;
 
@@ -95,6 +100,27 @@ public class PoolMgrSelectReadPoolMsg extends PoolMgrSelectPoolMsg
         setContext(new Context(retryCounter, previousStageHost, previousStagePool));
     }
 
+    @Override
+    protected void writeFieldsTo(DataOutput out) throws IOException
+    {
+        super.writeFieldsTo(out);
+        out.writeBoolean(_context != null);
+        if (_context != null) {
+            out.writeInt(_context.getRetryCounter());
+            PayloadCodecs.writeString(out, _context.getPreviousStageHost());
+            PayloadCodecs.writeString(out, _context.getPreviousStagePool());
+        }
+    }
+
+    @Override
+    protected void readFieldsFrom(DataInput in) throws IOException
+    {
+        super.readFieldsFrom(in);
+        _context = in.readBoolean()
+                ? new Context(in.readInt(), PayloadCodecs.readString(in), PayloadCodecs.readString(in))
+                : null;
+    }
+
     /**
      * Pool selection context. Captures the state the pool manager
      * must maintain between repeated attempt to select a read pool
@@ -0,0 +1,61 @@
+package diskCacheV111.vehicles;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.EnumSet;
+
+import diskCacheV111.poolManager.RequestContainerV5;
+
+import dmg.cells.nucleus.PayloadCodec;
+import dmg.cells.nucleus.PayloadCodecs;
+
+import org.dcache.vehicles.FileAttributes;
+
+/**
+ * Binary encoding of the read pool selection request doors send to
+ * the pool manager for every read. The file attributes and protocol
+ * info are Java serialized.
+ */
+public class PoolMgrSelectReadPoolMsgCodec
+    implements PayloadCodec<PoolMgrSelectReadPoolMsg>
+{
+    @Override
+    public String getName()
+    {
+        return "select-read-pool-1";
+    }
+
+    @Override
+    public Class<PoolMgrSelectReadPoolMsg> getType()
+    {
+        return PoolMgrSelectReadPoolMsg.class;
+    }
+
+    @Override
+    public void writeTo(DataOutput out, PoolMgrSelectReadPoolMsg msg)
+            throws IOException
+    {
+        PayloadCodecs.writeObject(out, msg.getFileAttributes());
+        PayloadCodecs.writeObject(out, msg.getProtocolInfo());
+        PayloadCodecs.writeEnumSet(out, msg.getAllowedStates());
+        msg.writeFieldsTo(out);
+    }
+
+    @Override
+    public PoolMgrSelectReadPoolMsg readFrom(DataInput in) throws IOException
+    {
+        FileAttributes fileAttributes = PayloadCodecs.readObject(in, FileAttributes.class);
+        ProtocolInfo protocolInfo = PayloadCodecs.readObject(in, ProtocolInfo.class);
+        EnumSet<RequestContainerV5.RequestState> allowedStates =
+                PayloadCodecs.readEnumSet(in, RequestContainerV5.RequestState.class);
+        PoolMgrSelectReadPoolMsg msg;
+        try {
+            msg = new PoolMgrSelectReadPoolMsg(fileAttributes, protocolInfo, null, allowedStates);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IOException("Invalid pool selection request: " + e.getMessage(), e);
+        }
+        msg.readFieldsFrom(in);
+        return msg;
+    }
+}
@@ -17,6 +17,7 @@ import diskCacheV111.vehicles.PnfsCreateEntryMessage;
 import diskCacheV111.vehicles.PnfsFlagMessage;
 
 import org.dcache.namespace.FileAttribute;
+import org.dcache.namespace.ListCursor;
 import org.dcache.namespace.ListHandler;
 import org.dcache.util.ChecksumType;
 import org.dcache.util.Glob;
@@ -24,6 +25,7 @@ import org.dcache.util.list.DirectoryEntry;
 import org.dcache.util.list.DirectoryStream;
 import org.dcache.util.list.ListDirectoryHandler;
 import org.dcache.vehicles.FileAttributes;
+import org.dcache.vehicles.PnfsListDirectoryMessage;
 
 import static diskCacheV111.vehicles.PnfsFlagMessage.FlagOperation.REMOVE;
 import org.dcache.namespace.FileType;
@@ -196,4 +198,23 @@ public class RemoteNameSpaceProvider implements NameSpaceProvider
             throw new TimeoutCacheException(e.getMessage());
         }
     }
+    /**
+     * The number of entries per chunk is determined by PnfsManager;
+     * <code>limit</code> is ignored.
+     */
+    @Override
+    public ListCursor list(Subject subject, String path, Glob glob,
+            Range<Integer> range, Set<FileAttribute> attrs, ListCursor cursor,
+            int limit, ListHandler handler) throws CacheException
+    {
+        PnfsHandler pnfs = new PnfsHandler(_pnfs, subject);
+        PnfsListDirectoryMessage msg =
+            new PnfsListDirectoryMessage(path, glob, range, attrs);
+        msg.setCursor(cursor);
+        PnfsListDirectoryMessage reply = pnfs.pnfsRequest(msg);
+        for (DirectoryEntry entry : reply.getEntries()) {
+            handler.addEntry(entry.getName(), entry.getFileAttributes());
+        }
+        return reply.isFinal() ? null : reply.getNextCursor();
+    }
 }
@@ -16,6 +16,7 @@ import org.dcache.chimera.FsInode;
 import org.dcache.chimera.FsInode_TAG;
 import org.dcache.chimera.FsStat;
 import org.dcache.chimera.HimeraDirectoryEntry;
+import org.dcache.chimera.InodeAttributes;
 import org.dcache.chimera.StorageLocatable;
 import org.dcache.chimera.posix.Stat;
 import org.dcache.chimera.store.InodeStorageInformation;
@@ -145,6 +146,13 @@ public class DummyFileSystemProvider implements FileSystemProvider {
         return null;
     }
 
+    @Override
+    public InodeAttributes getInodeAttributes(FsInode inode,
+            Set<InodeAttributes.Attribute> optional) throws ChimeraFsException {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
     @Override
     public Set<Checksum> getInodeChecksums(FsInode inode)
                     throws ChimeraFsException {
@@ -219,6 +227,13 @@ public class DummyFileSystemProvider implements FileSystemProvider {
         return null;
     }
 
+    @Override
+    public List<HimeraDirectoryEntry> listDir(FsInode dir, String startAfter, int limit)
+            throws ChimeraFsException {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
     @Override
     public FsInode mkdir(String arg0) throws ChimeraFsException {
         // TODO Auto-generated method stub
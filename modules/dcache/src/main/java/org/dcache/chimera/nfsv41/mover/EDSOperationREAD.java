@@ -46,17 +46,38 @@ public class EDSOperationREAD extends AbstractNFSv4Operation {
             }
             mover.attachSession(context.getSession());
 
-            ByteBuffer bb = ByteBuffer.allocate(count);
             RepositoryChannel fc = mover.getMoverChannel();
-
-            bb.rewind();
-            int bytesReaded = fc.read(bb, offset);
+            long size = fc.size();
+
+            /* Do not allocate more than can be read. The buffer is
+             * owned by the reply, which may be cached or encoded after
+             * this method returns, and thus cannot be reused.
+             *
+             * The data is read into a heap buffer. READ4resok only
+             * takes a ByteBuffer that the XDR encoder copies into the
+             * reply, so neither a file region nor a direct buffer
+             * would spare that copy. Since the buffer cannot be
+             * pooled, a direct buffer would moreover mean an
+             * expensive allocation per reply whose memory is only
+             * reclaimed by garbage collection.
+             */
+            int length = (int) Math.max(0, Math.min(count, size - offset));
+            ByteBuffer bb = ByteBuffer.allocate(length);
+
+            int bytesReaded = 0;
+            while (bb.hasRemaining()) {
+                int n = fc.read(bb, offset + bytesReaded);
+                if (n < 0) {
+                    break;
+                }
+                bytesReaded += n;
+            }
 
             res.status = nfsstat.NFS_OK;
             res.resok4 = new READ4resok();
             res.resok4.data = bb;
 
-            if( offset + bytesReaded == fc.size() ) {
+            if (offset + bytesReaded >= size) {
                 res.resok4.eof = true;
             }
 
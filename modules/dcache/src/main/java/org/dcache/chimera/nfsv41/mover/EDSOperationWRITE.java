@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 import org.dcache.nfs.ChimeraNFSException;
@@ -58,8 +59,15 @@ public class EDSOperationWRITE extends AbstractNFSv4Operation {
 
             RepositoryChannel fc = mover.getMoverChannel();
 
-            _args.opwrite.data.rewind();
-            int bytesWritten = fc.write(_args.opwrite.data, offset);
+            /* The payload is written directly from the decoded XDR
+             * buffer. Positional writes may be partial, hence loop.
+             */
+            ByteBuffer data = _args.opwrite.data;
+            data.rewind();
+            int bytesWritten = 0;
+            while (data.hasRemaining()) {
+                bytesWritten += fc.write(data, offset + bytesWritten);
+            }
 
             res.status = nfsstat.NFS_OK;
             res.resok4 = new WRITE4resok();
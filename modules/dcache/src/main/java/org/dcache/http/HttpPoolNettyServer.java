@@ -1,5 +1,7 @@
 package org.dcache.http;
 
+import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
@@ -38,12 +40,29 @@ public class HttpPoolNettyServer
     private final static PortRange DEFAULT_PORTRANGE =
         new PortRange(20000, 25000);
 
+    /**
+     * Number of chunks that fit into each block of direct memory from
+     * which chunks are sliced.
+     */
+    private final static int DIRECT_BUFFER_CHUNKS = 64;
+
+    private final static int MIN_DIRECT_BUFFER_SIZE = 1 << 20;
+
     private final Timer _timer;
 
     private final long _clientIdleTimeout;
 
     private final int _chunkSize;
 
+    private final boolean _isZeroCopyEnabled;
+
+    /**
+     * Chunks of chunked reads are sliced from preallocated direct
+     * memory. Netty would otherwise copy each heap chunk into a
+     * direct buffer before writing it to the socket.
+     */
+    private final ChannelBufferFactory _bufferFactory;
+
     public HttpPoolNettyServer(int threadPoolSize,
                                int memoryPerConnection,
                                int maxMemory,
@@ -63,10 +82,35 @@ public class HttpPoolNettyServer
                                int chunkSize,
                                long clientIdleTimeout,
                                int socketThreads) {
+        this(threadPoolSize,
+             memoryPerConnection,
+             maxMemory,
+             chunkSize,
+             clientIdleTimeout,
+             socketThreads,
+             false);
+    }
+
+    /**
+     * @param isZeroCopyEnabled whether files are sent as file regions
+     * rather than in chunks. The pipeline does not transform the data
+     * written by the request handler (no TLS, no compression), which
+     * is what makes file regions safe to use.
+     */
+    public HttpPoolNettyServer(int threadPoolSize,
+                               int memoryPerConnection,
+                               int maxMemory,
+                               int chunkSize,
+                               long clientIdleTimeout,
+                               int socketThreads,
+                               boolean isZeroCopyEnabled) {
         super("http", threadPoolSize, memoryPerConnection, maxMemory, socketThreads);
 
         _clientIdleTimeout = clientIdleTimeout;
         _chunkSize = chunkSize;
+        _isZeroCopyEnabled = isZeroCopyEnabled;
+        _bufferFactory = new DirectChannelBufferFactory(
+                Math.max(DIRECT_BUFFER_CHUNKS * chunkSize, MIN_DIRECT_BUFFER_SIZE));
         _timer = new HashedWheelTimer();
 
         String range = System.getProperty("org.globus.tcp.port.range");
@@ -115,7 +159,10 @@ public class HttpPoolNettyServer
                                                   _clientIdleTimeout,
                                                   TimeUnit.MILLISECONDS));
             pipeline.addLast("chunkedWriter", new ChunkedWriteHandler());
-            pipeline.addLast("transfer", new HttpPoolRequestHandler(HttpPoolNettyServer.this, _chunkSize));
+            pipeline.addLast("transfer", new HttpPoolRequestHandler(HttpPoolNettyServer.this,
+                                                                         _chunkSize,
+                                                                         _bufferFactory,
+                                                                         _isZeroCopyEnabled));
 
             return pipeline;
         }
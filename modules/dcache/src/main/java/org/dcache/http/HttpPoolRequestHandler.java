@@ -4,7 +4,9 @@ import com.google.common.base.CharMatcher;
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Multiset;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferFactory;
 import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -18,7 +20,6 @@ import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponse;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.jboss.netty.handler.codec.http.QueryStringDecoder;
-import org.jboss.netty.handler.stream.ChunkedInput;
 import org.jboss.netty.handler.timeout.IdleState;
 import org.jboss.netty.handler.timeout.IdleStateEvent;
 import org.jboss.netty.util.CharsetUtil;
@@ -44,6 +45,7 @@ import dmg.util.HttpException;
 import org.dcache.namespace.FileAttribute;
 import org.dcache.pool.movers.IoMode;
 import org.dcache.pool.movers.MoverChannel;
+import org.dcache.pool.movers.RepositoryFileRegion;
 import org.dcache.pool.repository.RepositoryChannel;
 import org.dcache.util.Checksum;
 import org.dcache.util.Checksums;
@@ -93,6 +95,16 @@ public class HttpPoolRequestHandler extends HttpRequestHandler
 
     private final int _chunkSize;
 
+    /**
+     * Factory for the buffers of chunked reads.
+     */
+    private final ChannelBufferFactory _bufferFactory;
+
+    /**
+     * Whether reads are sent as file regions rather than in chunks.
+     */
+    private final boolean _isZeroCopyEnabled;
+
     /**
      * The file being uploaded. Even though we only keep the file open
      * for the processing of a single HTTP message, that one message may
@@ -102,8 +114,17 @@ public class HttpPoolRequestHandler extends HttpRequestHandler
     private MoverChannel<HttpProtocolInfo> _writeChannel;
 
     public HttpPoolRequestHandler(HttpPoolNettyServer server, int chunkSize) {
+        this(server, chunkSize, HeapChannelBufferFactory.getInstance(), false);
+    }
+
+    public HttpPoolRequestHandler(HttpPoolNettyServer server,
+                                  int chunkSize,
+                                  ChannelBufferFactory bufferFactory,
+                                  boolean isZeroCopyEnabled) {
         _server = server;
         _chunkSize = chunkSize;
+        _bufferFactory = bufferFactory;
+        _isZeroCopyEnabled = isZeroCopyEnabled;
     }
 
     /**
@@ -371,7 +392,8 @@ public class HttpPoolRequestHandler extends HttpRequestHandler
      *
      * Finds the correct mover channel using the UUID in the
      * GET. Range queries are supported. The file will be sent to the
-     * remote peer in chunks to avoid server side memory issues.
+     * remote peer in chunks to avoid server side memory issues, or as
+     * file regions if zero-copy is enabled.
      */
     @Override
     protected void doOnGet(ChannelHandlerContext context,
@@ -393,7 +415,7 @@ public class HttpPoolRequestHandler extends HttpRequestHandler
             List<HttpByteRange> ranges =
                     parseHttpRange(request, 0, fileSize - 1);
 
-            ChunkedInput responseContent;
+            Object responseContent;
             if (ranges == null || ranges.isEmpty()) {
                 /*
                  * GET for a whole file
@@ -628,7 +650,8 @@ public class HttpPoolRequestHandler extends HttpRequestHandler
 
     /**
      * Read the resources requested in HTTP-request from the pool. Return a
-     * ChunkedInput pointing to the requested portions of the file.
+     * ChunkedInput or, if zero-copy is enabled, a FileRegion pointing to
+     * the requested portions of the file.
      *
      * Renew the keep-alive heartbeat, meaning that the last transferred time
      * will be updated, resetting the keep-alive timeout.
@@ -638,22 +661,26 @@ public class HttpPoolRequestHandler extends HttpRequestHandler
      *                   file
      * @param upperRange The upper delimiter of the requested byte range of the
      *                   file
-     * @return ChunkedInput View upon the file suitable for sending with
-     *         netty and representing the requested parts.
+     * @return View upon the file suitable for sending with netty and
+     *         representing the requested parts.
      */
-    private ChunkedInput read(MoverChannel<HttpProtocolInfo> file,
-                              long lowerRange, long upperRange)
+    private Object read(MoverChannel<HttpProtocolInfo> file,
+                        long lowerRange, long upperRange)
     {
         /* need to count position 0 as well */
         long length = (upperRange - lowerRange) + 1;
 
-        return new ReusableChunkedNioFile(file, lowerRange, length, _chunkSize);
+        if (_isZeroCopyEnabled) {
+            return new RepositoryFileRegion(file, lowerRange, length);
+        }
+        return new ReusableChunkedNioFile(file, lowerRange, length,
+                                          _chunkSize, _bufferFactory);
     }
 
     /**
      * @see #read(MoverChannel<HttpProtocolInfo>, long, long)
      */
-    private ChunkedInput read(MoverChannel<HttpProtocolInfo> file)
+    private Object read(MoverChannel<HttpProtocolInfo> file)
         throws IOException
     {
         return read(file, 0, file.size() - 1);
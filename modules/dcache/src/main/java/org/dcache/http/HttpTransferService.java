@@ -94,6 +94,7 @@ public class HttpTransferService extends AbstractCellComponent implements MoverF
     private long clientIdleTimeout;
     private TimeUnit clientIdleTimeoutUnit;
     private Integer socketThreads;
+    private boolean isZeroCopyEnabled;
 
     private HttpPoolNettyServer server;
 
@@ -214,23 +215,26 @@ public class HttpTransferService extends AbstractCellComponent implements MoverF
         this.socketThreads = Strings.isNullOrEmpty(socketThreads) ? null : Integer.valueOf(socketThreads);
     }
 
+    public boolean isZeroCopyEnabled()
+    {
+        return isZeroCopyEnabled;
+    }
+
+    public void setZeroCopyEnabled(boolean isZeroCopyEnabled)
+    {
+        this.isZeroCopyEnabled = isZeroCopyEnabled;
+    }
+
     @PostConstruct
     public synchronized void init()
     {
-        if (socketThreads == null) {
-            server = new HttpPoolNettyServer(diskThreads,
-                    maxMemoryPerConnection,
-                    maxMemory,
-                    chunkSize,
-                    clientIdleTimeoutUnit.toMillis(clientIdleTimeout));
-        } else {
-            server = new HttpPoolNettyServer(diskThreads,
-                    maxMemoryPerConnection,
-                    maxMemory,
-                    chunkSize,
-                    clientIdleTimeoutUnit.toMillis(clientIdleTimeout),
-                    socketThreads);
-        }
+        server = new HttpPoolNettyServer(diskThreads,
+                maxMemoryPerConnection,
+                maxMemory,
+                chunkSize,
+                clientIdleTimeoutUnit.toMillis(clientIdleTimeout),
+                (socketThreads == null) ? -1 : socketThreads,
+                isZeroCopyEnabled);
     }
 
     @PreDestroy
@@ -1,8 +1,11 @@
 package org.dcache.http;
 
-import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
 import org.jboss.netty.handler.stream.ChunkedInput;
 
+import java.io.EOFException;
 import java.nio.ByteBuffer;
 
 import org.dcache.pool.repository.RepositoryChannel;
@@ -29,12 +32,29 @@ public class ReusableChunkedNioFile implements ChunkedInput
     private final RepositoryChannel _channel;
     private final long _endOffset;
     private final int _chunkSize;
+    private final ChannelBufferFactory _bufferFactory;
     private volatile long _offset;
 
     public ReusableChunkedNioFile(RepositoryChannel channel,
                                   long offset,
                                   long length,
                                   int chunkSize)
+    {
+        this(channel, offset, length, chunkSize,
+             HeapChannelBufferFactory.getInstance());
+    }
+
+    /**
+     * Creates a chunked view of the given range of the channel. Chunks
+     * are allocated from bufferFactory; with a DirectChannelBufferFactory
+     * chunks are sliced from preallocated direct memory, which saves
+     * netty the copy into a direct buffer before the socket write.
+     */
+    public ReusableChunkedNioFile(RepositoryChannel channel,
+                                  long offset,
+                                  long length,
+                                  int chunkSize,
+                                  ChannelBufferFactory bufferFactory)
     {
         if (channel == null) {
             throw new NullPointerException("Channel must not be null");
@@ -57,6 +77,7 @@ public class ReusableChunkedNioFile implements ChunkedInput
 
         _channel = channel;
         _chunkSize = chunkSize;
+        _bufferFactory = bufferFactory;
         _offset = offset;
         _endOffset = _offset + length;
     }
@@ -94,34 +115,31 @@ public class ReusableChunkedNioFile implements ChunkedInput
     public Object nextChunk() throws Exception {
         long offset = _offset;
 
-        if (_offset >= _endOffset) {
+        if (offset >= _endOffset) {
             return null;
         }
 
         int chunkSize = (int) Math.min(_chunkSize, _endOffset - offset);
-        byte [] chunkArray = new byte[chunkSize];
-
-        ByteBuffer chunk = ByteBuffer.wrap(chunkArray);
+        ChannelBuffer buffer = _bufferFactory.getBuffer(chunkSize);
+        ByteBuffer chunk = buffer.toByteBuffer(0, chunkSize);
         int readBytes = 0;
 
-        while (true) {
+        while (readBytes < chunkSize) {
             /* use call that does not change the channel's position */
-            int localReadBytes = _channel.read(chunk, _offset);
+            int localReadBytes = _channel.read(chunk, offset + readBytes);
 
             if (localReadBytes < 0) {
-                break;
+                throw new EOFException("Unexpected end of file at offset " +
+                                       (offset + readBytes));
             }
 
             readBytes += localReadBytes;
-
-            if (readBytes == chunkSize) {
-                break;
-            }
         }
 
-        _offset += readBytes;
+        _offset = offset + readBytes;
 
-        return ChannelBuffers.wrappedBuffer(chunkArray);
+        buffer.setIndex(0, readBytes);
+        return buffer;
     }
 
     /**
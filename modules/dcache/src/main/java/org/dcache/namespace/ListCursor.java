@@ -0,0 +1,53 @@
+package org.dcache.namespace;
+
+/**
+ * Position within a paginated directory listing.
+ *
+ * Directory entries are listed in lexicographic order of their
+ * names. The cursor identifies the last entry examined by the previous
+ * chunk and the number of entries matching the glob pattern up to and
+ * including that entry. The latter is needed to apply the range of the
+ * listing across chunks.
+ *
+ * @Immutable
+ */
+public class ListCursor
+{
+    /**
+     * Cursor positioned before the first entry of a directory.
+     */
+    public static final ListCursor START = new ListCursor(null, 0);
+
+    private final String _lastName;
+    private final int _counter;
+
+    public ListCursor(String lastName, int counter)
+    {
+        _lastName = lastName;
+        _counter = counter;
+    }
+
+    /**
+     * Returns the name of the last entry examined, or null if
+     * positioned before the first entry.
+     */
+    public String getLastName()
+    {
+        return _lastName;
+    }
+
+    /**
+     * Returns the number of entries matching the glob pattern before
+     * the cursor.
+     */
+    public int getCounter()
+    {
+        return _counter;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[" + (_lastName == null ? "" : _lastName) + "," + _counter + "]";
+    }
+}
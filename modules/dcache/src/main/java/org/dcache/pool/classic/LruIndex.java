@@ -0,0 +1,314 @@
+package org.dcache.pool.classic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import diskCacheV111.util.PnfsId;
+
+/**
+ * Insertion ordered set of PNFS IDs supporting constant time add,
+ * remove and move to the tail of the order.
+ *
+ * Serves the same purpose as a LinkedHashSet, but does not allocate
+ * an entry object per element. The elements are stored in slots of
+ * parallel arrays; the order is maintained as a doubly linked list of
+ * slot indexes and an open addressing hash table with linear probing
+ * maps IDs to slots. Per element the index uses about six ints and one
+ * reference.
+ *
+ * The class is not thread safe. Iterators are not fail-fast and must
+ * not be used while the index is modified.
+ */
+class LruIndex implements Iterable<PnfsId>
+{
+    private static final int NIL = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private PnfsId[] _ids;
+    private int[] _hashes;
+    private int[] _prev;
+    private int[] _next;
+
+    /**
+     * Hash table of slot index plus one; zero marks an empty bucket.
+     * Twice as large as the number of slots.
+     */
+    private int[] _table;
+
+    private int _head = NIL;
+    private int _tail = NIL;
+    private int _size;
+
+    /** Head of the list of free slots, linked through _next. */
+    private int _free = NIL;
+
+    /** Number of slots that have ever been used. */
+    private int _used;
+
+    public LruIndex()
+    {
+        allocate(MIN_CAPACITY);
+    }
+
+    public int size()
+    {
+        return _size;
+    }
+
+    public boolean isEmpty()
+    {
+        return _size == 0;
+    }
+
+    public boolean contains(PnfsId id)
+    {
+        return find(id, hash(id)) >= 0;
+    }
+
+    /**
+     * Adds id at the tail of the order.
+     *
+     * @return true if the id was added, false if it already was in
+     *         the index
+     */
+    public boolean add(PnfsId id)
+    {
+        int hash = hash(id);
+        int bucket = find(id, hash);
+        if (bucket >= 0) {
+            return false;
+        }
+        if (_size == _ids.length) {
+            allocate(_ids.length * 2);
+            bucket = find(id, hash);
+        }
+
+        int slot;
+        if (_free != NIL) {
+            slot = _free;
+            _free = _next[slot];
+        } else {
+            slot = _used++;
+        }
+        _ids[slot] = id;
+        _hashes[slot] = hash;
+        linkLast(slot);
+        _table[-bucket - 1] = slot + 1;
+        _size++;
+        return true;
+    }
+
+    /**
+     * Removes id from the index.
+     *
+     * @return true if the id was removed, false if it was not in the
+     *         index
+     */
+    public boolean remove(PnfsId id)
+    {
+        int bucket = find(id, hash(id));
+        if (bucket < 0) {
+            return false;
+        }
+        int slot = _table[bucket] - 1;
+        deleteBucket(bucket);
+        unlink(slot);
+        _ids[slot] = null;
+        _next[slot] = _free;
+        _free = slot;
+        _size--;
+        return true;
+    }
+
+    /**
+     * Moves id to the tail of the order.
+     *
+     * @return true if the id was moved, false if it is not in the
+     *         index
+     */
+    public boolean moveToTail(PnfsId id)
+    {
+        int bucket = find(id, hash(id));
+        if (bucket < 0) {
+            return false;
+        }
+        int slot = _table[bucket] - 1;
+        if (slot != _tail) {
+            unlink(slot);
+            linkLast(slot);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the id at the head of the order, or null if the index
+     * is empty.
+     */
+    public PnfsId peekFirst()
+    {
+        return (_head == NIL) ? null : _ids[_head];
+    }
+
+    public void clear()
+    {
+        _head = NIL;
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Returns the ids in order.
+     */
+    public List<PnfsId> toList()
+    {
+        List<PnfsId> list = new ArrayList<>(_size);
+        for (int slot = _head; slot != NIL; slot = _next[slot]) {
+            list.add(_ids[slot]);
+        }
+        return list;
+    }
+
+    @Override
+    public Iterator<PnfsId> iterator()
+    {
+        return new Iterator<PnfsId>() {
+            private int _slot = _head;
+
+            @Override
+            public boolean hasNext()
+            {
+                return _slot != NIL;
+            }
+
+            @Override
+            public PnfsId next()
+            {
+                if (_slot == NIL) {
+                    throw new NoSuchElementException();
+                }
+                PnfsId id = _ids[_slot];
+                _slot = _next[_slot];
+                return id;
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static int hash(PnfsId id)
+    {
+        int h = id.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the bucket holding id, or -(b + 1) where b is the empty
+     * bucket at which id would be inserted.
+     */
+    private int find(PnfsId id, int hash)
+    {
+        int mask = _table.length - 1;
+        for (int bucket = hash & mask; ; bucket = (bucket + 1) & mask) {
+            int slot = _table[bucket] - 1;
+            if (slot < 0) {
+                return -bucket - 1;
+            }
+            if (_hashes[slot] == hash && _ids[slot].equals(id)) {
+                return bucket;
+            }
+        }
+    }
+
+    /**
+     * Empties a bucket, shifting back subsequent entries of the probe
+     * sequence such that all remaining entries can still be found.
+     */
+    private void deleteBucket(int bucket)
+    {
+        int mask = _table.length - 1;
+        int hole = bucket;
+        for (int i = (hole + 1) & mask; _table[i] != 0; i = (i + 1) & mask) {
+            int home = _hashes[_table[i] - 1] & mask;
+            boolean between = (hole <= i)
+                ? (hole < home && home <= i)
+                : (hole < home || home <= i);
+            if (!between) {
+                _table[hole] = _table[i];
+                hole = i;
+            }
+        }
+        _table[hole] = 0;
+    }
+
+    private void linkLast(int slot)
+    {
+        _prev[slot] = _tail;
+        _next[slot] = NIL;
+        if (_tail == NIL) {
+            _head = slot;
+        } else {
+            _next[_tail] = slot;
+        }
+        _tail = slot;
+    }
+
+    private void unlink(int slot)
+    {
+        int prev = _prev[slot];
+        int next = _next[slot];
+        if (prev == NIL) {
+            _head = next;
+        } else {
+            _next[prev] = next;
+        }
+        if (next == NIL) {
+            _tail = prev;
+        } else {
+            _prev[next] = prev;
+        }
+    }
+
+    /**
+     * Reallocates the arrays with room for capacity elements and
+     * compacts the current elements into the first slots, preserving
+     * their order.
+     */
+    private void allocate(int capacity)
+    {
+        PnfsId[] ids = new PnfsId[capacity];
+        int[] hashes = new int[capacity];
+        int count = 0;
+        for (int slot = _head; slot != NIL; slot = _next[slot]) {
+            ids[count] = _ids[slot];
+            hashes[count] = _hashes[slot];
+            count++;
+        }
+
+        _ids = ids;
+        _hashes = hashes;
+        _prev = new int[capacity];
+        _next = new int[capacity];
+        _table = new int[capacity * 2];
+        _head = NIL;
+        _tail = NIL;
+        _free = NIL;
+        _size = count;
+        _used = count;
+
+        int mask = _table.length - 1;
+        for (int slot = 0; slot < count; slot++) {
+            linkLast(slot);
+            int bucket = hashes[slot] & mask;
+            while (_table[bucket] != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+            _table[bucket] = slot + 1;
+        }
+    }
+}
@@ -24,6 +24,8 @@ import diskCacheV111.vehicles.JobInfo;
 
 import dmg.cells.nucleus.CDC;
 
+import org.dcache.commons.stats.Gauge;
+import org.dcache.commons.stats.MetricsRegistry;
 import org.dcache.pool.movers.Mover;
 import org.dcache.util.AdjustableSemaphore;
 import org.dcache.util.FifoPriorityComparator;
@@ -80,6 +82,11 @@ public class SimpleIoScheduler implements IoScheduler, Runnable {
 
     private final AdjustableSemaphore _semaphore = new AdjustableSemaphore();
 
+    /**
+     * Name of the pool owning this queue; used to label metrics.
+     */
+    private final String _pool;
+
     public SimpleIoScheduler(String name,
                              int queueId)
     {
@@ -105,6 +112,28 @@ public class SimpleIoScheduler implements IoScheduler, Runnable {
         _worker = new Thread(this);
         _worker.setName(_name);
         _worker.start();
+
+        String pool = CDC.getCellName();
+        _pool = (pool == null) ? "" : pool;
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.gauge("dcache_pool_movers_queued", "Movers waiting in a pool IO queue",
+                       new Gauge() {
+                           @Override
+                           public double getValue()
+                           {
+                               return _queue.size();
+                           }
+                       },
+                       "pool", _pool, "queue", _name);
+        registry.gauge("dcache_pool_movers_active", "Movers running in a pool IO queue",
+                       new Gauge() {
+                           @Override
+                           public double getValue()
+                           {
+                               return Math.max(_jobs.size() - _queue.size(), 0);
+                           }
+                       },
+                       "pool", _pool, "queue", _name);
     }
 
     /**
@@ -266,6 +295,8 @@ public class SimpleIoScheduler implements IoScheduler, Runnable {
         if (!_shutdown) {
             _shutdown = true;
             _worker.interrupt();
+            MetricsRegistry.getInstance().remove("dcache_pool_movers_queued", "pool", _pool, "queue", _name);
+            MetricsRegistry.getInstance().remove("dcache_pool_movers_active", "pool", _pool, "queue", _name);
             for (PrioritizedRequest request : _jobs.values()) {
                 cancel(request);
             }
@@ -7,11 +7,10 @@ import org.slf4j.LoggerFactory;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FileNotInCacheException;
@@ -45,7 +44,21 @@ public class SpaceSweeper2
     private final SimpleDateFormat __format =
         new SimpleDateFormat("HH:mm-MM/dd");
 
-    private final Set<PnfsId> _list  = new LinkedHashSet();
+    /**
+     * Access time changes are recorded in a number of buffers selected
+     * by thread and applied to the LRU list in batches. This keeps
+     * movers from contending on the sweeper monitor.
+     */
+    private static final int ACCESS_BUFFER_STRIPES = 16;
+    private static final int ACCESS_BUFFER_SIZE = 64;
+
+    /**
+     * Removable entries in LRU order. Guarded by this.
+     */
+    private final LruIndex _list = new LruIndex();
+
+    private final AccessBuffer[] _accessBuffers =
+        new AccessBuffer[ACCESS_BUFFER_STRIPES];
 
     private Repository _repository;
 
@@ -53,6 +66,9 @@ public class SpaceSweeper2
 
     public SpaceSweeper2()
     {
+        for (int i = 0; i < _accessBuffers.length; i++) {
+            _accessBuffers[i] = new AccessBuffer();
+        }
     }
 
     public void setRepository(Repository repository)
@@ -93,10 +109,8 @@ public class SpaceSweeper2
      */
     private synchronized PnfsId getEldest()
     {
-        if (_list.size() == 0) {
-            return null;
-        }
-        return _list.iterator().next();
+        drainAccessBuffers();
+        return _list.peekFirst();
     }
 
     /**
@@ -191,9 +205,66 @@ public class SpaceSweeper2
     @Override
     public void accessTimeChanged(EntryChangeEvent event)
     {
-        CacheEntry entry = event.getEntry();
-        if (remove(entry)) {
-            add(entry);
+        PnfsId id = event.getEntry().getPnfsId();
+        AccessBuffer buffer = _accessBuffers[
+                (int) (Thread.currentThread().getId() % ACCESS_BUFFER_STRIPES)];
+        PnfsId[] batch;
+        synchronized (buffer) {
+            batch = buffer.add(id);
+        }
+        if (batch != null) {
+            touch(batch, batch.length);
+        }
+    }
+
+    /**
+     * Moves the given entries to the end of the LRU list, unless
+     * they have been removed in the meantime.
+     */
+    private synchronized void touch(PnfsId[] ids, int count)
+    {
+        for (int i = 0; i < count; i++) {
+            _list.moveToTail(ids[i]);
+        }
+    }
+
+    /**
+     * Applies all buffered access time changes to the LRU list. Must
+     * be called before the order of the list is relied upon.
+     */
+    private synchronized void drainAccessBuffers()
+    {
+        for (AccessBuffer buffer: _accessBuffers) {
+            synchronized (buffer) {
+                touch(buffer._ids, buffer._count);
+                Arrays.fill(buffer._ids, 0, buffer._count, null);
+                buffer._count = 0;
+            }
+        }
+    }
+
+    /**
+     * Fixed size buffer of PNFS IDs of recently accessed entries.
+     */
+    private static class AccessBuffer
+    {
+        private PnfsId[] _ids = new PnfsId[ACCESS_BUFFER_SIZE];
+        private int _count;
+
+        /**
+         * Adds id to the buffer. If the buffer becomes full, then its
+         * content is returned and the buffer is reset.
+         */
+        PnfsId[] add(PnfsId id)
+        {
+            _ids[_count++] = id;
+            if (_count < _ids.length) {
+                return null;
+            }
+            PnfsId[] full = _ids;
+            _ids = new PnfsId[ACCESS_BUFFER_SIZE];
+            _count = 0;
+            return full;
         }
     }
 
@@ -242,7 +313,8 @@ public class SpaceSweeper2
         boolean s = args.hasOption("s");
         List<PnfsId> list;
         synchronized (this) {
-            list = new ArrayList<>(_list);
+            drainAccessBuffers();
+            list = _list.toList();
         }
         int i = 0;
         for (PnfsId id : list) {
@@ -315,6 +387,7 @@ public class SpaceSweeper2
          * ConcurrentModificationException.
          */
         synchronized (this) {
+            drainAccessBuffers();
             Iterator<PnfsId> i = _list.iterator();
             long minSpaceNeeded = amount;
 
@@ -0,0 +1,109 @@
+package org.dcache.pool.movers;
+
+import org.jboss.netty.channel.FileRegion;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+import org.dcache.pool.repository.RepositoryChannel;
+
+/**
+ * FileRegion over a range of a RepositoryChannel.
+ *
+ * Netty writes a FileRegion by calling transferTo with the socket as
+ * the target, which for a file backed channel lets the kernel copy the
+ * data straight from the page cache to the socket. No user space
+ * buffers are involved. Since the data bypasses the pipeline, the
+ * region must only be used if no handler transforms the outgoing
+ * stream (e.g. TLS or compression).
+ *
+ * Releasing the region does not close the channel, as the channel is
+ * owned by the mover and may be reused for further requests on the same
+ * connection.
+ */
+public class RepositoryFileRegion implements FileRegion
+{
+    private final RepositoryChannel _channel;
+    private final long _position;
+    private final long _count;
+
+    public RepositoryFileRegion(RepositoryChannel channel,
+                                long position,
+                                long count)
+    {
+        if (channel == null) {
+            throw new NullPointerException("Channel must not be null");
+        }
+
+        if (position < 0) {
+            throw new IllegalArgumentException("position: " + position +
+                                               " (expected: 0 or greater)");
+        }
+
+        if (count < 0) {
+            throw new IllegalArgumentException("count: " + count +
+                                               " (expected: 0 or greater)");
+        }
+
+        _channel = channel;
+        _position = position;
+        _count = count;
+    }
+
+    @Override
+    public long getPosition()
+    {
+        return _position;
+    }
+
+    @Override
+    public long getCount()
+    {
+        return _count;
+    }
+
+    /**
+     * Transfers the part of the region starting at position (relative
+     * to the start of the region) to target.
+     */
+    @Override
+    public long transferTo(WritableByteChannel target, long position)
+        throws IOException
+    {
+        long count = _count - position;
+        if (count < 0 || position < 0) {
+            throw new IllegalArgumentException("position out of range: " +
+                                               position + " (expected: 0 - " +
+                                               (_count - 1) + ')');
+        }
+        if (count == 0) {
+            return 0L;
+        }
+
+        long bytes = _channel.transferTo(_position + position, count, target);
+
+        /* transferTo returns zero both if the socket buffer is full and
+         * if the file is shorter than the region. Netty would retry the
+         * latter forever.
+         */
+        if (bytes == 0 && _position + position >= _channel.size()) {
+            throw new EOFException("Unexpected end of file at offset " +
+                                   (_position + position));
+        }
+        return bytes;
+    }
+
+    /**
+     * Does not close the channel; the mover owns it.
+     */
+    @Override
+    public void releaseExternalResources()
+    {
+    }
+
+    public RepositoryChannel getChannel()
+    {
+        return _channel;
+    }
+}
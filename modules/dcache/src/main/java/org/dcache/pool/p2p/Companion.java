@@ -3,16 +3,12 @@ package org.dcache.pool.p2p;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.RandomAccessFile;
 import java.io.SyncFailedException;
-import java.net.HttpURLConnection;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.net.URI;
+import java.nio.channels.CompletionHandler;
 import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -42,8 +38,10 @@ import org.dcache.cells.AbstractMessageCallback;
 import org.dcache.cells.CellStub;
 import org.dcache.pool.classic.ChecksumModule;
 import org.dcache.pool.repository.EntryState;
+import org.dcache.pool.repository.FileRepositoryChannel;
 import org.dcache.pool.repository.ReplicaDescriptor;
 import org.dcache.pool.repository.Repository;
+import org.dcache.pool.repository.RepositoryChannel;
 import org.dcache.pool.repository.StickyRecord;
 import org.dcache.util.Checksum;
 import org.dcache.util.FireAndForgetTask;
@@ -58,6 +56,10 @@ import static com.google.common.base.Preconditions.checkNotNull;
  *
  * The companion will submit an HTTP download request to the source
  * pool, wait for the reply and then download the file through HTTP.
+ * The download is performed by a non-blocking HTTP client shared by
+ * all companions. If the connection to the source pool breaks, the
+ * companion requests a new mover on the source pool and resumes the
+ * download where it stopped.
  *
  * The code is driven by a state machine, Companion.sm. Most of the
  * logic is encapsulated in the state machine.
@@ -67,14 +69,13 @@ class Companion
     private final static Logger _log = LoggerFactory.getLogger(Companion.class);
 
     private final static long PING_PERIOD = TimeUnit.MINUTES.toMillis(5);
-    private final static int BUFFER_SIZE = 65536;
+    private final static long RESUME_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+    private final static int MAX_ATTEMPTS = 3;
     private final static String PROTOCOL_INFO_NAME = "Http";
     private final static int PROTOCOL_INFO_MAJOR_VERSION = 1;
     private final static int PROTOCOL_INFO_MINOR_VERSION = 1;
 
     private final static AtomicInteger _nextId = new AtomicInteger(100);
-    private static final long CONNECT_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
-    private static final long READ_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
 
     private final InetAddress _address;
     private final Repository _repository;
@@ -89,6 +90,7 @@ class Companion
     private final CellStub _pnfs;
     private final CellStub _pool;
     private final boolean _forceSourceMode;
+    private final HttpDownloadClient _client;
 
     /** State machine driving the transfer. */
     private final CompanionContext _fsm;
@@ -102,8 +104,35 @@ class Companion
     /** Description of error condition, or null. */
     private Object _error;
 
-    /** The thread performing the actual file transfer. */
-    private Thread _thread;
+    /** Whether a download attempt is in progress. */
+    private boolean _isTransferring;
+
+    /** Whether the download was interrupted. */
+    private boolean _isInterrupted;
+
+    /** The current download, or null. */
+    private HttpDownloadClient.Download _download;
+
+    /** Number of download attempts. */
+    private int _attempts;
+
+    /**
+     * The replica being created and the channel to its data file.
+     * Created by the first download attempt and kept open until the
+     * transfer has ended.
+     */
+    private ReplicaDescriptor _handle;
+    private RepositoryChannel _file;
+
+    /** Checksum computed while downloading; null if not computed. */
+    private ChecksumFactory _checksumFactory;
+    private MessageDigest _digest;
+
+    /**
+     * Number of bytes written to the data file and added to the
+     * digest by completed download attempts.
+     */
+    private long _received;
 
     /** Used to implement the startTimer and stopTimer actions. */
     private ScheduledFuture<?> _timerTask;
@@ -115,6 +144,7 @@ class Companion
      * Creates a new instance.
      *
      * @param executor    Executor used for state machine callbacks
+     * @param client      HTTP client used to download the file
      * @param address     Expected interface to connect to source pool
      * @param repository  Repository in which the replica is created
      * @param checksumModule Checksum module used to verify and
@@ -131,6 +161,7 @@ class Companion
      * @param forceSourceMode Ignores disabled state of pools
      */
     Companion(ScheduledExecutorService executor,
+              HttpDownloadClient client,
               InetAddress address,
               Repository repository,
               ChecksumModule checksumModule,
@@ -148,6 +179,7 @@ class Companion
         _fsm = new CompanionContext(this);
 
         _executor = executor;
+        _client = client;
         _address = address;
         _repository = repository;
         _checksumModule = checksumModule;
@@ -198,6 +230,11 @@ class Companion
         return PING_PERIOD;
     }
 
+    synchronized public long getResumeTimeout()
+    {
+        return RESUME_TIMEOUT;
+    }
+
     /**
      * Cancels the transfer. Returns true unless the transfer is
      * already completed.
@@ -236,73 +273,117 @@ class Companion
     }
 
     /**
-     * Sets the thread used for the file transfer.
+     * Starts a download attempt. The first attempt creates the replica
+     * and opens its data file. Runs on the executor, as allocating
+     * space for the replica may block.
      */
-    synchronized private void setThread(Thread thread)
+    private void startDownload(String uri)
     {
-        _thread = thread;
+        try {
+            if (_handle == null) {
+                openReplica();
+            }
+            synchronized (this) {
+                if (_isInterrupted) {
+                    throw new InterruptedException("Transfer was interrupted");
+                }
+                _download = _client.download(new URI(uri), _file, _received,
+                                             _handle.getFileAttributes().getSize(),
+                                             _digest, new DownloadHandler());
+            }
+        } catch (FileInCacheException e) {
+            synchronized (this) {
+                _isTransferring = false;
+                _fsm.createEntryFailed();
+            }
+        } catch (Throwable e) {
+            transferEnded(e);
+        }
     }
 
-    private void transfer(String uri)
+    private void openReplica()
+        throws Exception
     {
         ReplicaDescriptor handle;
         synchronized (this) {
-            try {
-                handle = createReplicaEntry();
-            } catch (FileInCacheException e) {
-                _fsm.createEntryFailed();
-                return;
-            }
-            setThread(Thread.currentThread());
+            handle = createReplicaEntry();
+            _handle = handle;
+        }
+
+        handle.allocate(handle.getFileAttributes().getSize());
+
+        ChecksumFactory checksumFactory;
+        MessageDigest digest;
+        if (_checksumModule.hasPolicy(ChecksumModule.PolicyFlag.ON_TRANSFER)) {
+            checksumFactory = _checksumModule.getPreferredChecksumFactory(handle);
+            digest = checksumFactory.create();
+        } else {
+            checksumFactory = null;
+            digest = null;
         }
 
+        RepositoryChannel file = new FileRepositoryChannel(handle.getFile(), "rw");
+        synchronized (this) {
+            _checksumFactory = checksumFactory;
+            _digest = digest;
+            _file = file;
+        }
+    }
+
+    /**
+     * Called once the whole file has been received. Forces the data
+     * to disk, verifies the checksum and commits the replica. Runs on
+     * the executor.
+     */
+    private void finishTransfer()
+    {
         Throwable error = null;
         try {
             try {
-                File file = handle.getFile();
-                long size = handle.getFileAttributes().getSize();
-
-                handle.allocate(size);
-
-                ChecksumFactory checksumFactory;
-                MessageDigest digest;
-                if (_checksumModule.hasPolicy(ChecksumModule.PolicyFlag.ON_TRANSFER)) {
-                    checksumFactory = _checksumModule.getPreferredChecksumFactory(handle);
-                    digest = checksumFactory.create();
-                } else {
-                    checksumFactory = null;
-                    digest = null;
-                }
-
-                HttpURLConnection connection = createConnection(uri);
-                try {
-                    try (InputStream input = connection.getInputStream()) {
-                        long total = copy(input, file, digest);
-                        if (total != size) {
-                            throw new IOException("Amount of received data does not match expected file size");
-                        }
-                    }
-                } finally {
-                    connection.disconnect();
-                }
-
-                Set<Checksum> actualChecksums =
-                        (digest == null)
-                                ? Collections.<Checksum>emptySet()
-                                : Collections.singleton(checksumFactory.create(digest.digest()));
-                _checksumModule.enforcePostTransferPolicy(handle, actualChecksums);
-            } finally {
-                setThread(null);
-                Thread.interrupted();
+                _file.sync();
+            } catch (SyncFailedException e) {
+                /* Data is not guaranteed to be on disk. Not a fatal
+                 * problem, but better generate a warning.
+                 */
+                _log.warn("Failed to synchronize file with storage device: {}",
+                          e.getMessage());
             }
-            handle.commit();
+
+            Set<Checksum> actualChecksums =
+                    (_digest == null)
+                            ? Collections.<Checksum>emptySet()
+                            : Collections.singleton(_checksumFactory.create(_digest.digest()));
+            _checksumModule.enforcePostTransferPolicy(_handle, actualChecksums);
+            _handle.commit();
         } catch (Throwable e) {
             error = e;
-        } finally {
-            handle.close();
-            synchronized (this) {
-                _fsm.transferEnded(error);
+        }
+        transferEnded(error);
+    }
+
+    private synchronized void transferEnded(Throwable error)
+    {
+        _isTransferring = false;
+        _download = null;
+        _fsm.transferEnded(error);
+    }
+
+    /**
+     * Closes the data file and the replica, if they were created.
+     */
+    private synchronized void closeReplica()
+    {
+        if (_file != null) {
+            try {
+                _file.close();
+            } catch (IOException e) {
+                _log.warn("Failed to close {}: {}", _handle.getFile(), e.getMessage());
             }
+            _file = null;
+        }
+        if (_handle != null) {
+            _handle.close();
+            _handle = null;
         }
     }
 
@@ -317,49 +398,6 @@ class Companion
                 EnumSet.of(Repository.OpenFlags.CREATEFILE));
     }
 
-    private HttpURLConnection createConnection(String uri)
-        throws MalformedURLException, IOException
-    {
-        URL url = new URL(uri);
-        HttpURLConnection connection =
-            (HttpURLConnection) url.openConnection();
-        connection.setRequestProperty("Connection", "close");
-        connection.setConnectTimeout((int) CONNECT_TIMEOUT);
-        connection.setReadTimeout((int) READ_TIMEOUT);
-        connection.connect();
-        return connection;
-    }
-
-    private long copy(InputStream input, File file, MessageDigest digest)
-        throws IOException
-    {
-        long total = 0L;
-        try (RandomAccessFile dataFile = new RandomAccessFile(file, "rw")) {
-            try {
-                byte[] buffer = new byte[BUFFER_SIZE];
-                int read;
-                while ((read = input.read(buffer)) > -1) {
-                    dataFile.write(buffer, 0, read);
-                    total += read;
-                    if (digest != null) {
-                        digest.update(buffer, 0, read);
-                    }
-                }
-            } finally {
-                try {
-                    dataFile.getFD().sync();
-                } catch (SyncFailedException e) {
-                    /* Data is not guaranteed to be on disk. Not a fatal
-                     * problem, but better generate a warning.
-                     */
-                    _log.warn("Failed to synchronize file with storage device: {}",
-                              e.getMessage());
-                }
-            }
-        }
-        return total;
-    }
-
     //
     // The following methods are actions or helper methods used by the
     // state machine.
@@ -490,17 +528,48 @@ class Companion
     }
 
     /**
-     * Starts a thread that transfers the file from the source pool.
+     * Starts downloading the file from the source pool, continuing
+     * where a previous attempt stopped.
      */
     synchronized void beginTransfer(final String uri)
     {
-        new Thread("P2P Transfer - " + getPnfsId()) {
-            @Override
-            public void run()
-            {
-                transfer(uri);
-            }
-        }.start();
+        _isTransferring = true;
+        _attempts++;
+        _executor.execute(new FireAndForgetTask(new Runnable() {
+                @Override
+                public void run() {
+                    startDownload(uri);
+                }
+            }));
+    }
+
+    /**
+     * Returns true iff a failed download attempt should be resumed
+     * with a new mover on the source pool.
+     */
+    synchronized boolean isResumable(Object error)
+    {
+        return isResumable(error, _isInterrupted, _file != null, _attempts);
+    }
+
+    /**
+     * Returns true iff a download attempt that failed with error
+     * should be resumed. Only I/O errors are resumed, and only if the
+     * replica has been created, the transfer was not interrupted and
+     * fewer than MAX_ATTEMPTS attempts have been made.
+     */
+    static boolean isResumable(Object error, boolean isInterrupted,
+                               boolean hasReplica, int attempts)
+    {
+        return error instanceof IOException && !isInterrupted &&
+            hasReplica && attempts < MAX_ATTEMPTS;
+    }
+
+    /** FSM Action */
+    synchronized void prepareResume(Object error)
+    {
+        _log.info("P2P for {} interrupted after {} bytes ({}); resuming",
+                  getPnfsId(), _received, error);
     }
 
     /**
@@ -509,10 +578,12 @@ class Companion
      */
     synchronized void done()
     {
-        if (_thread != null) {
+        if (_isTransferring) {
             throw new IllegalStateException("Cannot close a companion while the transfer is in progress");
         }
 
+        closeReplica();
+
         if (_error != null) {
             if (_error instanceof RuntimeException) {
                 _log.error(String.format("P2P for %s failed: %s", getPnfsId(), _error),
@@ -551,8 +622,47 @@ class Companion
      */
     synchronized void interrupt()
     {
-        if (_thread != null) {
-            _thread.interrupt();
+        _isInterrupted = true;
+        if (_download != null) {
+            _download.cancel();
+        }
+    }
+
+    /**
+     * Receives the result of a download attempt from the HTTP client
+     * and continues on the executor, as the threads of the client
+     * must not block.
+     */
+    private class DownloadHandler implements CompletionHandler<Long, Void>
+    {
+        @Override
+        public void completed(Long bytes, Void attachment)
+        {
+            synchronized (Companion.this) {
+                _received += bytes;
+            }
+            _executor.execute(new FireAndForgetTask(new Runnable() {
+                    @Override
+                    public void run() {
+                        finishTransfer();
+                    }
+                }));
+        }
+
+        @Override
+        public void failed(final Throwable t, Void attachment)
+        {
+            synchronized (Companion.this) {
+                if (_download != null) {
+                    _received += _download.getBytesWritten();
+                }
+            }
+            _executor.execute(new FireAndForgetTask(new Runnable() {
+                    @Override
+                    public void run() {
+                        transferEnded(t);
+                    }
+                }));
         }
     }
 
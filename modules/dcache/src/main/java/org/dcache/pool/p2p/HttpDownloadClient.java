@@ -0,0 +1,356 @@
+package org.dcache.pool.p2p;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFactory;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpClientCodec;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMessage;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.execution.ExecutionHandler;
+import org.jboss.netty.handler.execution.OrderedMemoryAwareThreadPoolExecutor;
+import org.jboss.netty.handler.timeout.ReadTimeoutHandler;
+import org.jboss.netty.util.DefaultObjectSizeEstimator;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.security.MessageDigest;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dmg.cells.nucleus.CDC;
+
+import org.dcache.pool.repository.RepositoryChannel;
+import org.dcache.util.CDCThreadFactory;
+
+import static org.jboss.netty.channel.Channels.pipeline;
+
+/**
+ * Non-blocking HTTP client for downloading replicas from other pools.
+ *
+ * All downloads share a small number of netty I/O threads. The body of
+ * the response is written to the repository channel and added to the
+ * message digest as it arrives, without intermediate copies. Writing
+ * and digesting happen on a separate pool of disk threads that
+ * preserves the order of events of each connection. Once more than
+ * MAX_MEMORY_PER_CONNECTION bytes of a connection wait for a disk
+ * thread, reading from its socket is suspended; hence the memory held
+ * by the client is bounded by that amount per concurrent transfer.
+ *
+ * A download may start at an offset into the file, in which case the
+ * remaining part of the file is requested with an HTTP range request.
+ */
+class HttpDownloadClient
+{
+    private static final long CONNECT_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+    private static final long READ_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+
+    private static final int MAX_INITIAL_LINE_LENGTH = 4096;
+    private static final int MAX_HEADER_SIZE = 8192;
+    private static final int MAX_CHUNK_SIZE = 65536;
+    private static final int MAX_MEMORY_PER_CONNECTION = 16 * MAX_CHUNK_SIZE;
+
+    private final ChannelFactory _channelFactory;
+    private final ExecutionHandler _executionHandler;
+    private final Timer _timer;
+
+    /**
+     * @param socketThreads number of I/O threads shared by all downloads
+     * @param diskThreads   number of threads shared by all downloads for
+     *                      writing to the repository
+     */
+    HttpDownloadClient(int socketThreads, int diskThreads)
+    {
+        CDCThreadFactory factory = new CDCThreadFactory(
+                Executors.defaultThreadFactory(), CDC.getCellName(), CDC.getDomainName());
+        _channelFactory = new NioClientSocketChannelFactory(
+                Executors.newCachedThreadPool(
+                        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("p2p-boss-%d").setThreadFactory(factory).build()),
+                Executors.newCachedThreadPool(
+                        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("p2p-net-%d").setThreadFactory(factory).build()),
+                socketThreads);
+        _executionHandler = new ExecutionHandler(
+                new OrderedMemoryAwareThreadPoolExecutor(
+                        diskThreads, MAX_MEMORY_PER_CONNECTION, 0, 30, TimeUnit.SECONDS,
+                        new ContentSizeEstimator(),
+                        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("p2p-disk-%d").setThreadFactory(factory).build()));
+        _timer = new HashedWheelTimer();
+    }
+
+    /**
+     * Starts downloading uri into channel.
+     *
+     * @param uri     the URI of the file on the source pool
+     * @param channel the channel to which the file is written
+     * @param offset  position in the file from which to download
+     * @param size    the size of the file
+     * @param digest  digest to update with the downloaded data; may be null
+     * @param handler notified when the download completed or failed;
+     *                called from a thread of the client
+     */
+    Download download(URI uri, RepositoryChannel channel, long offset, long size,
+                      MessageDigest digest, CompletionHandler<Long, Void> handler)
+    {
+        final Download download =
+            new Download(uri, channel, offset, size, digest, handler);
+
+        ClientBootstrap bootstrap = new ClientBootstrap(_channelFactory);
+        bootstrap.setOption("connectTimeoutMillis", CONNECT_TIMEOUT);
+        bootstrap.setOption("keepAlive", true);
+
+        ChannelPipeline pipeline = pipeline();
+        pipeline.addLast("codec", new HttpClientCodec(MAX_INITIAL_LINE_LENGTH,
+                                                      MAX_HEADER_SIZE,
+                                                      MAX_CHUNK_SIZE));
+        pipeline.addLast("timeout", new ReadTimeoutHandler(_timer, READ_TIMEOUT,
+                                                           TimeUnit.MILLISECONDS));
+        pipeline.addLast("executor", _executionHandler);
+        pipeline.addLast("download", download);
+        bootstrap.setPipeline(pipeline);
+
+        int port = (uri.getPort() == -1) ? 80 : uri.getPort();
+        ChannelFuture future =
+            bootstrap.connect(new InetSocketAddress(uri.getHost(), port));
+        download.setChannel(future.getChannel());
+        future.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future)
+            {
+                if (!future.isSuccess()) {
+                    download.failed(future.getCause());
+                }
+            }
+        });
+        return download;
+    }
+
+    void shutdown()
+    {
+        _channelFactory.releaseExternalResources();
+        _executionHandler.releaseExternalResources();
+        _timer.stop();
+    }
+
+    /**
+     * Accounts for the content of HTTP messages, which the default
+     * estimator ignores, such that the executor suspends reading from
+     * connections with too much data pending.
+     */
+    private static class ContentSizeEstimator extends DefaultObjectSizeEstimator
+    {
+        @Override
+        public int estimateSize(Object o)
+        {
+            int size = super.estimateSize(o);
+            if (o instanceof HttpChunk) {
+                size += ((HttpChunk) o).getContent().readableBytes();
+            } else if (o instanceof HttpMessage) {
+                size += ((HttpMessage) o).getContent().readableBytes();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * A single download. Acts as the last handler of the pipeline of
+     * the connection and is called from the disk threads.
+     */
+    static class Download extends SimpleChannelUpstreamHandler
+    {
+        private final URI _uri;
+        private final RepositoryChannel _file;
+        private final long _offset;
+        private final long _size;
+        private final MessageDigest _digest;
+        private final CompletionHandler<Long, Void> _handler;
+        private final AtomicBoolean _isDone = new AtomicBoolean();
+        private final AtomicLong _bytesWritten = new AtomicLong();
+
+        private volatile Channel _channel;
+
+        Download(URI uri, RepositoryChannel file, long offset, long size,
+                 MessageDigest digest, CompletionHandler<Long, Void> handler)
+        {
+            _uri = uri;
+            _file = file;
+            _offset = offset;
+            _size = size;
+            _digest = digest;
+            _handler = handler;
+        }
+
+        private void setChannel(Channel channel)
+        {
+            _channel = channel;
+        }
+
+        /**
+         * Returns the number of bytes written to the file by this
+         * download. These bytes have also been added to the digest.
+         */
+        long getBytesWritten()
+        {
+            return _bytesWritten.get();
+        }
+
+        /**
+         * Aborts the download. The completion handler is notified of
+         * the failure unless the download already completed.
+         */
+        void cancel()
+        {
+            failed(new ClosedChannelException());
+        }
+
+        private void failed(Throwable t)
+        {
+            if (_isDone.compareAndSet(false, true)) {
+                Channel channel = _channel;
+                if (channel != null) {
+                    channel.close();
+                }
+                _handler.failed(t, null);
+            }
+        }
+
+        private void completed()
+        {
+            if (_isDone.compareAndSet(false, true)) {
+                _channel.close();
+                _handler.completed(_bytesWritten.get(), null);
+            }
+        }
+
+        @Override
+        public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent e)
+        {
+            _channel = e.getChannel();
+        }
+
+        @Override
+        public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e)
+        {
+            String path = _uri.getRawPath();
+            if (_uri.getRawQuery() != null) {
+                path = path + "?" + _uri.getRawQuery();
+            }
+            HttpRequest request =
+                new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, path);
+            String host = (_uri.getPort() == -1)
+                ? _uri.getHost()
+                : _uri.getHost() + ":" + _uri.getPort();
+            request.setHeader(HttpHeaders.Names.HOST, host);
+            request.setHeader(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.CLOSE);
+            if (_offset > 0) {
+                request.setHeader(HttpHeaders.Names.RANGE,
+                                  "bytes=" + _offset + "-" + (_size - 1));
+            }
+            e.getChannel().write(request);
+        }
+
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, MessageEvent e)
+        {
+            if (_isDone.get()) {
+                return;
+            }
+            try {
+                Object message = e.getMessage();
+                if (message instanceof HttpResponse) {
+                    HttpResponse response = (HttpResponse) message;
+                    HttpResponseStatus expected =
+                        (_offset > 0) ? HttpResponseStatus.PARTIAL_CONTENT : HttpResponseStatus.OK;
+                    if (!response.getStatus().equals(expected)) {
+                        throw new IOException("Unexpected response from source pool: " +
+                                              response.getStatus());
+                    }
+                    write(response.getContent());
+                    if (!response.isChunked()) {
+                        checkCompleted();
+                    }
+                } else if (message instanceof HttpChunk) {
+                    HttpChunk chunk = (HttpChunk) message;
+                    write(chunk.getContent());
+                    if (chunk.isLast()) {
+                        checkCompleted();
+                    }
+                }
+            } catch (IOException failure) {
+                failed(failure);
+            }
+        }
+
+        private void write(ChannelBuffer content) throws IOException
+        {
+            for (ByteBuffer buffer: content.toByteBuffers()) {
+                long position = _offset + _bytesWritten.get();
+                if (position + buffer.remaining() > _size) {
+                    throw new IOException("Source pool sent more data than expected");
+                }
+                ByteBuffer data = buffer.duplicate();
+                while (buffer.hasRemaining()) {
+                    _file.write(buffer, position + buffer.position() - data.position());
+                }
+                /* Only count the data once it is in the digest, such
+                 * that a resumed download continues where the digest
+                 * ends.
+                 */
+                int length = data.remaining();
+                if (_digest != null) {
+                    _digest.update(data);
+                }
+                _bytesWritten.addAndGet(length);
+            }
+            if (_offset + _bytesWritten.get() == _size) {
+                completed();
+            }
+        }
+
+        private void checkCompleted() throws IOException
+        {
+            if (_offset + _bytesWritten.get() != _size) {
+                throw new IOException("Amount of received data does not match expected file size");
+            }
+            completed();
+        }
+
+        @Override
+        public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e)
+        {
+            failed(new EOFException("Connection to source pool closed after " +
+                                    (_offset + _bytesWritten.get()) + " of " + _size + " bytes"));
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e)
+        {
+            failed(e.getCause());
+        }
+    }
+}
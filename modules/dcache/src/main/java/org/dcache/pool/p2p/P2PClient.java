@@ -2,6 +2,7 @@
 
 package org.dcache.pool.p2p;
 
+import com.google.common.base.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +43,8 @@ public class P2PClient
 {
     private final static Logger _log = LoggerFactory.getLogger(P2PClient.class);
 
+    private final static int DEFAULT_DISK_THREADS = 10;
+
     private final Map<Integer, Companion> _companions = new HashMap();
     private ScheduledExecutorService _executor;
     private Repository _repository;
@@ -52,6 +55,9 @@ public class P2PClient
     private CellStub _pnfs;
     private CellStub _pool;
     private InetAddress _interface;
+    private Integer _socketThreads;
+    private int _diskThreads = DEFAULT_DISK_THREADS;
+    private HttpDownloadClient _client;
 
     public synchronized void setExecutor(ScheduledExecutorService executor)
     {
@@ -78,6 +84,39 @@ public class P2PClient
         _pool = pool;
     }
 
+    /**
+     * Sets the number of I/O threads shared by all downloads. If
+     * empty, the number of CPU cores is used.
+     */
+    public synchronized void setSocketThreads(String socketThreads)
+    {
+        _socketThreads = Strings.isNullOrEmpty(socketThreads) ? null : Integer.valueOf(socketThreads);
+    }
+
+    /**
+     * Sets the number of threads shared by all downloads for writing
+     * to the repository.
+     */
+    public synchronized void setDiskThreads(int diskThreads)
+    {
+        _diskThreads = diskThreads;
+    }
+
+    /**
+     * Returns the HTTP client shared by all companions. The client is
+     * created on first use.
+     */
+    private synchronized HttpDownloadClient getClient()
+    {
+        if (_client == null) {
+            int threads = (_socketThreads == null)
+                ? Runtime.getRuntime().availableProcessors()
+                : _socketThreads;
+            _client = new HttpDownloadClient(threads, _diskThreads);
+        }
+        return _client;
+    }
+
     public synchronized int getActiveJobs()
     {
         return (_companions.size() <= _maxActive) ? _companions.size() : _maxActive;
@@ -238,7 +277,7 @@ public class P2PClient
         Callback cb = new Callback(callback);
 
         Companion companion =
-            new Companion(_executor, getInterface(), _repository,
+            new Companion(_executor, getClient(), getInterface(), _repository,
                           _checksumModule,
                           _pnfs, _pool,
                           fileAttributes,
@@ -278,6 +317,10 @@ public class P2PClient
         while (!_companions.isEmpty()) {
             wait();
         }
+        if (_client != null) {
+            _client.shutdown();
+            _client = null;
+        }
     }
 
     @Override
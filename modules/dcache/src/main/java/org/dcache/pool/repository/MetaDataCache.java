@@ -76,18 +76,33 @@ public class MetaDataCache
      *
      * The point from which the condition in item 1 is true is marked by
      * assertions in the code.
+     *
+     * Once a record has been loaded or created it never changes, so
+     * lookups of cached records skip the monitor lock: a volatile read
+     * of the record followed by the check of item 1 suffices. Only the
+     * first lookup of a record loads it under the lock.
      */
     private class Monitor
     {
         private final PnfsId _id;
-        private MetaDataRecord _record;
+        private volatile MetaDataRecord _record;
 
         private Monitor(PnfsId id)
         {
             _id = id;
         }
 
-        private synchronized MetaDataRecord get()
+        private MetaDataRecord get()
+                throws InterruptedException, CacheException
+        {
+            MetaDataRecord record = _record;
+            if (record != null && _entries.get(_id) == this) {
+                return record;
+            }
+            return load();
+        }
+
+        private synchronized MetaDataRecord load()
                 throws InterruptedException, CacheException
         {
             if (_entries.get(_id) != this) {
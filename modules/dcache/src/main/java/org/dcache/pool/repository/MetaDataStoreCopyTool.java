@@ -43,18 +43,26 @@ public class MetaDataStoreCopyTool
         MetaDataStore toStore =
             createStore(Class.forName(args[2]).asSubclass(MetaDataStore.class), fileStore, poolDir);
 
-        if (!toStore.list().isEmpty()) {
-            System.err.println("ERROR: Target store is not empty");
-            System.exit(1);
-        }
+        try {
+            if (!toStore.list().isEmpty()) {
+                System.err.println("ERROR: Target store is not empty");
+                System.exit(1);
+            }
 
-        Collection<PnfsId> ids = fromStore.list();
-        int size = ids.size();
-        int count = 1;
-        for (PnfsId id: ids) {
-            _log.info("Copying {} ({} of {})", id, count, size);
-            toStore.create(fromStore.get(id));
-            count++;
+            Collection<PnfsId> ids = fromStore.list();
+            int size = ids.size();
+            int count = 1;
+            for (PnfsId id: ids) {
+                _log.info("Copying {} ({} of {})", id, count, size);
+                toStore.create(fromStore.get(id));
+                count++;
+            }
+        } finally {
+            /* Stores may buffer writes; closing them makes the copy
+             * durable.
+             */
+            toStore.close();
+            fromStore.close();
         }
     }
 }
@@ -1,5 +1,6 @@
 package org.dcache.pool.repository.meta.db;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sleepycat.collections.StoredMap;
 import com.sleepycat.je.DatabaseException;
 
@@ -10,14 +11,25 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import diskCacheV111.util.CacheException;
+import diskCacheV111.util.DiskErrorCacheException;
 import diskCacheV111.util.PnfsId;
 import diskCacheV111.vehicles.StorageInfo;
 
+import dmg.cells.nucleus.CellInfo;
+import dmg.cells.nucleus.CellInfoProvider;
+
 import org.dcache.pool.repository.DuplicateEntryException;
 import org.dcache.pool.repository.FileStore;
 import org.dcache.pool.repository.MetaDataRecord;
@@ -32,9 +44,15 @@ import org.dcache.pool.repository.MetaDataStore;
  * The cache repository entries generated by this store fetch storage
  * info from the database on demand and caches them using a
  * SoftReference.
+ *
+ * How quickly commits become durable is configurable; see
+ * CommitCoordinator. Access times are kept as the modification time
+ * of the data file. Optionally updates of the access time are
+ * collected in memory and written to the data files periodically,
+ * so that repeated reads of a file cost a single system call.
  */
 public class BerkeleyDBMetaDataRepository
-    implements MetaDataStore
+    implements MetaDataStore, CellInfoProvider
 {
     private static Logger _log =
         LoggerFactory.getLogger(BerkeleyDBMetaDataRepository.class);
@@ -61,6 +79,26 @@ public class BerkeleyDBMetaDataRepository
      */
     private final File _dir;
 
+    private final CommitCoordinator _commits;
+
+    /**
+     * Access times not yet written to the data files.
+     */
+    private final ConcurrentMap<PnfsId,Long> _accessTimes =
+        new ConcurrentHashMap<>();
+
+    private long _syncInterval = 1;
+    private TimeUnit _syncIntervalUnit = TimeUnit.SECONDS;
+    private long _accessTimeFlushInterval;
+    private TimeUnit _accessTimeFlushIntervalUnit = TimeUnit.SECONDS;
+
+    private ScheduledExecutorService _scheduler;
+
+    /**
+     * Whether access time updates are collected in _accessTimes.
+     */
+    private volatile boolean _deferAccessTimes;
+
     /**
      * Opens a BerkeleyDB based meta data repository. If the database
      * does not exist yet, then it is created. If the 'meta' directory
@@ -92,6 +130,7 @@ public class BerkeleyDBMetaDataRepository
         try {
             _database = new MetaDataRepositoryDatabase(_dir, readOnly);
             _views = new MetaDataRepositoryViews(_database);
+            _commits = new CommitCoordinator(_database.getEnvironment());
         } catch (EnvironmentFailureException e) {
             throw new CacheException(CacheException.PANIC, "Failed to open Berkeley DB database. When upgrading to " +
                     "dCache 2.6, it may be necessary to run the /usr/sbin/dcache-pool-meta-preupgrade utility " +
@@ -100,6 +139,88 @@ public class BerkeleyDBMetaDataRepository
         }
     }
 
+    /**
+     * Sets the durability of commits. One of sync, write-no-sync and
+     * group.
+     */
+    public void setDurability(String mode)
+        throws DatabaseException
+    {
+        _commits.setMode(CommitCoordinator.Mode.forName(mode));
+    }
+
+    public String getDurability()
+    {
+        return _commits.getMode().toString();
+    }
+
+    /**
+     * Sets the interval at which commits are forced to disk in
+     * write-no-sync mode.
+     */
+    public synchronized void setSyncInterval(long interval)
+    {
+        _syncInterval = interval;
+    }
+
+    public synchronized void setSyncIntervalUnit(TimeUnit unit)
+    {
+        _syncIntervalUnit = unit;
+    }
+
+    /**
+     * Sets the interval at which access times are written to the
+     * data files. Zero writes access times immediately.
+     */
+    public synchronized void setAccessTimeFlushInterval(long interval)
+    {
+        _accessTimeFlushInterval = interval;
+    }
+
+    public synchronized void setAccessTimeFlushIntervalUnit(TimeUnit unit)
+    {
+        _accessTimeFlushIntervalUnit = unit;
+    }
+
+    /**
+     * Starts the background tasks for deferred syncs and access time
+     * updates.
+     */
+    public synchronized void init()
+    {
+        _scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("meta-db-flush")
+                        .setDaemon(true)
+                        .build());
+        if (_syncInterval > 0) {
+            _scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run()
+                {
+                    if (_commits.getMode() == CommitCoordinator.Mode.WRITE_NO_SYNC) {
+                        try {
+                            _commits.flush();
+                        } catch (DatabaseException e) {
+                            _log.error("Failed to sync meta data: " + e.getMessage());
+                        }
+                    }
+                }
+            }, _syncInterval, _syncInterval, _syncIntervalUnit);
+        }
+        if (_accessTimeFlushInterval > 0) {
+            _scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run()
+                {
+                    flushAccessTimes();
+                }
+            }, _accessTimeFlushInterval, _accessTimeFlushInterval,
+               _accessTimeFlushIntervalUnit);
+            _deferAccessTimes = true;
+        }
+    }
+
     @Override
     public Collection<PnfsId> list()
     {
@@ -156,8 +277,11 @@ public class BerkeleyDBMetaDataRepository
     @Override
     public void remove(PnfsId id)
     {
+        _accessTimes.remove(id);
+        long start = _commits.begin();
         _views.getStorageInfoMap().remove(id.toString());
         _views.getStateMap().remove(id.toString());
+        _commits.committed(start);
     }
 
     @Override
@@ -193,6 +317,82 @@ public class BerkeleyDBMetaDataRepository
         return _fileStore.get(id);
     }
 
+    void storeState(PnfsId id, CacheRepositoryEntryState state)
+        throws CacheException
+    {
+        try {
+            long start = _commits.begin();
+            _views.getStateMap().put(id.toString(), state);
+            _commits.committed(start);
+        } catch (DatabaseException e) {
+            throw new DiskErrorCacheException("Failed to store state of " + id +
+                                              ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stores the storage info of a replica. A null storage info
+     * removes any existing storage info.
+     */
+    void storeStorageInfo(PnfsId id, StorageInfo info)
+        throws CacheException
+    {
+        try {
+            long start = _commits.begin();
+            if (info != null) {
+                _views.getStorageInfoMap().put(id.toString(), info);
+            } else {
+                _views.getStorageInfoMap().remove(id.toString());
+            }
+            _commits.committed(start);
+        } catch (DatabaseException e) {
+            throw new DiskErrorCacheException("Failed to store storage info of " + id +
+                                              ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the last access time of a replica, taking access times
+     * not yet written to the data file into account.
+     */
+    long getLastAccessTime(PnfsId id, File file)
+    {
+        Long time = _accessTimes.get(id);
+        return (time != null) ? time : file.lastModified();
+    }
+
+    /**
+     * Updates the last access time of an existing data file. The
+     * update is deferred if access times are flushed periodically.
+     */
+    void setLastAccessTime(PnfsId id, File file, long time)
+        throws CacheException
+    {
+        if (!_deferAccessTimes) {
+            if (!file.setLastModified(time)) {
+                throw new DiskErrorCacheException("Failed to set modification time: " + file);
+            }
+        } else {
+            _accessTimes.put(id, time);
+        }
+    }
+
+    /**
+     * Writes deferred access times to the data files.
+     */
+    private void flushAccessTimes()
+    {
+        for (Map.Entry<PnfsId,Long> entry: _accessTimes.entrySet()) {
+            PnfsId id = entry.getKey();
+            long time = entry.getValue();
+            File file = _fileStore.get(id);
+            if (!file.setLastModified(time) && file.exists()) {
+                _log.warn("Failed to set modification time: " + file);
+            }
+            _accessTimes.remove(id, time);
+        }
+    }
+
     /**
      * Returns a database backed map of all StorageInfo objects.
      */
@@ -213,13 +413,39 @@ public class BerkeleyDBMetaDataRepository
     @Override
     public void close()
     {
+        synchronized (this) {
+            _deferAccessTimes = false;
+            if (_scheduler != null) {
+                _scheduler.shutdown();
+                try {
+                    _scheduler.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        flushAccessTimes();
         try {
+            _commits.flush();
             _database.close();
         } catch (DatabaseException e) {
             _log.error("Ignored: Could not close database: " + e.getMessage());
         }
     }
 
+    @Override
+    public void getInfo(PrintWriter pw)
+    {
+        _commits.getInfo(pw);
+        pw.println("Access times not written : " + _accessTimes.size());
+    }
+
+    @Override
+    public CellInfo getCellInfo(CellInfo info)
+    {
+        return info;
+    }
+
     /**
      * Returns the path
      */
@@ -47,7 +47,7 @@ public class CacheRepositoryEntryImpl implements MetaDataRecord
         _pnfsId = pnfsId;
         _state = new CacheRepositoryEntryState();
         File file = getDataFile();
-        _lastAccess = file.lastModified();
+        _lastAccess = repository.getLastAccessTime(pnfsId, file);
         _size = file.length();
         if (_lastAccess == 0) {
             _lastAccess = _creationTime;
@@ -56,6 +56,7 @@ public class CacheRepositoryEntryImpl implements MetaDataRecord
 
     public CacheRepositoryEntryImpl(BerkeleyDBMetaDataRepository repository,
                                     MetaDataRecord entry)
+        throws CacheException
     {
         _repository   = repository;
         _pnfsId       = entry.getPnfsId();
@@ -79,7 +80,7 @@ public class CacheRepositoryEntryImpl implements MetaDataRecord
         _pnfsId = pnfsId;
         _state = state;
         File file = getDataFile();
-        _lastAccess = file.lastModified();
+        _lastAccess = repository.getLastAccessTime(pnfsId, file);
         _size = file.length();
         if (_lastAccess == 0) {
             _lastAccess = _creationTime;
@@ -162,12 +163,12 @@ public class CacheRepositoryEntryImpl implements MetaDataRecord
 
     @Override
     public void setFileAttributes(FileAttributes attributes)
+        throws CacheException
     {
-        String id = _pnfsId.toString();
         if (attributes.isDefined(FileAttribute.STORAGEINFO)) {
-            _repository.getStorageInfoMap().put(id, StorageInfos.extractFrom(attributes));
+            _repository.storeStorageInfo(_pnfsId, StorageInfos.extractFrom(attributes));
         } else {
-            _repository.getStorageInfoMap().remove(id);
+            _repository.storeStorageInfo(_pnfsId, null);
         }
     }
 
@@ -185,6 +186,7 @@ public class CacheRepositoryEntryImpl implements MetaDataRecord
 
     @Override
     public synchronized void setState(EntryState state)
+        throws CacheException
     {
         _state.setState(state);
         storeStateIfDirty();
@@ -207,7 +209,11 @@ public class CacheRepositoryEntryImpl implements MetaDataRecord
     {
         List<StickyRecord> removed = _state.removeExpiredStickyFlags();
         if (!removed.isEmpty()) {
-            storeStateIfDirty();
+            try {
+                storeStateIfDirty();
+            } catch (CacheException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
         }
         return removed;
     }
@@ -240,9 +246,7 @@ public class CacheRepositoryEntryImpl implements MetaDataRecord
         }
 
         long now = System.currentTimeMillis();
-        if (!file.setLastModified(now)) {
-            throw new DiskErrorCacheException("Failed to set modification time: " + file);
-        }
+        _repository.setLastAccessTime(_pnfsId, file, now);
         _lastAccess = now;
     }
 
@@ -265,9 +269,10 @@ public class CacheRepositoryEntryImpl implements MetaDataRecord
     }
 
     private synchronized void storeStateIfDirty()
+        throws CacheException
     {
         if (_state.dirty()) {
-            _repository.getStateMap().put(_pnfsId.toString(), _state);
+            _repository.storeState(_pnfsId, _state);
         }
     }
 
@@ -0,0 +1,218 @@
+package org.dcache.pool.repository.meta.db;
+
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Durability;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentMutableConfig;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controls when commits to the meta data database become durable and
+ * collects commit statistics.
+ *
+ * Three modes are supported:
+ *
+ *   SYNC           every commit is written and forced to disk before
+ *                  it returns
+ *   WRITE_NO_SYNC  commits are written to the file system, but only
+ *                  forced to disk by periodic calls to flush()
+ *   GROUP          commits are written without forcing them to disk;
+ *                  the committing thread then waits for a shared force
+ *                  that covers all commits made up to that point, so
+ *                  concurrent writers share disk flushes
+ *
+ * Writers call begin() before and committed() after a database
+ * update.
+ */
+class CommitCoordinator
+{
+    enum Mode
+    {
+        SYNC("sync"), WRITE_NO_SYNC("write-no-sync"), GROUP("group");
+
+        private final String _name;
+
+        Mode(String name)
+        {
+            _name = name;
+        }
+
+        @Override
+        public String toString()
+        {
+            return _name;
+        }
+
+        static Mode forName(String name)
+        {
+            for (Mode mode: values()) {
+                if (mode._name.equals(name)) {
+                    return mode;
+                }
+            }
+            throw new IllegalArgumentException("Unknown durability mode: " + name);
+        }
+    }
+
+    private final Environment _env;
+
+    private volatile Mode _mode = Mode.SYNC;
+
+    /* The following fields are guarded by this.
+     */
+
+    /** Number of commits completed. */
+    private long _committed;
+
+    /** Number of commits forced to disk. */
+    private long _durable;
+
+    /** Whether a thread is currently forcing the log. */
+    private boolean _flushing;
+
+    private long _commitTime;
+    private long _maxCommitTime;
+    private long _flushes;
+
+    CommitCoordinator(Environment env)
+    {
+        _env = env;
+    }
+
+    void setMode(Mode mode)
+        throws DatabaseException
+    {
+        EnvironmentMutableConfig config = _env.getMutableConfig();
+        config.setDurability((mode == Mode.SYNC)
+                             ? Durability.COMMIT_SYNC
+                             : Durability.COMMIT_WRITE_NO_SYNC);
+        _env.setMutableConfig(config);
+        _mode = mode;
+        if (mode == Mode.SYNC) {
+            /* Commits made in the previous mode must not stay
+             * volatile.
+             */
+            flush();
+        }
+    }
+
+    Mode getMode()
+    {
+        return _mode;
+    }
+
+    long begin()
+    {
+        return System.nanoTime();
+    }
+
+    /**
+     * Called after a database update has been committed. In GROUP
+     * mode the call blocks until the commit is durable.
+     *
+     * @param start the value returned by begin()
+     */
+    void committed(long start)
+        throws DatabaseException
+    {
+        Mode mode = _mode;
+        long sequence;
+        synchronized (this) {
+            sequence = ++_committed;
+            if (mode == Mode.SYNC) {
+                /* A synchronous commit is its own batch.
+                 */
+                _durable = Math.max(_durable, sequence);
+                _flushes++;
+            }
+        }
+        if (mode == Mode.GROUP) {
+            awaitDurable(sequence);
+        }
+        long elapsed = System.nanoTime() - start;
+        synchronized (this) {
+            _commitTime += elapsed;
+            _maxCommitTime = Math.max(_maxCommitTime, elapsed);
+        }
+    }
+
+    /**
+     * Forces all commits made so far to disk.
+     */
+    void flush()
+        throws DatabaseException
+    {
+        long sequence;
+        synchronized (this) {
+            sequence = _committed;
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Blocks until commit number sequence is durable. If no other
+     * thread is forcing the log, the calling thread does so and thereby
+     * makes all commits completed so far durable.
+     */
+    private void awaitDurable(long sequence)
+        throws DatabaseException
+    {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                long target;
+                synchronized (this) {
+                    while (_flushing && _durable < sequence) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                    if (_durable >= sequence) {
+                        return;
+                    }
+                    _flushing = true;
+                    target = _committed;
+                }
+
+                boolean success = false;
+                try {
+                    _env.flushLog(true);
+                    success = true;
+                } finally {
+                    synchronized (this) {
+                        _flushing = false;
+                        if (success && target > _durable) {
+                            _durable = target;
+                            _flushes++;
+                        }
+                        notifyAll();
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    synchronized void getInfo(PrintWriter pw)
+    {
+        pw.println("Durability         : " + _mode);
+        pw.println("Commits            : " + _committed);
+        pw.println("Commits not synced : " + (_committed - _durable));
+        if (_committed > 0) {
+            pw.printf("Commit latency     : %.3f ms average, %.3f ms max\n",
+                      TimeUnit.NANOSECONDS.toMicros(_commitTime / _committed) / 1000.0,
+                      TimeUnit.NANOSECONDS.toMicros(_maxCommitTime) / 1000.0);
+        }
+        if (_flushes > 0) {
+            pw.printf("Commit batch size  : %.1f average over %d log flushes\n",
+                      (double) _durable / _flushes, _flushes);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package org.dcache.pool.repository.meta.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import diskCacheV111.util.CacheException;
+import diskCacheV111.util.DiskErrorCacheException;
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.vehicles.StorageInfo;
+import diskCacheV111.vehicles.StorageInfos;
+
+import org.dcache.namespace.FileAttribute;
+import org.dcache.pool.repository.EntryState;
+import org.dcache.pool.repository.MetaDataRecord;
+import org.dcache.pool.repository.StickyRecord;
+import org.dcache.pool.repository.meta.db.CacheRepositoryEntryState;
+import org.dcache.vehicles.FileAttributes;
+
+/**
+ * Log aware implementation of the MetaDataRecord interface.
+ */
+public class CacheRepositoryEntryImpl implements MetaDataRecord
+{
+    private final CacheRepositoryEntryState _state;
+    private final PnfsId _pnfsId;
+    private final LogMetaDataRepository _repository;
+
+    private long _creationTime = System.currentTimeMillis();
+
+    private long _lastAccess;
+
+    private int  _linkCount;
+
+    private long _size;
+
+    public CacheRepositoryEntryImpl(LogMetaDataRepository repository,
+                                    PnfsId pnfsId)
+    {
+        _repository = repository;
+        _pnfsId = pnfsId;
+        _state = new CacheRepositoryEntryState();
+        File file = getDataFile();
+        _lastAccess = file.lastModified();
+        _size = file.length();
+        if (_lastAccess == 0) {
+            _lastAccess = _creationTime;
+        }
+    }
+
+    public CacheRepositoryEntryImpl(LogMetaDataRepository repository,
+                                    MetaDataRecord entry)
+        throws CacheException
+    {
+        _repository   = repository;
+        _pnfsId       = entry.getPnfsId();
+        _lastAccess   = entry.getLastAccessTime();
+        _linkCount    = entry.getLinkCount();
+        _creationTime = entry.getCreationTime();
+        _size         = entry.getSize();
+        _state        = new CacheRepositoryEntryState(entry);
+        storeStateIfDirty();
+        setFileAttributes(entry.getFileAttributes());
+        if (_lastAccess == 0) {
+            _lastAccess = _creationTime;
+        }
+    }
+
+    CacheRepositoryEntryImpl(LogMetaDataRepository repository,
+                             PnfsId pnfsId,
+                             CacheRepositoryEntryState state,
+                             long creationTime)
+    {
+        _repository = repository;
+        _pnfsId = pnfsId;
+        _state = state;
+        _creationTime = creationTime;
+        File file = getDataFile();
+        _lastAccess = file.lastModified();
+        _size = file.length();
+        if (_lastAccess == 0) {
+            _lastAccess = _creationTime;
+        }
+    }
+
+    @Override
+    public synchronized void decrementLinkCount()
+    {
+        if (_linkCount <= 0) {
+            throw new IllegalStateException("Link count is already zero");
+        }
+        _linkCount--;
+    }
+
+    @Override
+    public synchronized void incrementLinkCount()
+    {
+        EntryState state = getState();
+        if (state == EntryState.REMOVED || state == EntryState.DESTROYED) {
+            throw new IllegalStateException("Entry is marked as removed");
+        }
+        _linkCount++;
+    }
+
+    @Override
+    public synchronized int getLinkCount()
+    {
+        return _linkCount;
+    }
+
+    @Override
+    public synchronized long getCreationTime()
+    {
+        return _creationTime;
+    }
+
+    @Override
+    public synchronized long getLastAccessTime()
+    {
+        return _lastAccess;
+    }
+
+    @Override
+    public synchronized void setSize(long size)
+    {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative entry size is not allowed");
+        }
+        _size = size;
+    }
+
+    @Override
+    public synchronized long getSize()
+    {
+        return _size;
+    }
+
+    private synchronized StorageInfo getStorageInfo()
+    {
+        return _repository.getStorageInfo(_pnfsId);
+    }
+
+    @Override
+    public synchronized FileAttributes getFileAttributes()
+    {
+        FileAttributes attributes = new FileAttributes();
+        attributes.setPnfsId(_pnfsId);
+        StorageInfo storageInfo = getStorageInfo();
+        if (storageInfo != null) {
+            StorageInfos.injectInto(storageInfo, attributes);
+        }
+        return attributes;
+    }
+
+    @Override
+    public synchronized void setFileAttributes(FileAttributes attributes)
+        throws CacheException
+    {
+        if (attributes.isDefined(FileAttribute.STORAGEINFO)) {
+            _repository.storeStorageInfo(_pnfsId, StorageInfos.extractFrom(attributes));
+        } else {
+            _repository.storeStorageInfo(_pnfsId, null);
+        }
+    }
+
+    @Override
+    public synchronized PnfsId getPnfsId()
+    {
+        return _pnfsId;
+    }
+
+    @Override
+    public synchronized EntryState getState()
+    {
+        return _state.getState();
+    }
+
+    @Override
+    public synchronized void setState(EntryState state)
+        throws CacheException
+    {
+        _state.setState(state);
+        storeStateIfDirty();
+    }
+
+    @Override
+    public synchronized boolean isSticky()
+    {
+        return _state.isSticky();
+    }
+
+    @Override
+    public synchronized File getDataFile()
+    {
+        return _repository.getDataFile(_pnfsId);
+    }
+
+    @Override
+    public synchronized List<StickyRecord> removeExpiredStickyFlags()
+    {
+        List<StickyRecord> removed = _state.removeExpiredStickyFlags();
+        if (!removed.isEmpty()) {
+            try {
+                storeStateIfDirty();
+            } catch (CacheException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public synchronized boolean setSticky(String owner, long expire, boolean overwrite) throws CacheException
+    {
+        try {
+            if (_state.setSticky(owner, expire, overwrite)) {
+                storeStateIfDirty();
+                return true;
+            }
+            return false;
+        } catch (IllegalStateException e) {
+            throw new CacheException(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void touch() throws CacheException
+    {
+        File file = getDataFile();
+
+        try {
+            if (!file.exists()) {
+                file.createNewFile();
+            }
+        } catch (IOException e) {
+            throw new DiskErrorCacheException("IO error creating: " + file);
+        }
+
+        long now = System.currentTimeMillis();
+        if (!file.setLastModified(now)) {
+            throw new DiskErrorCacheException("Failed to set modification time: " + file);
+        }
+        _lastAccess = now;
+    }
+
+    @Override
+    public synchronized List<StickyRecord> stickyRecords()
+    {
+        return _state.stickyRecords();
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        StorageInfo info = getStorageInfo();
+        return _pnfsId.toString()+
+            " <"+_state.toString()+"-"+
+            "(0)"+
+            "["+getLinkCount()+"]> "+
+            getSize()+
+            " si={"+(info==null?"<unknown>":info.getStorageClass())+"}" ;
+    }
+
+    private synchronized void storeStateIfDirty()
+        throws CacheException
+    {
+        if (_state.dirty()) {
+            _repository.storeState(_pnfsId, _creationTime, _state.getState(),
+                                   _state.stickyRecords());
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.dcache.pool.repository.meta.log;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import diskCacheV111.util.CacheException;
+import diskCacheV111.util.DiskErrorCacheException;
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.vehicles.StorageInfo;
+
+import org.dcache.pool.repository.DuplicateEntryException;
+import org.dcache.pool.repository.EntryState;
+import org.dcache.pool.repository.FileStore;
+import org.dcache.pool.repository.MetaDataRecord;
+import org.dcache.pool.repository.MetaDataStore;
+import org.dcache.pool.repository.StickyRecord;
+import org.dcache.pool.repository.meta.db.CacheRepositoryEntryState;
+
+/**
+ * MetaDataStore implementation backed by an append-only log.
+ *
+ * The log is stored in a subdirectory of the pool directory called
+ * 'meta-log'. State changes append a small record to the log rather
+ * than rewriting a file per replica, and the inventory is known from
+ * an in-memory index without touching the file system. The log is
+ * compacted periodically in the background.
+ *
+ * As with the BerkeleyDB store, size and last access time of a
+ * replica are taken from the data file and storage info is fetched
+ * from the log on demand.
+ */
+public class LogMetaDataRepository
+    implements MetaDataStore
+{
+    private static final Logger _log =
+        LoggerFactory.getLogger(LogMetaDataRepository.class);
+
+    private static final String DIRECTORY_NAME = "meta-log";
+    private static final String LOG_NAME = "meta.log";
+
+    /**
+     * Interval in minutes between checks whether the log needs to be
+     * compacted.
+     */
+    private static final long COMPACTION_INTERVAL = 1;
+
+    /**
+     * The file store for which we hold the meta data.
+     */
+    private final FileStore _fileStore;
+
+    /**
+     * Directory containing the log.
+     */
+    private final File _dir;
+
+    private final MetaDataLog _metaDataLog;
+
+    private final ScheduledExecutorService _compactor;
+
+    /**
+     * Opens a log based meta data repository. If the log does not
+     * exist yet, then it is created. If the 'meta-log' directory does
+     * not exist, it is created.
+     */
+    public LogMetaDataRepository(FileStore fileStore, File directory)
+        throws IOException
+    {
+        _fileStore = fileStore;
+        _dir = new File(directory, DIRECTORY_NAME);
+
+        if (!_dir.exists()) {
+            if (!_dir.mkdir()) {
+                throw new FileNotFoundException("Failed to create directory: " + _dir);
+            }
+        } else if (!_dir.isDirectory()) {
+            throw new FileNotFoundException("No such directory: " + _dir);
+        }
+
+        _metaDataLog = new MetaDataLog(new File(_dir, LOG_NAME));
+
+        _compactor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("meta-log-compaction")
+                        .setDaemon(true)
+                        .build());
+        _compactor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run()
+            {
+                try {
+                    _metaDataLog.compactIfNeeded();
+                } catch (IOException e) {
+                    _log.error("Failed to compact " + _metaDataLog + ": " + e.getMessage());
+                }
+            }
+        }, COMPACTION_INTERVAL, COMPACTION_INTERVAL, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public Collection<PnfsId> list()
+    {
+        return _metaDataLog.ids();
+    }
+
+    @Override
+    public MetaDataRecord get(PnfsId id)
+    {
+        MetaDataLog.Entry entry = _metaDataLog.get(id);
+        if (entry == null) {
+            return null;
+        }
+
+        /* Like the BerkeleyDB store, entries without a state record
+         * are incomplete and silently dropped. Destroyed entries may
+         * be found if the pool died before the entry was removed.
+         */
+        EntryState state = entry.getState();
+        if (state == null || state == EntryState.DESTROYED) {
+            _log.debug("No entry found for {}", id);
+            return null;
+        }
+
+        CacheRepositoryEntryState entryState = new CacheRepositoryEntryState();
+        for (StickyRecord record: entry.getStickyRecords()) {
+            entryState.setSticky(record.owner(), record.expire(), false);
+        }
+        entryState.setState(state);
+        entryState.dirty();
+        return new CacheRepositoryEntryImpl(this, id, entryState,
+                                            entry.getCreationTime());
+    }
+
+    /**
+     * The entry is not persistent until its state is set.
+     */
+    @Override
+    public MetaDataRecord create(PnfsId id)
+        throws DuplicateEntryException
+    {
+        if (get(id) != null) {
+            throw new DuplicateEntryException(id);
+        }
+        return new CacheRepositoryEntryImpl(this, id);
+    }
+
+    @Override
+    public MetaDataRecord create(MetaDataRecord entry)
+        throws DuplicateEntryException, CacheException
+    {
+        PnfsId id = entry.getPnfsId();
+        if (get(id) != null) {
+            throw new DuplicateEntryException(id);
+        }
+        return new CacheRepositoryEntryImpl(this, entry);
+    }
+
+    @Override
+    public void remove(PnfsId id)
+    {
+        try {
+            _metaDataLog.remove(id);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to remove meta data for " + id + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized boolean isOk()
+    {
+        File tmp = new File(_dir, ".repository_is_ok");
+        try {
+            tmp.delete();
+            tmp.deleteOnExit();
+
+            if (!tmp.createNewFile() || !tmp.exists()) {
+                _log.error("Could not create " + tmp);
+                return false;
+            }
+
+            return true;
+        } catch (IOException e) {
+            _log.error("Failed to touch " + tmp + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Requests a data file from the CacheRepository. Used by the
+     * entries to obtain a data file.
+     */
+    File getDataFile(PnfsId id)
+    {
+        return _fileStore.get(id);
+    }
+
+    void storeState(PnfsId id, long creationTime, EntryState state,
+                    List<StickyRecord> sticky)
+        throws CacheException
+    {
+        try {
+            _metaDataLog.writeState(id, creationTime, state, sticky);
+        } catch (IOException e) {
+            throw new DiskErrorCacheException(
+                    "Failed to write meta data for " + id + ": " + e.getMessage(), e);
+        }
+    }
+
+    void storeStorageInfo(PnfsId id, StorageInfo info)
+        throws CacheException
+    {
+        try {
+            _metaDataLog.writeStorageInfo(id, info);
+        } catch (IOException e) {
+            throw new DiskErrorCacheException(
+                    "Failed to write storage info for " + id + ": " + e.getMessage(), e);
+        }
+    }
+
+    StorageInfo getStorageInfo(PnfsId id)
+    {
+        try {
+            return _metaDataLog.readStorageInfo(id);
+        } catch (IOException e) {
+            _log.warn("Failed to read storage info for {}: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Compacts the log regardless of the amount of garbage.
+     */
+    public void compact()
+        throws IOException
+    {
+        _metaDataLog.compact();
+    }
+
+    /** Closes the log. */
+    @Override
+    public void close()
+    {
+        /* Let a running compaction finish rather than interrupting
+         * it half way.
+         */
+        _compactor.shutdown();
+        try {
+            _compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            _metaDataLog.close();
+        } catch (IOException e) {
+            _log.error("Ignored: Could not close " + _metaDataLog + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the path
+     */
+    @Override
+    public String toString()
+    {
+        return _dir.toString();
+    }
+
+    /**
+     * Provides the amount of free space on the file system containing
+     * the data files.
+     */
+    @Override
+    public long getFreeSpace()
+    {
+        return _fileStore.getFreeSpace();
+    }
+
+    /**
+     * Provides the total amount of space on the file system
+     * containing the data files.
+     */
+    @Override
+    public long getTotalSpace()
+    {
+        return _fileStore.getTotalSpace();
+    }
+}
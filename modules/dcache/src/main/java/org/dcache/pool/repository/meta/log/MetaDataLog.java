@@ -0,0 +1,716 @@
+package org.dcache.pool.repository.meta.log;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.vehicles.StorageInfo;
+
+import org.dcache.pool.repository.EntryState;
+import org.dcache.pool.repository.StickyRecord;
+
+/**
+ * Append-only log of replica meta data with an in-memory index.
+ *
+ * Every modification appends a record to the log. A record consists
+ * of a length, a CRC32 checksum and a body. The body starts with the
+ * record type and the PNFS ID. Three types of records exist:
+ *
+ *   STATE         the entry state, the sticky records and the creation
+ *                 time of a replica
+ *   STORAGE_INFO  the serialized storage info of a replica
+ *   REMOVE        marks a replica as deleted
+ *
+ * The index maps each replica to its latest state and to the position
+ * of its latest storage info record. Storage info is read from the log
+ * on demand.
+ *
+ * On startup the log is replayed through a memory mapping to rebuild
+ * the index. Replay stops at the first incomplete or corrupted record,
+ * which is usually the result of a crash during an append, and the log
+ * is truncated at that point. Since corruption may also hide valid
+ * records behind the bad one, the discarded tail is first copied to a
+ * separate file for inspection.
+ *
+ * Appends are made durable by group commit: a writer waits until the
+ * log has been forced to disk up to the end of its record. Only one
+ * thread forces the log at a time, and all records appended while it
+ * does so are made durable by the next force. Thus concurrent writers
+ * share disk flushes.
+ *
+ * Superseded records are reclaimed by compaction, which writes the
+ * live records to a new log and atomically replaces the old one.
+ */
+class MetaDataLog
+{
+    private static final Logger _log =
+        LoggerFactory.getLogger(MetaDataLog.class);
+
+    private static final byte STATE = 1;
+    private static final byte STORAGE_INFO = 2;
+    private static final byte REMOVE = 3;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 16 << 20;
+    private static final long REPLAY_WINDOW = 256 << 20;
+
+    /**
+     * Compaction is only worthwhile if the log is at least this large
+     * and at least half of it is garbage.
+     */
+    private static final long MIN_COMPACTION_SIZE = 16 << 20;
+
+    /**
+     * Index entry of a replica. Immutable.
+     */
+    static class Entry
+    {
+        private final EntryState _state;
+        private final List<StickyRecord> _sticky;
+        private final long _creationTime;
+        private final int _stateLength;
+        private final long _storageInfoOffset;
+        private final int _storageInfoLength;
+
+        Entry(EntryState state, List<StickyRecord> sticky, long creationTime,
+              int stateLength, long storageInfoOffset, int storageInfoLength)
+        {
+            _state = state;
+            _sticky = sticky;
+            _creationTime = creationTime;
+            _stateLength = stateLength;
+            _storageInfoOffset = storageInfoOffset;
+            _storageInfoLength = storageInfoLength;
+        }
+
+        /**
+         * Returns the state, or null if no state has been written.
+         */
+        EntryState getState()
+        {
+            return _state;
+        }
+
+        List<StickyRecord> getStickyRecords()
+        {
+            return _sticky;
+        }
+
+        long getCreationTime()
+        {
+            return _creationTime;
+        }
+
+        private Entry withState(EntryState state, List<StickyRecord> sticky,
+                                long creationTime, int length)
+        {
+            return new Entry(state, sticky, creationTime, length,
+                             _storageInfoOffset, _storageInfoLength);
+        }
+
+        private Entry withStorageInfo(long offset, int length)
+        {
+            return new Entry(_state, _sticky, _creationTime, _stateLength,
+                             offset, length);
+        }
+
+        private long getLiveBytes()
+        {
+            return _stateLength + _storageInfoLength;
+        }
+    }
+
+    private static final Entry EMPTY =
+        new Entry(null, Collections.<StickyRecord>emptyList(), 0, 0, -1, 0);
+
+    private final File _file;
+    private final ConcurrentMap<PnfsId,Entry> _index = new ConcurrentHashMap<>();
+
+    /* The following fields are guarded by this.
+     */
+    private RandomAccessFile _raf;
+    private long _written;
+    private long _durable;
+    private long _liveBytes;
+    private boolean _syncing;
+    private boolean _closed;
+
+    /**
+     * Incremented whenever the log file is replaced. Positions in the
+     * log are only comparable within one generation.
+     */
+    private long _generation;
+
+    MetaDataLog(File file)
+        throws IOException
+    {
+        _file = file;
+        _raf = new RandomAccessFile(file, "rw");
+        try {
+            long end = replay();
+            long size = _raf.length();
+            if (end < size) {
+                File tail = new File(file.getPath() + ".discarded-" + System.currentTimeMillis());
+                saveTail(end, tail);
+                _log.error("Found an incomplete or corrupted record at offset {} of {}. " +
+                           "Discarding the remaining {} bytes; a copy was saved to {}",
+                           end, file, size - end, tail);
+                _raf.setLength(end);
+                _raf.getFD().sync();
+            }
+            _written = end;
+            _durable = end;
+            for (Entry entry: _index.values()) {
+                _liveBytes += entry.getLiveBytes();
+            }
+        } catch (IOException | RuntimeException e) {
+            _raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Copies the log from position to the end to a new file.
+     */
+    private void saveTail(long position, File tail)
+        throws IOException
+    {
+        FileChannel in = _raf.getChannel();
+        try (FileChannel out = FileChannel.open(tail.toPath(),
+                                                StandardOpenOption.CREATE_NEW,
+                                                StandardOpenOption.WRITE)) {
+            long size = in.size();
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            out.force(true);
+        }
+    }
+
+    /**
+     * Rebuilds the index from the log.
+     *
+     * @return the position after the last valid record
+     */
+    private long replay()
+        throws IOException
+    {
+        FileChannel channel = _raf.getChannel();
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+            long window = Math.min(size - position, REPLAY_WINDOW);
+            MappedByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+            int consumed = 0;
+            while (buffer.remaining() >= HEADER_SIZE) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    return position + consumed;
+                }
+                if (buffer.remaining() < length) {
+                    break;
+                }
+                byte[] body = new byte[length];
+                buffer.get(body);
+                if (checksum(body) != checksum) {
+                    return position + consumed;
+                }
+                apply(position + consumed, HEADER_SIZE + length, body);
+                consumed += HEADER_SIZE + length;
+            }
+            if (consumed == 0) {
+                /* The record at position extends beyond the end of
+                 * the file.
+                 */
+                return position;
+            }
+            position += consumed;
+        }
+        return position;
+    }
+
+    private void apply(long offset, int length, byte[] body)
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        PnfsId id = new PnfsId(in.readUTF());
+        Entry entry = _index.get(id);
+        if (entry == null) {
+            entry = EMPTY;
+        }
+        switch (type) {
+        case STATE:
+            long creationTime = in.readLong();
+            EntryState state = EntryState.valueOf(in.readUTF());
+            int count = in.readInt();
+            List<StickyRecord> sticky = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String owner = in.readUTF();
+                sticky.add(new StickyRecord(owner, in.readLong()));
+            }
+            _index.put(id, entry.withState(state, sticky, creationTime, length));
+            break;
+        case STORAGE_INFO:
+            _index.put(id, in.readBoolean()
+                       ? entry.withStorageInfo(offset, length)
+                       : entry.withStorageInfo(-1, 0));
+            break;
+        case REMOVE:
+            _index.remove(id);
+            break;
+        default:
+            throw new IOException("Unknown record type " + type + " in " + _file);
+        }
+    }
+
+    private static int checksum(byte[] body)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    Entry get(PnfsId id)
+    {
+        return _index.get(id);
+    }
+
+    Set<PnfsId> ids()
+    {
+        return new HashSet<>(_index.keySet());
+    }
+
+    void writeState(PnfsId id, long creationTime, EntryState state,
+                    List<StickyRecord> sticky)
+        throws IOException
+    {
+        byte[] body = encodeState(id, creationTime, state, sticky);
+        long end;
+        long generation;
+        synchronized (this) {
+            append(body);
+            Entry entry = _index.get(id);
+            if (entry == null) {
+                entry = EMPTY;
+            }
+            update(id, entry, entry.withState(state, new ArrayList<>(sticky),
+                                              creationTime, HEADER_SIZE + body.length));
+            end = _written;
+            generation = _generation;
+        }
+        awaitDurable(end, generation);
+    }
+
+    /**
+     * Writes the storage info of a replica. A null storage info
+     * clears any existing storage info.
+     */
+    void writeStorageInfo(PnfsId id, StorageInfo info)
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(STORAGE_INFO);
+        out.writeUTF(id.toString());
+        out.writeBoolean(info != null);
+        if (info != null) {
+            ObjectOutputStream object = new ObjectOutputStream(out);
+            object.writeObject(info);
+            object.flush();
+        }
+        out.flush();
+        byte[] body = bytes.toByteArray();
+
+        long end;
+        long generation;
+        synchronized (this) {
+            long offset = append(body);
+            Entry entry = _index.get(id);
+            if (entry == null) {
+                entry = EMPTY;
+            }
+            update(id, entry, (info != null)
+                   ? entry.withStorageInfo(offset, HEADER_SIZE + body.length)
+                   : entry.withStorageInfo(-1, 0));
+            end = _written;
+            generation = _generation;
+        }
+        awaitDurable(end, generation);
+    }
+
+    /**
+     * Reads the storage info of a replica.
+     *
+     * @return the storage info, or null if the replica has no storage
+     *         info
+     */
+    StorageInfo readStorageInfo(PnfsId id)
+        throws IOException
+    {
+        ByteBuffer buffer;
+        synchronized (this) {
+            Entry entry = _index.get(id);
+            if (entry == null || entry._storageInfoOffset < 0) {
+                return null;
+            }
+            buffer = read(entry._storageInfoOffset, entry._storageInfoLength);
+        }
+
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        byte[] body = new byte[length];
+        buffer.get(body);
+        if (checksum(body) != checksum) {
+            throw new IOException("Checksum error in storage info of " + id);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        in.readByte();
+        in.readUTF();
+        if (!in.readBoolean()) {
+            return null;
+        }
+        try {
+            return (StorageInfo) new ObjectInputStream(in).readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Failed to deserialize storage info of " + id + ": " + e, e);
+        }
+    }
+
+    void remove(PnfsId id)
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(REMOVE);
+        out.writeUTF(id.toString());
+        out.flush();
+        byte[] body = bytes.toByteArray();
+
+        long end;
+        long generation;
+        synchronized (this) {
+            Entry entry = _index.get(id);
+            if (entry == null) {
+                return;
+            }
+            append(body);
+            update(id, entry, null);
+            end = _written;
+            generation = _generation;
+        }
+        awaitDurable(end, generation);
+    }
+
+    private void update(PnfsId id, Entry oldEntry, Entry newEntry)
+    {
+        _liveBytes -= oldEntry.getLiveBytes();
+        if (newEntry == null) {
+            _index.remove(id);
+        } else {
+            _liveBytes += newEntry.getLiveBytes();
+            _index.put(id, newEntry);
+        }
+    }
+
+    /**
+     * Appends a record to the log. Must be called with the monitor
+     * held.
+     *
+     * @return the position of the record
+     */
+    private long append(byte[] body)
+        throws IOException
+    {
+        if (_closed) {
+            throw new IOException(_file + " is closed");
+        }
+        ByteBuffer buffer = frame(body);
+        long offset = _written;
+        try {
+            _raf.seek(offset);
+            _raf.write(buffer.array());
+        } catch (IOException e) {
+            /* Drop the partial record so the next append does not
+             * follow garbage.
+             */
+            _raf.setLength(offset);
+            throw e;
+        }
+        _written = offset + buffer.remaining();
+        return offset;
+    }
+
+    private boolean isDurable(long position, long generation)
+    {
+        return generation != _generation || _durable >= position;
+    }
+
+    /**
+     * Blocks until the log is durable up to position. If no other
+     * thread is forcing the log, the calling thread does so and thereby
+     * also makes all records appended so far durable.
+     */
+    private void awaitDurable(long position, long generation)
+        throws IOException
+    {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                RandomAccessFile file;
+                long target;
+                synchronized (this) {
+                    while (_syncing && !isDurable(position, generation)) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                    if (isDurable(position, generation)) {
+                        return;
+                    }
+                    _syncing = true;
+                    file = _raf;
+                    target = _written;
+                }
+
+                boolean success = false;
+                try {
+                    file.getFD().sync();
+                    success = true;
+                } finally {
+                    synchronized (this) {
+                        _syncing = false;
+                        if (success && generation == _generation) {
+                            _durable = Math.max(_durable, target);
+                        }
+                        notifyAll();
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Waits until no thread forces the log. Must be called with the
+     * monitor held.
+     */
+    private void awaitNoSync()
+    {
+        boolean interrupted = false;
+        while (_syncing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Compacts the log if at least half of it is garbage.
+     */
+    synchronized void compactIfNeeded()
+        throws IOException
+    {
+        if (!_closed && _written >= MIN_COMPACTION_SIZE && _written > 2 * _liveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the log keeping only the latest records of live
+     * replicas. Appends block while the log is compacted.
+     */
+    synchronized void compact()
+        throws IOException
+    {
+        awaitNoSync();
+
+        long before = _written;
+        File tmp = new File(_file.getPath() + ".compact");
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        Map<PnfsId,Entry> compacted = new HashMap<>();
+        long position = 0;
+        try {
+            out.setLength(0);
+            for (Map.Entry<PnfsId,Entry> e: _index.entrySet()) {
+                PnfsId id = e.getKey();
+                Entry entry = e.getValue();
+                int stateLength = 0;
+                if (entry._state != null) {
+                    ByteBuffer record =
+                        frame(encodeState(id, entry._creationTime,
+                                          entry._state, entry._sticky));
+                    stateLength = record.remaining();
+                    position = copy(out, position, record);
+                }
+                long storageInfoOffset = -1;
+                if (entry._storageInfoOffset >= 0) {
+                    storageInfoOffset = position;
+                    position = copy(out, position, read(entry._storageInfoOffset,
+                                                        entry._storageInfoLength));
+                }
+                compacted.put(id, new Entry(entry._state, entry._sticky,
+                                            entry._creationTime, stateLength,
+                                            storageInfoOffset,
+                                            entry._storageInfoLength));
+            }
+            out.getFD().sync();
+            Files.move(tmp.toPath(), _file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            tmp.delete();
+            throw e;
+        }
+
+        /* The rename is only durable once the directory has been
+         * synced. Records appended to the new log before that point
+         * could otherwise be lost together with the rename. Should
+         * syncing fail, the new log has nevertheless replaced the old
+         * one and must be used from now on.
+         */
+        try {
+            syncDirectory(_file.getAbsoluteFile().getParentFile());
+        } finally {
+            _raf.close();
+            _raf = out;
+            _written = position;
+            _durable = position;
+            _liveBytes = position;
+            _generation++;
+            _index.putAll(compacted);
+        }
+        _log.info("Compacted {} from {} to {} bytes", _file, before, position);
+    }
+
+    private static void syncDirectory(File dir)
+        throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static byte[] encodeState(PnfsId id, long creationTime,
+                                      EntryState state, List<StickyRecord> sticky)
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(STATE);
+        out.writeUTF(id.toString());
+        out.writeLong(creationTime);
+        out.writeUTF(state.name());
+        out.writeInt(sticky.size());
+        for (StickyRecord record: sticky) {
+            out.writeUTF(record.owner());
+            out.writeLong(record.expire());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns a buffer holding the record with the given body.
+     */
+    private static ByteBuffer frame(byte[] body)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + body.length);
+        buffer.putInt(body.length);
+        buffer.putInt(checksum(body));
+        buffer.put(body);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reads length bytes at offset. Must be called with the monitor
+     * held.
+     */
+    private ByteBuffer read(long offset, int length)
+        throws IOException
+    {
+        byte[] bytes = new byte[length];
+        _raf.seek(offset);
+        _raf.readFully(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static long copy(RandomAccessFile out, long position, ByteBuffer buffer)
+        throws IOException
+    {
+        out.write(buffer.array(), buffer.position(), buffer.remaining());
+        return position + buffer.remaining();
+    }
+
+    synchronized long size()
+    {
+        return _written;
+    }
+
+    synchronized long getLiveBytes()
+    {
+        return _liveBytes;
+    }
+
+    synchronized void close()
+        throws IOException
+    {
+        if (!_closed) {
+            awaitNoSync();
+            _closed = true;
+            try {
+                _raf.getFD().sync();
+                _durable = _written;
+            } finally {
+                _raf.close();
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return _file.toString();
+    }
+}
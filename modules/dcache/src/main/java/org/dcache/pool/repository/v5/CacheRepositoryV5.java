@@ -1,21 +1,34 @@
 package org.dcache.pool.repository.v5;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.DiskErrorCacheException;
@@ -52,6 +65,7 @@ import org.dcache.pool.repository.StateChangeListener;
 import org.dcache.pool.repository.StickyChangeEvent;
 import org.dcache.pool.repository.StickyRecord;
 import org.dcache.util.CacheExceptionFactory;
+import org.dcache.util.TimerWheel;
 import org.dcache.vehicles.FileAttributes;
 
 import static org.dcache.namespace.FileAttribute.PNFSID;
@@ -81,6 +95,15 @@ public class CacheRepositoryV5
      *  - entries (only one)
      *  - _account
      *
+     * The lock on this only guards configuration and the life cycle
+     * of the repository. Operations on individual entries only lock
+     * the entry, so movers working on different files never contend
+     * for a repository wide lock. _state is volatile such that it can
+     * be checked without locking.
+     *
+     * Notifications are queued while holding the entry lock, which
+     * preserves the order of events for each entry. The listeners are
+     * invoked on the notification thread without holding any lock.
      */
 
 
@@ -90,6 +113,26 @@ public class CacheRepositoryV5
      * small clock shifts.
      */
     public static final long EXPIRATION_CLOCKSHIFT_EXTRA_TIME = 1000L;
+
+    /**
+     * Number of entries from the inventory snapshot registered per
+     * batch after the repository has been opened.
+     */
+    private static final int REGISTRATION_BATCH_SIZE = 10000;
+
+    /**
+     * Resolution in millisecs of sticky flag expiration. Sticky flags
+     * expire at most two ticks after their expiration time (plus
+     * EXPIRATION_CLOCKSHIFT_EXTRA_TIME).
+     */
+    public static final long EXPIRATION_TICK = 1000L;
+
+    /**
+     * Number of ticks per rotation of the sticky expiration wheel.
+     * Deadlines further in the future are revisited once per rotation.
+     */
+    private static final int EXPIRATION_TICKS_PER_WHEEL = 3600;
+
     private final static Logger _log =
         LoggerFactory.getLogger(CacheRepositoryV5.class);
 
@@ -100,11 +143,25 @@ public class CacheRepositoryV5
         new StateChangeListeners();
 
     /**
-     * Sticky bit expiration tasks.
+     * Sticky bit expiration deadlines. Scheduling and cancellation
+     * take constant time; the wheel is advanced by an ExpirationTask
+     * once per tick.
+     */
+    private final TimerWheel<MetaDataRecord> _expirations =
+        new TimerWheel<>(EXPIRATION_TICK, TimeUnit.MILLISECONDS,
+                         EXPIRATION_TICKS_PER_WHEEL);
+
+    /**
+     * Pending sticky bit expiration deadline of each entry.
      */
-    private final Map<PnfsId,ScheduledFuture<?>> _tasks =
+    private final Map<PnfsId,TimerWheel.Timeout<MetaDataRecord>> _tasks =
         new ConcurrentHashMap<>();
 
+    /**
+     * Periodic task advancing the expiration wheel.
+     */
+    private ScheduledFuture<?> _expirationTask;
+
     /**
      * Collection of removable entries.
      */
@@ -132,7 +189,7 @@ public class CacheRepositoryV5
         CLOSED
     }
 
-    private State _state = State.UNINITIALIZED;
+    private volatile State _state = State.UNINITIALIZED;
 
     /**
      * Shared repository account object for tracking space.
@@ -150,7 +207,7 @@ public class CacheRepositoryV5
     private SpaceSweeperPolicy _sweeper;
 
     private PnfsHandler _pnfs;
-    private boolean _volatile;
+    private volatile boolean _volatile;
 
     /**
      * Pool size configured through the 'max disk space' command.
@@ -162,6 +219,31 @@ public class CacheRepositoryV5
      */
     private long _staticMaxSize = Long.MAX_VALUE;
 
+    /**
+     * Number of threads used to read meta data records while loading.
+     */
+    private int _loadThreads = 1;
+
+    /**
+     * File to which an inventory snapshot is written on shutdown. No
+     * snapshot is written or used if null.
+     */
+    private File _inventorySnapshotFile;
+
+    /**
+     * Number of files in the repository and the number of files
+     * checked so far while loading.
+     */
+    private volatile int _filesToLoad;
+    private final AtomicInteger _filesLoaded = new AtomicInteger();
+
+    /**
+     * Entries known from the inventory snapshot which have not yet
+     * been registered with the state change listeners.
+     */
+    private final Set<PnfsId> _unregistered =
+        Collections.newSetFromMap(new ConcurrentHashMap<PnfsId,Boolean>());
+
     public CacheRepositoryV5()
     {
     }
@@ -180,10 +262,11 @@ public class CacheRepositoryV5
     /**
      * Throws an IllegalStateException if the repository is not open.
      */
-    private synchronized void assertOpen()
+    private void assertOpen()
     {
-        if (_state != State.OPEN) {
-            throw new IllegalStateException("Operation not allowed while repository is in state " + _state);
+        State state = _state;
+        if (state != State.OPEN) {
+            throw new IllegalStateException("Operation not allowed while repository is in state " + state);
         }
     }
 
@@ -191,11 +274,12 @@ public class CacheRepositoryV5
      * Throws an IllegalStateException if the repository is not in
      * either INITIALIZED, LOADING or OPEN.
      */
-    private synchronized void assertInitialized()
+    private void assertInitialized()
     {
-        if (_state != State.INITIALIZED && _state != State.LOADING &&
-            _state != State.OPEN) {
-            throw new IllegalStateException("Operation not allowed while repository is in state " + _state);
+        State state = _state;
+        if (state != State.INITIALIZED && state != State.LOADING &&
+            state != State.OPEN) {
+            throw new IllegalStateException("Operation not allowed while repository is in state " + state);
         }
     }
 
@@ -258,6 +342,30 @@ public class CacheRepositoryV5
         _store = store;
     }
 
+    /**
+     * Sets the number of threads used to read and check meta data
+     * records while the repository is loading.
+     */
+    public synchronized void setLoadThreads(int threads)
+    {
+        assertUninitialized();
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one load thread is required");
+        }
+        _loadThreads = threads;
+    }
+
+    /**
+     * Sets the file used for the inventory snapshot. If set, an
+     * inventory snapshot is written to this file on shutdown and used
+     * to open the repository quickly on the next start. May be null.
+     */
+    public synchronized void setInventorySnapshotFile(File file)
+    {
+        assertUninitialized();
+        _inventorySnapshotFile = file;
+    }
+
     public synchronized void setSpaceSweeperPolicy(SpaceSweeperPolicy sweeper)
     {
         assertUninitialized();
@@ -280,7 +388,7 @@ public class CacheRepositoryV5
         }
     }
 
-    public synchronized State getState()
+    public State getState()
     {
         return _state;
     }
@@ -329,6 +437,7 @@ public class CacheRepositoryV5
 
             List<PnfsId> ids = new ArrayList<>(_store.list());
             _log.info("Found {} data files", ids.size());
+            _filesToLoad = ids.size();
 
             /* On some file systems (e.g. GPFS) stat'ing files in
              * lexicographic order seems to trigger the pre-fetch
@@ -336,18 +445,38 @@ public class CacheRepositoryV5
              */
             Collections.sort(ids);
 
-            /* Collect all entries.
+            /* Collect all entries. If a valid inventory snapshot
+             * exists, then only entries that were not CACHED or
+             * PRECIOUS at shutdown are checked now. The remaining
+             * entries are registered in the background once the
+             * repository is open.
              */
-            _log.info("Checking meta data for {} files", ids.size());
+            List<InventorySnapshot.Record> snapshot = readInventorySnapshot(ids);
+            List<InventorySnapshot.Record> deferred = new ArrayList<>();
+            List<PnfsId> toCheck = ids;
             long usedDataSpace = 0L;
-            List<MetaDataRecord> entries = new ArrayList<>();
-            for (PnfsId id: ids) {
-                MetaDataRecord entry = readMetaDataRecord(id);
-                if (entry != null)  {
-                    usedDataSpace += entry.getSize();
-                    _log.debug("{} {}", id, entry.getState());
-                    entries.add(entry);
+            if (snapshot != null) {
+                _log.info("Using inventory snapshot for {} files", snapshot.size());
+                toCheck = new ArrayList<>();
+                for (InventorySnapshot.Record record: snapshot) {
+                    EntryState state = record.getState();
+                    if (state == CACHED || state == PRECIOUS) {
+                        usedDataSpace += record.getSize();
+                        _unregistered.add(record.getPnfsId());
+                        deferred.add(record);
+                    } else {
+                        toCheck.add(record.getPnfsId());
+                    }
                 }
+                Collections.sort(toCheck);
+                _filesToLoad = toCheck.size();
+            }
+
+            _log.info("Checking meta data for {} files", toCheck.size());
+            List<MetaDataRecord> entries = readMetaDataRecords(toCheck);
+            for (MetaDataRecord entry: entries) {
+                usedDataSpace += entry.getSize();
+                _log.debug("{} {}", entry.getPnfsId(), entry.getState());
             }
 
             /* Allocate space.
@@ -362,35 +491,50 @@ public class CacheRepositoryV5
             updateAccountSize();
 
             /* State change notifications are supressed while the
-             * repository is loading. We synchronize to ensure a clean
-             * switch from the LOADING state to the OPEN state.
+             * repository is loading. The entries are marked as
+             * unregistered before the repository is opened; any
+             * entry changed after that point is registered with the
+             * event listeners before the change is reported, so no
+             * lock is needed to switch from LOADING to OPEN.
              */
+            for (MetaDataRecord entry: entries) {
+                _unregistered.add(entry.getPnfsId());
+            }
             synchronized (this) {
-                /* Register with event listeners in LRU order. The
-                 * sweeper relies on the LRU order.
-                 */
-                _log.info("Registering files in sweeper");
-                Collections.sort(entries, new MetaDataLRUOrder());
-                for (MetaDataRecord entry: entries) {
-                    stateChanged(entry, NEW, entry.getState());
-                }
-
-                _log.info(String.format("Inventory contains %d files; total size is %d; used space is %d; free space is %d.",
-                                        entries.size(), _account.getTotal(),
-                                        usedDataSpace, _account.getFree()));
-
                 _state = State.OPEN;
             }
 
-            /* Register sticky timeouts.
+            /* Register with event listeners in LRU order. The
+             * sweeper relies on the LRU order.
              */
-            _log.info("Registering sticky bits");
+            _log.info("Registering files in sweeper");
+            Collections.sort(entries, new MetaDataLRUOrder());
             for (MetaDataRecord entry: entries) {
-                synchronized (entry) {
-                    if (entry.isSticky()) {
-                        scheduleExpirationTask(entry);
-                    }
-                }
+                registerIfUnregistered(entry);
+            }
+
+            _log.info(String.format("Inventory contains %d files; total size is %d; used space is %d; free space is %d.",
+                                    entries.size() + deferred.size(), _account.getTotal(),
+                                    usedDataSpace, _account.getFree()));
+
+            /* Sticky timeouts were registered together with the
+             * entries. Expired flags are only removed once the
+             * expiration task is started, thus all deadlines are
+             * registered before any is processed.
+             */
+            synchronized (this) {
+                _expirationTask =
+                    _executor.scheduleWithFixedDelay(new ExpirationTask(),
+                                                     EXPIRATION_TICK,
+                                                     EXPIRATION_TICK,
+                                                     TimeUnit.MILLISECONDS);
+            }
+            _log.info("Registered {} sticky bit expirations", _expirations.size());
+
+            if (!deferred.isEmpty()) {
+                _log.info("Registering {} files from inventory snapshot in the background",
+                          deferred.size());
+                _executor.execute(new RegistrationTask(deferred));
             }
         } finally {
             synchronized (this) {
@@ -498,7 +642,7 @@ public class CacheRepositoryV5
             }
 
             if (!flags.contains(OpenFlags.NOATIME)) {
-                synchronized (this) {
+                synchronized (entry) {
                     /* Don't notify listeners until we are done
                      * loading; at the end of the load method
                      * listeners are informed about all entries.
@@ -569,28 +713,23 @@ public class CacheRepositoryV5
             throw e;
         }
 
-        /* We synchronize on 'this' because setSticky below is
-         * synchronized; and 'this' has to be locked before entry.
-         */
-        synchronized (this) {
-            synchronized (entry) {
-                switch (entry.getState()) {
-                case NEW:
-                case FROM_CLIENT:
-                case FROM_STORE:
-                case FROM_POOL:
-                    throw new FileNotInCacheException("File is incomplete");
-                case REMOVED:
-                case DESTROYED:
-                    throw new FileNotInCacheException("File has been removed");
-                case BROKEN:
-                case PRECIOUS:
-                case CACHED:
-                    break;
-                }
-
-                setSticky(entry, owner, expire, overwrite);
+        synchronized (entry) {
+            switch (entry.getState()) {
+            case NEW:
+            case FROM_CLIENT:
+            case FROM_STORE:
+            case FROM_POOL:
+                throw new FileNotInCacheException("File is incomplete");
+            case REMOVED:
+            case DESTROYED:
+                throw new FileNotInCacheException("File has been removed");
+            case BROKEN:
+            case PRECIOUS:
+            case CACHED:
+                break;
             }
+
+            setSticky(entry, owner, expire, overwrite);
         }
     }
 
@@ -716,6 +855,15 @@ public class CacheRepositoryV5
     public void getInfo(PrintWriter pw)
     {
         pw.println("State             : " + _state);
+        if (_state == State.LOADING) {
+            pw.println("Files checked     : " + _filesLoaded.get() + " of " + _filesToLoad);
+        }
+        pw.println("Sticky expiration : " + _expirations.size() + " pending");
+        int unregistered = _unregistered.size();
+        if (unregistered > 0) {
+            pw.println("Files pending     : " + unregistered +
+                       " (not yet registered with listeners)");
+        }
 
         SpaceRecord space = getSpaceRecord();
         long total = space.getTotalSpace();
@@ -749,9 +897,103 @@ public class CacheRepositoryV5
     public synchronized void shutdown()
     {
         _stateChangeListeners.stop();
+        if (_expirationTask != null) {
+            _expirationTask.cancel(false);
+        }
+        if (_inventorySnapshotFile != null && _state == State.OPEN) {
+            writeInventorySnapshot(_inventorySnapshotFile);
+        }
         _state = State.CLOSED;
     }
 
+    /**
+     * Reads and deletes the inventory snapshot. Deleting the snapshot
+     * guarantees that it is not used again if the pool is not shut
+     * down cleanly. The snapshot is only used if it describes exactly
+     * the files found in the repository.
+     *
+     * @return the records of the snapshot in LRU order or null if no
+     *         valid snapshot exists
+     */
+    private List<InventorySnapshot.Record> readInventorySnapshot(List<PnfsId> ids)
+    {
+        File file = _inventorySnapshotFile;
+        if (file == null || !file.exists()) {
+            return null;
+        }
+
+        List<InventorySnapshot.Record> records;
+        try {
+            records = InventorySnapshot.read(file);
+        } catch (IOException e) {
+            _log.warn("Ignoring inventory snapshot: {}", e.getMessage());
+            records = null;
+        }
+
+        if (!file.delete()) {
+            _log.error("Failed to delete inventory snapshot {}; ignoring snapshot", file);
+            return null;
+        }
+
+        if (records != null) {
+            Set<PnfsId> known = new HashSet<>(ids);
+            for (InventorySnapshot.Record record: records) {
+                if (!known.remove(record.getPnfsId())) {
+                    _log.warn("Ignoring inventory snapshot as it does not match the repository content");
+                    return null;
+                }
+            }
+            if (!known.isEmpty()) {
+                _log.warn("Ignoring inventory snapshot as it does not match the repository content");
+                return null;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Writes an inventory snapshot of all entries in LRU order.
+     */
+    private void writeInventorySnapshot(File file)
+    {
+        if (!_unregistered.isEmpty()) {
+            _log.warn("Not writing inventory snapshot as {} files are not yet registered",
+                      _unregistered.size());
+            return;
+        }
+
+        try {
+            List<InventorySnapshot.Record> records = new ArrayList<>();
+            for (PnfsId id: _store.list()) {
+                MetaDataRecord entry = _store.get(id);
+                if (entry != null) {
+                    synchronized (entry) {
+                        records.add(new InventorySnapshot.Record(entry));
+                    }
+                }
+            }
+            Collections.sort(records, new Comparator<InventorySnapshot.Record>() {
+                @Override
+                public int compare(InventorySnapshot.Record r1, InventorySnapshot.Record r2)
+                {
+                    long l1 = r1.getLastAccessTime();
+                    long l2 = r2.getLastAccessTime();
+                    return l1 == l2
+                        ? r1.getPnfsId().compareTo(r2.getPnfsId())
+                        : l1 < l2 ? -1 : 1;
+                }
+            });
+            InventorySnapshot.write(file, records);
+            _log.info("Wrote inventory snapshot of {} files to {}", records.size(), file);
+        } catch (IOException | CacheException e) {
+            _log.error("Failed to write inventory snapshot: {}", e.getMessage());
+            file.delete();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            file.delete();
+        }
+    }
+
     // Operations on MetaDataRecord ///////////////////////////////////////
 
     protected void updateRemovable(MetaDataRecord entry)
@@ -777,6 +1019,9 @@ public class CacheRepositoryV5
                                 EntryState oldState, EntryState newState)
     {
         synchronized (entry) {
+            if (oldState != NEW) {
+                registerIfUnregistered(entry, oldState);
+            }
             updateRemovable(entry);
             StateChangeEvent event =
                 new StateChangeEvent(new CacheEntryImpl(entry),
@@ -797,6 +1042,7 @@ public class CacheRepositoryV5
     protected void accessTimeChanged(MetaDataRecord entry)
     {
         synchronized (entry) {
+            registerIfUnregistered(entry, entry.getState());
             updateRemovable(entry);
             EntryChangeEvent event =
                     new EntryChangeEvent(new CacheEntryImpl(entry));
@@ -812,6 +1058,7 @@ public class CacheRepositoryV5
                                  StickyRecord record)
     {
         synchronized (entry) {
+            registerIfUnregistered(entry, entry.getState());
             updateRemovable(entry);
             StickyChangeEvent event =
                     new StickyChangeEvent(new CacheEntryImpl(entry), record);
@@ -819,6 +1066,38 @@ public class CacheRepositoryV5
         }
     }
 
+    /**
+     * Registers an entry with the state change listeners in its
+     * current state, unless it is already registered.
+     */
+    private void registerIfUnregistered(MetaDataRecord entry)
+    {
+        synchronized (entry) {
+            registerIfUnregistered(entry, entry.getState());
+        }
+    }
+
+    /**
+     * Registers an entry loaded from the meta data store or known from
+     * the inventory snapshot with the state change listeners, unless
+     * it is already registered. Called before any other notification
+     * about the entry is generated, such that listeners always learn
+     * about an entry before learning about changes to it.
+     *
+     * @param state the state of the entry before any pending change
+     */
+    private void registerIfUnregistered(MetaDataRecord entry, EntryState state)
+    {
+        synchronized (entry) {
+            if (!_unregistered.isEmpty() && _unregistered.remove(entry.getPnfsId())) {
+                stateChanged(entry, NEW, state);
+                if (entry.isSticky()) {
+                    scheduleExpirationTask(entry);
+                }
+            }
+        }
+    }
+
     /**
      * Package local method for setting the state of an entry.
      *
@@ -850,9 +1129,9 @@ public class CacheRepositoryV5
                 PnfsId id = entry.getPnfsId();
                 _pnfs.clearCacheLocation(id, _volatile);
 
-                ScheduledFuture<?> oldTask = _tasks.remove(id);
+                TimerWheel.Timeout<MetaDataRecord> oldTask = _tasks.remove(id);
                 if (oldTask != null) {
-                    oldTask.cancel(false);
+                    oldTask.cancel();
                 }
             }
 
@@ -863,13 +1142,13 @@ public class CacheRepositoryV5
     /**
      * Package local method for changing sticky records of an entry.
      */
-    synchronized void setSticky(MetaDataRecord entry, String owner,
+    void setSticky(MetaDataRecord entry, String owner,
                    long expire, boolean overwrite)
         throws IllegalArgumentException
     {
-        /* This method is synchronized to avoid conflicts with the
-         * load method; at the end of load method expiration tasks are
-         * scheduled. For that reason this method does not generate
+        /* At the end of the load method expiration tasks are
+         * scheduled for all entries after the repository has been
+         * opened. For that reason this method does not generate
          * sticky changed notification and does not schedule
          * expiration tasks if the repository is not OPEN.
          */
@@ -936,6 +1215,71 @@ public class CacheRepositoryV5
         throw new InterruptedException();
     }
 
+    /**
+     * Reads the meta data records of the given entries using up to
+     * the configured number of load threads. Each thread reads a
+     * contiguous range of the list, thus preserving the order in
+     * which files are accessed within each range.
+     *
+     * @return the records in the order of ids; entries without a
+     *         record are skipped
+     */
+    private List<MetaDataRecord> readMetaDataRecords(List<PnfsId> ids)
+        throws CacheException, InterruptedException
+    {
+        int threads = Math.min(_loadThreads, ids.size());
+        if (threads <= 1) {
+            return readMetaDataRecordRange(ids);
+        }
+
+        ExecutorService executor =
+            Executors.newFixedThreadPool(threads,
+                    new ThreadFactoryBuilder().setNameFormat("repository-load-%d").build());
+        try {
+            int partitionSize = (ids.size() + threads - 1) / threads;
+            List<Future<List<MetaDataRecord>>> futures = new ArrayList<>();
+            for (final List<PnfsId> partition: Lists.partition(ids, partitionSize)) {
+                futures.add(executor.submit(new Callable<List<MetaDataRecord>>() {
+                    @Override
+                    public List<MetaDataRecord> call()
+                        throws CacheException, InterruptedException
+                    {
+                        return readMetaDataRecordRange(partition);
+                    }
+                }));
+            }
+
+            List<MetaDataRecord> entries = new ArrayList<>(ids.size());
+            for (Future<List<MetaDataRecord>> future: futures) {
+                try {
+                    entries.addAll(future.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    Throwables.propagateIfInstanceOf(cause, CacheException.class);
+                    Throwables.propagateIfInstanceOf(cause, InterruptedException.class);
+                    throw Throwables.propagate(cause);
+                }
+            }
+            return entries;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<MetaDataRecord> readMetaDataRecordRange(List<PnfsId> ids)
+        throws CacheException, InterruptedException
+    {
+        List<MetaDataRecord> entries = new ArrayList<>(ids.size());
+        for (PnfsId id: ids) {
+            MetaDataRecord entry = readMetaDataRecord(id);
+            if (entry != null) {
+                entries.add(entry);
+            }
+            _filesLoaded.incrementAndGet();
+        }
+        return entries;
+    }
+
     /**
      * Removes an entry from the in-memory cache and erases the data
      * file if it is REMOVED and the link count is zero. Package local
@@ -969,17 +1313,17 @@ public class CacheRepositoryV5
     }
 
     /**
-     * Schedules an expiration task for a sticky entry.
+     * Schedules the expiration of the next sticky flag of an entry.
      */
     private void scheduleExpirationTask(MetaDataRecord entry)
     {
         synchronized (entry) {
-            /* Cancel previous task.
+            /* Cancel previous deadline.
              */
             PnfsId pnfsId = entry.getPnfsId();
-            ScheduledFuture<?> future = _tasks.remove(pnfsId);
-            if (future != null) {
-                future.cancel(false);
+            TimerWheel.Timeout<MetaDataRecord> timeout = _tasks.remove(pnfsId);
+            if (timeout != null) {
+                timeout.cancel();
             }
 
             /* Find next sticky flag to expire.
@@ -991,15 +1335,13 @@ public class CacheRepositoryV5
                 }
             }
 
-            /* Schedule a new task. Notice that we schedule an expiration
-             * task even if expire is in the past. This guarantees that we
-             * also remove records that already have expired.
+            /* Schedule a new deadline. Notice that we schedule a
+             * deadline even if expire is in the past. This guarantees
+             * that we also remove records that already have expired.
              */
             if (expire != Long.MAX_VALUE) {
-                ExpirationTask task = new ExpirationTask(entry);
-                future = _executor.schedule(task, expire - System.currentTimeMillis()
-                                            + EXPIRATION_CLOCKSHIFT_EXTRA_TIME, TimeUnit.MILLISECONDS);
-                _tasks.put(pnfsId, future);
+                timeout = _expirations.schedule(entry, expire + EXPIRATION_CLOCKSHIFT_EXTRA_TIME);
+                _tasks.put(pnfsId, timeout);
             }
         }
     }
@@ -1027,22 +1369,71 @@ public class CacheRepositoryV5
     }
 
     /**
-     * Runnable for removing expired sticky flags.
+     * Runnable for removing expired sticky flags. Advances the
+     * expiration wheel and is executed once per tick.
      */
     class ExpirationTask implements Runnable
     {
-        private final MetaDataRecord _entry;
+        @Override
+        public void run()
+        {
+            for (MetaDataRecord entry: _expirations.expire(System.currentTimeMillis())) {
+                try {
+                    /* Reschedules the entry if further flags expire
+                     * later.
+                     */
+                    removeExpiredStickyFlags(entry);
+                } catch (RuntimeException e) {
+                    _log.error("Failed to expire sticky flags of " +
+                               entry.getPnfsId() + ": " + e, e);
+                }
+            }
+        }
+    }
 
-        public ExpirationTask(MetaDataRecord entry)
+    /**
+     * Runnable for registering entries known from the inventory
+     * snapshot with the state change listeners. Entries are
+     * registered in LRU order as the sweeper relies on that order.
+     */
+    private class RegistrationTask implements Runnable
+    {
+        private final List<InventorySnapshot.Record> _records;
+
+        RegistrationTask(List<InventorySnapshot.Record> records)
         {
-            _entry = entry;
+            _records = records;
         }
 
         @Override
         public void run()
         {
-            _tasks.remove(_entry.getPnfsId());
-            removeExpiredStickyFlags(_entry);
+            try {
+                for (List<InventorySnapshot.Record> batch:
+                         Lists.partition(_records, REGISTRATION_BATCH_SIZE)) {
+                    List<PnfsId> ids = new ArrayList<>(batch.size());
+                    for (InventorySnapshot.Record record: batch) {
+                        ids.add(record.getPnfsId());
+                    }
+                    for (MetaDataRecord entry: readMetaDataRecords(ids)) {
+                        registerIfUnregistered(entry);
+                    }
+
+                    /* Entries that disappeared since the snapshot
+                     * was written still have their space allocated.
+                     */
+                    for (InventorySnapshot.Record record: batch) {
+                        if (_unregistered.remove(record.getPnfsId())) {
+                            _account.free(record.getSize());
+                        }
+                    }
+                }
+                _log.info("Done registering files from inventory snapshot");
+            } catch (CacheException e) {
+                fail(FaultAction.DISABLED, "Failed to register files from inventory snapshot", e);
+            } catch (InterruptedException e) {
+                _log.info("Registration of files from inventory snapshot was interrupted");
+            }
         }
     }
 
@@ -0,0 +1,153 @@
+package org.dcache.pool.repository.v5;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import diskCacheV111.util.PnfsId;
+
+import org.dcache.pool.repository.EntryState;
+import org.dcache.pool.repository.MetaDataRecord;
+
+/**
+ * Compact on-disk summary of the repository inventory.
+ *
+ * The snapshot holds the PNFS ID, size, state and last access time
+ * of every replica. It is written when the repository is shut down
+ * cleanly and allows the next start to account for space and to
+ * open the repository without first reading the meta data of every
+ * replica.
+ *
+ * The snapshot is only valid until the repository is modified. It
+ * is the responsibility of the caller to delete the snapshot once
+ * it has been read.
+ */
+class InventorySnapshot
+{
+    private static final int MAGIC = 0x64437353;
+    private static final int VERSION = 1;
+
+    /**
+     * Snapshot of a single replica.
+     */
+    static class Record
+    {
+        private final PnfsId _pnfsId;
+        private final long _size;
+        private final EntryState _state;
+        private final long _lastAccessTime;
+
+        Record(PnfsId pnfsId, long size, EntryState state, long lastAccessTime)
+        {
+            _pnfsId = pnfsId;
+            _size = size;
+            _state = state;
+            _lastAccessTime = lastAccessTime;
+        }
+
+        Record(MetaDataRecord entry)
+        {
+            this(entry.getPnfsId(), entry.getSize(), entry.getState(),
+                 entry.getLastAccessTime());
+        }
+
+        PnfsId getPnfsId()
+        {
+            return _pnfsId;
+        }
+
+        long getSize()
+        {
+            return _size;
+        }
+
+        EntryState getState()
+        {
+            return _state;
+        }
+
+        long getLastAccessTime()
+        {
+            return _lastAccessTime;
+        }
+    }
+
+    private InventorySnapshot()
+    {
+    }
+
+    /**
+     * Writes records to file. The snapshot is first written to a
+     * temporary file which is then renamed, thus a partially written
+     * snapshot is never visible under the final name.
+     */
+    static void write(File file, List<Record> records)
+        throws IOException
+    {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(records.size());
+            for (Record record: records) {
+                out.writeUTF(record.getPnfsId().toString());
+                out.writeLong(record.getSize());
+                out.writeUTF(record.getState().name());
+                out.writeLong(record.getLastAccessTime());
+            }
+            out.writeInt(records.size());
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Failed to rename " + tmp + " to " + file);
+        }
+    }
+
+    /**
+     * Reads the records of a snapshot in the order in which they
+     * were written.
+     *
+     * @throws IOException if the snapshot cannot be read or is
+     *         incomplete
+     */
+    static List<Record> read(File file)
+        throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an inventory snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported inventory snapshot version " + version);
+            }
+            int count = in.readInt();
+            List<Record> records = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                PnfsId id = new PnfsId(in.readUTF());
+                long size = in.readLong();
+                EntryState state = EntryState.valueOf(in.readUTF());
+                long lastAccessTime = in.readLong();
+                records.add(new Record(id, size, state, lastAccessTime));
+            }
+            if (in.readInt() != count) {
+                throw new IOException("Inventory snapshot is corrupted: " + file);
+            }
+            return records;
+        } catch (EOFException e) {
+            throw new IOException("Inventory snapshot is truncated: " + file, e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Inventory snapshot is corrupted: " + file, e);
+        }
+    }
+}
@@ -61,7 +61,7 @@ public abstract class ClassicPartition extends Partition
      *      halt   |  suspend system
      *    fallback |  Allow fallback in Permission matrix on high load
      */
-    private static final Map<String,String> DEFAULTS =
+    protected static final Map<String,String> DEFAULTS =
         ImmutableMap.<String,String>builder()
         .put("max-copies", "3")
         .put("p2p", "0.0")
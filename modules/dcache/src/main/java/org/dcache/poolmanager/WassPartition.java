@@ -2,6 +2,7 @@ package org.dcache.poolmanager;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
 import java.util.Collections;
@@ -30,6 +31,16 @@ import static com.google.common.collect.Iterables.transform;
  * Experimental. Details will likely change. At the moment only
  * pools to which data is written are selected according to the WASS
  * algorithm. For reads the classic selection algorithm is used.
+ *
+ * In addition to the properties of ClassicPartition, the following
+ * property is supported:
+ *
+ *   secure-random   boolean
+ *
+ * If set to no, pools are selected using a fast per-thread random
+ * number generator rather than a shared SecureRandom. The latter
+ * becomes a point of contention when many pools are selected
+ * concurrently.
  */
 public class WassPartition extends ClassicPartition
 {
@@ -37,6 +48,12 @@ public class WassPartition extends ClassicPartition
 
     private static final long serialVersionUID = -3587599095801229561L;
 
+    private static final Map<String,String> DEFAULTS =
+        ImmutableMap.<String,String>builder()
+        .putAll(ClassicPartition.DEFAULTS)
+        .put("secure-random", "yes")
+        .build();
+
     private static final Function<PoolInfo,PoolCostInfo> GET_COST =
             new Function<PoolInfo, PoolCostInfo>()
             {
@@ -80,8 +97,9 @@ public class WassPartition extends ClassicPartition
     protected WassPartition(Map<String,String> inherited,
                             Map<String,String> properties)
     {
-        super(inherited, properties);
-        wass = new WeightedAvailableSpaceSelection(_performanceCostFactor, _spaceCostFactor);
+        super(DEFAULTS, inherited, properties);
+        wass = new WeightedAvailableSpaceSelection(_performanceCostFactor, _spaceCostFactor,
+                                                   getBoolean("secure-random"));
     }
 
     @Override
@@ -1,10 +1,15 @@
 package org.dcache.poolmanager;
 
 import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.security.SecureRandom;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 import diskCacheV111.pools.PoolCostInfo;
 
@@ -22,16 +27,47 @@ public class WeightedAvailableSpaceSelection implements Serializable
 
     private final double performanceCostFactor;
     private final double spaceCostFactor;
+    private final boolean isSecureRandom;
+
+    /**
+     * Weights of pools by cost info, computed from the values of the
+     * cost info at the time. Keys are compared by identity.
+     */
+    private transient Cache<PoolCostInfo, Weight> weights = createWeightCache();
 
     public WeightedAvailableSpaceSelection(double performanceCostFactor, double spaceCostFactor)
+    {
+        this(performanceCostFactor, spaceCostFactor, true);
+    }
+
+    /**
+     * @param isSecureRandom if true, random numbers are drawn from a
+     *                       shared SecureRandom, otherwise from a fast
+     *                       per-thread generator
+     */
+    public WeightedAvailableSpaceSelection(double performanceCostFactor, double spaceCostFactor,
+                                           boolean isSecureRandom)
     {
         this.performanceCostFactor = performanceCostFactor;
         this.spaceCostFactor = spaceCostFactor;
+        this.isSecureRandom = isSecureRandom;
+    }
+
+    private static Cache<PoolCostInfo, Weight> createWeightCache()
+    {
+        return CacheBuilder.newBuilder().weakKeys().build();
+    }
+
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        weights = createWeightCache();
     }
 
     protected double random()
     {
-        return RANDOM.nextDouble();
+        return isSecureRandom ? RANDOM.nextDouble() : ThreadLocalRandom.current().nextDouble();
     }
 
     /**
@@ -39,8 +75,10 @@ public class WeightedAvailableSpaceSelection implements Serializable
      * <p/>
      * We treat removable space as decaying at an exponential rate. Ie the longer a removable file
      * has not been accessed, the less space we consider it to occupy.
+     * <p/>
+     * Final since weights are cached; see getWeightedAvailable.
      */
-    protected double getAvailableRemovable(PoolCostInfo.PoolSpaceInfo space)
+    protected final double getAvailableRemovable(PoolCostInfo.PoolSpaceInfo space)
     {
         double removable = space.getRemovableSpace();
         double breakeven = space.getBreakEven();
@@ -134,25 +172,39 @@ public class WeightedAvailableSpaceSelection implements Serializable
      * <p/>
      * Available space includes free space and removable space deemed available for writes. The gap
      * parameter of the pool is respected.
+     * <p/>
+     * Final since weights are cached; see getWeightedAvailable.
      */
-    protected double getAvailable(PoolCostInfo.PoolSpaceInfo space, long filesize)
+    protected final double getAvailable(PoolCostInfo.PoolSpaceInfo space, long filesize)
     {
-        long free = space.getFreeSpace();
-        long gap = space.getGap();
-        double removable = getAvailableRemovable(space);
+        double available = getAvailableSpace(space);
+        return isFull(available, space.getGap(), filesize) ? 0 : available;
+    }
 
-        /* The amount of available space on a pool is the sum of
-         * whatever is free and decayed removable space.
-         */
-        double available = free + removable;
+    /**
+     * The amount of available space on a pool is the sum of whatever
+     * is free and decayed removable space.
+     */
+    private double getAvailableSpace(PoolCostInfo.PoolSpaceInfo space)
+    {
+        return space.getFreeSpace() + getAvailableRemovable(space);
+    }
 
-        /* If available space is less than the gap then the pool is
-         * considered full.
-         */
-        return (available - filesize > gap) ? available : 0;
+    /**
+     * If available space is less than the gap then the pool is
+     * considered full.
+     */
+    private static boolean isFull(double available, long gap, long filesize)
+    {
+        return !(available - filesize > gap);
     }
 
-    protected int getWriters(PoolCostInfo info)
+    /**
+     * Returns the number of write movers of a pool.
+     * <p/>
+     * Final since weights are cached; see getWeightedAvailable.
+     */
+    protected final int getWriters(PoolCostInfo info)
     {
         int writers = 0;
         if (info.getStoreQueue() != null) {
@@ -218,18 +270,45 @@ public class WeightedAvailableSpaceSelection implements Serializable
      * Note that setting both factors to zero causes pool selection to
      * become random. This it the same behaviour as with the classic
      * partition.
+     *
+     * The weight is computed from getAvailable and getWriters when the
+     * cost info of the pool is first seen and reused until its values
+     * change. For the cached weight to agree with those methods they
+     * cannot be overridden.
      */
     protected double getWeightedAvailable(PoolCostInfo info, long filesize)
     {
-        double available = getAvailable(info.getSpaceInfo(), filesize);
-        double load = performanceCostFactor * info.getMoverCostFactor() * getWriters(info);
-        return Math.pow(available, spaceCostFactor) / Math.pow(2.0, load);
+        return getWeight(info).getWeightedAvailable(filesize);
+    }
+
+    /**
+     * Returns the weight of a pool. The weight is computed once and
+     * reused until the cost info of the pool changes.
+     */
+    private Weight getWeight(PoolCostInfo info)
+    {
+        PoolCostInfo.PoolSpaceInfo space = info.getSpaceInfo();
+        int writers = getWriters(info);
+        Weight weight = weights.getIfPresent(info);
+        if (weight == null || !weight.isFor(space, writers, info.getMoverCostFactor())) {
+            weight = new Weight(space, writers, info.getMoverCostFactor());
+            weights.put(info, weight);
+        }
+        return weight;
     }
 
     /**
      * Selects a pool from a list using the WASS algorithm.
      * <p/>
      * Returns null if all pools are full.
+     * <p/>
+     * The candidate pools and the file size differ between requests,
+     * so each selection is linear in the number of pools: every pool
+     * takes a cache lookup, a count of its writers to validate the
+     * cached weight, and an addition to the cumulative weights. What
+     * is saved compared to computing the weights is the decay of
+     * removable space and the exponentiation. The binary search only
+     * replaces the second linear pass that located the threshold.
      */
     public <P> P selectByAvailableSpace(List<P> pools, long size,
                                         Function<P, PoolCostInfo> getCost)
@@ -243,14 +322,85 @@ public class WeightedAvailableSpaceSelection implements Serializable
         }
 
         double threshold = random() * sum;
+        if (!(threshold < sum)) {
+            return null;
+        }
 
-        for (int i = 0; i < available.length; i++) {
-            if (threshold < available[i]) {
-                return pools.get(i);
+        /* Binary search for the first pool whose cumulative weight
+         * exceeds the threshold.
+         */
+        int low = 0;
+        int high = available.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (threshold < available[mid]) {
+                high = mid;
+            } else {
+                low = mid + 1;
             }
         }
+        return pools.get(low);
+    }
 
-        return null;
+    /**
+     * The weight of a pool and the cost info values it was computed
+     * from.
+     */
+    private class Weight
+    {
+        private final long free;
+        private final long removable;
+        private final double breakeven;
+        private final long lru;
+        private final long gap;
+        private final int writers;
+        private final double moverCostFactor;
+
+        /** Free space and decayed removable space. */
+        private final double available;
+
+        /** Weighted available space if the pool is not full. */
+        private final double weighted;
+
+        /** Weighted available space if the pool is full. */
+        private final double weightedFull;
+
+        Weight(PoolCostInfo.PoolSpaceInfo space, int writers, double moverCostFactor)
+        {
+            this.free = space.getFreeSpace();
+            this.removable = space.getRemovableSpace();
+            this.breakeven = space.getBreakEven();
+            this.lru = space.getLRUSeconds();
+            this.gap = space.getGap();
+            this.writers = writers;
+            this.moverCostFactor = moverCostFactor;
+
+            double load = performanceCostFactor * moverCostFactor * writers;
+            double scale = Math.pow(2.0, load);
+            available = getAvailableSpace(space);
+            weighted = Math.pow(available, spaceCostFactor) / scale;
+            weightedFull = Math.pow(0.0, spaceCostFactor) / scale;
+        }
+
+        boolean isFor(PoolCostInfo.PoolSpaceInfo space, int writers, double moverCostFactor)
+        {
+            return free == space.getFreeSpace() &&
+                removable == space.getRemovableSpace() &&
+                breakeven == space.getBreakEven() &&
+                lru == space.getLRUSeconds() &&
+                gap == space.getGap() &&
+                this.writers == writers &&
+                this.moverCostFactor == moverCostFactor;
+        }
+
+        /**
+         * Returns the weighted available space of the pool for a file
+         * of the given size. See getAvailable.
+         */
+        double getWeightedAvailable(long filesize)
+        {
+            return isFull(available, gap, filesize) ? weightedFull : weighted;
+        }
     }
 
 }
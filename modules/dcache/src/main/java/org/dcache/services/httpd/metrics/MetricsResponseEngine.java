@@ -0,0 +1,79 @@
+package org.dcache.services.httpd.metrics;
+
+import com.google.common.base.Charsets;
+import diskCacheV111.util.CacheException;
+import diskCacheV111.util.TimeoutCacheException;
+import dmg.cells.nucleus.CellEndpoint;
+import dmg.cells.nucleus.CellPath;
+import dmg.util.HttpException;
+import dmg.util.HttpRequest;
+import dmg.util.HttpResponseEngine;
+import org.dcache.cells.CellStub;
+import org.dcache.commons.stats.MetricsRegistry;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Exports the metrics registry in the Prometheus text exposition
+ * format.
+ *
+ * The mount point itself serves the metrics of the domain hosting the
+ * httpd cell. Appending a domain name, eg /metrics/poolDomain, serves
+ * the metrics of that domain as reported by its System cell.
+ */
+public class MetricsResponseEngine implements HttpResponseEngine
+{
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final CellStub stub;
+
+    public MetricsResponseEngine(CellEndpoint endpoint, String[] someArgs)
+    {
+        stub = new CellStub(endpoint);
+    }
+
+    @Override
+    public void queryUrl(HttpRequest request) throws HttpException
+    {
+        try {
+            String[] urlItems = request.getRequestTokens();
+
+            /* urlItems[0] is the mount point.
+             */
+            String metrics;
+            if (urlItems.length < 2) {
+                metrics = MetricsRegistry.getInstance().toString();
+            } else if (urlItems.length == 2) {
+                metrics = stub.sendAndWait(new CellPath("System", urlItems[1]),
+                                           "show metrics", String.class);
+            } else {
+                throw new HttpException(404, "No such domain");
+            }
+
+            request.setContentType(CONTENT_TYPE);
+            Writer writer = new OutputStreamWriter(request.getOutputStream(), Charsets.UTF_8);
+            writer.append(metrics);
+            writer.flush();
+        } catch (TimeoutCacheException e) {
+            throw new HttpException(503, "The domain took too long to reply, suspect trouble.");
+        } catch (CacheException | IOException e) {
+            throw new HttpException(500, e.getMessage());
+        } catch (InterruptedException e) {
+            throw new HttpException(503, "Received interrupt whilst processing data. Please try again later.");
+        }
+    }
+
+    @Override
+    public void startup()
+    {
+
+    }
+
+    @Override
+    public void shutdown()
+    {
+
+    }
+}
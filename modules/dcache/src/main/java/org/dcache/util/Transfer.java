@@ -48,6 +48,7 @@ import dmg.util.TimebasedCounter;
 
 import org.dcache.acl.enums.AccessMask;
 import org.dcache.cells.CellStub;
+import org.dcache.commons.stats.MetricsRegistry;
 import org.dcache.commons.util.NDC;
 import org.dcache.namespace.FileAttribute;
 import org.dcache.namespace.FileType;
@@ -981,12 +982,34 @@ public class Transfer implements Comparable<Transfer>
             _billing.send(msg);
 
             _isBillingNotified = true;
+            recordMetrics(code, msg.getTransactionDuration());
         } catch (NoRouteToCellException e) {
             _log.error("Failed to register transfer in billing: " +
                        e.getMessage());
         }
     }
 
+    /**
+     * Updates the door transfer metrics of the domain. Called once
+     * per transfer.
+     */
+    private void recordMetrics(int code, long duration)
+    {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        String protocol =
+            (_protocolInfo == null) ? "unknown" : _protocolInfo.getProtocol();
+        String direction = _isWrite ? "write" : "read";
+        registry.counter("dcache_door_transfers_total",
+                         "Transfers completed by doors",
+                         "protocol", protocol,
+                         "direction", direction,
+                         "result", (code == 0) ? "success" : "failure").increment();
+        registry.histogram("dcache_door_transfer_duration_milliseconds",
+                           "Duration of transfers completed by doors",
+                           "protocol", protocol,
+                           "direction", direction).record(duration);
+    }
+
     /**
      * Select a pool and start a mover. Failed attempts are handled
      * according to the {@link TransferRetryPolicy}. Note, that there
@@ -25,6 +25,7 @@ import dmg.util.CollectionFactory;
 
 import dmg.cells.nucleus.CellMessageReceiver;
 import org.dcache.namespace.FileAttribute;
+import org.dcache.namespace.ListCursor;
 import org.dcache.util.CacheExceptionFactory;
 import org.dcache.util.Glob;
 import org.dcache.vehicles.FileAttributes;
@@ -34,9 +35,14 @@ import org.dcache.vehicles.PnfsListDirectoryMessage;
  * DirectoryListSource which delegates the list operation to the
  * PnfsManager.
  *
- * Large directories are broken into several reply messages by the
- * PnfsManager. For that reason the regular Cells callback mechanism
- * for replies cannot be used. Instead messages of type
+ * Large directories are broken into several chunks by the
+ * PnfsManager. Chunks are requested one at a time: the next chunk is
+ * only requested once the entries of the previous chunk have been
+ * consumed, thus at most one chunk per listing is held in memory. For
+ * compatibility with PnfsManagers not supporting paginated listing,
+ * replies streamed without being requested are accepted too. For that
+ * reason the regular Cells callback mechanism for replies cannot be
+ * used. Instead messages of type
  * PnfsListDirectoryMessage must be routed to the
  * ListDirectoryHandler. This also has the consequence that a
  * ListDirectoryHandler cannot be used from the Cells messages
@@ -93,27 +99,16 @@ public class ListDirectoryHandler
         throws InterruptedException, CacheException
     {
         String dir = path.toString();
-        PnfsListDirectoryMessage msg =
-            new PnfsListDirectoryMessage(dir, pattern, range, attributes);
-        UUID uuid = msg.getUUID();
+        Stream stream = new Stream(subject, dir, pattern, range, attributes);
         boolean success = false;
-        Stream stream = new Stream(dir, uuid);
         try {
-            msg.setSubject(subject);
-            _replies.put(uuid, stream);
-            _pnfs.send(msg);
+            stream.requestChunk(ListCursor.START);
             stream.waitForMoreEntries();
             success = true;
             return stream;
-        } catch (NoRouteToCellException e) {
-            /* No route to PnfsManager is essentially no different
-             * than not getting a reply, so we advertise it with the
-             * same exception.
-             */
-            throw new TimeoutCacheException(e.getMessage());
         } finally {
             if (!success) {
-                _replies.remove(uuid);
+                stream.close();
             }
         }
     }
@@ -165,7 +160,7 @@ public class ListDirectoryHandler
             try {
                 UUID uuid = reply.getUUID();
                 Stream stream;
-                if (reply.isFinal()) {
+                if (reply.isFinal() || reply.getNextCursor() != null) {
                     stream = _replies.remove(uuid);
                 } else {
                     stream = _replies.get(uuid);
@@ -194,21 +189,57 @@ public class ListDirectoryHandler
     {
         private final BlockingQueue<PnfsListDirectoryMessage> _queue =
             CollectionFactory.newLinkedBlockingQueue();
-        private final UUID _uuid;
+        private final Subject _subject;
         private final String _path;
+        private final Glob _pattern;
+        private final Range<Integer> _range;
+        private final Set<FileAttribute> _attributes;
+        private volatile UUID _uuid;
         private boolean _isFinal;
+        private ListCursor _nextCursor;
         private Iterator<DirectoryEntry> _iterator;
 
-        public Stream(String path, UUID uuid)
+        public Stream(Subject subject, String path, Glob pattern,
+                      Range<Integer> range, Set<FileAttribute> attributes)
         {
+            _subject = subject;
             _path = path;
-            _uuid = uuid;
+            _pattern = pattern;
+            _range = range;
+            _attributes = attributes;
         }
 
         @Override
         public void close()
         {
-            _replies.remove(_uuid);
+            UUID uuid = _uuid;
+            if (uuid != null) {
+                _replies.remove(uuid);
+            }
+        }
+
+        /**
+         * Requests the chunk following the cursor from PnfsManager.
+         */
+        private void requestChunk(ListCursor cursor)
+            throws CacheException
+        {
+            PnfsListDirectoryMessage msg =
+                new PnfsListDirectoryMessage(_path, _pattern, _range, _attributes);
+            msg.setSubject(_subject);
+            msg.setCursor(cursor);
+            close();
+            _uuid = msg.getUUID();
+            _replies.put(_uuid, this);
+            try {
+                _pnfs.send(msg);
+            } catch (NoRouteToCellException e) {
+                /* No route to PnfsManager is essentially no different
+                 * than not getting a reply, so we advertise it with the
+                 * same exception.
+                 */
+                throw new TimeoutCacheException(e.getMessage());
+            }
         }
 
         private void put(PnfsListDirectoryMessage msg)
@@ -217,36 +248,45 @@ public class ListDirectoryHandler
             _queue.put(msg);
         }
 
+        /**
+         * Waits for the next non-empty chunk. Empty chunks, in
+         * particular an empty final chunk, are skipped. Leaves
+         * _iterator null when the listing is complete.
+         */
         private void waitForMoreEntries()
             throws InterruptedException, CacheException
         {
-            if (_isFinal) {
-                _iterator = null;
-                return;
-            }
+            do {
+                if (_isFinal) {
+                    _iterator = null;
+                    return;
+                }
 
-            PnfsListDirectoryMessage msg =
-                _queue.poll(_pnfs.getPnfsTimeout(), TimeUnit.MILLISECONDS);
-            if (msg == null) {
-                throw new CacheException(CacheException.TIMEOUT,
-                                         "Timeout during directory list");
-            }
+                /* The previous chunk has been consumed; ask for the next.
+                 */
+                if (_nextCursor != null) {
+                    ListCursor cursor = _nextCursor;
+                    _nextCursor = null;
+                    requestChunk(cursor);
+                }
 
-            _isFinal = msg.isFinal();
+                PnfsListDirectoryMessage msg =
+                    _queue.poll(_pnfs.getPnfsTimeout(), TimeUnit.MILLISECONDS);
+                if (msg == null) {
+                    throw new CacheException(CacheException.TIMEOUT,
+                                             "Timeout during directory list");
+                }
 
-            if (msg.getReturnCode() != 0) {
-                throw CacheExceptionFactory.exceptionOf(msg);
-            }
+                _isFinal = msg.isFinal();
+
+                if (msg.getReturnCode() != 0) {
+                    throw CacheExceptionFactory.exceptionOf(msg);
+                }
 
-            _iterator = msg.getEntries().iterator();
+                _nextCursor = msg.getNextCursor();
 
-            /* If the message is empty, then the iterator has no next
-             * element. In that case we wait for the next reply. This
-             * may in particular happen with the final message.
-             */
-            if (!_iterator.hasNext()) {
-                waitForMoreEntries();
-            }
+                _iterator = msg.getEntries().iterator();
+            } while (!_iterator.hasNext());
         }
 
         @Override
@@ -1,11 +1,16 @@
 package org.dcache.vehicles;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Set;
 
 import diskCacheV111.util.PnfsId;
 import diskCacheV111.vehicles.Message;
 import diskCacheV111.vehicles.PnfsMessage;
 
+import dmg.cells.nucleus.PayloadCodecs;
+
 import org.dcache.namespace.FileAttribute;
 
 
@@ -73,6 +78,22 @@ public class PnfsGetFileAttributes extends PnfsMessage {
         return _attributes;
     }
 
+    @Override
+    protected void writeFieldsTo(DataOutput out) throws IOException
+    {
+        super.writeFieldsTo(out);
+        PayloadCodecs.writeEnumSet(out, _attributes);
+        PayloadCodecs.writeObject(out, _fileAttributes);
+    }
+
+    @Override
+    protected void readFieldsFrom(DataInput in) throws IOException
+    {
+        super.readFieldsFrom(in);
+        _attributes = PayloadCodecs.readEnumSet(in, FileAttribute.class);
+        _fileAttributes = PayloadCodecs.readObject(in, FileAttributes.class);
+    }
+
     @Override
     public boolean invalidates(Message message)
     {
@@ -0,0 +1,42 @@
+package org.dcache.vehicles;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import diskCacheV111.util.PnfsId;
+
+import dmg.cells.nucleus.PayloadCodec;
+
+/**
+ * Binary encoding of the most common name space request. Only the
+ * file attributes of the reply are Java serialized.
+ */
+public class PnfsGetFileAttributesCodec implements PayloadCodec<PnfsGetFileAttributes>
+{
+    @Override
+    public String getName()
+    {
+        return "pnfs-get-file-attributes-1";
+    }
+
+    @Override
+    public Class<PnfsGetFileAttributes> getType()
+    {
+        return PnfsGetFileAttributes.class;
+    }
+
+    @Override
+    public void writeTo(DataOutput out, PnfsGetFileAttributes msg) throws IOException
+    {
+        msg.writeFieldsTo(out);
+    }
+
+    @Override
+    public PnfsGetFileAttributes readFrom(DataInput in) throws IOException
+    {
+        PnfsGetFileAttributes msg = new PnfsGetFileAttributes((PnfsId) null, null);
+        msg.readFieldsFrom(in);
+        return msg;
+    }
+}
@@ -14,6 +14,7 @@ import diskCacheV111.vehicles.PnfsMessage;
 import dmg.util.CollectionFactory;
 
 import org.dcache.namespace.FileAttribute;
+import org.dcache.namespace.ListCursor;
 import org.dcache.util.Glob;
 import org.dcache.util.list.DirectoryEntry;
 
@@ -23,6 +24,11 @@ import org.dcache.util.list.DirectoryEntry;
  * is identified by a UUID and the replies will contain the same
  * UUID. The last reply is flagged as final. It is assumed that
  * point-to-point message ordering is guaranteed.
+ *
+ * If the request carries a cursor, the listing is paginated instead:
+ * only a single reply containing one chunk of entries is sent. Unless
+ * final, the reply carries the cursor from which the requestor may
+ * request the next chunk with a new message.
  */
 public class PnfsListDirectoryMessage extends PnfsMessage
 {
@@ -43,6 +49,23 @@ public class PnfsListDirectoryMessage extends PnfsMessage
      */
     public boolean _isFinal = true;
 
+    /**
+     * Position from which to continue a paginated listing. The cursor
+     * is encoded in fields of standard types so that PnfsManagers not
+     * supporting paginated listing can decode the request.
+     */
+    private boolean _isPaged;
+    private String _cursorName;
+    private int _cursorCounter;
+
+    /**
+     * Position of the next chunk of a paginated listing; set in
+     * non-final replies.
+     */
+    private boolean _hasNextCursor;
+    private String _nextCursorName;
+    private int _nextCursorCounter;
+
     /**
      * Constructs a new message.
      *
@@ -133,6 +156,36 @@ public class PnfsListDirectoryMessage extends PnfsMessage
         return _isFinal;
     }
 
+    /** Requests a paginated listing starting after the cursor. */
+    public void setCursor(ListCursor cursor)
+    {
+        _isPaged = cursor != null;
+        _cursorName = (cursor == null) ? null : cursor.getLastName();
+        _cursorCounter = (cursor == null) ? 0 : cursor.getCounter();
+    }
+
+    /** Returns the cursor of a paginated listing; null otherwise. */
+    public ListCursor getCursor()
+    {
+        return _isPaged ? new ListCursor(_cursorName, _cursorCounter) : null;
+    }
+
+    public void setNextCursor(ListCursor cursor)
+    {
+        _hasNextCursor = cursor != null;
+        _nextCursorName = (cursor == null) ? null : cursor.getLastName();
+        _nextCursorCounter = (cursor == null) ? 0 : cursor.getCounter();
+    }
+
+    /**
+     * Returns the position from which to request the next chunk of a
+     * paginated listing; null if there is none.
+     */
+    public ListCursor getNextCursor()
+    {
+        return _hasNextCursor ? new ListCursor(_nextCursorName, _nextCursorCounter) : null;
+    }
+
     @Override
     public boolean invalidates(Message message)
     {
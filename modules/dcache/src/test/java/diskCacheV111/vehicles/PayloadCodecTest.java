@@ -0,0 +1,277 @@
+package diskCacheV111.vehicles;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import javax.security.auth.Subject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.util.EnumSet;
+
+import diskCacheV111.poolManager.RequestContainerV5.RequestState;
+import diskCacheV111.pools.PoolCostInfo;
+import diskCacheV111.pools.PoolV2Mode;
+import diskCacheV111.util.PnfsId;
+
+import dmg.cells.nucleus.CellAddressCore;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellPath;
+
+import org.dcache.acl.enums.AccessMask;
+import org.dcache.auth.UidPrincipal;
+import org.dcache.namespace.FileAttribute;
+import org.dcache.vehicles.FileAttributes;
+import org.dcache.vehicles.PnfsGetFileAttributes;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class PayloadCodecTest
+{
+    @SuppressWarnings("unchecked")
+    private static <T extends Serializable> T roundTrip(T payload, String codec)
+    {
+        CellMessage encoded = new CellMessage(new CellPath("billing"), payload).encode();
+        assertThat(encoded.getPayloadCodec(), is(codec));
+        return (T) encoded.decode().getMessageObject();
+    }
+
+    private static Subject subject()
+    {
+        Subject subject = new Subject();
+        subject.getPrincipals().add(new UidPrincipal(1000));
+        return subject;
+    }
+
+    private static FileAttributes fileAttributes()
+    {
+        FileAttributes attributes = new FileAttributes();
+        attributes.setPnfsId(new PnfsId("000000000000000000000000000000000001"));
+        attributes.setStorageInfo(new OSMStorageInfo("store", "group", "bfid"));
+        attributes.setLocations(ImmutableSet.<String>of());
+        attributes.setSize(12345);
+        attributes.setAccessLatency(StorageInfo.DEFAULT_ACCESS_LATENCY);
+        attributes.setRetentionPolicy(StorageInfo.DEFAULT_RETENTION_POLICY);
+        return attributes;
+    }
+
+    @Test
+    public void shouldRoundTripPoolUpMessage() throws Exception
+    {
+        PoolCostInfo info = new PoolCostInfo("pool1");
+        info.setSpaceUsage(1000, 400, 300, 200, 60);
+        info.getSpaceInfo().setParameter(0.7, 50);
+        info.setQueueSizes(1, 2, 3, 4, 5, 6);
+        info.setP2pServerQueueSizes(7, 8, 9);
+        info.addExtendedMoverQueueSizes("regular", 10, 100, 11, 6, 4);
+        info.addExtendedMoverQueueSizes("wan", 1, 2, 0, 1, 0);
+        info.setMoverCostFactor(0.25);
+
+        PoolManagerPoolUpMessage msg =
+                new PoolManagerPoolUpMessage("pool1", 42, new PoolV2Mode(PoolV2Mode.DISABLED_RDONLY), info);
+        msg.setTagMap(ImmutableMap.of("hostname", "pool-host"));
+        msg.setHsmInstances(ImmutableSet.of("osm"));
+        msg.setMessage("read-only");
+        msg.setCode(17);
+        msg.setSubject(subject());
+
+        PoolManagerPoolUpMessage copy = roundTrip(msg, "pool-up-1");
+
+        assertThat(copy.getPoolName(), is("pool1"));
+        assertThat(copy.getSerialId(), is(42L));
+        assertThat(copy.getPoolMode(), is(msg.getPoolMode()));
+        assertThat(copy.getTagMap(), is(msg.getTagMap()));
+        assertThat(copy.getHsmInstances(), is(msg.getHsmInstances()));
+        assertThat(copy.getMessage(), is("read-only"));
+        assertThat(copy.getCode(), is(17));
+        assertThat(copy.getReplyRequired(), is(false));
+        assertThat(copy.getSubject(), is(msg.getSubject()));
+        assertThat(copy.getPoolCostInfo().toString(), is(info.toString()));
+        assertThat(copy.getPoolCostInfo().getMoverCostFactor(), is(0.25));
+        assertThat(copy.getPoolCostInfo().getP2pClientQueue(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldRoundTripPoolUpMessageWithoutCostInfo() throws Exception
+    {
+        PoolManagerPoolUpMessage msg =
+                new PoolManagerPoolUpMessage("pool1", 42, new PoolV2Mode(PoolV2Mode.DISABLED_DEAD));
+
+        PoolManagerPoolUpMessage copy = roundTrip(msg, "pool-up-1");
+
+        assertThat(copy.getPoolCostInfo(), is(nullValue()));
+        assertThat(copy.getTagMap(), is(nullValue()));
+        assertThat(copy.getHsmInstances(), is(nullValue()));
+        assertThat(copy.getPoolMode(), is(msg.getPoolMode()));
+    }
+
+    @Test
+    public void shouldRoundTripMoverInfoMessage() throws Exception
+    {
+        MoverInfoMessage msg =
+                new MoverInfoMessage("pool1", new PnfsId("000000000000000000000000000000000001"));
+        msg.setFileSize(12345);
+        msg.setPath("/pnfs/example.org/data/file");
+        msg.setStorageInfo(new OSMStorageInfo("store", "group", "bfid"));
+        msg.setTransferAttributes(12000, 3000,
+                new DCapProtocolInfo("DCap", 3, 0, new InetSocketAddress("localhost", 22125)));
+        msg.setFileCreated(true);
+        msg.setInitiator("door:dcap@dcapDomain:1");
+        msg.setP2P(true);
+        msg.setTimeQueued(5);
+        msg.setResult(10006, "Disk full");
+        msg.setTransaction("pool:pool1:1-2");
+        msg.setSubject(subject());
+
+        MoverInfoMessage copy = roundTrip(msg, "mover-info-1");
+
+        assertThat(copy.toString(), is(msg.toString()));
+        assertThat(copy.getCellName(), is("pool1"));
+        assertThat(copy.getPnfsId(), is(msg.getPnfsId()));
+        assertThat(copy.getPath(), is(msg.getPath()));
+        assertThat(copy.getFileSize(), is(12345L));
+        assertThat(copy.getStorageInfo(), is(msg.getStorageInfo()));
+        assertThat(copy.getDataTransferred(), is(12000L));
+        assertThat(copy.getConnectionTime(), is(3000L));
+        assertThat(copy.getProtocolInfo().toString(), is(msg.getProtocolInfo().toString()));
+        assertThat(copy.isFileCreated(), is(true));
+        assertThat(copy.isP2P(), is(true));
+        assertThat(copy.getTimeQueued(), is(5L));
+        assertThat(copy.getResultCode(), is(10006));
+        assertThat(copy.getMessage(), is("Disk full"));
+        assertThat(copy.getTimestamp(), is(msg.getTimestamp()));
+        assertThat(copy.getTransaction(), is("pool:pool1:1-2"));
+        assertThat(copy.getSubject(), is(msg.getSubject()));
+    }
+
+    @Test
+    public void shouldRoundTripDoorRequestInfoMessage() throws Exception
+    {
+        DoorRequestInfoMessage msg = new DoorRequestInfoMessage("dcap", "remove");
+        msg.setClient("192.168.1.1");
+        msg.setTransactionDuration(77);
+        msg.setSubject(subject());
+
+        DoorRequestInfoMessage copy = roundTrip(msg, "door-request-info-1");
+
+        assertThat(copy.toString(), is(msg.toString()));
+        assertThat(copy.getCellName(), is("dcap"));
+        assertThat(copy.getMessageType(), is("remove"));
+        assertThat(copy.getCellType(), is("door"));
+        assertThat(copy.getPnfsId(), is(nullValue()));
+        assertThat(copy.getStorageInfo(), is(nullValue()));
+        assertThat(copy.getClient(), is("192.168.1.1"));
+        assertThat(copy.getTransactionDuration(), is(77L));
+        assertThat(copy.getTransaction(), is(msg.getTransaction()));
+        assertThat(copy.getUid(), is(1000));
+    }
+
+    @Test
+    public void shouldRoundTripSelectReadPoolMessage() throws Exception
+    {
+        FileAttributes attributes = fileAttributes();
+        attributes.setLocations(ImmutableSet.of("pool1", "pool2"));
+        PoolMgrSelectReadPoolMsg msg =
+                new PoolMgrSelectReadPoolMsg(attributes,
+                        new DCapProtocolInfo("DCap", 3, 0, new InetSocketAddress("localhost", 22125)),
+                        new PoolMgrSelectReadPoolMsg.Context(2, "host1", "pool3"),
+                        EnumSet.of(RequestState.ST_INIT, RequestState.ST_STAGE));
+        msg.setIoQueueName("regular");
+        msg.setPnfsPath("/pnfs/example.org/data/file");
+        msg.setSkipCostUpdate(true);
+        msg.setPoolName("pool2");
+        msg.setPoolAddress(new CellAddressCore("pool2", "poolDomain"));
+        msg.setReply();
+        msg.setSubject(subject());
+
+        PoolMgrSelectReadPoolMsg copy = roundTrip(msg, "select-read-pool-1");
+
+        assertThat(copy.toString(), is(msg.toString()));
+        assertThat(copy.getFileAttributes().toString(), is(attributes.toString()));
+        assertThat(copy.getProtocolInfo().toString(), is(msg.getProtocolInfo().toString()));
+        assertThat(copy.getAllowedStates(), is(msg.getAllowedStates()));
+        assertThat(copy.getIoQueueName(), is("regular"));
+        assertThat(copy.getPnfsPath(), is("/pnfs/example.org/data/file"));
+        assertThat(copy.getLinkGroup(), is(nullValue()));
+        assertThat(copy.getSkipCostUpdate(), is(true));
+        assertThat(copy.getPoolName(), is("pool2"));
+        assertThat(copy.getPoolAddress(), is(msg.getPoolAddress()));
+        assertThat(copy.getContext().getRetryCounter(), is(2));
+        assertThat(copy.getContext().getPreviousStageHost(), is("host1"));
+        assertThat(copy.getContext().getPreviousStagePool(), is("pool3"));
+        assertThat(copy.isReply(), is(true));
+        assertThat(copy.getReplyRequired(), is(true));
+        assertThat(copy.getSubject(), is(msg.getSubject()));
+    }
+
+    @Test
+    public void shouldRoundTripGetFileAttributesRequest() throws Exception
+    {
+        PnfsGetFileAttributes msg =
+                new PnfsGetFileAttributes(new PnfsId("000000000000000000000000000000000001"),
+                                          EnumSet.of(FileAttribute.SIZE, FileAttribute.PNFSID));
+        msg.setAccessMask(EnumSet.of(AccessMask.READ_DATA));
+        msg.setSubject(subject());
+
+        PnfsGetFileAttributes copy = roundTrip(msg, "pnfs-get-file-attributes-1");
+
+        assertThat(copy.getPnfsId(), is(msg.getPnfsId()));
+        assertThat(copy.getPnfsPath(), is(nullValue()));
+        assertThat(copy.getRequestedAttributes(), is(msg.getRequestedAttributes()));
+        assertThat(copy.getAccessMask(), is(msg.getAccessMask()));
+        assertThat(copy.getFileAttributes(), is(nullValue()));
+        assertThat(copy.getReplyRequired(), is(true));
+        assertThat(copy.getSubject(), is(msg.getSubject()));
+    }
+
+    @Test
+    public void shouldRoundTripGetFileAttributesReply() throws Exception
+    {
+        PnfsGetFileAttributes msg =
+                new PnfsGetFileAttributes("/pnfs/example.org/data/file",
+                                          EnumSet.noneOf(FileAttribute.class));
+        msg.setFileAttributes(fileAttributes());
+        msg.setFailed(10001, "No such file");
+
+        PnfsGetFileAttributes copy = roundTrip(msg, "pnfs-get-file-attributes-1");
+
+        assertThat(copy.toString(), is(msg.toString()));
+        assertThat(copy.getPnfsId(), is(nullValue()));
+        assertThat(copy.getPnfsPath(), is("/pnfs/example.org/data/file"));
+        assertThat(copy.getRequestedAttributes(), is(msg.getRequestedAttributes()));
+        assertThat(copy.getAccessMask(), is(msg.getAccessMask()));
+        assertThat(copy.getFileAttributes().toString(), is(msg.getFileAttributes().toString()));
+        assertThat(copy.isReply(), is(true));
+        assertThat(copy.getReturnCode(), is(10001));
+        assertThat(copy.getErrorObject(), is((Object) "No such file"));
+    }
+
+    @Test
+    public void shouldJavaSerializePayloadWhenEnvelopeIsJavaSerialized() throws Exception
+    {
+        DoorRequestInfoMessage msg = new DoorRequestInfoMessage("dcap");
+        msg.setClient("192.168.1.1");
+        CellMessage encoded = new CellMessage(new CellPath("billing"), msg).encode();
+
+        ByteArrayOutputStream array = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(array)) {
+            out.writeObject(encoded);
+        }
+        CellMessage copy;
+        try (ObjectInputStream in =
+                     new ObjectInputStream(new ByteArrayInputStream(array.toByteArray()))) {
+            copy = (CellMessage) in.readObject();
+        }
+
+        assertThat(copy.getUOID(), is(encoded.getUOID()));
+        assertThat(copy.getPayloadCodec(), is(nullValue()));
+        DoorRequestInfoMessage payload = (DoorRequestInfoMessage) copy.decode().getMessageObject();
+        assertThat(payload.getClient(), is("192.168.1.1"));
+    }
+}
@@ -9,6 +9,7 @@ import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -43,6 +44,8 @@ import diskCacheV111.vehicles.HttpProtocolInfo;
 
 import org.dcache.pool.movers.IoMode;
 import org.dcache.pool.movers.MoverChannel;
+import org.dcache.pool.movers.RepositoryFileRegion;
+import org.dcache.pool.repository.RepositoryChannel;
 import org.dcache.util.Checksum;
 import org.dcache.util.ChecksumType;
 import org.dcache.vehicles.FileAttributes;
@@ -153,6 +156,25 @@ public class HttpPoolRequestHandlerTests
         assertThat(_additionalWrites.get(0), isCompleteRead("/path/to/file"));
     }
 
+    @Test
+    public void shouldDeliverFileRegionIfZeroCopyIsEnabled()
+            throws URISyntaxException
+    {
+        givenZeroCopyIsEnabled();
+        givenPoolHas(file("/path/to/file").withSize(100));
+        givenDoorHasOrganisedReadOf(file("/path/to/file").with(SOME_UUID));
+
+        whenClientMakes(a(GET).
+                forUri("/path/to/file?dcache-http-uuid="+SOME_UUID));
+
+        assertThat(_response.getStatus(), is(OK));
+        assertThat(_response, hasHeader(CONTENT_LENGTH, "100"));
+
+        assertThat(_additionalWrites, hasSize(1));
+        assertThat(_additionalWrites.get(0), is(instanceOf(RepositoryFileRegion.class)));
+        assertThat(_additionalWrites.get(0), isCompleteRead("/path/to/file"));
+    }
+
     @Test
     public void shouldDeliverCompleteFileWithChecksumIfReceivesRequestForWholeFileWithChecksum()
             throws URISyntaxException
@@ -454,6 +476,12 @@ public class HttpPoolRequestHandlerTests
         assertThat(_response, hasHeader(CONTENT_LENGTH));
     }
 
+    private void givenZeroCopyIsEnabled()
+    {
+        _handler = new HttpPoolRequestHandler(_server, SOME_CHUNK_SIZE,
+                HeapChannelBufferFactory.getInstance(), true);
+    }
+
     private void givenPoolHas(FileInfo file)
     {
         _files.put(file.getPath(), file);
@@ -865,22 +893,32 @@ public class HttpPoolRequestHandlerTests
         @Override
         public boolean matches(Object o)
         {
+            if (o instanceof RepositoryFileRegion) {
+                RepositoryFileRegion region = (RepositoryFileRegion) o;
+                return isFromPath(region.getChannel()) &&
+                        region.getPosition() == _lower &&
+                        region.getCount() == _upper - _lower + 1;
+            }
+
             if(!(o instanceof ReusableChunkedNioFile)) {
                 return false;
             }
 
             ReusableChunkedNioFile ci = (ReusableChunkedNioFile) o;
 
-            MoverChannel<HttpProtocolInfo> channel =
-                (MoverChannel<HttpProtocolInfo>) ci.getChannel();
-
-            if(!_path.equals(channel.getProtocolInfo().getPath())) {
+            if(!isFromPath(ci.getChannel())) {
                 return false;
             }
 
             return ci.getOffset() == _lower && ci.getEndOffset() == _upper + 1;
         }
 
+        private boolean isFromPath(RepositoryChannel channel)
+        {
+            return _path.equals(((MoverChannel<HttpProtocolInfo>) channel)
+                    .getProtocolInfo().getPath());
+        }
+
         @Override
         public void describeTo(Description d)
         {
@@ -0,0 +1,119 @@
+package org.dcache.http;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+
+import org.dcache.pool.repository.RepositoryChannel;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReusableChunkedNioFileTest
+{
+    private static final int FILE_SIZE = 100;
+
+    private byte[] _data;
+    private RepositoryChannel _channel;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        _data = new byte[FILE_SIZE];
+        for (int i = 0; i < _data.length; i++) {
+            _data[i] = (byte) i;
+        }
+        _channel = mock(RepositoryChannel.class);
+        when(_channel.isOpen()).thenReturn(true);
+        givenChannelReadsAtMost(FILE_SIZE);
+    }
+
+    /**
+     * Let each positional read return at most max bytes, like a
+     * channel returning short reads.
+     */
+    private void givenChannelReadsAtMost(final int max) throws Exception
+    {
+        doAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation)
+            {
+                ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+                int position = (int) (long) (Long) invocation.getArguments()[1];
+                if (position >= _data.length) {
+                    return -1;
+                }
+                int length = Math.min(Math.min(max, buffer.remaining()),
+                                      _data.length - position);
+                buffer.put(_data, position, length);
+                return length;
+            }
+        }).when(_channel).read(any(ByteBuffer.class), anyLong());
+    }
+
+    @Test
+    public void shouldDeliverRangeInChunks() throws Exception
+    {
+        ReusableChunkedNioFile file =
+            new ReusableChunkedNioFile(_channel, 10, 50, 16);
+
+        assertContent(file, 10, 50, 16);
+    }
+
+    @Test
+    public void shouldCompleteChunksFromShortReads() throws Exception
+    {
+        givenChannelReadsAtMost(3);
+        ReusableChunkedNioFile file =
+            new ReusableChunkedNioFile(_channel, 10, 50, 16);
+
+        assertContent(file, 10, 50, 16);
+    }
+
+    @Test
+    public void shouldDeliverChunksFromDirectBuffers() throws Exception
+    {
+        ReusableChunkedNioFile file =
+            new ReusableChunkedNioFile(_channel, 0, FILE_SIZE, 16,
+                                       new DirectChannelBufferFactory(64));
+
+        assertContent(file, 0, FILE_SIZE, 16);
+    }
+
+    @Test(expected=EOFException.class)
+    public void shouldFailIfFileIsShorterThanRange() throws Exception
+    {
+        ReusableChunkedNioFile file =
+            new ReusableChunkedNioFile(_channel, 90, 20, 16);
+
+        file.nextChunk();
+    }
+
+    private void assertContent(ReusableChunkedNioFile file,
+                               int offset, int length, int chunkSize)
+        throws Exception
+    {
+        int position = offset;
+        while (file.hasNextChunk()) {
+            ChannelBuffer chunk = (ChannelBuffer) file.nextChunk();
+            assertThat(chunk.readableBytes(),
+                       is(Math.min(chunkSize, offset + length - position)));
+            while (chunk.readable()) {
+                assertThat(chunk.readByte(), is(_data[position++]));
+            }
+        }
+        assertThat(position, is(offset + length));
+        assertThat(file.isEndOfInput(), is(true));
+    }
+}
@@ -0,0 +1,104 @@
+package org.dcache.pool.classic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import diskCacheV111.util.PnfsId;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class LruIndexTest
+{
+    private LruIndex _index;
+
+    @Before
+    public void setUp()
+    {
+        _index = new LruIndex();
+    }
+
+    private static PnfsId id(int i)
+    {
+        return new PnfsId(String.format("0000%032X", i));
+    }
+
+    @Test
+    public void shouldBeEmptyInitially()
+    {
+        assertThat(_index.size(), is(0));
+        assertThat(_index.peekFirst(), is(nullValue()));
+        assertThat(_index.toList(), is(empty()));
+    }
+
+    @Test
+    public void shouldPreserveInsertionOrder()
+    {
+        assertThat(_index.add(id(3)), is(true));
+        assertThat(_index.add(id(1)), is(true));
+        assertThat(_index.add(id(2)), is(true));
+        assertThat(_index.add(id(1)), is(false));
+        assertThat(_index.toList(), contains(id(3), id(1), id(2)));
+        assertThat(_index.peekFirst(), is(id(3)));
+    }
+
+    @Test
+    public void shouldMoveToTail()
+    {
+        _index.add(id(1));
+        _index.add(id(2));
+        _index.add(id(3));
+        assertThat(_index.moveToTail(id(1)), is(true));
+        assertThat(_index.moveToTail(id(4)), is(false));
+        assertThat(_index.toList(), contains(id(2), id(3), id(1)));
+    }
+
+    @Test
+    public void shouldRemove()
+    {
+        _index.add(id(1));
+        _index.add(id(2));
+        _index.add(id(3));
+        assertThat(_index.remove(id(2)), is(true));
+        assertThat(_index.remove(id(2)), is(false));
+        assertThat(_index.contains(id(2)), is(false));
+        assertThat(_index.toList(), contains(id(1), id(3)));
+        assertThat(_index.size(), is(2));
+    }
+
+    @Test
+    public void shouldBehaveLikeLinkedHashSet()
+    {
+        Random random = new Random(42);
+        Set<PnfsId> expected = new LinkedHashSet<>();
+        for (int i = 0; i < 100000; i++) {
+            PnfsId id = id(random.nextInt(5000));
+            switch (random.nextInt(3)) {
+            case 0:
+                assertThat(_index.add(id), is(expected.add(id)));
+                break;
+            case 1:
+                assertThat(_index.remove(id), is(expected.remove(id)));
+                break;
+            default:
+                boolean present = expected.remove(id);
+                if (present) {
+                    expected.add(id);
+                }
+                assertThat(_index.moveToTail(id), is(present));
+                break;
+            }
+        }
+        assertThat(_index.size(), is(expected.size()));
+        assertThat(_index.toList(), is((List<PnfsId>) new ArrayList<>(expected)));
+    }
+}
@@ -0,0 +1,257 @@
+package org.dcache.pool.p2p;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.handler.codec.http.DefaultHttpChunk;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.dcache.pool.repository.FileRepositoryChannel;
+import org.dcache.pool.repository.RepositoryChannel;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.*;
+
+public class HttpDownloadClientTest
+{
+    private static final URI SOURCE =
+        URI.create("http://pool.example.org:20000/pool/p2p?id=1");
+    private static final byte[] DATA = new byte[100];
+
+    static {
+        for (int i = 0; i < DATA.length; i++) {
+            DATA[i] = (byte) i;
+        }
+    }
+
+    private File _file;
+    private RepositoryChannel _channel;
+    private CompletionHandler<Long,Void> _handler;
+    private Channel _connection;
+    private ChannelHandlerContext _ctx;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception
+    {
+        _file = File.createTempFile("p2p", null);
+        _channel = new FileRepositoryChannel(_file, "rw");
+        _handler = mock(CompletionHandler.class);
+        _connection = mock(Channel.class);
+        _ctx = mock(ChannelHandlerContext.class);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        _channel.close();
+        _file.delete();
+    }
+
+    @Test
+    public void shouldRequestFileWithoutRangeWhenStartingAtZero() throws Exception
+    {
+        HttpDownloadClient.Download download = newDownload(SOURCE, 0, null);
+
+        HttpRequest request = connect(download);
+
+        assertThat(request.getUri(), is("/pool/p2p?id=1"));
+        assertThat(request.getHeader(HttpHeaders.Names.RANGE), is(nullValue()));
+    }
+
+    @Test
+    public void shouldIncludeNonDefaultPortInHostHeader() throws Exception
+    {
+        HttpRequest request = connect(newDownload(SOURCE, 0, null));
+
+        assertThat(request.getHeader(HttpHeaders.Names.HOST), is("pool.example.org:20000"));
+    }
+
+    @Test
+    public void shouldOmitDefaultPortFromHostHeader() throws Exception
+    {
+        URI uri = URI.create("http://pool.example.org/pool/p2p?id=1");
+
+        HttpRequest request = connect(newDownload(uri, 0, null));
+
+        assertThat(request.getHeader(HttpHeaders.Names.HOST), is("pool.example.org"));
+    }
+
+    @Test
+    public void shouldWriteAndDigestCompleteFile() throws Exception
+    {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        HttpDownloadClient.Download download = newDownload(SOURCE, 0, digest);
+        connect(download);
+
+        receive(download, response(HttpResponseStatus.OK, 0, DATA.length));
+
+        verify(_handler).completed(100L, null);
+        verify(_handler, never()).failed(any(Throwable.class), any(Void.class));
+        assertThat(Files.readAllBytes(_file.toPath()), is(DATA));
+        assertThat(digest.digest(), is(MessageDigest.getInstance("MD5").digest(DATA)));
+    }
+
+    @Test
+    public void shouldRequestRemainderWithRangeWhenResuming() throws Exception
+    {
+        HttpDownloadClient.Download download = newDownload(SOURCE, 40, null);
+
+        HttpRequest request = connect(download);
+
+        assertThat(request.getHeader(HttpHeaders.Names.RANGE), is("bytes=40-99"));
+    }
+
+    @Test
+    public void shouldWriteRemainderAtOffsetWhenResuming() throws Exception
+    {
+        HttpDownloadClient.Download download = newDownload(SOURCE, 40, null);
+        connect(download);
+
+        receive(download, response(HttpResponseStatus.PARTIAL_CONTENT, 40, DATA.length));
+
+        verify(_handler).completed(60L, null);
+        byte[] written = Files.readAllBytes(_file.toPath());
+        assertThat(written.length, is(DATA.length));
+        assertThat(Arrays.copyOfRange(written, 40, 100), is(Arrays.copyOfRange(DATA, 40, 100)));
+    }
+
+    @Test
+    public void shouldFailWhenWholeFileIsSentForRangeRequest() throws Exception
+    {
+        HttpDownloadClient.Download download = newDownload(SOURCE, 40, null);
+        connect(download);
+
+        receive(download, response(HttpResponseStatus.OK, 0, DATA.length));
+
+        verify(_handler).failed(isA(IOException.class), any(Void.class));
+        verify(_handler, never()).completed(anyLong(), any(Void.class));
+        assertThat(download.getBytesWritten(), is(0L));
+        assertThat(_file.length(), is(0L));
+    }
+
+    @Test
+    public void shouldFailOnShortBody() throws Exception
+    {
+        HttpDownloadClient.Download download = newDownload(SOURCE, 0, null);
+        connect(download);
+
+        receive(download, response(HttpResponseStatus.OK, 0, 50));
+
+        verify(_handler).failed(isA(IOException.class), any(Void.class));
+        verify(_handler, never()).completed(anyLong(), any(Void.class));
+        assertThat(download.getBytesWritten(), is(50L));
+    }
+
+    @Test
+    public void shouldFailOnOverlongBody() throws Exception
+    {
+        HttpDownloadClient.Download download = newDownload(SOURCE, 0, null);
+        connect(download);
+
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        response.setContent(ChannelBuffers.wrappedBuffer(DATA, new byte[1]));
+        receive(download, response);
+
+        verify(_handler).failed(isA(IOException.class), any(Void.class));
+        verify(_handler, never()).completed(anyLong(), any(Void.class));
+    }
+
+    @Test
+    public void shouldFailWithBytesWrittenWhenConnectionClosesEarly() throws Exception
+    {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        HttpDownloadClient.Download download = newDownload(SOURCE, 0, digest);
+        connect(download);
+
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        response.setChunked(true);
+        receive(download, response);
+        receive(download, new DefaultHttpChunk(ChannelBuffers.wrappedBuffer(DATA, 0, 30)));
+        download.channelClosed(_ctx, stateEvent());
+
+        verify(_handler).failed(isA(EOFException.class), any(Void.class));
+        assertThat(download.getBytesWritten(), is(30L));
+        MessageDigest expected = MessageDigest.getInstance("MD5");
+        expected.update(DATA, 0, 30);
+        assertThat(digest.digest(), is(expected.digest()));
+    }
+
+    @Test
+    public void shouldResumeIOErrorsForAtMostThreeAttempts()
+    {
+        IOException error = new EOFException();
+        assertThat(Companion.isResumable(error, false, true, 1), is(true));
+        assertThat(Companion.isResumable(error, false, true, 2), is(true));
+        assertThat(Companion.isResumable(error, false, true, 3), is(false));
+    }
+
+    @Test
+    public void shouldNotResumeInterruptedOrFailedTransfers()
+    {
+        assertThat(Companion.isResumable(new EOFException(), true, true, 1), is(false));
+        assertThat(Companion.isResumable(new EOFException(), false, false, 1), is(false));
+        assertThat(Companion.isResumable(new IllegalStateException(), false, true, 1), is(false));
+    }
+
+    private HttpDownloadClient.Download newDownload(URI uri, long offset, MessageDigest digest)
+    {
+        HttpDownloadClient.Download download =
+            new HttpDownloadClient.Download(uri, _channel, offset, DATA.length, digest, _handler);
+        download.channelOpen(_ctx, stateEvent());
+        return download;
+    }
+
+    private HttpRequest connect(HttpDownloadClient.Download download)
+    {
+        download.channelConnected(_ctx, stateEvent());
+        ArgumentCaptor<HttpRequest> request = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(_connection).write(request.capture());
+        return request.getValue();
+    }
+
+    private void receive(HttpDownloadClient.Download download, Object message)
+    {
+        MessageEvent event = mock(MessageEvent.class);
+        when(event.getMessage()).thenReturn(message);
+        download.messageReceived(_ctx, event);
+    }
+
+    private ChannelStateEvent stateEvent()
+    {
+        ChannelStateEvent event = mock(ChannelStateEvent.class);
+        when(event.getChannel()).thenReturn(_connection);
+        return event;
+    }
+
+    private static HttpResponse response(HttpResponseStatus status, int from, int to)
+    {
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+        response.setContent(ChannelBuffers.wrappedBuffer(DATA, from, to - from));
+        return response;
+    }
+}
@@ -0,0 +1,95 @@
+package org.dcache.pool.repository.meta.db;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import diskCacheV111.util.PnfsId;
+
+import org.dcache.pool.repository.FileStore;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class BerkeleyDBMetaDataRepositoryTest
+{
+    private static final PnfsId ID = new PnfsId("000000000000000000000000000000000001");
+
+    private File _dir;
+    private File _file;
+    private long _accessTime;
+    private BerkeleyDBMetaDataRepository _repository;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        _dir = Files.createTempDirectory("meta-db").toFile();
+        _file = new File(_dir, ID.toString());
+        _file.createNewFile();
+        /* An hour ago, truncated to the resolution of file times.
+         */
+        _accessTime = (System.currentTimeMillis() / 1000 - 3600) * 1000;
+
+        FileStore fileStore = mock(FileStore.class);
+        when(fileStore.get(ID)).thenReturn(_file);
+        _repository = new BerkeleyDBMetaDataRepository(fileStore, _dir);
+    }
+
+    @After
+    public void tearDown()
+        throws IOException
+    {
+        if (_repository != null) {
+            _repository.close();
+        }
+        delete(_dir);
+    }
+
+    private static void delete(File file)
+    {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child: files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void shouldWriteAccessTimeImmediatelyByDefault()
+        throws Exception
+    {
+        _repository.init();
+
+        _repository.setLastAccessTime(ID, _file, _accessTime);
+
+        assertThat(_file.lastModified(), is(_accessTime));
+    }
+
+    @Test
+    public void shouldFlushDeferredAccessTimesOnClose()
+        throws Exception
+    {
+        _repository.setAccessTimeFlushInterval(1);
+        _repository.setAccessTimeFlushIntervalUnit(TimeUnit.HOURS);
+        _repository.init();
+
+        _repository.setLastAccessTime(ID, _file, _accessTime);
+
+        assertThat(_file.lastModified(), is(not(_accessTime)));
+        assertThat(_repository.getLastAccessTime(ID, _file), is(_accessTime));
+
+        _repository.close();
+        _repository = null;
+
+        assertThat(_file.lastModified(), is(_accessTime));
+    }
+}
@@ -0,0 +1,146 @@
+package org.dcache.pool.repository.meta.db;
+
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentMutableConfig;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class CommitCoordinatorTest
+{
+    private Environment _env;
+    private CommitCoordinator _coordinator;
+    private final AtomicReference<Throwable> _failure = new AtomicReference<>();
+
+    @Before
+    public void setUp()
+    {
+        _env = mock(Environment.class);
+        when(_env.getMutableConfig()).thenReturn(new EnvironmentMutableConfig());
+        _coordinator = new CommitCoordinator(_env);
+    }
+
+    @Test
+    public void shouldNotForceLogForSynchronousCommits()
+    {
+        _coordinator.committed(_coordinator.begin());
+
+        verify(_env, never()).flushLog(anyBoolean());
+    }
+
+    @Test
+    public void shouldForceLogBeforeGroupCommitReturns()
+    {
+        _coordinator.setMode(CommitCoordinator.Mode.GROUP);
+
+        _coordinator.committed(_coordinator.begin());
+
+        verify(_env).flushLog(true);
+    }
+
+    @Test
+    public void shouldShareLogFlushBetweenConcurrentGroupCommits()
+        throws Exception
+    {
+        _coordinator.setMode(CommitCoordinator.Mode.GROUP);
+        final CountDownLatch flushing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation)
+                throws InterruptedException
+            {
+                flushing.countDown();
+                release.await();
+                return null;
+            }
+        }).when(_env).flushLog(true);
+
+        /* The first commit forces the log and blocks while doing so.
+         */
+        Thread first = startCommit();
+        flushing.await();
+
+        /* Commits made while the log is forced wait for the next
+         * force.
+         */
+        List<Thread> waiting = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            waiting.add(startCommit());
+        }
+        for (Thread thread: waiting) {
+            while (thread.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+        }
+        assertThat(first.isAlive(), is(true));
+
+        release.countDown();
+        first.join();
+        for (Thread thread: waiting) {
+            thread.join();
+        }
+
+        /* One force for the first commit and a single shared force for
+         * the three others.
+         */
+        assertThat(_failure.get(), is(nullValue()));
+        verify(_env, times(2)).flushLog(true);
+    }
+
+    @Test
+    public void shouldForceLogOnFlushInWriteNoSyncMode()
+    {
+        _coordinator.setMode(CommitCoordinator.Mode.WRITE_NO_SYNC);
+        _coordinator.committed(_coordinator.begin());
+        _coordinator.committed(_coordinator.begin());
+
+        verify(_env, never()).flushLog(anyBoolean());
+
+        _coordinator.flush();
+        verify(_env, times(1)).flushLog(true);
+
+        /* Nothing was committed since the last force.
+         */
+        _coordinator.flush();
+        verify(_env, times(1)).flushLog(true);
+    }
+
+    @Test
+    public void shouldForcePendingCommitsWhenSwitchingToSync()
+    {
+        _coordinator.setMode(CommitCoordinator.Mode.WRITE_NO_SYNC);
+        _coordinator.committed(_coordinator.begin());
+
+        _coordinator.setMode(CommitCoordinator.Mode.SYNC);
+
+        verify(_env).flushLog(true);
+    }
+
+    private Thread startCommit()
+    {
+        Thread thread = new Thread() {
+            @Override
+            public void run()
+            {
+                try {
+                    _coordinator.committed(_coordinator.begin());
+                } catch (RuntimeException e) {
+                    _failure.set(e);
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,185 @@
+package org.dcache.pool.repository.meta.log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.vehicles.GenericStorageInfo;
+import diskCacheV111.vehicles.StorageInfo;
+
+import org.dcache.pool.repository.EntryState;
+import org.dcache.pool.repository.StickyRecord;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class MetaDataLogTest
+{
+    private static final PnfsId ID1 = new PnfsId("000000000000000000000000000000000001");
+    private static final PnfsId ID2 = new PnfsId("000000000000000000000000000000000002");
+
+    private static final List<StickyRecord> NO_STICKY =
+        Collections.emptyList();
+
+    private File _dir;
+    private File _file;
+    private MetaDataLog _log;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        _dir = Files.createTempDirectory("meta-log").toFile();
+        _file = new File(_dir, "meta.log");
+        _log = new MetaDataLog(_file);
+    }
+
+    @After
+    public void tearDown()
+        throws IOException
+    {
+        _log.close();
+        for (File file: _dir.listFiles()) {
+            file.delete();
+        }
+        _dir.delete();
+    }
+
+    private void reopen()
+        throws IOException
+    {
+        _log.close();
+        _log = new MetaDataLog(_file);
+    }
+
+    @Test
+    public void shouldRecoverStateAfterReopen()
+        throws IOException
+    {
+        List<StickyRecord> sticky =
+            Collections.singletonList(new StickyRecord("system", -1));
+        _log.writeState(ID1, 42, EntryState.FROM_CLIENT, NO_STICKY);
+        _log.writeState(ID1, 42, EntryState.PRECIOUS, sticky);
+        _log.writeStorageInfo(ID1, new GenericStorageInfo("osm", "a:b@osm"));
+        _log.writeState(ID2, 43, EntryState.CACHED, NO_STICKY);
+        _log.remove(ID2);
+
+        reopen();
+
+        assertThat(_log.ids(), contains(ID1));
+        MetaDataLog.Entry entry = _log.get(ID1);
+        assertThat(entry.getState(), is(EntryState.PRECIOUS));
+        assertThat(entry.getCreationTime(), is(42L));
+        assertThat(entry.getStickyRecords().size(), is(1));
+        assertThat(entry.getStickyRecords().get(0).owner(), is("system"));
+        StorageInfo info = _log.readStorageInfo(ID1);
+        assertThat(info.getStorageClass(), is("a:b@osm"));
+        assertThat(_log.get(ID2), is(nullValue()));
+    }
+
+    @Test
+    public void shouldClearStorageInfo()
+        throws IOException
+    {
+        _log.writeState(ID1, 42, EntryState.CACHED, NO_STICKY);
+        _log.writeStorageInfo(ID1, new GenericStorageInfo("osm", "a:b@osm"));
+        _log.writeStorageInfo(ID1, null);
+
+        reopen();
+
+        assertThat(_log.readStorageInfo(ID1), is(nullValue()));
+    }
+
+    @Test
+    public void shouldDiscardIncompleteTail()
+        throws IOException
+    {
+        _log.writeState(ID1, 42, EntryState.CACHED, NO_STICKY);
+        long valid = _log.size();
+        _log.writeState(ID2, 43, EntryState.CACHED, NO_STICKY);
+        _log.close();
+
+        /* Simulate a crash in the middle of the second append.
+         */
+        try (RandomAccessFile file = new RandomAccessFile(_file, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        _log = new MetaDataLog(_file);
+        assertThat(_log.ids(), contains(ID1));
+        assertThat(_log.size(), is(valid));
+        assertThat(_file.length(), is(valid));
+
+        _log.writeState(ID2, 43, EntryState.CACHED, NO_STICKY);
+        reopen();
+        assertThat(_log.ids(), containsInAnyOrder(ID1, ID2));
+    }
+
+    @Test
+    public void shouldDiscardCorruptRecord()
+        throws IOException
+    {
+        _log.writeState(ID1, 42, EntryState.CACHED, NO_STICKY);
+        long valid = _log.size();
+        _log.writeState(ID2, 43, EntryState.CACHED, NO_STICKY);
+        _log.close();
+
+        long size = _file.length();
+        try (RandomAccessFile file = new RandomAccessFile(_file, "rw")) {
+            file.seek(file.length() - 1);
+            int b = file.read();
+            file.seek(file.length() - 1);
+            file.write(b ^ 0xff);
+        }
+
+        _log = new MetaDataLog(_file);
+        assertThat(_log.ids(), contains(ID1));
+        assertThat(_log.size(), is(valid));
+
+        File[] discarded = _dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name)
+            {
+                return name.startsWith(_file.getName() + ".discarded-");
+            }
+        });
+        assertThat(discarded.length, is(1));
+        assertThat(discarded[0].length(), is(size - valid));
+    }
+
+    @Test
+    public void shouldReclaimGarbageOnCompaction()
+        throws IOException
+    {
+        _log.writeStorageInfo(ID1, new GenericStorageInfo("osm", "a:b@osm"));
+        for (int i = 0; i < 100; i++) {
+            _log.writeState(ID1, 42, EntryState.CACHED, NO_STICKY);
+            _log.writeState(ID2, 43, EntryState.CACHED, NO_STICKY);
+        }
+        _log.remove(ID2);
+        long before = _log.size();
+
+        _log.compact();
+
+        assertThat(_log.size(), is(lessThan(before)));
+        assertThat(_log.size(), is(_log.getLiveBytes()));
+        assertThat(_file.length(), is(_log.size()));
+        assertThat(_log.readStorageInfo(ID1).getStorageClass(), is("a:b@osm"));
+
+        _log.writeState(ID1, 42, EntryState.PRECIOUS, NO_STICKY);
+        reopen();
+
+        assertThat(_log.ids(), contains(ID1));
+        assertThat(_log.get(ID1).getState(), is(EntryState.PRECIOUS));
+        assertThat(_log.readStorageInfo(ID1).getStorageClass(), is("a:b@osm"));
+    }
+}
@@ -1,10 +1,19 @@
 package org.dcache.poolmanager;
 
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
 import diskCacheV111.pools.PoolCostInfo;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 public class WeightedAvailableSpaceSelectionTest
 {
@@ -60,4 +69,154 @@ public class WeightedAvailableSpaceSelectionTest
     {
         checkAvailable(0, 1000000, 500000, 0.5, (7 * 24 * 3600), 1500000);
     }
+
+    private static PoolCostInfo pool(String name, long free, long gap)
+    {
+        PoolCostInfo info = new PoolCostInfo(name);
+        info.setSpaceUsage(free, free, 0, 0, 0);
+        info.getSpaceInfo().setParameter(0.0, gap);
+        return info;
+    }
+
+    private static PoolCostInfo select(final double random,
+                                       List<PoolCostInfo> pools, long size)
+    {
+        WeightedAvailableSpaceSelection wass =
+            new WeightedAvailableSpaceSelection(1.0, 1.0) {
+                @Override
+                protected double random()
+                {
+                    return random;
+                }
+            };
+        Function<PoolCostInfo,PoolCostInfo> identity = Functions.identity();
+        return wass.selectByAvailableSpace(pools, size, identity);
+    }
+
+    @Test
+    public void testSelectionIsProportionalToAvailableSpace()
+    {
+        PoolCostInfo a = pool("a", 1000, 0);
+        PoolCostInfo b = pool("b", 2000, 0);
+        PoolCostInfo c = pool("c", 3000, 0);
+        List<PoolCostInfo> pools = Arrays.asList(a, b, c);
+
+        assertEquals(a, select(0.0, pools, 0));
+        assertEquals(a, select(0.16, pools, 0));
+        assertEquals(b, select(0.17, pools, 0));
+        assertEquals(b, select(0.49, pools, 0));
+        assertEquals(c, select(0.5, pools, 0));
+        assertEquals(c, select(0.99, pools, 0));
+    }
+
+    @Test
+    public void testFullPoolsAreSkipped()
+    {
+        PoolCostInfo a = pool("a", 1000, 0);
+        PoolCostInfo b = pool("b", 2000, 2000);
+        PoolCostInfo c = pool("c", 3000, 0);
+        List<PoolCostInfo> pools = Arrays.asList(a, b, c);
+
+        assertEquals(a, select(0.24, pools, 0));
+        assertEquals(c, select(0.26, pools, 0));
+        assertEquals(c, select(0.24, pools, 1000));
+    }
+
+    @Test
+    public void testAllPoolsFull()
+    {
+        List<PoolCostInfo> pools =
+            Arrays.asList(pool("a", 1000, 1000), pool("b", 2000, 2000));
+
+        assertNull(select(0.5, pools, 0));
+    }
+
+    @Test
+    public void testWeightIsUpdatedWhenSpaceChanges()
+    {
+        PoolCostInfo a = pool("a", 1000, 0);
+        PoolCostInfo b = pool("b", 1000, 0);
+        List<PoolCostInfo> pools = Arrays.asList(a, b);
+
+        assertEquals(b, select(0.6, pools, 0));
+
+        a.setSpaceUsage(3000, 3000, 0, 0, 0);
+
+        assertEquals(a, select(0.6, pools, 0));
+    }
+
+    /**
+     * Selects a pool the way it was done before weights were cached:
+     * weights are computed from scratch and the threshold is located
+     * by a linear scan.
+     */
+    private static PoolCostInfo selectByLinearScan(WeightedAvailableSpaceSelection wass,
+                                                   double random,
+                                                   List<PoolCostInfo> pools, long size,
+                                                   double performanceCostFactor,
+                                                   double spaceCostFactor)
+    {
+        double[] available = new double[pools.size()];
+        double sum = 0.0;
+        for (int i = 0; i < available.length; i++) {
+            PoolCostInfo info = pools.get(i);
+            double space = wass.getAvailable(info.getSpaceInfo(), size);
+            double load = performanceCostFactor * info.getMoverCostFactor() * wass.getWriters(info);
+            sum += Math.pow(space, spaceCostFactor) / Math.pow(2.0, load);
+            available[i] = sum;
+        }
+
+        double threshold = random * sum;
+        for (int i = 0; i < available.length; i++) {
+            if (threshold < available[i]) {
+                return pools.get(i);
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testBinarySearchSelectsLikeLinearScan()
+    {
+        List<PoolCostInfo> pools = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            PoolCostInfo info = new PoolCostInfo("pool" + i);
+            long free = (i % 7) * 100000;
+            long removable = (i % 3) * 50000;
+            info.setSpaceUsage(free + removable, free, 0, removable, i * 3600);
+            info.getSpaceInfo().setParameter(0.5, (i % 5 == 0) ? 1000000 : 1000);
+            info.addExtendedMoverQueueSizes("regular", i % 4, 100, 0, 0, i % 4);
+            pools.add(info);
+        }
+        Function<PoolCostInfo,PoolCostInfo> identity = Functions.identity();
+
+        final Random random = new Random(42);
+        WeightedAvailableSpaceSelection wass =
+            new WeightedAvailableSpaceSelection(0.5, 1.0, false) {
+                @Override
+                protected double random()
+                {
+                    return random.nextDouble();
+                }
+            };
+        Random reference = new Random(42);
+
+        int draws = 100000;
+        int[] selected = new int[pools.size()];
+        int[] expected = new int[pools.size()];
+        for (int n = 0; n < draws; n++) {
+            long size = (n % 2) * 20000;
+            PoolCostInfo pool = wass.selectByAvailableSpace(pools, size, identity);
+            PoolCostInfo expectedPool =
+                selectByLinearScan(wass, reference.nextDouble(), pools, size, 0.5, 1.0);
+            assertSame(expectedPool, pool);
+            selected[pools.indexOf(pool)]++;
+            expected[pools.indexOf(expectedPool)]++;
+        }
+
+        assertEquals(Arrays.toString(expected), Arrays.toString(selected));
+        for (int i = 0; i < pools.size(); i += 5) {
+            assertEquals(0, selected[i]);
+        }
+    }
 }
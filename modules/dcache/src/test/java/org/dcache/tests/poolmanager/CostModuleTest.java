@@ -3,19 +3,27 @@ package org.dcache.tests.poolmanager;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.net.InetSocketAddress;
 import java.util.Arrays;
+import java.util.Collections;
 
 import diskCacheV111.poolManager.CostModuleV1;
 import diskCacheV111.pools.CostCalculationV5;
 import diskCacheV111.pools.PoolCostInfo;
 import diskCacheV111.pools.PoolV2Mode;
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.vehicles.DCapProtocolInfo;
+import diskCacheV111.vehicles.OSMStorageInfo;
 import diskCacheV111.vehicles.PoolManagerPoolUpMessage;
+import diskCacheV111.vehicles.PoolMgrSelectReadPoolMsg;
+import diskCacheV111.vehicles.StorageInfo;
 
 import dmg.cells.nucleus.CellAddressCore;
 import dmg.cells.nucleus.CellMessage;
 import dmg.cells.nucleus.CellPath;
 
 import org.dcache.pool.classic.IoQueueManager;
+import org.dcache.vehicles.FileAttributes;
 
 import static org.junit.Assert.*;
 
@@ -194,6 +202,51 @@ public class CostModuleTest {
     }
 
 
+    @Test
+    public void testPercentileAfterPoolUpdate() {
+
+        _costModule.messageArrived(
+                buildEnvelope(POOL_ADDRESS),
+                buildPoolUpMessageWithCostAndQueue(
+                        POOL_NAME,
+                        100, 20, 30, 50,
+                        0, 100, 0,
+                        0, 0, 0,
+                        0, 0, 0));
+        _costModule.messageArrived(
+                buildEnvelope(POOL_ADDRESS_2),
+                buildPoolUpMessageWithCostAndQueue(
+                        POOL_NAME_2,
+                        100, 20, 30, 50,
+                        20, 100, 0,
+                        0, 0, 0,
+                        0, 0, 0));
+
+        // The idle pool becomes the busiest pool
+        _costModule.messageArrived(
+                buildEnvelope(POOL_ADDRESS),
+                buildPoolUpMessageWithCostAndQueue(
+                        POOL_NAME,
+                        100, 20, 30, 50,
+                        80, 100, 0,
+                        0, 0, 0,
+                        0, 0, 0));
+
+        double pool1PerfCost = getPerformanceCostOfPercentileFile( POOL_NAME);
+        double pool2PerfCost = getPerformanceCostOfPercentileFile( POOL_NAME_2);
+        assertTrue( "updated pool is busiest", pool1PerfCost > pool2PerfCost);
+
+        assertPercentileCost( FRACTION_JUST_BELOW_HALF, pool2PerfCost);
+        assertPercentileCost( FRACTION_HALF, pool1PerfCost);
+
+        // Removing a pool removes its cost
+        _costModule.messageArrived(
+                buildEnvelope(POOL_ADDRESS), buildEmptyPoolUpMessage( POOL_NAME, PoolV2Mode.DISABLED_DEAD));
+
+        assertPercentileCost( FRACTION_JUST_BELOW_ONE, pool2PerfCost);
+    }
+
+
     @Test
     public void testThreePoolsThenPercentile() {
 
@@ -243,6 +296,46 @@ public class CostModuleTest {
         assertPercentileCost( FRACTION_JUST_BELOW_ONE, perfCost [2]);
     }
 
+    @Test
+    public void testForwardedMessageDoesNotModifyPublishedCostInfo() {
+
+        _costModule.messageArrived(
+                buildEnvelope(POOL_ADDRESS),
+                buildPoolUpMessageWithCostAndQueue(
+                        POOL_NAME,
+                        100, 20, 30, 50,
+                        0, 100, 0,
+                        0, 0, 0,
+                        0, 0, 0));
+
+        PoolCostInfo before = _costModule.getPoolCostInfo( POOL_NAME);
+
+        FileAttributes attributes = new FileAttributes();
+        attributes.setPnfsId(new PnfsId("000000000000000000000000000000000001"));
+        attributes.setStorageInfo(new OSMStorageInfo("store", "group", "bfid"));
+        attributes.setLocations(Collections.<String>emptyList());
+        attributes.setSize(DEFAULT_FILE_SIZE);
+        attributes.setAccessLatency(StorageInfo.DEFAULT_ACCESS_LATENCY);
+        attributes.setRetentionPolicy(StorageInfo.DEFAULT_RETENTION_POLICY);
+        PoolMgrSelectReadPoolMsg msg =
+                new PoolMgrSelectReadPoolMsg(attributes,
+                        new DCapProtocolInfo("DCap", 3, 0, new InetSocketAddress("localhost", 22125)),
+                        null);
+        msg.setPoolName(POOL_NAME);
+        msg.setReply();
+        _costModule.messageToForward(msg);
+
+        PoolCostInfo after = _costModule.getPoolCostInfo( POOL_NAME);
+
+        assertNotSame( "cost info is replaced", before, after);
+        assertEquals( "published cost info is unchanged", 0,
+                      before.getExtendedMoverHash().get(IoQueueManager.DEFAULT_QUEUE).getActive());
+        assertEquals( "new cost info includes the mover", 1,
+                      after.getExtendedMoverHash().get(IoQueueManager.DEFAULT_QUEUE).getActive());
+        assertPoolSpaceInfo( "pool", after.getSpaceInfo(), 100, 20, 50, 30);
+        assertPercentileCost( FRACTION_JUST_BELOW_ONE, getPerformanceCostOfPercentileFile( POOL_NAME));
+    }
+
     /*
      *  SUPPORT METHODS FOR BUILDING MESSAGES AND ASSERTING
      */
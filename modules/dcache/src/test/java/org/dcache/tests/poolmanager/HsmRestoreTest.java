@@ -1,5 +1,6 @@
 package org.dcache.tests.poolmanager;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -12,6 +13,8 @@ import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import diskCacheV111.poolManager.CostModuleV1;
@@ -36,24 +39,22 @@ import dmg.cells.nucleus.CellMessage;
 import dmg.cells.nucleus.CellPath;
 import dmg.util.Args;
 
+import org.dcache.commons.stats.MetricsRegistry;
 import org.dcache.namespace.FileAttribute;
 import org.dcache.pool.classic.IoQueueManager;
 import org.dcache.poolmanager.PartitionManager;
 import org.dcache.tests.cells.GenericMockCellHelper;
 import org.dcache.tests.cells.GenericMockCellHelper.MessageAction;
-import org.dcache.tests.util.CurrentThreadExceutorHelper;
 import org.dcache.vehicles.FileAttributes;
 import org.dcache.vehicles.PnfsGetFileAttributes;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class HsmRestoreTest {
 
     private static int _counter;
-//    retry intervall of RequestContainer for test purposes lowered
-    private static final int RETRY_INTERVAL = 5;
-
     private GenericMockCellHelper _cell;
     private PoolMonitorV5 _poolMonitor;
     private CostModuleV1 _costModule ;
@@ -61,6 +62,7 @@ public class HsmRestoreTest {
     private PartitionManager _partitionManager;
     private PnfsHandler      _pnfsHandler;
     private RequestContainerV5 _rc;
+    private ScheduledExecutorService _scheduler;
 
     private List<CellMessage> __messages ;
 
@@ -94,12 +96,14 @@ public class HsmRestoreTest {
          * allow stage
          */
         _partitionManager.ac_pm_set_$_0_1(new Args("-stage-allowed=yes"));
-        _rc = new RequestContainerV5(RETRY_INTERVAL);
+        _scheduler = Executors.newSingleThreadScheduledExecutor();
+        _rc = new RequestContainerV5();
         _rc.setPoolSelectionUnit(_selectionUnit);
         _rc.setPnfsHandler(_pnfsHandler);
         _rc.setPoolMonitor(_poolMonitor);
         _rc.setPartitionManager(_partitionManager);
-        _rc.setThreadPool(new CurrentThreadExceutorHelper(_cell));
+        _rc.setExecutor(MoreExecutors.sameThreadExecutor());
+        _rc.setScheduledExecutor(_scheduler);
         _rc.setCellEndpoint(_cell);
         _rc.ac_rc_set_retry_$_1(new Args("0"));
         _rc.setStageConfigurationFile(null);
@@ -507,6 +511,153 @@ public class HsmRestoreTest {
                    stageRequests2.get() != 0);
     }
 
+    @Test
+    public void testConcurrentRestoresShareSelection() throws Exception {
+
+        PnfsId pnfsId = new PnfsId("000000000000000000000000000000000001");
+
+        List<String> pools = Collections.singletonList("pool1");
+        PoolMonitorHelper.prepareSelectionUnit(_selectionUnit, pools);
+
+        _storageInfo.addLocation(new URI("osm://osm?"));
+        _storageInfo.setIsNew(false);
+
+        FileAttributes attributes = new FileAttributes();
+        attributes.setStorageInfo(_storageInfo);
+        attributes.setPnfsId(pnfsId);
+        attributes.setLocations(Collections.<String>emptyList());
+        attributes.setSize(5);
+        attributes.setAccessLatency(StorageInfo.DEFAULT_ACCESS_LATENCY);
+        attributes.setRetentionPolicy(StorageInfo.DEFAULT_RETENTION_POLICY);
+
+        long serialId = System.currentTimeMillis();
+        PoolV2Mode poolMode = new PoolV2Mode(PoolV2Mode.ENABLED);
+        Set<String> connectedHSM = Collections.singleton("osm");
+
+        PoolCostInfo poolCostInfo = new PoolCostInfo("pool1");
+        poolCostInfo.setSpaceUsage(100, 20, 30, 50);
+        poolCostInfo.setQueueSizes(0, 10, 0, 0, 10, 0);
+        poolCostInfo.addExtendedMoverQueueSizes(IoQueueManager.DEFAULT_QUEUE, 0, 10, 0, 0, 0);
+
+        CellMessage envelope = new CellMessage(new CellPath(""), null);
+        envelope.addSourceAddress(new CellAddressCore("pool1"));
+        prepareSelectionUnit("pool1", poolMode, connectedHSM);
+        _costModule.messageArrived(envelope,
+                                   new PoolManagerPoolUpMessage("pool1", serialId, poolMode, poolCostInfo));
+
+        final AtomicInteger stageRequests = new AtomicInteger(0);
+        final AtomicInteger replies = new AtomicInteger(0);
+        GenericMockCellHelper.registerAction("pool1", PoolFetchFileMessage.class,
+                                             new StageMessageAction(stageRequests));
+        GenericMockCellHelper.registerAction("door", PoolMgrSelectReadPoolMsg.class,
+                                             new StageMessageAction(replies));
+
+        for (int i = 0; i < 3; i++) {
+            PoolMgrSelectReadPoolMsg selectReadPool =
+                new PoolMgrSelectReadPoolMsg(attributes, _protocolInfo, null);
+            CellMessage cellMessage = new CellMessage(new CellPath("PoolManager"), selectReadPool);
+            cellMessage.getSourcePath().add("door", "local");
+            _rc.messageArrived(cellMessage, selectReadPool);
+        }
+
+        assertEquals("Only one stage request expected", 1, stageRequests.get());
+
+        // pool reports that the file was staged
+        CellMessage m = __messages.remove(0);
+        PoolFetchFileMessage ff = (PoolFetchFileMessage) m.getMessageObject();
+        ff.setSucceeded();
+        _rc.messageArrived(m, ff);
+
+        assertEquals("All requests should be answered", 3, replies.get());
+        for (CellMessage reply: __messages) {
+            PoolMgrSelectReadPoolMsg selectReadPool =
+                (PoolMgrSelectReadPoolMsg) reply.getMessageObject();
+            assertEquals(0, selectReadPool.getReturnCode());
+            assertEquals("pool1", selectReadPool.getPoolName());
+        }
+    }
+
+    @Test
+    public void testJoinedRequestWithShorterTtlExpires() throws Exception {
+
+        PnfsId pnfsId = new PnfsId("000000000000000000000000000000000001");
+
+        List<String> pools = Collections.singletonList("pool1");
+        PoolMonitorHelper.prepareSelectionUnit(_selectionUnit, pools);
+
+        _storageInfo.addLocation(new URI("osm://osm?"));
+        _storageInfo.setIsNew(false);
+
+        FileAttributes attributes = new FileAttributes();
+        attributes.setStorageInfo(_storageInfo);
+        attributes.setPnfsId(pnfsId);
+        attributes.setLocations(Collections.<String>emptyList());
+        attributes.setSize(5);
+        attributes.setAccessLatency(StorageInfo.DEFAULT_ACCESS_LATENCY);
+        attributes.setRetentionPolicy(StorageInfo.DEFAULT_RETENTION_POLICY);
+
+        long serialId = System.currentTimeMillis();
+        PoolV2Mode poolMode = new PoolV2Mode(PoolV2Mode.ENABLED);
+        Set<String> connectedHSM = Collections.singleton("osm");
+
+        PoolCostInfo poolCostInfo = new PoolCostInfo("pool1");
+        poolCostInfo.setSpaceUsage(100, 20, 30, 50);
+        poolCostInfo.setQueueSizes(0, 10, 0, 0, 10, 0);
+        poolCostInfo.addExtendedMoverQueueSizes(IoQueueManager.DEFAULT_QUEUE, 0, 10, 0, 0, 0);
+
+        CellMessage envelope = new CellMessage(new CellPath(""), null);
+        envelope.addSourceAddress(new CellAddressCore("pool1"));
+        prepareSelectionUnit("pool1", poolMode, connectedHSM);
+        _costModule.messageArrived(envelope,
+                                   new PoolManagerPoolUpMessage("pool1", serialId, poolMode, poolCostInfo));
+
+        final AtomicInteger stageRequests = new AtomicInteger(0);
+        final AtomicInteger replies = new AtomicInteger(0);
+        GenericMockCellHelper.registerAction("pool1", PoolFetchFileMessage.class,
+                                             new StageMessageAction(stageRequests));
+        GenericMockCellHelper.registerAction("door", PoolMgrSelectReadPoolMsg.class,
+                                             new StageMessageAction(replies));
+
+        // first request has no time to live and starts the stage
+        PoolMgrSelectReadPoolMsg selectReadPool =
+            new PoolMgrSelectReadPoolMsg(attributes, _protocolInfo, null);
+        CellMessage cellMessage = new CellMessage(new CellPath("PoolManager"), selectReadPool);
+        cellMessage.getSourcePath().add("door", "local");
+        _rc.messageArrived(cellMessage, selectReadPool);
+
+        // second request joins the stage, but gives up after a short while
+        PoolMgrSelectReadPoolMsg selectReadPool2 =
+            new PoolMgrSelectReadPoolMsg(attributes, _protocolInfo, null);
+        CellMessage cellMessage2 = new CellMessage(new CellPath("PoolManager"), selectReadPool2);
+        cellMessage2.getSourcePath().add("door", "local");
+        cellMessage2.setTtl(100);
+        _rc.messageArrived(cellMessage2, selectReadPool2);
+
+        assertEquals("Only one stage request expected", 1, stageRequests.get());
+
+        Thread.sleep(1000);
+
+        // pool reports that the file was staged
+        CellMessage m = __messages.remove(0);
+        PoolFetchFileMessage ff = (PoolFetchFileMessage) m.getMessageObject();
+        ff.setSucceeded();
+        _rc.messageArrived(m, ff);
+
+        assertEquals("Expired request should not be answered", 1, replies.get());
+        assertEquals(selectReadPool.getId(),
+                     ((PoolMgrSelectReadPoolMsg) __messages.get(0).getMessageObject()).getId());
+    }
+
+    @Test
+    public void testShutdownRemovesMetrics() throws Exception {
+
+        assertTrue(MetricsRegistry.getInstance().toString().contains("dcache_poolmanager_read_"));
+
+        _rc.shutdown();
+
+        assertFalse(MetricsRegistry.getInstance().toString().contains("dcache_poolmanager_read_"));
+    }
+
     private void prepareSelectionUnit(String pool,
             PoolV2Mode poolMode, Set<String> connectedHSM) {
         _selectionUnit.getPool(pool).setHsmInstances(connectedHSM);
@@ -516,6 +667,7 @@ public class HsmRestoreTest {
     @After
     public void clear() {
         _rc.shutdown();
+        _scheduler.shutdown();
         GenericMockCellHelper.clean();
     }
 
@@ -768,6 +768,76 @@ public class PoolSelectionUnitTest {
     }
 
 
+    /*
+     * test case: check that a repeated match reflects a changed link
+     */
+    @Test
+    public void testMatchAfterLinkChange() throws CommandException {
+
+        _ci.command("psu set allpoolsactive on");
+        FileAttributes fileAttributes = new FileAttributes();
+        fileAttributes.setStorageInfo(GenericStorageInfo.valueOf("*", "*"));
+
+        PoolPreferenceLevel[] preference =
+            _psu.match(DirectionType.READ, "131.169.214.149", null, fileAttributes, null);
+        assertEquals(1, preference.length);
+
+        _ci.command( new Args("psu set link default-read-link-in -readpref=0" )  );
+
+        preference =
+            _psu.match(DirectionType.READ, "131.169.214.149", null, fileAttributes, null);
+        assertEquals("Link without read preference was selected", 0, preference.length);
+    }
+
+    /*
+     * test case: check that a repeated match reflects a disabled pool
+     */
+    @Test
+    public void testMatchAfterPoolDisabled() throws CommandException {
+
+        _ci.command("psu set allpoolsactive on");
+        FileAttributes fileAttributes = new FileAttributes();
+        fileAttributes.setStorageInfo(GenericStorageInfo.valueOf("*", "*"));
+
+        PoolPreferenceLevel[] preference =
+            _psu.match(DirectionType.READ, "131.169.214.149", null, fileAttributes, null);
+        assertEquals(1, preference[0].getPoolList().size());
+
+        _psu.getPool("default-read").setPoolMode(new PoolV2Mode(PoolV2Mode.DISABLED_STRICT));
+
+        preference =
+            _psu.match(DirectionType.READ, "131.169.214.149", null, fileAttributes, null);
+        assertEquals(1, preference.length);
+        assertEquals("Disabled pool was selected", 0, preference[0].getPoolList().size());
+    }
+
+    /*
+     * test case: check that a repeated match reflects a pool created on the fly
+     */
+    @Test
+    public void testMatchAfterPoolCreated() throws CommandException {
+
+        _ci.command("psu set allpoolsactive on");
+        _ci.command(new Args("psu create pgroup default"));
+        _ci.command(new Args("psu add link default-read-link-in default"));
+        FileAttributes fileAttributes = new FileAttributes();
+        fileAttributes.setStorageInfo(GenericStorageInfo.valueOf("*", "*"));
+
+        PoolPreferenceLevel[] preference =
+            _psu.match(DirectionType.READ, "131.169.214.149", null, fileAttributes, null);
+        assertEquals(1, preference[0].getPoolList().size());
+
+        SelectionPool pool = _psu.getPool("new-pool", true);
+        pool.setPoolMode(new PoolV2Mode(PoolV2Mode.ENABLED));
+        pool.setActive(true);
+
+        preference =
+            _psu.match(DirectionType.READ, "131.169.214.149", null, fileAttributes, null);
+        assertEquals(1, preference.length);
+        assertTrue("Created pool was not selected",
+                   preference[0].getPoolList().contains("new-pool"));
+    }
+
     @Test
     public void testActive() throws CommandException {
 
@@ -18,6 +18,7 @@ import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.DiskErrorCacheException;
@@ -434,6 +435,113 @@ public class RepositorySubsystemTest
         assertCanOpen(id3, size3, CACHED);
     }
 
+    /**
+     * Many movers opening and closing the same and different entries
+     * concurrently must neither fail nor leak links.
+     */
+    @Test
+    public void testConcurrentOpenAndClose()
+        throws Exception
+    {
+        repository.init();
+        repository.load();
+
+        final PnfsId[] ids = { id1, id2, id3 };
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[32];
+        for (int i = 0; i < threads.length; i++) {
+            final int offset = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run()
+                {
+                    try {
+                        for (int j = 0; j < 500; j++) {
+                            PnfsId id = ids[(offset + j) % ids.length];
+                            ReplicaDescriptor handle =
+                                repository.openEntry(id, EnumSet.noneOf(OpenFlags.class));
+                            handle.getFile();
+                            handle.close();
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+        }
+        for (Thread thread: threads) {
+            thread.start();
+        }
+        for (Thread thread: threads) {
+            thread.join();
+        }
+
+        assertNull("Concurrent access failed: " + failure.get(), failure.get());
+        assertEquals(0, repository.getEntry(id1).getLinkCount());
+        assertEquals(0, repository.getEntry(id2).getLinkCount());
+        assertEquals(0, repository.getEntry(id3).getLinkCount());
+        assertSpaceRecord(5120, 2048, 1024, 1024);
+    }
+
+    @Test
+    public void testLoadWithSeveralThreads()
+        throws IOException, CacheException, InterruptedException
+    {
+        repository.setLoadThreads(2);
+        repository.init();
+        repository.load();
+        assertSpaceRecord(5120, 2048, 1024, 1024);
+        assertCanOpen(id1, size1, PRECIOUS);
+        assertCanOpen(id2, size2, CACHED);
+        assertCanOpen(id3, size3, CACHED);
+    }
+
+    @Test
+    public void testLoadWithInventorySnapshot()
+        throws Exception
+    {
+        File snapshot = new File(root, "inventory");
+        repository.setInventorySnapshotFile(snapshot);
+        repository.init();
+        repository.load();
+        repository.shutdown();
+        metaDataStore.close();
+        assertTrue(snapshot.exists());
+
+        initRepository();
+        repository.setInventorySnapshotFile(snapshot);
+        repository.init();
+        repository.load();
+        assertFalse(snapshot.exists());
+        assertEquals(2048, repository.getSpaceRecord().getFreeSpace());
+        assertCanOpen(id1, size1, PRECIOUS);
+        assertCanOpen(id2, size2, CACHED);
+        assertCanOpen(id3, size3, CACHED);
+    }
+
+    @Test
+    public void testLoadIgnoresStaleInventorySnapshot()
+        throws Exception
+    {
+        File snapshot = new File(root, "inventory");
+        repository.setInventorySnapshotFile(snapshot);
+        repository.init();
+        repository.load();
+        repository.shutdown();
+        metaDataStore.close();
+
+        new File(dataDir, id2.toString()).delete();
+        new File(new File(root, "control"), id2.toString()).delete();
+        new File(new File(root, "control"), "SI-" + id2.toString()).delete();
+
+        initRepository();
+        repository.setInventorySnapshotFile(snapshot);
+        repository.init();
+        repository.load();
+        assertFalse(snapshot.exists());
+        assertSpaceRecord(5120, 3072, 1024, 0);
+    }
+
     @Test(expected=FileNotInCacheException.class)
     public void testOpenEntryFileNotFound()
         throws Throwable
@@ -933,7 +1041,8 @@ public class RepositorySubsystemTest
         assertFalse(repository.getEntry(id2).isSticky());
         repository.setSticky(id2, "system", now + 500, true);
         assertTrue(repository.getEntry(id2).isSticky());
-        Thread.currentThread().sleep(600 + CacheRepositoryV5.EXPIRATION_CLOCKSHIFT_EXTRA_TIME);
+        Thread.currentThread().sleep(600 + CacheRepositoryV5.EXPIRATION_CLOCKSHIFT_EXTRA_TIME
+                                     + 2 * CacheRepositoryV5.EXPIRATION_TICK);
         assertFalse(repository.getEntry(id2).isSticky());
     }
 
@@ -65,6 +65,10 @@ printPoolConfig() # $1 = path, $2 = name, $3 = domain, $4 = optional size, $5 =
             echo "pool.plugins.meta=org.dcache.pool.repository.meta.db.BerkeleyDBMetaDataRepository"
             echo "pool.wait-for-files=\${pool.path}/data:\${pool.path}/meta"
             ;;
+        log)
+            echo "pool.plugins.meta=org.dcache.pool.repository.meta.log.LogMetaDataRepository"
+            echo "pool.wait-for-files=\${pool.path}/data:\${pool.path}/meta-log"
+            ;;
         *)
             echo "pool.wait-for-files=\${pool.path}/data"
             ;;